@@ -0,0 +1,208 @@
+/**
+ * This material was prepared as an account of work sponsored by an agency of the United States Government.<br>
+ * Neither the United States Government nor the United States Department of Energy, nor any of their employees,<br>
+ * nor any of their contractors, subcontractors or their employees, makes any warranty, express or implied, or<br>
+ * assumes any legal liability or responsibility for the accuracy, completeness, or usefulness or any information,<br>
+ * apparatus, product, or process disclosed, or represents that its use would not infringe privately owned rights.
+ */
+package org.mt4jx.components.visibleComponents.font;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>
+ * The font files the benchmarks run on. The corpus is the true-type,
+ * true-type collection and open-type files of the directory named by the
+ * <tt>bench.fonts</tt> system property, which the <tt>bench</tt> target of
+ * the build file sets, <tt>bench/fonts</tt> by default. That directory holds
+ * a few DejaVu fonts, so that results compare between machines; the fonts
+ * installed on a machine are never used in their place.
+ * </p>
+ */
+public final class BenchmarkFonts
+{
+
+    public static final String CORPUS_PROPERTY = "bench.fonts";
+
+    public static final String DEFAULT_CORPUS = "bench/fonts";
+
+    private BenchmarkFonts()
+    {
+    }
+
+    /**
+     * Returns the font files of the corpus, sorted by name.
+     *
+     * @return the files; never empty.
+     *
+     * @throws IllegalStateException
+     *                               if the corpus directory has no font files.
+     */
+    public static File[] corpus()
+    {
+        final File dir = new File(System.getProperty(CORPUS_PROPERTY, DEFAULT_CORPUS));
+        final File[] files = listFontFiles(dir);
+        if (files.length == 0)
+        {
+            throw new IllegalStateException("No font files in " + dir.getAbsolutePath() + "; set -D"
+                    + CORPUS_PROPERTY + " to the benchmark font directory");
+        }
+        return files;
+    }
+
+    /**
+     * Returns the first true-type file of the corpus, which every factory
+     * set up by the benchmarks can create fonts from.
+     *
+     * @return
+     */
+    public static File trueTypeFile()
+    {
+        for (final File file : corpus())
+        {
+            if (file.getName().toLowerCase().endsWith(".ttf"))
+            {
+                return file;
+            }
+        }
+        throw new IllegalStateException("No true-type font file in the corpus");
+    }
+
+    /**
+     * Points the font manager at the directory of a font file, and has it
+     * create vector fonts from tessellated glyphs kept in the specified
+     * directory, so that no font needs a <code>PApplet</code>.
+     *
+     * @param fontFile
+     * @param glyphCacheDirectory
+     */
+    public static void useFontDirectory(final File fontFile, final File glyphCacheDirectory)
+    {
+        final EnhancedFontManager manager = EnhancedFontManager.getInstance();
+        manager.setFontIndexFile(null);
+        manager.setFontPath(fontFile.getAbsoluteFile().getParent());
+        manager.setGlyphGeometryCacheDirectory(glyphCacheDirectory);
+    }
+
+    /**
+     * Creates a directory of the specified number of font files, copied from
+     * the corpus in turn.
+     *
+     * @param count
+     *
+     * @return the directory, to be removed with {@link #delete(File)}.
+     *
+     * @throws IOException
+     */
+    public static File createFontDirectory(final int count) throws IOException
+    {
+        final File[] corpus = corpus();
+        final File dir = createTempDirectory("fonts");
+        for (int i = 0; i < count; i++)
+        {
+            final File source = corpus[i % corpus.length];
+            final String name = source.getName();
+            final File target = new File(dir, String.format("%05d-%s", i, name));
+            Files.copy(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+        return dir;
+    }
+
+    /**
+     * Writes an svg font with the specified id and number of glyphs.
+     *
+     * @param dir
+     * @param id
+     * @param glyphCount
+     *
+     * @return the file.
+     *
+     * @throws IOException
+     */
+    public static File writeSvgFont(final File dir, final String id, final int glyphCount) throws IOException
+    {
+        final File file = new File(dir, id + ".svg");
+        final Writer out = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try
+        {
+            out.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            out.write("<svg xmlns=\"http://www.w3.org/2000/svg\">\n<defs>\n");
+            out.write("<font id=\"" + id + "\" horiz-adv-x=\"500\">\n");
+            out.write("<font-face font-family=\"" + id + "\" units-per-em=\"1000\" ascent=\"800\" descent=\"-200\"/>\n");
+            out.write("<missing-glyph horiz-adv-x=\"500\" d=\"M0 0L500 0L500 700L0 700Z\"/>\n");
+            for (int i = 0; i < glyphCount; i++)
+            {
+                final int c = 0x21 + i;
+                out.write("<glyph unicode=\"&#" + c + ";\" horiz-adv-x=\"" + (400 + i % 200)
+                        + "\" d=\"M50 0L450 0L450 " + (500 + i % 200) + "L50 " + (500 + i % 200) + "Z\"/>\n");
+            }
+            out.write("</font>\n</defs>\n</svg>\n");
+        } finally
+        {
+            out.close();
+        }
+        return file;
+    }
+
+    /**
+     * Creates an empty temporary directory.
+     *
+     * @param prefix
+     *
+     * @return
+     *
+     * @throws IOException
+     */
+    public static File createTempDirectory(final String prefix) throws IOException
+    {
+        return Files.createTempDirectory("bench-" + prefix).toFile();
+    }
+
+    /**
+     * Deletes a file or a directory and everything in it.
+     *
+     * @param file
+     */
+    public static void delete(final File file)
+    {
+        final File[] children = file.listFiles();
+        if (children != null)
+        {
+            for (final File child : children)
+            {
+                delete(child);
+            }
+        }
+        file.delete();
+    }
+
+    private static File[] listFontFiles(final File dir)
+    {
+        final File[] files = dir.listFiles();
+        if (files == null)
+        {
+            return new File[0];
+        }
+        final List<File> fontFiles = new ArrayList<File>();
+        for (final File file : files)
+        {
+            final String name = file.getName().toLowerCase();
+            if (file.isFile() && (name.endsWith(".ttf") || name.endsWith(".ttc") || name.endsWith(".otf")))
+            {
+                fontFiles.add(file);
+            }
+        }
+        final File[] result = fontFiles.toArray(new File[fontFiles.size()]);
+        Arrays.sort(result);
+        return result;
+    }
+}
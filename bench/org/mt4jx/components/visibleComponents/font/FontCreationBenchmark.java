@@ -0,0 +1,88 @@
+/**
+ * This material was prepared as an account of work sponsored by an agency of the United States Government.<br>
+ * Neither the United States Government nor the United States Department of Energy, nor any of their employees,<br>
+ * nor any of their contractors, subcontractors or their employees, makes any warranty, express or implied, or<br>
+ * assumes any legal liability or responsibility for the accuracy, completeness, or usefulness or any information,<br>
+ * apparatus, product, or process disclosed, or represents that its use would not infringe privately owned rights.
+ */
+package org.mt4jx.components.visibleComponents.font;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.mt4j.util.MTColor;
+import org.mt4j.util.font.IFont;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>
+ * Creating a font by name, when the font manager has it cached and when it
+ * has not. Fonts are vector fonts built from tessellated glyphs, which the
+ * setup writes to a glyph cache, so an uncached font is created from the
+ * geometry mapped from disk, as in every run but the first of an application.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class FontCreationBenchmark
+{
+
+    private static final int FONT_SIZE = 24;
+
+    private File glyphCacheDirectory;
+
+    private String fontFileName;
+
+    private EnhancedFontManager manager;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        final File fontFile = BenchmarkFonts.trueTypeFile();
+        glyphCacheDirectory = BenchmarkFonts.createTempDirectory("glyphcache");
+        BenchmarkFonts.useFontDirectory(fontFile, glyphCacheDirectory);
+        fontFileName = fontFile.getName();
+
+        manager = EnhancedFontManager.getInstance();
+        if (manager.createFontByName(null, fontFileName, FONT_SIZE, MTColor.WHITE, true) == null)
+        {
+            throw new IllegalStateException("Could not create " + fontFileName);
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        manager.setGlyphGeometryCacheDirectory(null);
+        BenchmarkFonts.delete(glyphCacheDirectory);
+    }
+
+    @Benchmark
+    public IFont createCachedFont()
+    {
+        return manager.createFontByName(null, fontFileName, FONT_SIZE, MTColor.WHITE, true);
+    }
+
+    @Benchmark
+    public IFont createUncachedFont()
+    {
+        final IFont font = manager.createFontByName(null, fontFileName, FONT_SIZE, MTColor.WHITE, true);
+        manager.removeFromCache(font);
+        return font;
+    }
+}
@@ -0,0 +1,91 @@
+/**
+ * This material was prepared as an account of work sponsored by an agency of the United States Government.<br>
+ * Neither the United States Government nor the United States Department of Energy, nor any of their employees,<br>
+ * nor any of their contractors, subcontractors or their employees, makes any warranty, express or implied, or<br>
+ * assumes any legal liability or responsibility for the accuracy, completeness, or usefulness or any information,<br>
+ * apparatus, product, or process disclosed, or represents that its use would not infringe privately owned rights.
+ */
+package org.mt4jx.components.visibleComponents.font;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>
+ * Loading the available fonts from a directory of copies of the corpus
+ * files, with every file parsed or with the names taken from a font index
+ * written beforehand, sequentially or in parallel.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class FontDiscoveryBenchmark
+{
+
+    @Param({ "100", "1000" })
+    public int fontCount;
+
+    @Param({ "none", "warm" })
+    public String index;
+
+    @Param({ "false", "true" })
+    public boolean parallel;
+
+    private File fontDirectory;
+
+    private File indexDirectory;
+
+    private EnhancedFontManager manager;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        fontDirectory = BenchmarkFonts.createFontDirectory(fontCount);
+        indexDirectory = BenchmarkFonts.createTempDirectory("index");
+
+        manager = EnhancedFontManager.getInstance();
+        manager.setFontPath(fontDirectory.getAbsolutePath());
+        manager.setParallelFontDiscovery(parallel);
+        if ("warm".equals(index))
+        {
+            manager.setFontIndexFile(new File(indexDirectory, "fontindex"));
+            // Written by the first load.
+            manager.reloadAvailableFonts();
+        } else
+        {
+            manager.setFontIndexFile(null);
+        }
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        manager.setFontIndexFile(null);
+        BenchmarkFonts.delete(fontDirectory);
+        BenchmarkFonts.delete(indexDirectory);
+    }
+
+    @Benchmark
+    public void loadAvailableFonts()
+    {
+        manager.reloadAvailableFonts();
+    }
+}
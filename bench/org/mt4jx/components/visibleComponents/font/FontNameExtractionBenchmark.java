@@ -0,0 +1,83 @@
+/**
+ * This material was prepared as an account of work sponsored by an agency of the United States Government.<br>
+ * Neither the United States Government nor the United States Department of Energy, nor any of their employees,<br>
+ * nor any of their contractors, subcontractors or their employees, makes any warranty, express or implied, or<br>
+ * assumes any legal liability or responsibility for the accuracy, completeness, or usefulness or any information,<br>
+ * apparatus, product, or process disclosed, or represents that its use would not infringe privately owned rights.
+ */
+package org.mt4jx.components.visibleComponents.font;
+
+import java.awt.FontFormatException;
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.mt4jx.components.visibleComponents.font.fontFactories.EnhancedSvgFontFactory;
+import org.mt4jx.components.visibleComponents.font.fontFactories.EnhancedTTFontFactory;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>
+ * Extraction of the name of a font from its file, which font discovery does
+ * for every file not in the font index. True-type names are read from the
+ * files of the corpus in turn, so the result is the average over the corpus.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class FontNameExtractionBenchmark
+{
+
+    private File[] files;
+
+    private int next;
+
+    private File svgDirectory;
+
+    private String svgFile;
+
+    private EnhancedSvgFontFactory svgFactory;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        files = BenchmarkFonts.corpus();
+        svgDirectory = BenchmarkFonts.createTempDirectory("svg");
+        svgFile = BenchmarkFonts.writeSvgFont(svgDirectory, "BenchFont", 94).getPath();
+        svgFactory = new EnhancedSvgFontFactory();
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        BenchmarkFonts.delete(svgDirectory);
+    }
+
+    @Benchmark
+    public String[] getFontNames() throws IOException, FontFormatException
+    {
+        final File file = files[next];
+        next = (next + 1) % files.length;
+        return EnhancedTTFontFactory.getFontNames(file, 0);
+    }
+
+    @Benchmark
+    public String extractSvgFontName()
+    {
+        return svgFactory.extractFontName(svgFile);
+    }
+}
@@ -0,0 +1,80 @@
+/**
+ * This material was prepared as an account of work sponsored by an agency of the United States Government.<br>
+ * Neither the United States Government nor the United States Department of Energy, nor any of their employees,<br>
+ * nor any of their contractors, subcontractors or their employees, makes any warranty, express or implied, or<br>
+ * assumes any legal liability or responsibility for the accuracy, completeness, or usefulness or any information,<br>
+ * apparatus, product, or process disclosed, or represents that its use would not infringe privately owned rights.
+ */
+package org.mt4jx.components.visibleComponents.widgets;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.mt4j.util.MTColor;
+import org.mt4j.util.font.IFont;
+import org.mt4jx.components.visibleComponents.font.BenchmarkFonts;
+import org.mt4jx.components.visibleComponents.font.EnhancedFontManager;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * <p>
+ * Fitting a font to an annular segment, for labels of a circular menu. The
+ * size is computed during warmup and remembered after that, with the fonts
+ * taken from the font manager's cache, so this measures what a menu pays
+ * for fitting: measuring the labels and looking up the size.
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 10, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Djava.awt.headless=true")
+public class AnnularFontFittingBenchmark
+{
+
+    private static final String[] LABELS = { "Open", "Save As...", "Properties", "Delete",
+            "Zoom", "Rotate Left" };
+
+    @Param({ "30", "90" })
+    public float angle;
+
+    private File glyphCacheDirectory;
+
+    private String fontFileName;
+
+    @Setup
+    public void setUp() throws IOException
+    {
+        final File fontFile = BenchmarkFonts.trueTypeFile();
+        glyphCacheDirectory = BenchmarkFonts.createTempDirectory("glyphcache");
+        BenchmarkFonts.useFontDirectory(fontFile, glyphCacheDirectory);
+        fontFileName = fontFile.getName();
+    }
+
+    @TearDown
+    public void tearDown()
+    {
+        EnhancedFontManager.getInstance().setGlyphGeometryCacheDirectory(null);
+        BenchmarkFonts.delete(glyphCacheDirectory);
+    }
+
+    @Benchmark
+    public IFont findAppropriateFont()
+    {
+        return MTAnnularTextArea.findAppropriateFont(null, 100f, 160f, angle, fontFileName, MTColor.WHITE, true,
+                LABELS);
+    }
+}
@@ -19,9 +19,9 @@ import org.mt4j.sceneManagement.AbstractScene;
 import org.mt4j.util.MTColor;
 import org.mt4j.util.camera.IFrustum;
 import org.mt4j.util.camera.MTCamera;
-import org.mt4j.util.font.FontManager;
 import org.mt4j.util.font.IFont;
-import org.mt4j.util.font.fontFactories.BitmapFontFactory;
+import org.mt4jx.components.visibleComponents.font.EnhancedFontManager;
+import org.mt4jx.components.visibleComponents.font.fontFactories.EnhancedBitmapFontFactory;
 
 import processing.core.PGraphics;
 
@@ -90,15 +90,15 @@ public class TreeScene extends AbstractScene {
 		// TODO Auto-generated constructor stub
 		this.getCanvas().setFrustumCulling(true);
 		
-		FontManager.getInstance().registerFontFactory(".ttf", new BitmapFontFactory());
-		
 		getCanvas().registerInputProcessor(new ZoomProcessor(app));
 		getCanvas().addGestureListener(ZoomProcessor.class, new DefaultZoomAction());
 		getCanvas().registerInputProcessor(new PanProcessorTwoFingers(app));
 		getCanvas().addGestureListener(PanProcessorTwoFingers.class, new DefaultPanAction());
 		
 		
-		font = FontManager.getInstance().createFont(app, "arial.ttf", 12, MTColor.WHITE, MTColor.WHITE, false);
+		// A bitmap font for this scene only: the manager's factory for .ttf is left alone.
+		font = EnhancedFontManager.getInstance().createFontByName(app, "arial.ttf", 12, MTColor.WHITE, false,
+				new EnhancedBitmapFontFactory());
 		
 		mapping = new HashMap<MTComponent, Node>();
 		
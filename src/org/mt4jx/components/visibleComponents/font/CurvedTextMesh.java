@@ -0,0 +1,564 @@
+/**
+ * This material was prepared as an account of work sponsored by an agency of the United States Government.<br>
+ * Neither the United States Government nor the United States Department of Energy, nor any of their employees,<br>
+ * nor any of their contractors, subcontractors or their employees, makes any warranty, express or implied, or<br>
+ * assumes any legal liability or responsibility for the accuracy, completeness, or usefulness or any information,<br>
+ * apparatus, product, or process disclosed, or represents that its use would not infringe privately owned rights.
+ */
+package org.mt4jx.components.visibleComponents.font;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.util.Arrays;
+
+import org.mt4j.util.font.IFont;
+import org.mt4j.util.font.IFontCharacter;
+import org.mt4j.util.opengl.GL10;
+import org.mt4jx.components.visibleComponents.font.atlas.AtlasFont;
+import org.mt4jx.components.visibleComponents.font.mesh.GlyphGeometry;
+import org.mt4jx.components.visibleComponents.font.mesh.MeshFont;
+
+import processing.core.PGraphics;
+
+/**
+ * <p>
+ * A line of text laid out along a circular arc and drawn as a single mesh.
+ * Each glyph is centered on the arc and turned to follow it, and the
+ * vertices of all the glyphs, already transformed, are written into one
+ * vertex buffer: the whole text is one draw call for a font drawn from
+ * precompiled geometry, or two with the outlines of an anti-aliased one, and
+ * one per run of glyphs on the same page for an atlas font. Glyphs of other
+ * fonts are drawn one by one, each with its own transform.
+ * </p>
+ * <p>
+ * Glyphs are laid out as if the text started at angle 0 on a circle
+ * centered on the origin, and the whole mesh is turned and moved onto the
+ * arc when drawn. Centering the text on the arc after a change of its width,
+ * or moving the arc, is therefore only a change of that transform. Changing
+ * the text lays out and writes to the mesh only the glyphs after the part it
+ * shares with the previous text, so updating the end of a label, as a clock
+ * or a ticker does, costs as much as the characters that changed. The mesh
+ * is rebuilt when the font or the radius changes, or when the glyph atlas is
+ * repacked.
+ * </p>
+ * <p>
+ * Like the fonts themselves, meshes are meant to be used from the rendering
+ * thread.
+ * </p>
+ */
+public final class CurvedTextMesh
+{
+
+    // Vertices of the two triangles of a glyph quad.
+    private static final int QUAD_VERTICES = 6;
+
+    // Floats of a glyph's placement: translation, rotation and its cosine and sine.
+    private static final int PLACEMENT_FLOATS = 5;
+
+    private IFont font;
+
+    private String text = "";
+
+    private float centerX, centerY, radius, startRadians, arcRadians;
+
+    // The characters of the text laid out, and their width.
+    private int laidOutLength;
+
+    private float laidOutWidth;
+
+    // The glyphs that draw something, with their placements.
+    private int glyphCount;
+
+    private int[] codePoints = new int[0];
+
+    private IFontCharacter[] characters = new IFontCharacter[0];
+
+    private float[] placements = new float[0];
+
+    // Per glyph, the index after its characters and the width of the text up to there.
+    private int[] textEnds = new int[0];
+
+    private float[] widthEnds = new float[0];
+
+    // The glyphs written to the mesh, and per glyph the floats of vertices and lines up to its own.
+    private int meshGlyphCount;
+
+    private int[] vertexEnds = new int[0], lineEnds = new int[0];
+
+    // Repack count of the atlas the texture coordinates were read from.
+    private int atlasRepackCount;
+
+    // The mesh; texture coordinates for atlas fonts, lines for anti-aliased mesh fonts.
+    private FloatBuffer vertices, texCoords, lines;
+
+    // Atlas fonts: the page and the vertex after the end of each run of glyphs on one page.
+    private int runCount;
+
+    private int[] runPages = new int[0], runEnds = new int[0];
+
+    private final float[] quad = new float[8];
+
+    /**
+     * Creates an empty mesh.
+     *
+     * @param font
+     */
+    public CurvedTextMesh(final IFont font)
+    {
+        setFont(font);
+    }
+
+    public IFont getFont()
+    {
+        return font;
+    }
+
+    public void setFont(final IFont font)
+    {
+        if (font == null)
+        {
+            throw new NullPointerException();
+        }
+        if (font != this.font)
+        {
+            this.font = font;
+            clearLayout();
+        }
+    }
+
+    public String getText()
+    {
+        return text;
+    }
+
+    /**
+     * Sets the text. Only the glyphs after the part the text shares with the
+     * previous one are laid out again.
+     *
+     * @param text
+     */
+    public void setText(final String text)
+    {
+        final String s = (text != null) ? text : "";
+        if (!s.equals(this.text))
+        {
+            truncate(commonPrefixLength(this.text, s));
+            this.text = s;
+        }
+    }
+
+    /**
+     * Appends to the text, laying out only the appended glyphs.
+     *
+     * @param s
+     */
+    public void appendText(final String s)
+    {
+        if ((s != null) && (s.length() > 0))
+        {
+            text += s;
+        }
+    }
+
+    /**
+     * Sets the arc the text is centered on. Angles are measured the way
+     * <code>MTAnnularSegment</code> measures them, from the negative x axis
+     * towards the negative y axis. Only a change of the radius lays out the
+     * glyphs again.
+     *
+     * @param centerX
+     * @param centerY
+     *                     the center of the circle.
+     * @param radius
+     * @param startRadians
+     *                     the angle the arc starts at.
+     * @param arcRadians
+     *                     the angle the arc spans.
+     */
+    public void setArc(final float centerX, final float centerY, final float radius, final float startRadians,
+            final float arcRadians)
+    {
+        if (radius != this.radius)
+        {
+            this.radius = radius;
+            clearLayout();
+        }
+        this.centerX = centerX;
+        this.centerY = centerY;
+        this.startRadians = startRadians;
+        this.arcRadians = arcRadians;
+    }
+
+    /**
+     * Draws the text with OpenGL.
+     *
+     * @param gl
+     */
+    public void drawComponent(final GL10 gl)
+    {
+        checkLayout();
+        if (glyphCount == 0)
+        {
+            return;
+        }
+        final IFont base = (font instanceof TintedFont) ? ((TintedFont) font).getFont() : font;
+        if ((base instanceof AtlasFont) && (((AtlasFont) base).getAtlas().getRepackCount() != atlasRepackCount))
+        {
+            truncateMesh(0);
+        }
+
+        gl.glPushMatrix();
+        gl.glTranslatef(centerX, centerY, 0f);
+        gl.glRotatef((float) Math.toDegrees(getRotation()), 0f, 0f, 1f);
+        font.beginBatchRenderGL(gl, font);
+        if (base instanceof MeshFont)
+        {
+            if (meshGlyphCount < glyphCount)
+            {
+                appendMesh((MeshFont) base);
+            }
+            final int vertexFloats = vertexEnds[glyphCount - 1];
+            final int lineFloats = lineEnds[glyphCount - 1];
+            if (vertexFloats > 0)
+            {
+                gl.glVertexPointer(2, GL10.GL_FLOAT, 0, vertices);
+                gl.glDrawArrays(GL10.GL_TRIANGLES, 0, vertexFloats / 2);
+            }
+            if (lineFloats > 0)
+            {
+                gl.glVertexPointer(2, GL10.GL_FLOAT, 0, lines);
+                gl.glDrawArrays(GL10.GL_LINES, 0, lineFloats / 2);
+            }
+        } else if (base instanceof AtlasFont)
+        {
+            final AtlasFont atlasFont = (AtlasFont) base;
+            if (meshGlyphCount < glyphCount)
+            {
+                appendMesh(atlasFont);
+            }
+            gl.glVertexPointer(2, GL10.GL_FLOAT, 0, vertices);
+            gl.glTexCoordPointer(2, GL10.GL_FLOAT, 0, texCoords);
+            for (int run = 0; run < runCount; run++)
+            {
+                final int first = (run > 0) ? runEnds[run - 1] : 0;
+                atlasFont.bindPage(gl, runPages[run]);
+                gl.glDrawArrays(GL10.GL_TRIANGLES, first, runEnds[run] - first);
+            }
+        } else
+        {
+            for (int i = 0; i < glyphCount; i++)
+            {
+                final int p = i * PLACEMENT_FLOATS;
+                gl.glPushMatrix();
+                gl.glTranslatef(placements[p], placements[p + 1], 0f);
+                gl.glRotatef((float) Math.toDegrees(placements[p + 2]), 0f, 0f, 1f);
+                characters[i].drawComponent(gl);
+                gl.glPopMatrix();
+            }
+        }
+        font.endBatchRenderGL(gl, font);
+        gl.glPopMatrix();
+    }
+
+    /**
+     * Draws the text through processing, for renderers without direct GL
+     * access, one glyph at a time.
+     *
+     * @param g
+     */
+    public void drawComponent(final PGraphics g)
+    {
+        checkLayout();
+        if (glyphCount == 0)
+        {
+            return;
+        }
+        g.pushMatrix();
+        g.translate(centerX, centerY);
+        g.rotate(getRotation());
+        for (int i = 0; i < glyphCount; i++)
+        {
+            final int p = i * PLACEMENT_FLOATS;
+            g.pushMatrix();
+            g.translate(placements[p], placements[p + 1]);
+            g.rotate(placements[p + 2]);
+            characters[i].drawComponent(g);
+            g.popMatrix();
+        }
+        g.popMatrix();
+    }
+
+    // The angle that centers the laid out text on the arc.
+    //
+    private float getRotation()
+    {
+        return startRadians + (arcRadians / 2f) - (laidOutWidth / radius / 2f);
+    }
+
+    private void clearLayout()
+    {
+        laidOutLength = 0;
+        laidOutWidth = 0f;
+        glyphCount = 0;
+        truncateMesh(0);
+    }
+
+    // Drops the glyphs of the characters from the specified index on, and
+    // any characters without glyphs just before them.
+    //
+    private void truncate(final int length)
+    {
+        if (length >= laidOutLength)
+        {
+            return;
+        }
+        while ((glyphCount > 0) && (textEnds[glyphCount - 1] > length))
+        {
+            glyphCount--;
+        }
+        laidOutLength = (glyphCount > 0) ? textEnds[glyphCount - 1] : 0;
+        laidOutWidth = (glyphCount > 0) ? widthEnds[glyphCount - 1] : 0f;
+        if (meshGlyphCount > glyphCount)
+        {
+            truncateMesh(glyphCount);
+        }
+    }
+
+    private void truncateMesh(final int count)
+    {
+        meshGlyphCount = count;
+        final int vertexCount = (count > 0) ? vertexEnds[count - 1] / 2 : 0;
+        while ((runCount > 0) && (((runCount > 1) ? runEnds[runCount - 2] : 0) >= vertexCount))
+        {
+            runCount--;
+        }
+        if (runCount > 0)
+        {
+            runEnds[runCount - 1] = Math.min(runEnds[runCount - 1], vertexCount);
+        }
+    }
+
+    // Lays out the characters after those already laid out. Each glyph is
+    // centered on a circle of the radius around the origin, turned to follow
+    // it, with the text starting at angle 0.
+    //
+    private void checkLayout()
+    {
+        final int length = text.length();
+        if ((laidOutLength == length) || (radius <= 0f))
+        {
+            return;
+        }
+        ensureGlyphCapacity(glyphCount + (length - laidOutLength));
+
+        final FontMetricsTable metrics = FontMetricsTable.forFont(font);
+        final float halfHeight = font.getFontAbsoluteHeight() / 2f;
+        float width = laidOutWidth;
+        for (int i = laidOutLength; i < length;)
+        {
+            final int codePoint = text.codePointAt(i);
+            i += Character.charCount(codePoint);
+            final float advance = metrics.getAdvance(codePoint);
+
+            final IFontCharacter character = FontCoverage.needsGlyph(codePoint)
+                    ? font.getFontCharacterByUnicode(new String(Character.toChars(codePoint))) : null;
+            if (character != null)
+            {
+                // The center of the glyph's cell goes on the circle.
+                final float angle = (width + (advance / 2f)) / radius;
+                final float rotation = angle - (float) (Math.PI / 2.0);
+                final float cos = (float) Math.cos(rotation);
+                final float sin = (float) Math.sin(rotation);
+                final float halfWidth = advance / 2f;
+                final float x = -radius * (float) Math.cos(angle);
+                final float y = -radius * (float) Math.sin(angle);
+
+                final int p = glyphCount * PLACEMENT_FLOATS;
+                placements[p] = x - ((halfWidth * cos) - (halfHeight * sin));
+                placements[p + 1] = y - ((halfWidth * sin) + (halfHeight * cos));
+                placements[p + 2] = rotation;
+                placements[p + 3] = cos;
+                placements[p + 4] = sin;
+                codePoints[glyphCount] = codePoint;
+                characters[glyphCount] = character;
+                textEnds[glyphCount] = i;
+                widthEnds[glyphCount] = width + advance;
+                glyphCount++;
+            }
+            width += advance;
+        }
+        laidOutLength = length;
+        laidOutWidth = width;
+    }
+
+    private void ensureGlyphCapacity(final int capacity)
+    {
+        if (codePoints.length >= capacity)
+        {
+            return;
+        }
+        final int n = Math.max(capacity, 2 * codePoints.length);
+        codePoints = Arrays.copyOf(codePoints, n);
+        characters = Arrays.copyOf(characters, n);
+        placements = Arrays.copyOf(placements, n * PLACEMENT_FLOATS);
+        textEnds = Arrays.copyOf(textEnds, n);
+        widthEnds = Arrays.copyOf(widthEnds, n);
+        vertexEnds = Arrays.copyOf(vertexEnds, n);
+        lineEnds = Arrays.copyOf(lineEnds, n);
+    }
+
+    // Writes the triangles, and the outlines if anti-aliased, of the glyphs
+    // not in the mesh yet.
+    //
+    private void appendMesh(final MeshFont meshFont)
+    {
+        final GlyphGeometry geometry = meshFont.getGeometry();
+        final boolean outlines = meshFont.isAntiAliased();
+        final int vertexStart = (meshGlyphCount > 0) ? vertexEnds[meshGlyphCount - 1] : 0;
+        final int lineStart = (meshGlyphCount > 0) ? lineEnds[meshGlyphCount - 1] : 0;
+        int vertexEnd = vertexStart, lineEnd = lineStart;
+        for (int i = meshGlyphCount; i < glyphCount; i++)
+        {
+            vertexEnd += floatCount(geometry.getTriangles(codePoints[i]));
+            if (outlines)
+            {
+                lineEnd += floatCount(geometry.getLines(codePoints[i]));
+            }
+            vertexEnds[i] = vertexEnd;
+            lineEnds[i] = lineEnd;
+        }
+
+        vertices = reserve(vertices, vertexStart, vertexEnd);
+        lines = reserve(lines, lineStart, lineEnd);
+        for (int i = meshGlyphCount; i < glyphCount; i++)
+        {
+            put(geometry.getTriangles(codePoints[i]), i, vertices);
+            if (outlines)
+            {
+                put(geometry.getLines(codePoints[i]), i, lines);
+            }
+        }
+        vertices.flip();
+        lines.flip();
+        meshGlyphCount = glyphCount;
+    }
+
+    // Writes the quads, as two triangles each, of the glyphs not in the mesh
+    // yet.
+    //
+    private void appendMesh(final AtlasFont atlasFont)
+    {
+        atlasRepackCount = atlasFont.getAtlas().getRepackCount();
+
+        final int start = (meshGlyphCount > 0) ? vertexEnds[meshGlyphCount - 1] : 0;
+        final int end = start + ((glyphCount - meshGlyphCount) * QUAD_VERTICES * 2);
+        vertices = reserve(vertices, start, end);
+        texCoords = reserve(texCoords, start, end);
+        int vertexEnd = start;
+        for (int i = meshGlyphCount; i < glyphCount; i++)
+        {
+            final int page = atlasFont.getGlyphQuad(characters[i].getUnicode(), quad);
+            if (page >= 0)
+            {
+                final int p = i * PLACEMENT_FLOATS;
+                final float x0 = quad[0], y0 = quad[1], x1 = quad[2], y1 = quad[3];
+                final float u0 = quad[4], v0 = quad[5], u1 = quad[6], v1 = quad[7];
+                putVertex(x0, y0, p, vertices);
+                putVertex(x0, y1, p, vertices);
+                putVertex(x1, y0, p, vertices);
+                putVertex(x1, y0, p, vertices);
+                putVertex(x0, y1, p, vertices);
+                putVertex(x1, y1, p, vertices);
+                texCoords.put(u0).put(v0).put(u0).put(v1).put(u1).put(v0);
+                texCoords.put(u1).put(v0).put(u0).put(v1).put(u1).put(v1);
+                vertexEnd += QUAD_VERTICES * 2;
+                addRun(page, vertexEnd / 2);
+            }
+            vertexEnds[i] = vertexEnd;
+        }
+        vertices.flip();
+        texCoords.flip();
+        meshGlyphCount = glyphCount;
+    }
+
+    // Extends the last run if on the same page, or starts a new one.
+    //
+    private void addRun(final int page, final int end)
+    {
+        if ((runCount > 0) && (runPages[runCount - 1] == page))
+        {
+            runEnds[runCount - 1] = end;
+            return;
+        }
+        if (runCount == runPages.length)
+        {
+            runPages = Arrays.copyOf(runPages, Math.max(4, 2 * runCount));
+            runEnds = Arrays.copyOf(runEnds, runPages.length);
+        }
+        runPages[runCount] = page;
+        runEnds[runCount] = end;
+        runCount++;
+    }
+
+    // Appends a glyph's vertices, moved to its placement.
+    //
+    private void put(final FloatBuffer glyph, final int index, final FloatBuffer out)
+    {
+        if (glyph == null)
+        {
+            return;
+        }
+        final int p = index * PLACEMENT_FLOATS;
+        for (int j = 0; j < glyph.limit(); j += 2)
+        {
+            putVertex(glyph.get(j), glyph.get(j + 1), p, out);
+        }
+    }
+
+    private void putVertex(final float x, final float y, final int p, final FloatBuffer out)
+    {
+        final float cos = placements[p + 3], sin = placements[p + 4];
+        out.put(placements[p] + (x * cos) - (y * sin));
+        out.put(placements[p + 1] + (x * sin) + (y * cos));
+    }
+
+    private static int floatCount(final FloatBuffer glyph)
+    {
+        return (glyph != null) ? glyph.limit() : 0;
+    }
+
+    private static int commonPrefixLength(final String a, final String b)
+    {
+        final int n = Math.min(a.length(), b.length());
+        int i = 0;
+        while ((i < n) && (a.charAt(i) == b.charAt(i)))
+        {
+            i++;
+        }
+        return i;
+    }
+
+    // Returns a buffer positioned to write after the floats in use, with room
+    // for the specified number of floats in all, keeping those in use.
+    //
+    private static FloatBuffer reserve(final FloatBuffer buffer, final int used, final int floats)
+    {
+        if ((buffer != null) && (buffer.capacity() >= floats))
+        {
+            buffer.limit(buffer.capacity());
+            buffer.position(used);
+            return buffer;
+        }
+        final int capacity = Math.max(Math.max(floats, 1), (buffer != null) ? 2 * buffer.capacity() : 0);
+        final FloatBuffer grown = ByteBuffer.allocateDirect(capacity * 4).order(ByteOrder.nativeOrder())
+                .asFloatBuffer();
+        if (buffer != null)
+        {
+            buffer.position(0);
+            buffer.limit(used);
+            grown.put(buffer);
+        }
+        return grown;
+    }
+}
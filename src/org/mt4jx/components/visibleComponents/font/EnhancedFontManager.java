@@ -20,33 +20,62 @@
  */
 package org.mt4jx.components.visibleComponents.font;
 
+import java.awt.Font;
 import java.io.File;
 import java.io.FileFilter;
-import java.io.FileOutputStream;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.OutputStream;
+import java.lang.ref.Reference;
+import java.lang.ref.ReferenceQueue;
+import java.lang.ref.WeakReference;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
 import java.util.TreeMap;
-
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.ThreadFactory;
+
+import org.mt4j.sceneManagement.Iscene;
 import org.mt4j.util.font.FontManager;
 import org.mt4j.util.font.IFont;
 import org.mt4j.util.MT4jSettings;
 import org.mt4j.util.MTColor;
 import org.mt4j.util.logging.ILogger;
 import org.mt4j.util.logging.MTLoggerFactory;
+import org.mt4jx.components.visibleComponents.font.atlas.AtlasFont;
+import org.mt4jx.components.visibleComponents.font.atlas.GlyphAtlas;
+import org.mt4jx.components.visibleComponents.font.fontFactories.EnhancedAtlasFontFactory;
 import org.mt4jx.components.visibleComponents.font.fontFactories.EnhancedBitmapFontFactory;
 import org.mt4jx.components.visibleComponents.font.fontFactories.EnhancedSvgFontFactory;
 import org.mt4jx.components.visibleComponents.font.fontFactories.EnhancedTTFontFactory;
+import org.mt4jx.components.visibleComponents.font.fontFactories.IAsyncFontFactory;
+import org.mt4jx.components.visibleComponents.font.fontFactories.IConcurrentFontFactory;
 import org.mt4jx.components.visibleComponents.font.fontFactories.IEnhancedFontFactory;
+import org.mt4jx.components.visibleComponents.font.fontFactories.IMultiFontFactory;
+import org.mt4jx.components.visibleComponents.font.fontFactories.TrueTypeFontReader;
+import org.mt4jx.components.visibleComponents.font.mesh.GlyphCacheBuilder;
+import org.mt4jx.components.visibleComponents.font.mesh.GlyphGeometryCache;
+import org.mt4jx.components.visibleComponents.font.mesh.MeshFont;
 
 import processing.core.PApplet;
 import processing.core.PFont;
@@ -55,6 +84,15 @@ import processing.core.PFont;
  * <p>
  * Enhanced manager to obtaining and caching fonts. Based upon
  * <tt>org.mt4j.components.visibleComponents.font.FontManager</tt>
+ * </p>
+ * <p>
+ * The manager may be used from any thread. Fonts are looked up without
+ * locking once the available fonts are loaded, and fonts of different names,
+ * sizes or colors are created concurrently; threads asking for a font while
+ * it is being created wait for it and share it, rather than create it again.
+ * Fonts whose factories need OpenGL must still be created on the rendering
+ * thread.
+ * </p>
  *
  * @author Christopher Ruff -- the FontManager class from which this
  * class is derived.
@@ -71,18 +109,60 @@ public class EnhancedFontManager
     LOG.setLevel(ILogger.ERROR);
   }
 
+    /**
+     * Default location of the persistent font index. Must be initialized
+     * before the singleton instance, whose constructor uses it.
+     */
+    public static final String DEFAULT_FONT_INDEX_FILE = System.getProperty("user.home")
+            + File.separator + ".mt4jx" + File.separator + "fontindex.dat";
+
+    /**
+     * Suggested location of the font manifest, for applications that warm up
+     * the fonts of their previous session with
+     * {@link #warmUp(Iscene, PApplet, File)} and
+     * {@link #recordFontRequests(File)}.
+     */
+    public static final String DEFAULT_FONT_MANIFEST_FILE = System.getProperty("user.home")
+            + File.separator + ".mt4jx" + File.separator + "fonts.manifest";
+
+    /**
+     * Default directory to which fonts stored as resources are extracted.
+     * Must be initialized before the singleton instance.
+     */
+    public static final String DEFAULT_FONT_RESOURCE_DIRECTORY = System.getProperty("user.home")
+            + File.separator + ".mt4jx" + File.separator + "fontresources";
+
   /** The font manager. */
   private static EnhancedFontManager instance = new EnhancedFontManager();
 
     /**
-     * Maps font names to lists containing fonts with those names.
+     * The cache of created fonts.
      */
-    private final Map<String, List<IFont>> fonts;
+    private final FontCache fontCache;
+
+    // Fonts evicted from the cache, or created twice, waiting to be destroyed on the rendering
+    // thread once no view of them is referenced any more. Guarded by viewCounts.
+    private final Set<IFont> retiredFonts;
+
+    // The number of views handed out of each color-neutral font and not collected yet.
+    private final Map<IFont, Integer> viewCounts;
+
+    // Keeps the references to the views reachable until they are enqueued. Guarded by viewCounts.
+    private final Set<ViewReference> viewReferences;
+
+    private final ReferenceQueue<TintedFont> collectedViews;
+
+    // The thread fonts were last seen drawn or finalized on, if any.
+    private volatile Thread renderingThread;
 
     /**
      * The suffix to factory.
      */
-    private final HashMap<String, IEnhancedFontFactory> suffixToFactory;
+    private final Map<String, IEnhancedFontFactory> suffixToFactory;
+
+    // Factories fonts have been requested with per call, by class name, for warming up
+    // the fonts of a manifest that names them.
+    private final ConcurrentMap<String, IEnhancedFontFactory> factoriesByClassName;
 
   // Paths to directories containing fonts, separated by File.pathSeparator
     // similarly to a java classpath.
@@ -90,15 +170,89 @@ public class EnhancedFontManager
 
   // Maps font names to the files that contains them.
     // If the file path is null, it's a system font.
-    private Map<String, String> availableFonts;
+    // This map and the next two are read without locking, so they are never modified
+    // once assigned: changes are made to copies, which then replace them. Null until
+    // loaded, and availableFonts is assigned last.
+    private volatile Map<String, String> availableFonts;
 
     // Reverse mapping of availableFonts, but omitting mappings for which the file path is null
-    private Map<String, String> availableFontsReverse;
+    private volatile Map<String, String> availableFontsReverse;
+
+    // Maps the names by which createFontByName() finds font files, their paths relative
+    // to their font directory with and without extension, to their absolute paths.
+    // Rebuilt along with availableFonts.
+    private volatile Map<String, String> fontFileIndex;
+
+    // The font path parsed into directories.
+    private volatile String[] fontPathList;
+
+    // Maps the paths of the font files found during discovery, in the order found, to the
+    // names extracted from them, or null. Rebuilt along with availableFonts, and kept so
+    // that changes to single files can be applied without scanning again.
+    private Map<String, String[]> fileFontNames;
+
+    // Maps the paths of the true-type and open-type files found during discovery to the
+    // characters they cover. Rebuilt along with availableFonts, and kept current with it.
+    private Map<String, FontCoverage> fileCoverage;
+
+    // The fonts resolveFontFor() chooses from: for each file with known coverage, the
+    // name it is available by. Null when the available fonts have changed since.
+    private Map<String, FontCoverage> coverageFonts;
+
+    // Names of the fonts known to the system, which stay available without a file.
+    // Null until enumerated, which is slow, so only done when a font without a file
+    // may be asked for. Kept across reloads.
+    private Set<String> systemFontNames;
+
+    // Applies changes to the font directories to the available fonts. Null unless enabled.
+    private FontDirectoryWatcher fontDirectoryWatcher;
 
-    // Maps font resource names to the temp files they've been stored in.
+    // Maps font resource names to the files they've been extracted to.
     private final Map<String, String> fontResourcesToFiles;
 
-    private static final int CACHE_MAX_SIZE = 10;
+    // Where font resources are extracted, or null for temporary files.
+    private volatile File fontResourceDirectory = new File(DEFAULT_FONT_RESOURCE_DIRECTORY);
+
+    // The fonts being created by createFontFromFile(), by the key they are requested by.
+    // Threads asking for a font while it is being created wait for it rather than
+    // create it again.
+    private final ConcurrentMap<FontCache.Key, FutureTask<IFont>> fontsInFlight;
+
+    // The fonts requested from createFontAsync() and not yet created, by the key they
+    // are requested by. Later requests for them complete along with the first.
+    private final ConcurrentMap<FontCache.Key, FontFuture> asyncFontsInFlight;
+
+    /**
+     * Default budget of the font cache, in estimated bytes of glyph memory.
+     */
+    public static final long DEFAULT_CACHE_MAX_BYTES = 16L * 1024L * 1024L;
+
+    // Persistent cache of the names extracted from font files, so only new or changed
+    // files have to be parsed by loadAvailableFonts(). Null if disabled.
+    private FontIndex fontIndex;
+
+    // Runs the background part of createFontAsync(). Created on first use.
+    private static ExecutorService asyncExecutor;
+
+    // Whether loadAvailableFonts() scans directories and extracts names concurrently.
+    private boolean parallelFontDiscovery;
+
+    // Factory for the bitmap font types, and its atlas-backed replacement.
+    private final EnhancedBitmapFontFactory bitmapFontFactory;
+
+    private final EnhancedAtlasFontFactory atlasFontFactory;
+
+    // Precompiled vector glyphs, or null if disabled.
+    private GlyphGeometryCache glyphGeometryCache;
+
+    // The fonts requested by name since recording started, or null if not recording.
+    private volatile FontManifest recordedFontRequests;
+
+    // Where the recorded fonts are written at shutdown.
+    private File recordedFontRequestsFile;
+
+    // Writes the recorded fonts at shutdown. Registered on first use.
+    private Thread recordedFontRequestsWriter;
 
     /**
      * Gets the singleton instance.
@@ -118,13 +272,21 @@ public class EnhancedFontManager
      */
     private EnhancedFontManager()
     {
-        fonts = new HashMap<String, List<IFont>>();
-        suffixToFactory = new HashMap<String, IEnhancedFontFactory>();
-        fontResourcesToFiles = new HashMap<String, String>();
+        fontCache = new FontCache(DEFAULT_CACHE_MAX_BYTES);
+        retiredFonts = Collections.newSetFromMap(new IdentityHashMap<IFont, Boolean>());
+        viewCounts = new IdentityHashMap<IFont, Integer>();
+        viewReferences = new HashSet<ViewReference>();
+        collectedViews = new ReferenceQueue<TintedFont>();
+        suffixToFactory = new ConcurrentHashMap<String, IEnhancedFontFactory>();
+        factoriesByClassName = new ConcurrentHashMap<String, IEnhancedFontFactory>();
+        fontResourcesToFiles = new ConcurrentHashMap<String, String>();
+        fontsInFlight = new ConcurrentHashMap<FontCache.Key, FutureTask<IFont>>();
+        asyncFontsInFlight = new ConcurrentHashMap<FontCache.Key, FontFuture>();
 
         registerFontFactory(".svg", new EnhancedSvgFontFactory());
 
-        final EnhancedBitmapFontFactory bitmapFontFactory = new EnhancedBitmapFontFactory();
+        bitmapFontFactory = new EnhancedBitmapFontFactory();
+        atlasFontFactory = new EnhancedAtlasFontFactory();
 
     // Register default font factories
     // I've noticed on my windows 7 system that loading ttf fonts
@@ -134,6 +296,7 @@ public class EnhancedFontManager
          * bitmapFontFactory
          */);
         registerFontFactory("", bitmapFontFactory);
+        registerFontFactory(".ttc", bitmapFontFactory);
         registerFontFactory(".vlw", bitmapFontFactory);
         registerFontFactory(".otf", bitmapFontFactory);
 
@@ -161,10 +324,16 @@ public class EnhancedFontManager
                 }
                 break;
             case PApplet.MACOSX:
-                // TODO:
+                for (final String fontDir : SystemFontDirectories.macOS())
+                {
+                    fontPath += File.pathSeparator + fontDir;
+                }
                 break;
             case PApplet.LINUX:
-                // TODO:
+                for (final String fontDir : SystemFontDirectories.linux())
+                {
+                    fontPath += File.pathSeparator + fontDir;
+                }
                 break;
             case PApplet.OTHER:
                 // TODO:
@@ -172,6 +341,38 @@ public class EnhancedFontManager
         }
 
         this.fontPath = fontPath;
+        this.fontPathList = parseFontPath(fontPath);
+
+        this.fontIndex = new FontIndex(new File(DEFAULT_FONT_INDEX_FILE));
+    }
+
+    /**
+     * Sets the file used to persist the names extracted from font files
+     * between runs. Only files that are new or have changed since they were
+     * indexed need to be parsed when the available fonts are loaded.
+     *
+     * @param indexFile
+     *                  the index file, or null to disable the index.
+     */
+    public synchronized void setFontIndexFile(final File indexFile)
+    {
+        if (indexFile == null)
+        {
+            fontIndex = null;
+        } else if ((fontIndex == null) || !indexFile.equals(fontIndex.getIndexFile()))
+        {
+            fontIndex = new FontIndex(indexFile);
+        }
+    }
+
+    /**
+     * Returns the file used to persist the names extracted from font files.
+     *
+     * @return the index file, or null if the index is disabled.
+     */
+    public synchronized File getFontIndexFile()
+    {
+        return fontIndex != null ? fontIndex.getIndexFile() : null;
     }
 
     /**
@@ -181,7 +382,7 @@ public class EnhancedFontManager
      *
      * @param fontPath
      */
-    public void setFontPath(final String fontPath)
+    public synchronized void setFontPath(final String fontPath)
     {
         if (fontPath == null)
         {
@@ -190,7 +391,14 @@ public class EnhancedFontManager
         if (!fontPath.equals(this.fontPath))
         {
             this.fontPath = fontPath;
+            this.fontPathList = parseFontPath(fontPath);
+            // Readers not holding the lock may still use the stale maps until reloaded.
             availableFonts = null;
+            if (fontDirectoryWatcher != null)
+            {
+                fontDirectoryWatcher.watch(fontPathList);
+                loadAvailableFontsInBackground();
+            }
         }
     }
 
@@ -200,7 +408,7 @@ public class EnhancedFontManager
      *
      * @return the font path specification.
      */
-    public String getFontPath()
+    public synchronized String getFontPath()
     {
         return fontPath;
     }
@@ -210,9 +418,14 @@ public class EnhancedFontManager
      *
      * @return
      */
-    public String[] fontPaths()
+    public synchronized String[] fontPaths()
+    {
+        return fontPathList.clone();
+    }
+
+    private static String[] parseFontPath(final String fontPath)
     {
-        final StringTokenizer tokenizer = new StringTokenizer(getFontPath(), File.pathSeparator);
+        final StringTokenizer tokenizer = new StringTokenizer(fontPath, File.pathSeparator);
         final List<String> pathList = new ArrayList<String>(tokenizer.countTokens());
         while (tokenizer.hasMoreTokens())
         {
@@ -225,13 +438,33 @@ public class EnhancedFontManager
         return pathList.toArray(new String[pathList.size()]);
     }
 
-    // Ensures information on the available fonts is loaded and current.
+    // Ensures information on the available fonts is loaded and current. Only locks if
+    // it has to be loaded.
     private void checkAvailableFontsCurrent()
     {
         if (availableFonts == null)
         {
-            loadAvailableFonts();
+            synchronized (this)
+            {
+                if (availableFonts == null)
+                {
+                    loadAvailableFonts();
+                }
+            }
+        }
+    }
+
+    // Returns the available fonts, loading them if necessary.
+    //
+    private Map<String, String> getAvailableFonts()
+    {
+        Map<String, String> fonts = availableFonts;
+        while (fonts == null)
+        {
+            checkAvailableFontsCurrent();
+            fonts = availableFonts;
         }
+        return fonts;
     }
 
   // Load the information on available fonts.
@@ -241,74 +474,79 @@ public class EnhancedFontManager
 
         final Map<String, String> availableFonts = new TreeMap<String, String>();
         final Map<String, String> availableFontsReverse = new TreeMap<String, String>();
+        final Map<String, String> fontFileIndex = new HashMap<String, String>();
+        final Map<String, String[]> fileFontNames = new LinkedHashMap<String, String[]>();
+        final Map<String, FontCoverage> fileCoverage = new HashMap<String, FontCoverage>();
 
         final String[] fps = fontPaths();
 
         // For filtering out files without extensions that map to factories.
-        final Set<String> fileExtensions = new HashSet<String>(suffixToFactory.keySet());
+        final FileFilter filter = new FontFileFilter(new HashSet<String>(suffixToFactory.keySet()));
 
-        // Loop through the individual font directories.
-        for (final String fp : fps)
+        final FontIndex index = this.fontIndex;
+        if (index != null)
         {
+            index.load();
+        }
 
-            final File dir = new File(fp);
+        final File[] files;
+        final String[][] fontNames;
+        final int[][] coverages;
 
-            // Be sure it's an existing directory.
-            if (dir.isDirectory())
+        if (parallelFontDiscovery)
+        {
+            final ForkJoinPool pool = new ForkJoinPool();
+            try
             {
+                files = pool.invoke(new ListFontFilesTask(fps, 0, fps.length, filter));
+                coverages = new int[files.length][];
+                fontNames = extractFontNames(files, index, pool, coverages);
+            } finally
+            {
+                pool.shutdown();
+            }
+        } else
+        {
+            files = new ListFontFilesTask(fps, 0, fps.length, filter).compute();
+            coverages = new int[files.length][];
+            fontNames = extractFontNames(files, index, null, coverages);
+        }
 
-                // List only the files with font factories.
-                final File[] files = dir.listFiles(new FileFilter()
-                {
-                    @Override
-                    public boolean accept(final File f)
-                    {
-                        if (f.isFile())
-                        {
-                            final String fn = f.getName();
-                            final int n = fn.lastIndexOf('.');
-                            final String ext = (n >= 0) ? fn.substring(n) : "";
-                            return fileExtensions.contains(ext);
-                        }
-                        return false;
-                    }
-                });
+        final String[] dirPrefixes = fontDirectoryPrefixes();
 
-                // For each file, have the font factory extract the font name.
-                for (final File file : files)
+        // Merge in discovery order, so that the result does not depend on which
+        // names were extracted first.
+        for (int i = 0; i < files.length; i++)
+        {
+            final String filePath = files[i].getAbsolutePath();
+            indexFontFile(fontFileIndex, filePath, dirPrefixes);
+            fileFontNames.put(filePath, fontNames[i]);
+            if (coverages[i] != null)
+            {
+                fileCoverage.put(filePath, new FontCoverage(coverages[i]));
+            }
+            if (fontNames[i] == null)
+            {
+                continue;
+            }
+            for (final String fontName : fontNames[i])
+            {
+                // Store font name mapped to its file path. A collection maps back to
+                // its first font.
+                if ((fontName != null) && (fontName.length() > 0))
                 {
-                    final String fn = file.getName();
-                    final int n = fn.lastIndexOf('.');
-                    final String ext = (n >= 0) ? fn.substring(n) : "";
-                    final IEnhancedFontFactory factory = suffixToFactory.get(ext);
-                    if (factory != null)
+                    availableFonts.put(fontName, filePath);
+                    if (!availableFontsReverse.containsKey(filePath))
                     {
-                        final String filePath = file.getAbsolutePath();
-            // It's important that this method return quickly and not consume
-                        // many resources.
-                        final String fontName = factory.extractFontName(filePath);
-                        // Store font name mapped to its file path.
-                        if ((fontName != null) && (fontName.length() > 0))
-                        {
-                            availableFonts.put(fontName, filePath);
-                            availableFontsReverse.put(filePath, fontName);
-                        }
+                        availableFontsReverse.put(filePath, fontName);
                     }
                 }
-
             }
         }
 
-    // Several system fonts may not map to any of the files found,
-        // yet they are still available. Add to the available fonts, but
-        // map them to null.
-        final String[] allFontNames = PFont.list();
-        for (final String fn : allFontNames)
+        if (systemFontNames != null)
         {
-            if (!availableFonts.containsKey(fn))
-            {
-                availableFonts.put(fn, null);
-            }
+            addSystemFonts(availableFonts, systemFontNames);
         }
 
         /*
@@ -324,106 +562,810 @@ public class EnhancedFontManager
     /*
          * 
          */
-        this.availableFonts = availableFonts;
         this.availableFontsReverse = availableFontsReverse;
+        this.fontFileIndex = fontFileIndex;
+        this.fileFontNames = fileFontNames;
+        this.fileCoverage = fileCoverage;
+        this.coverageFonts = null;
+        this.availableFonts = availableFonts;
     }
 
-    /**
-     * Returns the names of the available fonts.
-     *
-     * @return the names as an array of strings.
-     */
-    public synchronized String[] availableFonts()
+    // Ensures the fonts known to the system are among the available fonts, enumerating
+    // them the first time. Called when a font that may have no file is asked for.
+    //
+    private synchronized void checkSystemFontsLoaded()
     {
         checkAvailableFontsCurrent();
-        final Set<String> keys = availableFonts.keySet();
-        return keys.toArray(new String[keys.size()]);
+        if (systemFontNames == null)
+        {
+            systemFontNames = new HashSet<String>(Arrays.asList(PFont.list()));
+            final Map<String, String> availableFonts = new TreeMap<String, String>(this.availableFonts);
+            addSystemFonts(availableFonts, systemFontNames);
+            this.availableFonts = availableFonts;
+        }
     }
 
-    /**
-     * Returns true if a font with the specified name is available.
-     *
-     * @param fontName
-     *
-     * @return
-     */
-    public synchronized boolean isFontAvailable(final String fontName)
+    // Several system fonts may not map to any of the files found, yet they are
+    // still available. Add to the available fonts, but map them to null.
+    //
+    private static void addSystemFonts(final Map<String, String> availableFonts, final Set<String> systemFontNames)
     {
-        checkAvailableFontsCurrent();
-        return availableFonts.containsKey(fontName);
+        for (final String fn : systemFontNames)
+        {
+            if (!availableFonts.containsKey(fn))
+            {
+                availableFonts.put(fn, null);
+            }
+        }
     }
 
-    /**
-     * Returns the full path to the file holding the specified font.
-     * This returns null for some system fonts.
-     *
-     * @param fontName
-     *
-     * @return
-     */
-    public synchronized String fontFilePath(final String fontName)
+    // Returns the font directories as prefixes of the paths of the files found in them.
+    //
+    private String[] fontDirectoryPrefixes()
     {
-        checkAvailableFontsCurrent();
-        return availableFonts.get(fontName);
+        final String[] fps = fontPathList;
+        final String[] dirPrefixes = new String[fps.length];
+        for (int i = 0; i < fps.length; i++)
+        {
+            dirPrefixes[i] = new File(fps[i]).getAbsolutePath() + File.separator;
+        }
+        return dirPrefixes;
     }
 
-    /**
-     * Returns the file name extension for the file containing the specified
-     * font if
-     * the font is available. If not available, returns null.
-     *
-     * @param fontName
-     *
-     * @return file name extension for the font file. If null, the font with the
-     *         specified name is not available. If non-null but blank, it is probably a
-     *         system font
-     *         that either is not in one of the font path directories, or is contained
-     *         in a file with
-     *         an extension not associated with a font factory.
-     */
-    public synchronized String fontFileExtension(final String fontName)
+    // Discards the available fonts and loads them again. Called by the directory watcher
+    // when it has lost track of changes.
+    //
+    synchronized void reloadAvailableFonts()
     {
-        checkAvailableFontsCurrent();
-        if (isFontAvailable(fontName))
+        loadAvailableFonts();
+    }
+
+    // Applies the creation, deletion or modification of the specified files in the font
+    // directories to the available fonts. Only the files themselves are parsed. Called by
+    // the directory watcher.
+    //
+    synchronized void fontFilesChanged(final Collection<File> files)
+    {
+        if (availableFonts == null)
         {
-            final String fontPath = availableFonts.get(fontName);
-            if (fontPath != null)
+            // Not loaded yet, so the changes will be seen when it is.
+            return;
+        }
+
+        // Change copies, for the sake of readers not holding the lock.
+        final Map<String, String> availableFonts = new TreeMap<String, String>(this.availableFonts);
+        final Map<String, String> availableFontsReverse = new TreeMap<String, String>(this.availableFontsReverse);
+        final Map<String, String> fontFileIndex = new HashMap<String, String>(this.fontFileIndex);
+
+        final String[] dirPrefixes = fontDirectoryPrefixes();
+        final FileFilter filter = new FontFileFilter(suffixToFactory.keySet());
+        for (final File file : files)
+        {
+            final String filePath = file.getAbsolutePath();
+            removeFontFile(filePath, dirPrefixes, availableFonts, availableFontsReverse, fontFileIndex);
+            if (filter.accept(file) && isInFontDirectory(filePath, dirPrefixes))
             {
-                return getFontSuffix(fontPath);
+                addFontFile(file, dirPrefixes, availableFonts, availableFontsReverse, fontFileIndex);
+            }
+        }
+
+        this.availableFontsReverse = availableFontsReverse;
+        this.fontFileIndex = fontFileIndex;
+        this.availableFonts = availableFonts;
+
+        if (fontIndex != null)
+        {
+            fontIndex.save();
+        }
+    }
+
+    private static boolean isInFontDirectory(final String filePath, final String[] dirPrefixes)
+    {
+        for (final String prefix : dirPrefixes)
+        {
+            if (filePath.startsWith(prefix) && (filePath.indexOf(File.separatorChar, prefix.length()) < 0))
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Adds a font file found after discovery, as if it had been found last, to the
+    // specified copies of the maps of available fonts.
+    //
+    private void addFontFile(final File file, final String[] dirPrefixes, final Map<String, String> availableFonts,
+            final Map<String, String> availableFontsReverse, final Map<String, String> fontFileIndex)
+    {
+        final String filePath = file.getAbsolutePath();
+        final IEnhancedFontFactory factory = suffixToFactory.get(getFileExtension(file));
+        final String factoryName = factory.getClass().getName();
+
+        final FontIndex.Entry entry = (fontIndex != null) ? fontIndex.lookup(file, factoryName) : null;
+        final String[] fontNames;
+        final int[] coverage;
+        if (entry != null)
+        {
+            fontNames = entry.fontNames;
+            coverage = entry.coverage;
+        } else
+        {
+            fontNames = extractFontNames(factory, filePath);
+            coverage = readCoverage(file);
+            if (fontIndex != null)
+            {
+                fontIndex.put(file, factoryName, fontNames, coverage);
+            }
+        }
+
+        fileFontNames.put(filePath, fontNames);
+        if (coverage != null)
+        {
+            fileCoverage.put(filePath, new FontCoverage(coverage));
+        }
+        coverageFonts = null;
+        indexFontFile(fontFileIndex, filePath, dirPrefixes);
+        if (fontNames != null)
+        {
+            for (final String fontName : fontNames)
+            {
+                if ((fontName != null) && (fontName.length() > 0))
+                {
+                    availableFonts.put(fontName, filePath);
+                    if (!availableFontsReverse.containsKey(filePath))
+                    {
+                        availableFontsReverse.put(filePath, fontName);
+                    }
+                }
+            }
+        }
+    }
+
+    // Removes a font file, if it was found before, from the specified copies of the maps
+    // of available fonts. Each of its fonts falls back to the last other file containing
+    // a font of that name, to the system font, or is no longer available.
+    //
+    private void removeFontFile(final String filePath, final String[] dirPrefixes,
+            final Map<String, String> availableFonts, final Map<String, String> availableFontsReverse,
+            final Map<String, String> fontFileIndex)
+    {
+        if (!fileFontNames.containsKey(filePath))
+        {
+            return;
+        }
+        final String[] fontNames = fileFontNames.remove(filePath);
+        fileCoverage.remove(filePath);
+        coverageFonts = null;
+        availableFontsReverse.remove(filePath);
+        if (fontIndex != null)
+        {
+            fontIndex.remove(filePath);
+        }
+
+        if (fontNames != null)
+        {
+            for (final String fontName : fontNames)
+            {
+                if ((fontName == null) || !filePath.equals(availableFonts.get(fontName)))
+                {
+                    continue;
+                }
+                String replacement = null;
+                for (final Map.Entry<String, String[]> other : fileFontNames.entrySet())
+                {
+                    if ((other.getValue() != null) && Arrays.asList(other.getValue()).contains(fontName))
+                    {
+                        replacement = other.getKey();
+                    }
+                }
+                if ((replacement != null) || ((systemFontNames != null) && systemFontNames.contains(fontName)))
+                {
+                    availableFonts.put(fontName, replacement);
+                } else
+                {
+                    availableFonts.remove(fontName);
+                }
+            }
+        }
+
+        if (fontFileIndex.containsValue(filePath))
+        {
+            fontFileIndex.values().removeAll(Collections.singleton(filePath));
+            // Let other files take the names the removed file had precedence for.
+            for (final String otherPath : fileFontNames.keySet())
+            {
+                indexFontFile(fontFileIndex, otherPath, dirPrefixes);
             }
-            return "";
         }
-        return null;
     }
 
     /**
-     * Gets the default font.
-     *
-     * @param app
-     *            the app
+     * Enables or disables watching the font directories for changes. While
+     * enabled, font files created, deleted or modified in the font directories
+     * are applied to the available fonts in the background, one file at a
+     * time, so fonts installed while the application runs become available
+     * without restarting it, and queries never wait for the directories to be
+     * scanned again. Enabling it also loads the available fonts in the
+     * background if they have not been loaded yet.
+     * <p>
+     * Fonts already created from a file that changes are not affected.
+     * </p>
      *
-     * @return the default font
+     * @param watch
      */
-    public IFont getDefaultFont(final PApplet app)
+    public synchronized void setFontDirectoryWatching(final boolean watch)
     {
-        return this.createFontByName(app,
-                FontManager.DEFAULT_FONT,
-                FontManager.DEFAULT_FONT_SIZE,
-                new MTColor(FontManager.DEFAULT_FONT_STROKE_COLOR),
-                FontManager.DEFAULT_FONT_ANTIALIASING);
+        if (watch && (fontDirectoryWatcher == null))
+        {
+            try
+            {
+                fontDirectoryWatcher = new FontDirectoryWatcher(this);
+            } catch (final IOException e)
+            {
+                LOG.error("Cannot watch the font directories: " + e);
+                return;
+            }
+            fontDirectoryWatcher.watch(fontPathList);
+            fontDirectoryWatcher.start();
+            loadAvailableFontsInBackground();
+        } else if (!watch && (fontDirectoryWatcher != null))
+        {
+            fontDirectoryWatcher.stop();
+            fontDirectoryWatcher = null;
+        }
     }
 
     /**
-     * Returns the name of the default font.
+     * Returns true if the font directories are watched for changes.
      *
      * @return
      */
-    public String defaultFontName()
+    public synchronized boolean isFontDirectoryWatching()
     {
-        return FontManager.DEFAULT_FONT;
+        return fontDirectoryWatcher != null;
     }
 
-    /**
+    // Loads the available fonts on a background thread, unless they are loaded.
+    //
+    private void loadAvailableFontsInBackground()
+    {
+        if (availableFonts == null)
+        {
+            getAsyncExecutor().execute(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    checkAvailableFontsCurrent();
+                }
+            });
+        }
+    }
+
+    // Adds a font file to the file index under its path relative to the first font
+    // directory containing it, with and without its extension. Files found earlier
+    // take precedence, as directories earlier in the font path do.
+    //
+    private static void indexFontFile(final Map<String, String> fontFileIndex, final String filePath, final String[] dirPrefixes)
+    {
+        for (final String prefix : dirPrefixes)
+        {
+            if (filePath.startsWith(prefix))
+            {
+                final String relativePath = fontFileIndexKey(filePath.substring(prefix.length()));
+                if (!fontFileIndex.containsKey(relativePath))
+                {
+                    fontFileIndex.put(relativePath, filePath);
+                }
+                final int dot = relativePath.lastIndexOf('.');
+                if ((dot > relativePath.lastIndexOf('/')) && (dot > 0))
+                {
+                    final String withoutExtension = relativePath.substring(0, dot);
+                    if (!fontFileIndex.containsKey(withoutExtension))
+                    {
+                        fontFileIndex.put(withoutExtension, filePath);
+                    }
+                }
+                return;
+            }
+        }
+    }
+
+    // Normalizes a relative font file path for the file index: '/' as the separator, and
+    // lower case where file names are not case sensitive.
+    //
+    private static String fontFileIndexKey(String relativePath)
+    {
+        if (File.separatorChar != '/')
+        {
+            relativePath = relativePath.replace(File.separatorChar, '/');
+        }
+        if ((PApplet.platform == PApplet.WINDOWS) || (PApplet.platform == PApplet.MACOSX))
+        {
+            relativePath = relativePath.toLowerCase();
+        }
+        return relativePath;
+    }
+
+    // Has the font factories extract the names of all fonts in the specified files, taking
+    // them from the index where the files have not changed. If pool is not null, names
+    // are extracted concurrently by the factories which permit that. The characters each
+    // file covers are stored in coverages, null where unknown.
+    //
+    private String[][] extractFontNames(final File[] files, final FontIndex index, final ForkJoinPool pool,
+            final int[][] coverages)
+    {
+        final int count = files.length;
+        final String[][] fontNames = new String[count][];
+        final IEnhancedFontFactory[] factories = new IEnhancedFontFactory[count];
+        final boolean[] pending = new boolean[count];
+
+        // The files seen in this scan, for pruning the index afterwards.
+        final Set<String> seenPaths = new HashSet<String>();
+
+        for (int i = 0; i < count; i++)
+        {
+            final File file = files[i];
+            final IEnhancedFontFactory factory = suffixToFactory.get(getFileExtension(file));
+            if (factory != null)
+            {
+                factories[i] = factory;
+                seenPaths.add(file.getAbsolutePath());
+                final FontIndex.Entry entry = (index != null) ? index.lookup(file, factory.getClass().getName()) : null;
+                if (entry != null)
+                {
+                    fontNames[i] = entry.fontNames;
+                    coverages[i] = entry.coverage;
+                } else
+                {
+                    pending[i] = true;
+                }
+            }
+        }
+
+        if (pool != null)
+        {
+            pool.invoke(new ExtractFontNamesTask(files, factories, pending, fontNames, coverages, 0, count));
+        }
+
+        for (int i = 0; i < count; i++)
+        {
+            if (pending[i])
+            {
+                if ((pool == null) || !isThreadSafe(factories[i]))
+                {
+                    // It's important that this method return quickly and not consume
+                    // many resources.
+                    fontNames[i] = extractFontNames(factories[i], files[i].getAbsolutePath());
+                    coverages[i] = readCoverage(files[i]);
+                }
+                if (index != null)
+                {
+                    index.put(files[i], factories[i].getClass().getName(), fontNames[i], coverages[i]);
+                }
+            }
+        }
+
+        if (index != null)
+        {
+            index.retainAll(seenPaths);
+            index.save();
+        }
+
+        return fontNames;
+    }
+
+    // Returns the names of the fonts in a file, asking factories which don't list
+    // every font for the name of the one font.
+    //
+    private static String[] extractFontNames(final IEnhancedFontFactory factory, final String filePath)
+    {
+        if (factory instanceof IMultiFontFactory)
+        {
+            return ((IMultiFontFactory) factory).extractFontNames(filePath);
+        }
+        final String fontName = factory.extractFontName(filePath);
+        return (fontName != null) ? new String[] { fontName } : null;
+    }
+
+    private static boolean isThreadSafe(final IEnhancedFontFactory factory)
+    {
+        return (factory instanceof IConcurrentFontFactory) && ((IConcurrentFontFactory) factory).isThreadSafe();
+    }
+
+    // Reads the characters covered by a true-type or open-type file, from its cmap table.
+    // Returns null for other kinds of files, and for files that cannot be read.
+    //
+    private static int[] readCoverage(final File file)
+    {
+        final String extension = getFileExtension(file).toLowerCase();
+        if (!".ttf".equals(extension) && !".ttc".equals(extension) && !".otf".equals(extension))
+        {
+            return null;
+        }
+        try
+        {
+            return TrueTypeFontReader.readCoverage(file);
+        } catch (final Exception e)
+        {
+            LOG.debug("Could not read the characters covered by " + file + ": " + e);
+            return null;
+        }
+    }
+
+    // Returns the file name extension exactly as it appears in the file name.
+    //
+    private static String getFileExtension(final File file)
+    {
+        final String fn = file.getName();
+        final int n = fn.lastIndexOf('.');
+        return (n >= 0) ? fn.substring(n) : "";
+    }
+
+    /**
+     * Enables or disables parallel font discovery. When enabled, the font
+     * directories are listed and the font names extracted on a fork-join pool
+     * sized to the number of available processors. Names are only extracted
+     * concurrently by factories which report themselves as thread safe. The
+     * resulting set of available fonts is identical in either mode.
+     *
+     * @param parallel
+     */
+    public synchronized void setParallelFontDiscovery(final boolean parallel)
+    {
+        this.parallelFontDiscovery = parallel;
+    }
+
+    /**
+     * Returns true if the font directories are scanned in parallel.
+     *
+     * @return
+     */
+    public synchronized boolean isParallelFontDiscovery()
+    {
+        return parallelFontDiscovery;
+    }
+
+    /**
+     * Returns the names of the available fonts. The first call enumerates the
+     * fonts known to the system, which can take a while.
+     *
+     * @return the names as an array of strings.
+     */
+    public synchronized String[] availableFonts()
+    {
+        checkSystemFontsLoaded();
+        final Set<String> keys = availableFonts.keySet();
+        return keys.toArray(new String[keys.size()]);
+    }
+
+    /**
+     * Returns true if a font with the specified name is available.
+     *
+     * @param fontName
+     *
+     * @return
+     */
+    public boolean isFontAvailable(final String fontName)
+    {
+        if (getAvailableFonts().containsKey(fontName))
+        {
+            return true;
+        }
+        // It may be a system font without a file.
+        checkSystemFontsLoaded();
+        return getAvailableFonts().containsKey(fontName);
+    }
+
+    /**
+     * Returns the full path to the file holding the specified font.
+     * This returns null for some system fonts.
+     *
+     * @param fontName
+     *
+     * @return
+     */
+    public String fontFilePath(final String fontName)
+    {
+        return getAvailableFonts().get(fontName);
+    }
+
+    /**
+     * Returns a font as loaded by AWT, for measuring text without creating
+     * the font: no glyphs are rasterized or uploaded to OpenGL and nothing is
+     * cached. The file is loaded once; other sizes are best obtained with
+     * <code>deriveFont</code> rather than by loading it again. Widths scale
+     * with the size like those of the fonts the factories create, though
+     * rounding may make them differ by a pixel per character.
+     *
+     * @param fontFileName
+     *                     the name of the font file without the path, as for
+     *                     <code>createFontByName</code>.
+     * @param fontSize
+     *
+     * @return the AWT font, or null if the font is not available or of a
+     *         type AWT cannot load, such as SVG and .vlw fonts.
+     */
+    public Font getAwtFont(final String fontFileName, final int fontSize)
+    {
+        final String[] resolved = resolveFont(findFontFile(fontFileName));
+        if (resolved[0] == null)
+        {
+            return null;
+        }
+        try
+        {
+            return bitmapFontFactory.loadAwtFont(resolved[1], fontSize);
+        } catch (final Exception e)
+        {
+            LOG.error("Error while trying to load the font for measuring: " + resolved[0] + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the characters the file holding the specified font has glyphs
+     * for. Coverage is read from the <tt>cmap</tt> table of true-type and
+     * open-type files when they are discovered, and stored in the font index
+     * along with their names; for a collection, it is that of all its fonts.
+     *
+     * @param fontName
+     *
+     * @return the coverage, or null if the font is not available or not held
+     *         by a true-type or open-type file.
+     */
+    public synchronized FontCoverage getFontCoverage(final String fontName)
+    {
+        checkAvailableFontsCurrent();
+        final String filePath = availableFonts.get(fontName);
+        return (filePath != null) ? fileCoverage.get(filePath) : null;
+    }
+
+    /**
+     * Returns the fonts to draw a text with, so that as many of its
+     * characters as possible have a glyph: the preferred font first, then
+     * fallback fonts, each covering the most characters the fonts before it
+     * do not. Whitespace and control characters are not considered. Only
+     * fonts whose coverage is known take part, see
+     * {@link #getFontCoverage(String)}.
+     * <p>
+     * The preferred font is the available font named exactly like the
+     * family, ignoring case, or else the one with the shortest name starting
+     * with it, such as <tt>DejaVu Sans</tt> for <tt>dejavu</tt>. It comes
+     * first even if its coverage is unknown. Fallbacks with equal coverage
+     * are chosen by shortest name.
+     * </p>
+     *
+     * @param text
+     * @param preferredFamily
+     *                        the family the text should preferably be drawn
+     *                        with, or null.
+     *
+     * @return the names of the fonts, for
+     *         {@link #createFontByName(PApplet, String, int, MTColor)}; empty
+     *         if no known font covers any character and there is no preferred
+     *         font.
+     */
+    public synchronized String[] resolveFontFor(final CharSequence text, final String preferredFamily)
+    {
+        checkAvailableFontsCurrent();
+
+        // The distinct characters that need a glyph.
+        int[] codePoints = new int[Math.min(text.length(), 64)];
+        int count = 0;
+        for (int i = 0; i < text.length();)
+        {
+            final int codePoint = Character.codePointAt(text, i);
+            i += Character.charCount(codePoint);
+            if (FontCoverage.needsGlyph(codePoint))
+            {
+                if (count == codePoints.length)
+                {
+                    codePoints = Arrays.copyOf(codePoints, 2 * count);
+                }
+                codePoints[count++] = codePoint;
+            }
+        }
+        Arrays.sort(codePoints, 0, count);
+        int distinct = 0;
+        for (int i = 0; i < count; i++)
+        {
+            if ((distinct == 0) || (codePoints[i] != codePoints[distinct - 1]))
+            {
+                codePoints[distinct++] = codePoints[i];
+            }
+        }
+        count = distinct;
+
+        final List<String> chain = new ArrayList<String>();
+        String preferred = findFontOfFamily(preferredFamily);
+        if ((preferred == null) && (preferredFamily != null) && (systemFontNames == null))
+        {
+            // It may be a system font without a file.
+            checkSystemFontsLoaded();
+            preferred = findFontOfFamily(preferredFamily);
+        }
+        if (preferred != null)
+        {
+            chain.add(preferred);
+            count = removeCovered(codePoints, count, getFontCoverage(preferred));
+        }
+
+        if (coverageFonts == null)
+        {
+            coverageFonts = findCoverageFonts();
+        }
+
+        // Greedily add the font covering most of the remaining characters.
+        while (count > 0)
+        {
+            String best = null;
+            FontCoverage bestCoverage = null;
+            int bestCount = 0;
+            for (final Map.Entry<String, FontCoverage> e : coverageFonts.entrySet())
+            {
+                final String name = e.getKey();
+                if (chain.contains(name))
+                {
+                    continue;
+                }
+                final FontCoverage coverage = e.getValue();
+                int covered = 0;
+                for (int i = 0; i < count; i++)
+                {
+                    if (coverage.covers(codePoints[i]))
+                    {
+                        covered++;
+                    }
+                }
+                if ((covered > bestCount)
+                        || ((covered == bestCount) && (covered > 0) && ((name.length() < best.length())
+                                || ((name.length() == best.length()) && (name.compareTo(best) < 0)))))
+                {
+                    best = name;
+                    bestCoverage = coverage;
+                    bestCount = covered;
+                }
+            }
+            if (best == null)
+            {
+                // No font has a glyph for the characters left.
+                break;
+            }
+            chain.add(best);
+            count = removeCovered(codePoints, count, bestCoverage);
+        }
+        return chain.toArray(new String[chain.size()]);
+    }
+
+    // Returns a name for each file with known coverage: the shortest it is available by,
+    // and the first in order among equally long ones.
+    //
+    private Map<String, FontCoverage> findCoverageFonts()
+    {
+        final Map<String, String> fileNames = new HashMap<String, String>();
+        for (final Map.Entry<String, String> e : availableFonts.entrySet())
+        {
+            final String filePath = e.getValue();
+            if ((filePath != null) && fileCoverage.containsKey(filePath))
+            {
+                final String name = fileNames.get(filePath);
+                if ((name == null) || (e.getKey().length() < name.length()))
+                {
+                    fileNames.put(filePath, e.getKey());
+                }
+            }
+        }
+        final Map<String, FontCoverage> fonts = new TreeMap<String, FontCoverage>();
+        for (final Map.Entry<String, String> e : fileNames.entrySet())
+        {
+            fonts.put(e.getValue(), fileCoverage.get(e.getKey()));
+        }
+        return fonts;
+    }
+
+    // Returns the available font named like the family, ignoring case, or else the one
+    // with the shortest name starting with it. Returns null if there is none.
+    //
+    private String findFontOfFamily(final String family)
+    {
+        if ((family == null) || (family.length() == 0))
+        {
+            return null;
+        }
+        final String prefix = family.toLowerCase();
+        String found = null;
+        for (final String fontName : availableFonts.keySet())
+        {
+            final String name = fontName.toLowerCase();
+            if (name.equals(prefix))
+            {
+                return fontName;
+            }
+            if (name.startsWith(prefix) && ((found == null) || (fontName.length() < found.length())))
+            {
+                found = fontName;
+            }
+        }
+        return found;
+    }
+
+    // Removes the characters a font covers from the first count code points, keeping
+    // their order, and returns how many are left.
+    //
+    private static int removeCovered(final int[] codePoints, final int count, final FontCoverage coverage)
+    {
+        if (coverage == null)
+        {
+            return count;
+        }
+        int left = 0;
+        for (int i = 0; i < count; i++)
+        {
+            if (!coverage.covers(codePoints[i]))
+            {
+                codePoints[left++] = codePoints[i];
+            }
+        }
+        return left;
+    }
+
+    /**
+     * Returns the file name extension for the file containing the specified
+     * font if
+     * the font is available. If not available, returns null.
+     *
+     * @param fontName
+     *
+     * @return file name extension for the font file. If null, the font with the
+     *         specified name is not available. If non-null but blank, it is probably a
+     *         system font
+     *         that either is not in one of the font path directories, or is contained
+     *         in a file with
+     *         an extension not associated with a font factory.
+     */
+    public String fontFileExtension(final String fontName)
+    {
+        if (isFontAvailable(fontName))
+        {
+            final String fontPath = getAvailableFonts().get(fontName);
+            if (fontPath != null)
+            {
+                return getFontSuffix(fontPath);
+            }
+            return "";
+        }
+        return null;
+    }
+
+    /**
+     * Gets the default font.
+     *
+     * @param app
+     *            the app
+     *
+     * @return the default font
+     */
+    public IFont getDefaultFont(final PApplet app)
+    {
+        return this.createFontByName(app,
+                FontManager.DEFAULT_FONT,
+                FontManager.DEFAULT_FONT_SIZE,
+                new MTColor(FontManager.DEFAULT_FONT_STROKE_COLOR),
+                FontManager.DEFAULT_FONT_ANTIALIASING);
+    }
+
+    /**
+     * Returns the name of the default font.
+     *
+     * @return
+     */
+    public String defaultFontName()
+    {
+        return FontManager.DEFAULT_FONT;
+    }
+
+    /**
      * Creates the font.
      *
      * @param pa
@@ -463,65 +1405,583 @@ public class EnhancedFontManager
     }
 
     /**
-     * Loads and returns a font from a file. The font should be located in
-     * one of the font directories. The returned font will be anti-aliased.
+     * Loads and returns a font from a file. The font should be located in
+     * one of the font directories. The returned font will be anti-aliased.
+     *
+     * @param pa
+     *                     the pa
+     * @param fontFileName
+     *                     the name of the font file without the path.
+     * @param fontSize
+     *                     the font size
+     * @param fillColor
+     *                     the color
+     *
+     * @return the i font
+     */
+    public IFont createFont(final PApplet pa, final String fontFileName, final int fontSize, final MTColor color)
+    {
+        return this.createFontByName(pa, fontFileName, fontSize, color, true);
+    }
+
+    /**
+     * Loads and returns a font from a file. The font should be located in
+     * one of the font directories.
+     *
+     * @param pa
+     *                     the pa
+     * @param fontFileName
+     *                     the name of the font file without the path.
+     * @param fontSize
+     *                     the font size
+     * @param fillColor
+     *                     the color
+     * @param antiAliased
+     *                     whether or not to anti-alias the font
+     *
+     * @return the i font
+     */
+    public IFont createFontByName(final PApplet pa, final String fontFileName, final int fontSize, final MTColor color, final boolean antiAliased)
+    {
+        return createFontByName(pa, fontFileName, fontSize, color, antiAliased, null);
+    }
+
+    /**
+     * Loads and returns a font specified by name, created with a specific
+     * factory rather than the one registered for its file type, such as a
+     * bitmap font of a true-type file. The file is located on the font path
+     * as usual, and the font is cached apart from those of the registered
+     * factory, and recorded with the factory's class for warming up.
+     *
+     * @param pa
+     *                     the pa
+     * @param fontFileName
+     *                     the name of the font file without the path.
+     * @param fontSize
+     *                     the font size
+     * @param color
+     *                     the color
+     * @param antiAliased
+     *                     whether or not to anti-alias the font
+     * @param factory
+     *                     the factory to create the font with, or null for
+     *                     the one registered for the file type.
+     *
+     * @return the font (null if not available)
+     */
+    public IFont createFontByName(final PApplet pa, final String fontFileName, final int fontSize, final MTColor color,
+            final boolean antiAliased, final IEnhancedFontFactory factory)
+    {
+        recordFontRequest(fontFileName, fontSize, color, antiAliased, factory);
+        return createFontFromFile(pa, findFontFile(fontFileName), fontSize, color, antiAliased, factory);
+    }
+
+    /**
+     * Starts loading a font specified by name in the background. This is the
+     * asynchronous equivalent of
+     * {@link #createFontByName(PApplet, String, int, MTColor, boolean)}.
+     * <p>
+     * The font file is located and parsed on a background thread. Factories
+     * implementing {@link IAsyncFontFactory} also rasterize or tessellate the
+     * glyphs there, so only the OpenGL upload is left to the rendering thread,
+     * where it is run by a pre-draw action registered with the scene. For
+     * other factories only the file lookup and read happen in the background.
+     * Fonts are finalized at a limited rate per frame, so requesting many fonts
+     * at once does not stall a single frame.
+     * </p>
      *
+     * @param scene
+     *                     the scene whose pre-draw actions finalize the font.
      * @param pa
      *                     the pa
      * @param fontFileName
      *                     the name of the font file without the path.
      * @param fontSize
      *                     the font size
-     * @param fillColor
+     * @param color
      *                     the color
+     * @param antiAliased
+     *                     whether or not to anti-alias the font
      *
-     * @return the i font
+     * @return a future completed on the rendering thread with the font, or with
+     *         null if it is not available. If the font is cached, it is completed
+     *         at the next frame.
+     *         A font requested again before it is created is only created once,
+     *         and the futures of all requests complete together.
      */
-    public IFont createFont(final PApplet pa, final String fontFileName, final int fontSize, final MTColor color)
+    public FontFuture createFontAsync(final Iscene scene, final PApplet pa, final String fontFileName, final int fontSize, final MTColor color, final boolean antiAliased)
     {
-        return this.createFontByName(pa, fontFileName, fontSize, color, true);
+        return createFontAsync(scene, pa, fontFileName, fontSize, color, antiAliased, null);
     }
 
     /**
-     * Loads and returns a font from a file. The font should be located in
-     * one of the font directories.
+     * Starts loading a font specified by name in the background, created
+     * with a specific factory. This is the asynchronous equivalent of
+     * {@link #createFontByName(PApplet, String, int, MTColor, boolean, IEnhancedFontFactory)}.
      *
+     * @param scene
+     *                     the scene whose pre-draw actions finalize the font.
      * @param pa
      *                     the pa
      * @param fontFileName
      *                     the name of the font file without the path.
      * @param fontSize
      *                     the font size
-     * @param fillColor
+     * @param color
      *                     the color
      * @param antiAliased
      *                     whether or not to anti-alias the font
+     * @param factory
+     *                     the factory to create the font with, or null for
+     *                     the one registered for the file type.
      *
-     * @return the i font
+     * @return a future completed on the rendering thread with the font, or with
+     *         null if it is not available.
      */
-    public IFont createFontByName(final PApplet pa, final String fontFileName, final int fontSize, final MTColor color, final boolean antiAliased)
+    public FontFuture createFontAsync(final Iscene scene, final PApplet pa, final String fontFileName, final int fontSize,
+            final MTColor color, final boolean antiAliased, final IEnhancedFontFactory factory)
     {
+        recordFontRequest(fontFileName, fontSize, color, antiAliased, factory);
+        final FontFuture future = new FontFuture();
+
+        final FontCache.Key key = new FontCache.Key(
+                (factory != null) ? fontFileName + "@" + factory.getClass().getName() : fontFileName, fontSize, color,
+                antiAliased);
+        final FontFuture inFlight = asyncFontsInFlight.putIfAbsent(key, future);
+        if (inFlight != null)
+        {
+            inFlight.whenDone(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    try
+                    {
+                        final IFont font = inFlight.get();
+                        String fontName = null;
+                        if (font != null)
+                        {
+                            final String[] resolved = resolveFont(findFontFile(fontFileName));
+                            fontName = cacheName(resolved[0], resolved[1], factory);
+                        }
+                        future.set(shareFont(font, fontName, fontSize, color, antiAliased));
+                    } catch (final Throwable t)
+                    {
+                        future.setException((t instanceof ExecutionException) ? t.getCause() : t);
+                    }
+                }
+            });
+            return future;
+        }
+        future.whenDone(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                asyncFontsInFlight.remove(key, future);
+            }
+        });
 
-        checkAvailableFontsCurrent();
+        getAsyncExecutor().execute(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    prepareFontAsync(scene, pa, findFontFile(fontFileName), fontSize, color, antiAliased, factory,
+                            future);
+                } catch (final Throwable t)
+                {
+                    completeAtNextFrame(scene, future, null, t);
+                }
+            }
+        });
+        return future;
+    }
+
+    /**
+     * Sets the maximum number of fonts requested through
+     * {@link #createFontAsync(Iscene, PApplet, String, int, MTColor, boolean)}
+     * that are uploaded to OpenGL per frame of the specified scene.
+     *
+     * @param scene
+     * @param fontsPerFrame
+     */
+    public void setAsyncFontsPerFrame(final Iscene scene, final int fontsPerFrame)
+    {
+        FontFinalizer.getInstance(scene).setTasksPerFrame(fontsPerFrame);
+    }
+
+    /**
+     * Starts loading the fonts listed in a manifest in the background, in
+     * order, as with
+     * {@link #createFontAsync(Iscene, PApplet, String, int, MTColor, boolean)}.
+     * Call it right after the application has started: the files are parsed
+     * on background threads, and the fonts are uploaded to OpenGL a few per
+     * frame (see {@link #setAsyncFontsPerFrame(Iscene, int)}), so they are in
+     * the cache by the time the scenes ask for them.
+     *
+     * @param scene
+     *                 the scene whose pre-draw actions finalize the fonts.
+     * @param pa
+     * @param manifest
+     *
+     * @return a future per font, in the order of the manifest. Fonts whose
+     *         factory cannot be created are skipped.
+     */
+    public List<FontFuture> warmUp(final Iscene scene, final PApplet pa, final FontManifest manifest)
+    {
+        final List<FontManifest.Entry> entries = manifest.getEntries();
+        final List<FontFuture> futures = new ArrayList<FontFuture>(entries.size());
+        for (final FontManifest.Entry entry : entries)
+        {
+            IEnhancedFontFactory factory = null;
+            if (entry.getFactoryClassName() != null)
+            {
+                factory = getFactoryByClassName(entry.getFactoryClassName());
+                if (factory == null)
+                {
+                    continue;
+                }
+            }
+            futures.add(createFontAsync(scene, pa, entry.getFontName(), entry.getFontSize(), entry.getColor(),
+                    entry.isAntiAliased(), factory));
+        }
+        return futures;
+    }
+
+    // Returns the factory fonts were requested with by class name, or a new instance of
+    // the class if none has been yet in this session. Returns null if it cannot be created.
+    //
+    private IEnhancedFontFactory getFactoryByClassName(final String className)
+    {
+        final IEnhancedFontFactory factory = factoriesByClassName.get(className);
+        if (factory != null)
+        {
+            return factory;
+        }
+        try
+        {
+            final IEnhancedFontFactory created = Class.forName(className).asSubclass(IEnhancedFontFactory.class)
+                    .newInstance();
+            final IEnhancedFontFactory known = factoriesByClassName.putIfAbsent(className, created);
+            return (known != null) ? known : created;
+        } catch (final Exception e)
+        {
+            LOG.warn("Cannot create the font factory " + className + ": " + e);
+            return null;
+        }
+    }
+
+    /**
+     * Starts loading the fonts listed in a manifest file in the background.
+     * See {@link #warmUp(Iscene, PApplet, FontManifest)}.
+     *
+     * @param scene
+     * @param pa
+     * @param manifestFile
+     *
+     * @return a future per font, or an empty list if the file does not exist
+     *         or cannot be read.
+     */
+    public List<FontFuture> warmUp(final Iscene scene, final PApplet pa, final File manifestFile)
+    {
+        if (!manifestFile.isFile())
+        {
+            return new ArrayList<FontFuture>();
+        }
+        try
+        {
+            return warmUp(scene, pa, FontManifest.read(manifestFile));
+        } catch (final IOException e)
+        {
+            LOG.warn("Cannot read the font manifest " + manifestFile + ": " + e);
+            return new ArrayList<FontFuture>();
+        }
+    }
+
+    /**
+     * Starts recording the fonts requested by name, through
+     * <code>createFont</code>, <code>createFontByName</code> and
+     * <code>createFontAsync</code>, and writes them to a manifest file when
+     * the application exits. Passing that file to
+     * {@link #warmUp(Iscene, PApplet, File)} on the next start preloads the
+     * fonts of this session.
+     *
+     * @param manifestFile
+     *                     the file to write, or null to stop recording.
+     */
+    public synchronized void recordFontRequests(final File manifestFile)
+    {
+        recordedFontRequestsFile = manifestFile;
+        if (manifestFile == null)
+        {
+            recordedFontRequests = null;
+            return;
+        }
+        recordedFontRequests = new FontManifest();
+        if (recordedFontRequestsWriter == null)
+        {
+            recordedFontRequestsWriter = new Thread("EnhancedFontManager-manifest")
+            {
+                @Override
+                public void run()
+                {
+                    writeRecordedFontRequests();
+                }
+            };
+            Runtime.getRuntime().addShutdownHook(recordedFontRequestsWriter);
+        }
+    }
+
+    /**
+     * Returns the fonts recorded since {@link #recordFontRequests(File)}.
+     *
+     * @return the live manifest, or null if not recording.
+     */
+    public FontManifest getRecordedFontRequests()
+    {
+        return recordedFontRequests;
+    }
+
+    /**
+     * Writes the fonts recorded so far to the file passed to
+     * {@link #recordFontRequests(File)}. Done automatically at exit. Nothing
+     * is written if no font has been requested, so a session that failed
+     * early does not clear the manifest of the previous one.
+     *
+     * @return true if the manifest was written.
+     */
+    public synchronized boolean writeRecordedFontRequests()
+    {
+        final FontManifest manifest = recordedFontRequests;
+        if ((manifest == null) || (manifest.size() == 0))
+        {
+            return false;
+        }
+        try
+        {
+            manifest.write(recordedFontRequestsFile);
+            return true;
+        } catch (final IOException e)
+        {
+            LOG.warn("Cannot write the font manifest " + recordedFontRequestsFile + ": " + e);
+            return false;
+        }
+    }
+
+    private void recordFontRequest(final String fontName, final int fontSize, final MTColor color, final boolean antiAliased,
+            final IEnhancedFontFactory factory)
+    {
+        String factoryClassName = null;
+        if (factory != null)
+        {
+            factoryClassName = factory.getClass().getName();
+            factoriesByClassName.putIfAbsent(factoryClassName, factory);
+        }
+        final FontManifest manifest = recordedFontRequests;
+        if ((manifest != null) && (fontName != null))
+        {
+            manifest.add(fontName, fontSize, color, antiAliased, factoryClassName);
+        }
+    }
+
+    // Background part of createFontAsync().
+    //
+    private void prepareFontAsync(final Iscene scene, final PApplet pa, final String fontFileName, final int fontSize,
+            final MTColor color, final boolean antiAliased, final IEnhancedFontFactory requestedFactory,
+            final FontFuture future) throws Exception
+    {
+        final String[] resolved = resolveFont(fontFileName);
+        final String fontAbsolutePath = resolved[1];
+        final String fontName = cacheName(resolved[0], fontAbsolutePath, requestedFactory);
+
+        final IFont cached = getCachedFont(fontName, fontSize, color, antiAliased);
+        if (cached != null)
+        {
+            completeAtNextFrame(scene, future, cached, null);
+            return;
+        }
+
+        // Being created by another thread, which may be the rendering thread.
+        final FutureTask<IFont> inFlight = fontsInFlight.get(new FontCache.Key(fontName, fontSize, color, antiAliased));
+        if (inFlight != null)
+        {
+            completeAtNextFrame(scene, future, shareFont(awaitFont(inFlight), fontName, fontSize, color, antiAliased),
+                    null);
+            return;
+        }
+
+        final IEnhancedFontFactory factory = (requestedFactory != null) ? requestedFactory
+                : getFactoryForFileSuffix(getFontSuffix(fontAbsolutePath));
+        if (factory == null)
+        {
+            LOG.error("Couldnt find a appropriate font factory for: " + fontName);
+            completeAtNextFrame(scene, future, null, null);
+            return;
+        }
+
+        final Object preparedFont;
+        if (factory instanceof IAsyncFontFactory)
+        {
+            preparedFont = ((IAsyncFontFactory) factory).prepareFont(pa, fontAbsolutePath, fontSize, color, antiAliased);
+        } else
+        {
+            // At least have the file in the OS cache when the factory reads it.
+            prefetchFile(fontAbsolutePath);
+            preparedFont = null;
+        }
+
+        FontFinalizer.getInstance(scene).enqueue(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    // May have been created in the meantime.
+                    IFont font = getCachedFont(fontName, fontSize, color, antiAliased);
+                    if (font == null)
+                    {
+                        if (factory instanceof IAsyncFontFactory)
+                        {
+                            font = ((IAsyncFontFactory) factory).createPreparedFont(pa, preparedFont);
+                        } else
+                        {
+                            font = factory.createFont(pa, fontAbsolutePath, fontSize, color, antiAliased);
+                        }
+                        if (font != null)
+                        {
+                            font = cacheFont(fontName, font, color);
+                        }
+                    }
+                    future.set(font);
+                } catch (final Throwable t)
+                {
+                    LOG.error("Error while trying to create the font: " + fontName);
+                    future.setException(t);
+                }
+            }
+        });
+    }
+
+    // Completes the future of createFontAsync() with a font or an exception on the
+    // rendering thread, as promised, when the background part has nothing left for it
+    // to do.
+    //
+    private static void completeAtNextFrame(final Iscene scene, final FontFuture future, final IFont font,
+            final Throwable t)
+    {
+        FontFinalizer.getInstance(scene).post(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                if (t != null)
+                {
+                    future.setException(t);
+                } else
+                {
+                    future.set(font);
+                }
+            }
+        });
+    }
 
-        // Try to find a file that exists in one of the font directories with that file name.
-        String fontAbsolutePath = fontFileName;
-        final String[] fontPaths = fontPaths();
-        // Loop over the available extensions and check for requested font
-        for (final String fileExtension : suffixToFactory.keySet())
+    // Reads a file once, discarding the contents.
+    //
+    private static void prefetchFile(final String path)
+    {
+        final File f = new File(path);
+        if (!f.isFile())
         {
-            for (final String fontPath : fontPaths)
+            return;
+        }
+        InputStream in = null;
+        try
+        {
+            in = new FileInputStream(f);
+            final byte[] buffer = new byte[8192];
+            while (in.read(buffer) != -1)
+            {
+                // Discard.
+            }
+        } catch (final IOException e)
+        {
+            // The factory will report it.
+        } finally
+        {
+            if (in != null)
             {
-                final File f = new File(new File(fontPath), fontFileName + fileExtension);
-                if (f.exists() && f.isFile())
+                try
                 {
-                    fontAbsolutePath = f.getAbsolutePath();
-                    break;
+                    in.close();
+                } catch (final IOException e)
+                {
+                    // Ignore.
                 }
             }
         }
+    }
+
+    // Returns the shared executor for background font creation, creating it the first time.
+    //
+    private static synchronized ExecutorService getAsyncExecutor()
+    {
+        if (asyncExecutor == null)
+        {
+            final int threads = Math.max(1, Runtime.getRuntime().availableProcessors() - 1);
+            asyncExecutor = Executors.newFixedThreadPool(threads, new ThreadFactory()
+            {
+                private int count;
+
+                @Override
+                public synchronized Thread newThread(final Runnable r)
+                {
+                    final Thread t = new Thread(r, "EnhancedFontManager-" + (++count));
+                    t.setDaemon(true);
+                    t.setPriority(Thread.MIN_PRIORITY);
+                    return t;
+                }
+            });
+        }
+        return asyncExecutor;
+    }
+
+    // Looks up the file found in the font directories during discovery under the specified
+    // name, with or without its extension. A single probe of the file index, without touching
+    // the file system, unless the name has a path in it. Returns the name unchanged if there
+    // is no such file.
+    //
+    private String findFontFile(final String fontFileName)
+    {
+        checkAvailableFontsCurrent();
+
+        final String fontAbsolutePath = fontFileIndex.get(fontFileIndexKey(fontFileName));
+        if (fontAbsolutePath != null)
+        {
+            return fontAbsolutePath;
+        }
 
-        return createFontFromFile(pa, fontAbsolutePath, fontSize, color, antiAliased);
+        // Discovery does not descend into subdirectories, so names with a path in them
+        // still have to be looked for on disk.
+        if ((fontFileName.indexOf('/') >= 0) || (fontFileName.indexOf(File.separatorChar) >= 0))
+        {
+            final String[] fontPathList = this.fontPathList;
+            for (final String fileExtension : suffixToFactory.keySet())
+            {
+                for (final String fontPath : fontPathList)
+                {
+                    final File f = new File(new File(fontPath), fontFileName + fileExtension);
+                    if (f.isFile())
+                    {
+                        return f.getAbsolutePath();
+                    }
+                }
+            }
+        }
+        return fontFileName;
     }
 
     /**
@@ -570,59 +2030,222 @@ public class EnhancedFontManager
      */
     public IFont createFontFromResource(final PApplet pa, final String fontResourceName, final int fontSize, final MTColor color, final boolean antiAliased)
     {
+        final String fontAbsolutePath = extractFontResource(fontResourceName);
+        if (fontAbsolutePath == null)
+        {
+            return null;
+        }
+        return createFontFromFile(pa, fontAbsolutePath, fontSize, color, antiAliased, null);
+    }
 
+    // Returns the file a font resource has been extracted to, extracting it the first time
+    // in this process. Returns null if there is no such resource. Threads extracting the
+    // same resource at once write the same file.
+    //
+    private String extractFontResource(final String fontResourceName)
+    {
         String fontAbsolutePath = fontResourcesToFiles.get(fontResourceName);
-
         if (fontAbsolutePath == null)
         {
-
             final String resourcePath = MT4jSettings.DEFAULT_FONT_PATH + fontResourceName;
-
             try
             {
-                InputStream in = Thread.currentThread().getContextClassLoader().getResourceAsStream(resourcePath);
-                // Copy it to a temp file, so the normal method can be used
-                if (in != null)
+                final File file = FontResources.extract(resourcePath, fontResourceDirectory);
+                if (file != null)
                 {
+                    fontAbsolutePath = file.getAbsolutePath();
+                    fontResourcesToFiles.put(fontResourceName, fontAbsolutePath);
+                }
+            } catch (final IOException e)
+            {
+                LOG.error("Error extracting font resource " + fontResourceName + ": " + e);
+            }
+        }
+        return fontAbsolutePath;
+    }
+
+    /**
+     * Sets the directory to which fonts stored as resources are extracted
+     * for the font factories. Each resource is written to a file named after
+     * a hash of its content, which later runs use without writing it again.
+     *
+     * @param directory
+     *                  the directory, or null to extract each resource to a
+     *                  temporary file in every run.
+     */
+    public synchronized void setFontResourceDirectory(final File directory)
+    {
+        if ((directory == null) ? (fontResourceDirectory != null) : !directory.equals(fontResourceDirectory))
+        {
+            fontResourceDirectory = directory;
+            fontResourcesToFiles.clear();
+        }
+    }
 
-                    final File tempFile = File.createTempFile("tmpfont", getFontSuffix(fontResourceName));
-                    tempFile.deleteOnExit();
+    /**
+     * Returns the directory to which fonts stored as resources are extracted.
+     *
+     * @return the directory, or null if they are extracted to temporary
+     *         files.
+     */
+    public synchronized File getFontResourceDirectory()
+    {
+        return fontResourceDirectory;
+    }
 
-                    try
-                    {
-                        OutputStream out = new FileOutputStream(tempFile);
-                    
-                        final byte[] buffer = new byte[4096];
+  // Private method for creating the font usually using the full font path.
+    // If fontAbsolutePath is the name of a system font, the EnhancedBitmapFontFactory will
+    // load it as a PFont.
+    //
+    private IFont createFontFromFile(final PApplet pa, final String fontFilePath, final int fontSize, final MTColor color,
+            final boolean antiAliased, final IEnhancedFontFactory factory)
+    {
+        if (Thread.currentThread() == renderingThread)
+        {
+            destroyRetiredFonts();
+        }
+
+        final String[] resolved = resolveFont(fontFilePath);
+        final String fontAbsolutePath = resolved[1];
+
+        if (resolved[0] == null)
+        {
+            return null;
+        }
+        final String fontName = cacheName(resolved[0], fontAbsolutePath, factory);
+
+        // Return cached font if there
+        final IFont font = getCachedFont(fontName, fontSize, color, antiAliased);
+        if (font != null)
+        {
+            return font;
+        }
+
+        // Create it, unless another thread already is.
+        final FontCache.Key key = new FontCache.Key(fontName, fontSize, color, antiAliased);
+        final FutureTask<IFont> load = new FutureTask<IFont>(new Callable<IFont>()
+        {
+            @Override
+            public IFont call()
+            {
+                return loadFont(pa, fontName, fontAbsolutePath, fontSize, color, antiAliased, factory);
+            }
+        });
+        final FutureTask<IFont> inFlight = fontsInFlight.putIfAbsent(key, load);
+        if (inFlight == null)
+        {
+            try
+            {
+                load.run();
+            } finally
+            {
+                fontsInFlight.remove(key, load);
+            }
+            return awaitFont(load);
+        }
+        return shareFont(awaitFont(inFlight), fontName, fontSize, color, antiAliased);
+    }
+
+    // Has the requested factory, or else the one for the file, create a font, and caches it.
+    //
+    private IFont loadFont(final PApplet pa, final String fontName, final String fontAbsolutePath, final int fontSize,
+            final MTColor color, final boolean antiAliased, final IEnhancedFontFactory factory)
+    {
+        IFont loadedFont = null;
+        try
+        {
+
+            final String suffix = getFontSuffix(fontAbsolutePath);
+
+            // Check which factory to use for this file type
+            final IEnhancedFontFactory factoryToUse = (factory != null) ? factory : getFactoryForFileSuffix(suffix);
+
+            if (factoryToUse != null)
+            {
+                LOG.debug("Loading new font \"" + fontName + "\" with factory: " + factoryToUse.getClass().getName());
+                LOG.debug("Font file = " + fontAbsolutePath);
 
-                        int bytesRead = 0;
-                        while ((bytesRead = in.read(buffer)) != -1)
-                        {
-                            out.write(buffer, 0, bytesRead);
-                        }
+                loadedFont = factoryToUse.createFont(pa, fontAbsolutePath, fontSize, color, antiAliased);
 
-                        fontAbsolutePath = tempFile.getAbsolutePath();
-                        fontResourcesToFiles.put(fontResourceName, fontAbsolutePath);
-                    } catch (final IOException e)
-                    {
-                        LOG.error("Error writing" + fontResourceName + " to temporary file");
-                    }
+                // Have to be sure it's not null.
+                if (loadedFont != null)
+                {
+                    loadedFont = cacheFont(fontName, loadedFont, color);
                 }
-            } catch (final IOException e1)
+            } else
             {
-                LOG.error("Error creating temporary file for " + fontResourceName + " processing");
+                LOG.error("Couldnt find a appropriate font factory for: " + fontName + " Suffix: " + suffix);
             }
+        } catch (final Exception e)
+        {
+            LOG.error("Error while trying to create the font: " + fontName);
+            LOG.error(e.getStackTrace());
         }
 
-        return createFontFromFile(pa, fontAbsolutePath, fontSize, color, antiAliased);
+        return (loadedFont);
     }
 
-  // Private method for creating the font usually using the full font path.
-    // If fontAbsolutePath is the name of a system font, the EnhancedBitmapFontFactory will
-    // load it as a PFont.
+    // Waits for a font being created. Returns null if it could not be.
+    //
+    private static IFont awaitFont(final FutureTask<IFont> load)
+    {
+        try
+        {
+            return load.get();
+        } catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (final ExecutionException e)
+        {
+            LOG.error("Error while trying to create a font: " + e.getCause());
+            return null;
+        }
+    }
+
+    // Returns a font created for another request of the same font, as getCachedFont()
+    // would: views of color-neutral fonts are not shared, since their color may be
+    // changed.
+    //
+    private IFont shareFont(final IFont font, final String fontName, final int fontSize, final MTColor color,
+            final boolean antiAliased)
+    {
+        if (font == null)
+        {
+            return null;
+        }
+        final IFont cached = getCachedFont(fontName, fontSize, color, antiAliased);
+        if (cached != null)
+        {
+            return cached;
+        }
+        // Evicted already.
+        return (font instanceof TintedFont) ? newView(((TintedFont) font).getFont(), color) : font;
+    }
+
+    // Returns the name a font resolved by resolveFont() is cached under when created with
+    // the specified factory: fonts of a factory other than the one registered for their
+    // file type are told apart by the class of the factory.
     //
-    private IFont createFontFromFile(final PApplet pa, String fontAbsolutePath, final int fontSize, final MTColor color, final boolean antiAliased)
+    private String cacheName(final String fontName, final String fontAbsolutePath, final IEnhancedFontFactory factory)
     {
+        if (factory == null)
+        {
+            return fontName;
+        }
+        final IEnhancedFontFactory registered = getFactoryForFileSuffix(getFontSuffix(fontAbsolutePath));
+        if ((registered != null) && (registered.getClass() == factory.getClass()))
+        {
+            return fontName;
+        }
+        return fontName + "@" + factory.getClass().getName();
+    }
 
+    // Returns the name under which the font in the specified file is cached, and the path
+    // to pass to its factory, as {fontName, fontPath}.
+    //
+    private String[] resolveFont(String fontAbsolutePath)
+    {
         checkAvailableFontsCurrent();
 
         String fontName = availableFontsReverse.get(fontAbsolutePath);
@@ -641,50 +2264,7 @@ public class EnhancedFontManager
             }
         }
 
-        IFont loadedFont = null;
-
-        if (fontName != null)
-        {
-
-            // Return cached font if there
-            final IFont font = getCachedFont(fontName, fontSize, color, antiAliased);
-            if (font != null)
-            {
-                return font;
-            }
-
-            try
-            {
-
-                final String suffix = getFontSuffix(fontAbsolutePath);
-
-                // Check which factory to use for this file type
-                final IEnhancedFontFactory factoryToUse = getFactoryForFileSuffix(suffix);
-
-                if (factoryToUse != null)
-                {
-                    LOG.debug("Loading new font \"" + fontName + "\" with factory: " + factoryToUse.getClass().getName());
-                    LOG.debug("Font file = " + fontAbsolutePath);
-
-                    loadedFont = factoryToUse.createFont(pa, fontAbsolutePath, fontSize, color, antiAliased);
-
-                    // Have to be sure it's not null.
-                    if (loadedFont != null)
-                    {
-                        cacheFont(fontName, loadedFont);
-                    }
-                } else
-                {
-                    LOG.error("Couldnt find a appropriate font factory for: " + fontName + " Suffix: " + suffix);
-                }
-            } catch (final Exception e)
-            {
-                LOG.error("Error while trying to create the font: " + fontName);
-                LOG.error(e.getStackTrace());
-            }
-        }
-
-        return (loadedFont);
+        return new String[] { fontName, fontAbsolutePath };
     }
 
   // Returns the file name extension.
@@ -726,14 +2306,8 @@ public class EnhancedFontManager
      */
     public void unregisterFontFactory(final IEnhancedFontFactory factory)
     {
-        final Set<String> suffixesInHashMap = suffixToFactory.keySet();
-        for (final String suffix : suffixesInHashMap)
-        {
-            if (getFactoryForFileSuffix(suffix).equals(factory))
-            {
-                suffixToFactory.remove(suffix);
-            }
-        }
+        // Removes by value, so that a suffix unregistered concurrently is skipped.
+        suffixToFactory.values().removeAll(Collections.singleton(factory));
     }
 
     /**
@@ -760,80 +2334,248 @@ public class EnhancedFontManager
         return suffixToFactory.get(suffix);
     }
 
+    /**
+     * Switches the bitmap font types (true-type collections, open-type,
+     * .vlw, system fonts and the style suffixes) between the
+     * <code>EnhancedBitmapFontFactory</code>, which uploads a texture per
+     * glyph, and the <code>EnhancedAtlasFontFactory</code>, which packs the
+     * glyphs of all fonts and sizes into the pages of a shared
+     * {@link GlyphAtlas}. Text drawn with atlas fonts needs far fewer texture
+     * binds, and atlas fonts rasterize their glyphs a Unicode block at a time
+     * as characters are first displayed, rather than a whole character set
+     * when created. Fonts already created are not affected.
+     *
+     * @param enabled
+     */
+    public synchronized void setGlyphAtlasEnabled(final boolean enabled)
+    {
+        final IEnhancedFontFactory from = enabled ? bitmapFontFactory : atlasFontFactory;
+        final IEnhancedFontFactory to = enabled ? atlasFontFactory : bitmapFontFactory;
+        for (final Map.Entry<String, IEnhancedFontFactory> entry : suffixToFactory.entrySet())
+        {
+            if (entry.getValue() == from)
+            {
+                entry.setValue(to);
+            }
+        }
+    }
+
+    /**
+     * Returns true if the bitmap font types are created by the atlas font
+     * factory.
+     *
+     * @return
+     */
+    public synchronized boolean isGlyphAtlasEnabled()
+    {
+        return suffixToFactory.containsValue(atlasFontFactory);
+    }
+
+    /**
+     * Returns the atlas into which the glyphs of atlas fonts are packed, for
+     * reporting its occupancy and page count. Fonts evicted from the cache
+     * release their glyphs, and the atlas is repacked once too much of it is
+     * wasted.
+     *
+     * @return
+     */
+    public GlyphAtlas getGlyphAtlas()
+    {
+        return atlasFontFactory.getAtlas();
+    }
+
+    /**
+     * Sets the directory of precompiled vector glyphs. While set, true-type
+     * and svg fonts created by the registered <code>EnhancedTTFontFactory</code>
+     * and <code>EnhancedSvgFontFactory</code> are built from tessellated
+     * glyphs memory-mapped from the directory, and a font file is only parsed
+     * the first time a size of it is asked for, in any run. The directory may
+     * be filled ahead of time with {@link GlyphCacheBuilder}.
+     *
+     * @param directory
+     *                  the directory, or null to parse the fonts every time.
+     */
+    public synchronized void setGlyphGeometryCacheDirectory(final File directory)
+    {
+        glyphGeometryCache = (directory != null) ? new GlyphGeometryCache(directory) : null;
+        for (final IEnhancedFontFactory factory : suffixToFactory.values())
+        {
+            if (factory instanceof EnhancedTTFontFactory)
+            {
+                ((EnhancedTTFontFactory) factory).setGlyphGeometryCache(glyphGeometryCache);
+            } else if (factory instanceof EnhancedSvgFontFactory)
+            {
+                ((EnhancedSvgFontFactory) factory).setGlyphGeometryCache(glyphGeometryCache);
+            }
+        }
+    }
+
+    /**
+     * Returns the cache of precompiled vector glyphs.
+     *
+     * @return the cache, or null if not enabled.
+     */
+    public synchronized GlyphGeometryCache getGlyphGeometryCache()
+    {
+        return glyphGeometryCache;
+    }
+
     /**
      * Gets the cached font.
      *
-     * @param fontAbsoultePath
-     *                         the font absoulte path
+     * @param fontName
+     *                    the font name
      * @param fontSize
-     *                         the font size
+     *                    the font size
      * @param fillColor
-     *                         the fill color
-     * @param strokeColor
-     *                         the stroke color
+     *                    the fill color
+     * @param antiAliased
+     *                    whether the font is anti-aliased
      *
-     * @return the cached font
+     * @return the cached font. Fonts whose glyphs are color-neutral are cached
+     *         once for all colors, and returned as a view with its own fill
+     *         color, which may be changed without affecting other users.
      */
     public IFont getCachedFont(final String fontName, final int fontSize, final MTColor fillColor, final boolean antiAliased)
     {
-        // Get a list of fonts registered under the given name.
-        final List<IFont> fontList = fonts.get(fontName);
-        if (fontList != null)
+        final IFont font = fontCache.get(fontName, fontSize, fillColor, antiAliased);
+        if (font != null)
+        {
+            LOG.debug("Using cached font: " + fontName + " Fontsize: " + fontSize + " FillColor: " + fillColor);
+            return isColorNeutral(font) ? newView(font, fillColor) : font;
+        }
+        return font;
+    }
+
+    // Caches a newly created font, returning the font to hand out for the requested color.
+    // If the same font has been cached in the meantime, by a request it could not be told
+    // apart from before it was created, the new one is retired and the cached one used.
+    // May be called on any thread, so fonts leaving the cache are only retired.
+    private IFont cacheFont(final String fontName, final IFont font, final MTColor fillColor)
+    {
+        final boolean neutral = isColorNeutral(font);
+        final List<IFont> evicted = new ArrayList<IFont>();
+        final IFont cached = fontCache.putIfAbsent(new FontCache.Key(fontName, font.getOriginalFontSize(),
+                neutral ? null : font.getFillColor(), font.isAntiAliased()), font, evicted);
+        retireFonts(evicted);
+        if (cached != font)
         {
-            for (final IFont font : fontList)
+            // Never handed out, so it goes as soon as the rendering thread gets to it.
+            LOG.debug("Retiring duplicate font: " + font.getFontFamily() + " " + font.getOriginalFontSize());
+            synchronized (viewCounts)
             {
-        // Don't need to get the font name from the font object, since all fonts in
-                // the list have the specified fontName.
-                if ((font.getOriginalFontSize() == fontSize)
-                        && font.getFillColor().equals(fillColor)
-                        && (font.isAntiAliased() == antiAliased))
-                {
-                    LOG.debug("Using cached font: " + fontName + " Fontsize: " + fontSize + " FillColor: " + fillColor);
-                    return font;
-                }
+                retiredFonts.add(font);
             }
         }
-        return null;
+        return neutral ? newView(cached, fillColor) : cached;
+    }
+
+    // True for fonts whose glyphs are tinted when drawn, rather than created in the fill color.
+    // The glyphs of the stock mt4j fonts are components with their own fill color.
+    private static boolean isColorNeutral(final IFont font)
+    {
+        return (font instanceof AtlasFont) || (font instanceof MeshFont);
     }
 
-    private void cacheFont(final String fontName, final IFont font)
+    // Hands out a view of a color-neutral font, counting it until it is collected.
+    private IFont newView(final IFont font, final MTColor fillColor)
     {
-        List<IFont> fontList = fonts.get(fontName);
-        if (fontList == null)
+        final TintedFont view = new TintedFont(font, fillColor);
+        synchronized (viewCounts)
         {
-            fontList = new ArrayList<IFont>();
-            fonts.put(fontName, fontList);
+            viewReferences.add(new ViewReference(view, font, collectedViews));
+            final Integer count = viewCounts.get(font);
+            viewCounts.put(font, (count != null) ? count + 1 : 1);
         }
-        fontList.add(font);
-        checkFontCacheSize();
+        return view;
     }
 
-    // Trims down the size of the font cache, if necessary.
-    private void checkFontCacheSize()
+    // Retires color-neutral fonts evicted from the cache, to be destroyed once their views
+    // are gone. Stock fonts are handed out themselves, so there is no telling when their
+    // users are done with them; they are only dropped from the cache.
+    private void retireFonts(final List<IFont> evicted)
     {
-        int totalSz = 0;
-        Iterator<List<IFont>> it = fonts.values().iterator();
-        while (it.hasNext())
+        for (final IFont font : evicted)
         {
-            totalSz += it.next().size();
+            if (isColorNeutral(font))
+            {
+                LOG.debug("Retiring font evicted from cache: " + font.getFontFamily() + " " + font.getOriginalFontSize());
+                synchronized (viewCounts)
+                {
+                    retiredFonts.add(font);
+                }
+            } else
+            {
+                LOG.debug("Dropping font evicted from cache: " + font.getFontFamily() + " " + font.getOriginalFontSize());
+            }
         }
-        if ((totalSz > CACHE_MAX_SIZE) && (totalSz > 0))
+    }
+
+    /**
+     * Releases the GL resources of the fonts evicted from the cache, and of
+     * those created twice by concurrent requests, which are no longer used.
+     * Fonts whose glyphs are color-neutral are handed out as views, and are
+     * destroyed once evicted and none of their views is referenced any more;
+     * evicted stock fonts are left to their users, as they are handed out
+     * themselves. This is called each frame by the font finalizer of every
+     * scene which requested fonts asynchronously, and by every synchronous
+     * font request made on the thread fonts are drawn on.
+     * Must be called on the rendering thread.
+     */
+    public void destroyRetiredFonts()
+    {
+        renderingThread = Thread.currentThread();
+        List<IFont> unused = null;
+        synchronized (viewCounts)
         {
-            it = fonts.values().iterator();
+            Reference<? extends TintedFont> collected;
+            while ((collected = collectedViews.poll()) != null)
+            {
+                final ViewReference view = (ViewReference) collected;
+                viewReferences.remove(view);
+                final int count = viewCounts.get(view.font) - 1;
+                if (count > 0)
+                {
+                    viewCounts.put(view.font, count);
+                } else
+                {
+                    viewCounts.remove(view.font);
+                }
+            }
+            final Iterator<IFont> it = retiredFonts.iterator();
             while (it.hasNext())
             {
-                final List<IFont> fontList = it.next();
-                if (fontList.size() > 0)
+                final IFont font = it.next();
+                if (!viewCounts.containsKey(font))
                 {
-                    fontList.remove(0);
-                    totalSz--;
-                    if ((totalSz == CACHE_MAX_SIZE) || (totalSz == 0))
+                    it.remove();
+                    if (unused == null)
                     {
-                        return;
+                        unused = new ArrayList<IFont>();
                     }
+                    unused.add(font);
                 }
             }
         }
+        if (unused != null)
+        {
+            for (final IFont font : unused)
+            {
+                LOG.debug("Destroying retired font: " + font.getFontFamily() + " " + font.getOriginalFontSize());
+                font.destroy();
+            }
+        }
+    }
+
+    // Notes the thread a view of a font is drawn on, so that synchronous font requests on it
+    // can destroy retired fonts.
+    void noteRenderingThread()
+    {
+        final Thread thread = Thread.currentThread();
+        if (renderingThread != thread)
+        {
+            renderingThread = thread;
+        }
     }
 
     /**
@@ -849,19 +2591,233 @@ public class EnhancedFontManager
      */
     public boolean removeFromCache(final IFont font)
     {
+        return fontCache.remove((font instanceof TintedFont) ? ((TintedFont) font).getFont() : font);
+    }
+
+    /**
+     * Sets the budget of the font cache, in estimated bytes of GPU memory
+     * taken by glyph textures and geometry. When the budget is exceeded, the
+     * least recently used fonts are evicted, and destroyed on the rendering
+     * thread once no component uses them any more, see
+     * {@link #destroyRetiredFonts()}. The most recently cached font is never
+     * evicted. Must be called on the rendering thread.
+     *
+     * @param maxBytes
+     */
+    public void setCacheMaxBytes(final long maxBytes)
+    {
+        retireFonts(fontCache.setMaxBytes(maxBytes));
+        destroyRetiredFonts();
+    }
+
+    /**
+     * Returns the budget of the font cache in bytes.
+     *
+     * @return
+     */
+    public long getCacheMaxBytes()
+    {
+        return fontCache.getMaxBytes();
+    }
+
+    /**
+     * Returns the estimated number of bytes of GPU memory taken by the
+     * cached fonts.
+     *
+     * @return
+     */
+    public long getCacheSizeBytes()
+    {
+        return fontCache.getTotalBytes();
+    }
+
+    /**
+     * Returns the number of cached fonts.
+     *
+     * @return
+     */
+    public int getCachedFontCount()
+    {
+        return fontCache.size();
+    }
+
+    /**
+     * Returns the number of font requests served from the cache.
+     *
+     * @return
+     */
+    public long getCacheHitCount()
+    {
+        return fontCache.getHits();
+    }
+
+    /**
+     * Returns the number of font requests which were not in the cache.
+     *
+     * @return
+     */
+    public long getCacheMissCount()
+    {
+        return fontCache.getMisses();
+    }
+
+    /**
+     * Returns the number of fonts evicted from the cache to stay within its
+     * budget.
+     *
+     * @return
+     */
+    public long getCacheEvictionCount()
+    {
+        return fontCache.getEvictions();
+    }
+
+    // Accepts files with extensions that map to font factories.
+    private static class FontFileFilter implements FileFilter
+    {
+
+        private final Set<String> fileExtensions;
+
+        FontFileFilter(final Set<String> fileExtensions)
+        {
+            this.fileExtensions = fileExtensions;
+        }
+
+        @Override
+        public boolean accept(final File f)
+        {
+            return f.isFile() && fileExtensions.contains(getFileExtension(f));
+        }
+    }
+
+    // Lists the font files of a range of font directories, concatenated in the
+    // order of the directories. Each directory is listed by its own subtask.
+    private static class ListFontFilesTask extends RecursiveTask<File[]>
+    {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String[] fontPaths;
+
+        private final int from, to;
+
+        private final FileFilter filter;
+
+        ListFontFilesTask(final String[] fontPaths, final int from, final int to, final FileFilter filter)
+        {
+            this.fontPaths = fontPaths;
+            this.from = from;
+            this.to = to;
+            this.filter = filter;
+        }
 
-        final Iterator<List<IFont>> it = fonts.values().iterator();
-        while (it.hasNext())
+        @Override
+        protected File[] compute()
         {
-            final List<IFont> list = it.next();
-            final int n = list.indexOf(font);
-            if (n >= 0)
+            if ((to - from) == 1)
             {
-                list.remove(n);
-                return true;
+                final File dir = new File(fontPaths[from]);
+                // Be sure it's an existing directory.
+                if (dir.isDirectory())
+                {
+                    final File[] files = dir.listFiles(filter);
+                    if (files != null)
+                    {
+                        return files;
+                    }
+                }
+                return new File[0];
+            }
+
+            final List<File> result = new ArrayList<File>();
+            if (inForkJoinPool())
+            {
+                final List<ListFontFilesTask> tasks = new ArrayList<ListFontFilesTask>(to - from);
+                for (int i = from; i < to; i++)
+                {
+                    tasks.add(new ListFontFilesTask(fontPaths, i, i + 1, filter));
+                }
+                for (final ListFontFilesTask task : invokeAll(tasks))
+                {
+                    result.addAll(Arrays.asList(task.join()));
+                }
+            } else
+            {
+                for (int i = from; i < to; i++)
+                {
+                    result.addAll(Arrays.asList(new ListFontFilesTask(fontPaths, i, i + 1, filter).compute()));
+                }
             }
+            return result.toArray(new File[result.size()]);
         }
+    }
 
-        return false;
+    // Extracts the names of the pending files whose factories are thread safe,
+    // splitting the range of files in half until it is small enough.
+    private static class ExtractFontNamesTask extends RecursiveAction
+    {
+
+        private static final long serialVersionUID = 1L;
+
+        private static final int THRESHOLD = 8;
+
+        private final File[] files;
+
+        private final IEnhancedFontFactory[] factories;
+
+        private final boolean[] pending;
+
+        private final String[][] fontNames;
+
+        private final int[][] coverages;
+
+        private final int from, to;
+
+        ExtractFontNamesTask(final File[] files, final IEnhancedFontFactory[] factories,
+                final boolean[] pending, final String[][] fontNames, final int[][] coverages, final int from,
+                final int to)
+        {
+            this.files = files;
+            this.factories = factories;
+            this.pending = pending;
+            this.fontNames = fontNames;
+            this.coverages = coverages;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute()
+        {
+            if ((to - from) <= THRESHOLD)
+            {
+                for (int i = from; i < to; i++)
+                {
+                    if (pending[i] && isThreadSafe(factories[i]))
+                    {
+                        fontNames[i] = extractFontNames(factories[i], files[i].getAbsolutePath());
+                        coverages[i] = readCoverage(files[i]);
+                    }
+                }
+            } else
+            {
+                final int mid = (from + to) >>> 1;
+                invokeAll(new ExtractFontNamesTask(files, factories, pending, fontNames, coverages, from, mid),
+                        new ExtractFontNamesTask(files, factories, pending, fontNames, coverages, mid, to));
+            }
+        }
+    }
+
+    // A weak reference to a view handed out, remembering the font it views once it is collected.
+    private static final class ViewReference extends WeakReference<TintedFont>
+    {
+
+        final IFont font;
+
+        ViewReference(final TintedFont view, final IFont font, final ReferenceQueue<TintedFont> queue)
+        {
+            super(view, queue);
+            this.font = font;
+        }
     }
 }
@@ -0,0 +1,371 @@
+/**
+ * This material was prepared as an account of work sponsored by an agency of the United States Government.<br>
+ * Neither the United States Government nor the United States Department of Energy, nor any of their employees,<br>
+ * nor any of their contractors, subcontractors or their employees, makes any warranty, express or implied, or<br>
+ * assumes any legal liability or responsibility for the accuracy, completeness, or usefulness or any information,<br>
+ * apparatus, product, or process disclosed, or represents that its use would not infringe privately owned rights.
+ */
+package org.mt4jx.components.visibleComponents.font;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.mt4j.components.visibleComponents.shapes.AbstractShape;
+import org.mt4j.util.MTColor;
+import org.mt4j.util.font.IFont;
+import org.mt4j.util.font.IFontCharacter;
+import org.mt4jx.components.visibleComponents.font.atlas.AtlasFont;
+import org.mt4jx.components.visibleComponents.font.mesh.MeshFont;
+
+import processing.core.PImage;
+
+/**
+ * <p>
+ * Least-recently-used cache of fonts, keyed by font name, size, fill color
+ * and antialiasing. Fonts whose glyphs are tinted when drawn are cached with
+ * no fill color, once for all colors. The size of the cache is measured in the estimated number
+ * of bytes of GPU memory taken by the glyphs of the cached fonts, rather than
+ * in the number of fonts, since a large font can easily take as much memory as
+ * dozens of small ones.
+ * </p>
+ * <p>
+ * All methods are synchronized, so fonts may be looked up and cached from any
+ * thread. Fonts evicted from the cache are returned to the caller, which is
+ * responsible for destroying them on the rendering thread.
+ * </p>
+ */
+class FontCache
+{
+
+    // Bytes per texel of the glyph textures (RGBA).
+    private static final int BYTES_PER_TEXEL = 4;
+
+    // Bytes per vertex of vector glyphs: position, color and texture coordinates as floats.
+    private static final int BYTES_PER_VERTEX = (3 + 4 + 2) * 4;
+
+    /**
+     * Identifies a cached font. A null fill color identifies a color-neutral
+     * font.
+     */
+    static final class Key
+    {
+
+        private final String fontName;
+
+        private final int fontSize;
+
+        private final int r, g, b, a;
+
+        private final boolean antiAliased;
+
+        private final int hash;
+
+        Key(final String fontName, final int fontSize, final MTColor fillColor, final boolean antiAliased)
+        {
+            this.fontName = fontName;
+            this.fontSize = fontSize;
+            // Compare the components, since MTColor is mutable and may not hash consistently.
+            this.r = (fillColor != null) ? Float.floatToIntBits(fillColor.getR()) : 0;
+            this.g = (fillColor != null) ? Float.floatToIntBits(fillColor.getG()) : 0;
+            this.b = (fillColor != null) ? Float.floatToIntBits(fillColor.getB()) : 0;
+            this.a = (fillColor != null) ? Float.floatToIntBits(fillColor.getAlpha()) : 0;
+            this.antiAliased = antiAliased;
+
+            int h = fontName.hashCode();
+            h = (31 * h) + fontSize;
+            h = (31 * h) + r;
+            h = (31 * h) + g;
+            h = (31 * h) + b;
+            h = (31 * h) + a;
+            h = (31 * h) + (antiAliased ? 1 : 0);
+            this.hash = h;
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(final Object o)
+        {
+            if (this == o)
+            {
+                return true;
+            }
+            if (!(o instanceof Key))
+            {
+                return false;
+            }
+            final Key k = (Key) o;
+            return (hash == k.hash)
+                    && (fontSize == k.fontSize)
+                    && (r == k.r) && (g == k.g) && (b == k.b) && (a == k.a)
+                    && (antiAliased == k.antiAliased)
+                    && fontName.equals(k.fontName);
+        }
+
+        @Override
+        public String toString()
+        {
+            return fontName + " " + fontSize + (antiAliased ? " AA" : "");
+        }
+    }
+
+    private static final class Entry
+    {
+
+        final IFont font;
+
+        long bytes;
+
+        Entry(final IFont font, final long bytes)
+        {
+            this.font = font;
+            this.bytes = bytes;
+        }
+    }
+
+    // Access-ordered, so iteration starts with the least recently used font.
+    private final LinkedHashMap<Key, Entry> entries;
+
+    private long maxBytes;
+
+    private long totalBytes;
+
+    private long hits, misses, evictions;
+
+    /**
+     * Constructor.
+     *
+     * @param maxBytes
+     *                 the budget of the cache in estimated bytes of glyph memory.
+     */
+    FontCache(final long maxBytes)
+    {
+        this.entries = new LinkedHashMap<Key, Entry>(16, 0.75f, true);
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * Returns the cached font for the specified request: the color-neutral
+     * font if there is one, else the font created in the fill color. Marks
+     * it as most recently used, and counts a single hit or miss.
+     *
+     * @param fontName
+     * @param fontSize
+     * @param fillColor
+     * @param antiAliased
+     *
+     * @return the font or null, if not cached.
+     */
+    synchronized IFont get(final String fontName, final int fontSize, final MTColor fillColor, final boolean antiAliased)
+    {
+        Entry entry = entries.get(new Key(fontName, fontSize, null, antiAliased));
+        if ((entry == null) && (fillColor != null))
+        {
+            entry = entries.get(new Key(fontName, fontSize, fillColor, antiAliased));
+        }
+        if (entry != null)
+        {
+            hits++;
+            return entry.font;
+        }
+        misses++;
+        return null;
+    }
+
+    /**
+     * Caches a font, unless a font is already cached under the same key, then
+     * evicts least recently used fonts until the cache is within its budget.
+     * The font cached under the key is never evicted.
+     *
+     * @param key
+     * @param font
+     * @param evicted
+     *                receives the evicted fonts.
+     *
+     * @return the font cached under the key: the one already cached, or else
+     *         the specified one.
+     */
+    synchronized IFont putIfAbsent(final Key key, final IFont font, final List<IFont> evicted)
+    {
+        final Entry old = entries.get(key);
+        if (old != null)
+        {
+            return old.font;
+        }
+        final Entry entry = new Entry(font, estimateGlyphBytes(font));
+        entries.put(key, entry);
+        totalBytes += entry.bytes;
+        updateGrowingFonts();
+        trim(evicted);
+        return font;
+    }
+
+    /**
+     * Removes a font from the cache.
+     *
+     * @param font
+     *
+     * @return true if the font was cached.
+     */
+    synchronized boolean remove(final IFont font)
+    {
+        final Iterator<Entry> it = entries.values().iterator();
+        while (it.hasNext())
+        {
+            final Entry entry = it.next();
+            if (entry.font == font)
+            {
+                it.remove();
+                totalBytes -= entry.bytes;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Removes all fonts from the cache.
+     *
+     * @return the fonts that were cached.
+     */
+    synchronized List<IFont> clear()
+    {
+        final List<IFont> removed = new ArrayList<IFont>(entries.size());
+        for (final Entry entry : entries.values())
+        {
+            removed.add(entry.font);
+        }
+        entries.clear();
+        totalBytes = 0;
+        return removed;
+    }
+
+    /**
+     * Changes the budget of the cache, evicting fonts if necessary.
+     *
+     * @param maxBytes
+     *
+     * @return the evicted fonts.
+     */
+    synchronized List<IFont> setMaxBytes(final long maxBytes)
+    {
+        this.maxBytes = maxBytes;
+        updateGrowingFonts();
+        final List<IFont> evicted = new ArrayList<IFont>();
+        trim(evicted);
+        return evicted;
+    }
+
+    synchronized long getMaxBytes()
+    {
+        return maxBytes;
+    }
+
+    synchronized long getTotalBytes()
+    {
+        updateGrowingFonts();
+        return totalBytes;
+    }
+
+    synchronized int size()
+    {
+        return entries.size();
+    }
+
+    synchronized long getHits()
+    {
+        return hits;
+    }
+
+    synchronized long getMisses()
+    {
+        return misses;
+    }
+
+    synchronized long getEvictions()
+    {
+        return evictions;
+    }
+
+    // Atlas fonts rasterize glyphs as they are displayed, so their size is
+    // estimated again whenever the total matters.
+    //
+    private void updateGrowingFonts()
+    {
+        for (final Entry entry : entries.values())
+        {
+            if (entry.font instanceof AtlasFont)
+            {
+                final long bytes = ((AtlasFont) entry.font).getGlyphBytes();
+                totalBytes += bytes - entry.bytes;
+                entry.bytes = bytes;
+            }
+        }
+    }
+
+    // Evicts least recently used fonts, always keeping the most recent one.
+    private void trim(final List<IFont> evicted)
+    {
+        final Iterator<Map.Entry<Key, Entry>> it = entries.entrySet().iterator();
+        while ((totalBytes > maxBytes) && (entries.size() > 1) && it.hasNext())
+        {
+            final Entry entry = it.next().getValue();
+            it.remove();
+            totalBytes -= entry.bytes;
+            evictions++;
+            evicted.add(entry.font);
+        }
+    }
+
+    /**
+     * Estimates the GPU memory taken by the glyphs of a font from the glyphs
+     * of the printable ASCII characters: the size of their textures for
+     * bitmap fonts, or of their vertices for vector fonts. Atlas fonts know
+     * exactly how much of the atlas their glyphs take.
+     *
+     * @param font
+     *
+     * @return the estimated number of bytes.
+     */
+    static long estimateGlyphBytes(final IFont font)
+    {
+        if (font instanceof AtlasFont)
+        {
+            return ((AtlasFont) font).getGlyphBytes();
+        }
+        if (font instanceof MeshFont)
+        {
+            return ((MeshFont) font).getGeometry().getByteSize();
+        }
+        long bytes = 0;
+        final long height = Math.max(1, font.getFontAbsoluteHeight());
+        for (char c = ' '; c < 127; c++)
+        {
+            final IFontCharacter character = font.getFontCharacterByUnicode(String.valueOf(c));
+            if (character instanceof AbstractShape)
+            {
+                final AbstractShape shape = (AbstractShape) character;
+                final PImage texture = shape.getTexture();
+                if (texture != null)
+                {
+                    bytes += (long) texture.width * texture.height * BYTES_PER_TEXEL;
+                } else
+                {
+                    bytes += (long) shape.getGeometryInfo().getVertices().length * BYTES_PER_VERTEX;
+                }
+            } else if (character != null)
+            {
+                // Unknown kind of glyph, assume a square texture.
+                bytes += height * height * BYTES_PER_TEXEL;
+            }
+        }
+        return bytes;
+    }
+}
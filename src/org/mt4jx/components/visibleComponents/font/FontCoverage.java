@@ -0,0 +1,164 @@
+/**
+ * This material was prepared as an account of work sponsored by an agency of the United States Government.<br>
+ * Neither the United States Government nor the United States Department of Energy, nor any of their employees,<br>
+ * nor any of their contractors, subcontractors or their employees, makes any warranty, express or implied, or<br>
+ * assumes any legal liability or responsibility for the accuracy, completeness, or usefulness or any information,<br>
+ * apparatus, product, or process disclosed, or represents that its use would not infringe privately owned rights.
+ */
+package org.mt4jx.components.visibleComponents.font;
+
+/**
+ * <p>
+ * The set of characters a font file has glyphs for, as read from its
+ * <tt>cmap</tt> table. It is a two-level bitset: a page of 256 bits for
+ * each block of 256 code points the font covers at all, with one shared page
+ * for the blocks it covers entirely, so that a Latin font takes a few hundred
+ * bytes and a large CJK font a few kilobytes. Coverage is immutable.
+ * </p>
+ */
+public final class FontCoverage
+{
+
+    private static final int PAGE_BITS = 8;
+
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+    private static final int WORDS_PER_PAGE = PAGE_SIZE / 64;
+
+    private static final long[] FULL_PAGE = { -1L, -1L, -1L, -1L };
+
+    // Up to the block of the last covered code point. Null for blocks without any.
+    private final long[][] pages;
+
+    // Sorted, disjoint ranges of covered code points: first and last in turn.
+    private final int[] ranges;
+
+    private final int codePointCount;
+
+    /**
+     * Creates the coverage of the specified ranges.
+     *
+     * @param ranges
+     *               sorted, disjoint ranges of code points, each a first and
+     *               last code point in turn, as read by
+     *               <code>TrueTypeFontReader.readCoverage</code>.
+     */
+    public FontCoverage(final int[] ranges)
+    {
+        this.ranges = ranges.clone();
+        final int lastCodePoint = (ranges.length >= 2) ? ranges[ranges.length - 1] : -1;
+        this.pages = new long[(Math.max(0, Math.min(lastCodePoint, Character.MAX_CODE_POINT)) >> PAGE_BITS) + 1][];
+        int count = 0;
+        for (int i = 0; i + 1 < ranges.length; i += 2)
+        {
+            final int first = Math.max(0, ranges[i]);
+            final int last = Math.min(Character.MAX_CODE_POINT, ranges[i + 1]);
+            if (first > last)
+            {
+                continue;
+            }
+            count += last - first + 1;
+            int c = first;
+            while (c <= last)
+            {
+                final int p = c >> PAGE_BITS;
+                final int pageEnd = ((p + 1) << PAGE_BITS) - 1;
+                if (((c & (PAGE_SIZE - 1)) == 0) && (pageEnd <= last))
+                {
+                    pages[p] = FULL_PAGE;
+                    c = pageEnd + 1;
+                    continue;
+                }
+                if (pages[p] == null)
+                {
+                    pages[p] = new long[WORDS_PER_PAGE];
+                } else if (pages[p] == FULL_PAGE)
+                {
+                    c = pageEnd + 1;
+                    continue;
+                }
+                final int end = Math.min(last, pageEnd);
+                for (; c <= end; c++)
+                {
+                    pages[p][(c >> 6) & (WORDS_PER_PAGE - 1)] |= 1L << c;
+                }
+            }
+        }
+        this.codePointCount = count;
+    }
+
+    /**
+     * Returns true if the font has a glyph for the specified character.
+     *
+     * @param codePoint
+     *
+     * @return
+     */
+    public boolean covers(final int codePoint)
+    {
+        if ((codePoint < 0) || ((codePoint >> PAGE_BITS) >= pages.length))
+        {
+            return false;
+        }
+        final long[] page = pages[codePoint >> PAGE_BITS];
+        return (page != null) && ((page[(codePoint >> 6) & (WORDS_PER_PAGE - 1)] & (1L << codePoint)) != 0);
+    }
+
+    /**
+     * Returns true if the font has a glyph for every character of a text
+     * that needs one, which excludes whitespace and control characters.
+     *
+     * @param text
+     *
+     * @return
+     */
+    public boolean coversAll(final CharSequence text)
+    {
+        for (int i = 0; i < text.length();)
+        {
+            final int codePoint = Character.codePointAt(text, i);
+            if (needsGlyph(codePoint) && !covers(codePoint))
+            {
+                return false;
+            }
+            i += Character.charCount(codePoint);
+        }
+        return true;
+    }
+
+    /**
+     * Returns the number of characters covered.
+     *
+     * @return
+     */
+    public int getCodePointCount()
+    {
+        return codePointCount;
+    }
+
+    /**
+     * Returns the covered characters as sorted, disjoint ranges, each a first
+     * and last code point in turn.
+     *
+     * @return
+     */
+    public int[] getRanges()
+    {
+        return ranges.clone();
+    }
+
+    /**
+     * Returns true if a character is drawn with a glyph, rather than being
+     * whitespace or a control character that text components lay out
+     * without one.
+     *
+     * @param codePoint
+     *
+     * @return
+     */
+    static boolean needsGlyph(final int codePoint)
+    {
+        return !Character.isWhitespace(codePoint) && !Character.isISOControl(codePoint)
+                && (Character.getType(codePoint) != Character.FORMAT);
+    }
+}
@@ -0,0 +1,217 @@
+/**
+ * This material was prepared as an account of work sponsored by an agency of the United States Government.<br>
+ * Neither the United States Government nor the United States Department of Energy, nor any of their employees,<br>
+ * nor any of their contractors, subcontractors or their employees, makes any warranty, express or implied, or<br>
+ * assumes any legal liability or responsibility for the accuracy, completeness, or usefulness or any information,<br>
+ * apparatus, product, or process disclosed, or represents that its use would not infringe privately owned rights.
+ */
+package org.mt4jx.components.visibleComponents.font;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.mt4j.util.logging.ILogger;
+import org.mt4j.util.logging.MTLoggerFactory;
+
+/**
+ * <p>
+ * Watches the font directories on a background thread and reports the files
+ * created, deleted or modified in them to the {@link EnhancedFontManager},
+ * which applies the changes to its catalog of available fonts without
+ * scanning the directories again.
+ * </p>
+ * <p>
+ * Copying a font file usually produces a burst of events, so events are
+ * collected until the directories have been quiet for a moment and each
+ * file is reported once. If the platform drops events, the manager is asked
+ * to rescan instead.
+ * </p>
+ */
+class FontDirectoryWatcher implements Runnable
+{
+
+    private static final ILogger LOG = MTLoggerFactory.getLogger(FontDirectoryWatcher.class.getName());
+
+    static {
+        LOG.setLevel(ILogger.ERROR);
+    }
+
+    // How long the directories must be quiet before the collected changes are reported.
+    private static final long QUIET_MILLIS = 250;
+
+    private final EnhancedFontManager manager;
+
+    private final WatchService watchService;
+
+    // Maps the keys of the watched directories to the directories.
+    private final Map<WatchKey, Path> keys;
+
+    private final Thread thread;
+
+    /**
+     * Creates a watcher reporting to the specified manager. Call
+     * {@link #watch(String[])} and {@link #start()} to begin watching.
+     *
+     * @param manager
+     *
+     * @throws IOException
+     *                     if the file system cannot be watched.
+     */
+    FontDirectoryWatcher(final EnhancedFontManager manager) throws IOException
+    {
+        this.manager = manager;
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.keys = new HashMap<WatchKey, Path>();
+        this.thread = new Thread(this, "EnhancedFontManager-watcher");
+        this.thread.setDaemon(true);
+        this.thread.setPriority(Thread.MIN_PRIORITY);
+    }
+
+    /**
+     * Starts the background thread.
+     */
+    void start()
+    {
+        thread.start();
+    }
+
+    /**
+     * Stops watching. The background thread exits shortly after.
+     */
+    void stop()
+    {
+        try
+        {
+            watchService.close();
+        } catch (final IOException e)
+        {
+            LOG.error("Cannot close the font directory watch service: " + e);
+        }
+    }
+
+    /**
+     * Watches the specified directories, and no others. Directories which do
+     * not exist are ignored.
+     *
+     * @param fontPaths
+     */
+    synchronized void watch(final String[] fontPaths)
+    {
+        final Set<Path> dirs = new HashSet<Path>();
+        for (final String fontPath : fontPaths)
+        {
+            final File dir = new File(fontPath);
+            if (dir.isDirectory())
+            {
+                dirs.add(dir.getAbsoluteFile().toPath());
+            }
+        }
+
+        final Iterator<Map.Entry<WatchKey, Path>> it = keys.entrySet().iterator();
+        while (it.hasNext())
+        {
+            final Map.Entry<WatchKey, Path> entry = it.next();
+            if (!dirs.remove(entry.getValue()))
+            {
+                entry.getKey().cancel();
+                it.remove();
+            }
+        }
+
+        for (final Path dir : dirs)
+        {
+            try
+            {
+                keys.put(dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_DELETE, StandardWatchEventKinds.ENTRY_MODIFY), dir);
+            } catch (final IOException e)
+            {
+                LOG.error("Cannot watch font directory " + dir + ": " + e);
+            } catch (final ClosedWatchServiceException e)
+            {
+                return;
+            }
+        }
+    }
+
+    private synchronized Path directoryOf(final WatchKey key)
+    {
+        return keys.get(key);
+    }
+
+    @Override
+    public void run()
+    {
+        try
+        {
+            while (true)
+            {
+                final Set<File> changed = new LinkedHashSet<File>();
+                boolean overflow = false;
+
+                WatchKey key = watchService.take();
+                while (key != null)
+                {
+                    overflow |= collect(key, changed);
+                    key = watchService.poll(QUIET_MILLIS, TimeUnit.MILLISECONDS);
+                }
+
+                if (overflow)
+                {
+                    manager.reloadAvailableFonts();
+                } else if (!changed.isEmpty())
+                {
+                    manager.fontFilesChanged(changed);
+                }
+            }
+        } catch (final ClosedWatchServiceException e)
+        {
+            // Stopped.
+        } catch (final InterruptedException e)
+        {
+            // Stopped.
+        }
+    }
+
+    // Adds the files the key's events are about to the set. Returns true if events were lost.
+    //
+    private boolean collect(final WatchKey key, final Set<File> changed)
+    {
+        boolean overflow = false;
+        final Path dir = directoryOf(key);
+        for (final WatchEvent<?> event : key.pollEvents())
+        {
+            if (event.kind() == StandardWatchEventKinds.OVERFLOW)
+            {
+                overflow = true;
+            } else if (dir != null)
+            {
+                changed.add(dir.resolve((Path) event.context()).toFile());
+            }
+        }
+        if (!key.reset())
+        {
+            // The directory is gone, and the files in it with it.
+            synchronized (this)
+            {
+                keys.remove(key);
+            }
+            overflow = true;
+        }
+        return overflow;
+    }
+}
@@ -0,0 +1,135 @@
+/**
+ * This material was prepared as an account of work sponsored by an agency of the United States Government.<br>
+ * Neither the United States Government nor the United States Department of Energy, nor any of their employees,<br>
+ * nor any of their contractors, subcontractors or their employees, makes any warranty, express or implied, or<br>
+ * assumes any legal liability or responsibility for the accuracy, completeness, or usefulness or any information,<br>
+ * apparatus, product, or process disclosed, or represents that its use would not infringe privately owned rights.
+ */
+package org.mt4jx.components.visibleComponents.font;
+
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import org.mt4j.sceneManagement.IPreDrawAction;
+import org.mt4j.sceneManagement.Iscene;
+
+/**
+ * <p>
+ * Pre-draw action which runs the OpenGL part of font creation on the
+ * rendering thread. Tasks are queued from any thread and a limited number of
+ * them is run per frame, so that a burst of font requests is spread over
+ * several frames instead of stalling one. Tasks which take no noticeable
+ * time, such as completing a future with a cached font, are posted instead
+ * and all run at the next frame. Each frame also destroys the fonts retired
+ * from the font manager's cache which are no longer used. There is one
+ * finalizer per scene.
+ * </p>
+ */
+class FontFinalizer implements IPreDrawAction
+{
+
+    /**
+     * Default number of fonts finalized per frame.
+     */
+    static final int DEFAULT_TASKS_PER_FRAME = 1;
+
+    private static final Map<Iscene, FontFinalizer> finalizers = new WeakHashMap<Iscene, FontFinalizer>();
+
+    private final ConcurrentLinkedQueue<Runnable> tasks;
+
+    // Run at the next frame, however many.
+    private final ConcurrentLinkedQueue<Runnable> posted;
+
+    private volatile int tasksPerFrame;
+
+    private FontFinalizer()
+    {
+        tasks = new ConcurrentLinkedQueue<Runnable>();
+        posted = new ConcurrentLinkedQueue<Runnable>();
+        tasksPerFrame = DEFAULT_TASKS_PER_FRAME;
+    }
+
+    /**
+     * Returns the finalizer of the specified scene, registering it with the
+     * scene the first time.
+     *
+     * @param scene
+     *
+     * @return
+     */
+    static FontFinalizer getInstance(final Iscene scene)
+    {
+        synchronized (finalizers)
+        {
+            FontFinalizer finalizer = finalizers.get(scene);
+            if (finalizer == null)
+            {
+                finalizer = new FontFinalizer();
+                finalizers.put(scene, finalizer);
+                scene.registerPreDrawAction(finalizer);
+            }
+            return finalizer;
+        }
+    }
+
+    /**
+     * Queues a task to be run on the rendering thread.
+     *
+     * @param task
+     */
+    void enqueue(final Runnable task)
+    {
+        tasks.add(task);
+    }
+
+    /**
+     * Queues a quick task to be run on the rendering thread at the next frame,
+     * without counting against the tasks run per frame.
+     *
+     * @param task
+     */
+    void post(final Runnable task)
+    {
+        posted.add(task);
+    }
+
+    /**
+     * Sets the maximum number of tasks run per frame.
+     *
+     * @param tasksPerFrame
+     */
+    void setTasksPerFrame(final int tasksPerFrame)
+    {
+        this.tasksPerFrame = Math.max(1, tasksPerFrame);
+    }
+
+    @Override
+    public void processAction()
+    {
+        EnhancedFontManager.getInstance().destroyRetiredFonts();
+
+        Runnable postedTask;
+        while ((postedTask = posted.poll()) != null)
+        {
+            postedTask.run();
+        }
+
+        final int n = tasksPerFrame;
+        for (int i = 0; i < n; i++)
+        {
+            final Runnable task = tasks.poll();
+            if (task == null)
+            {
+                break;
+            }
+            task.run();
+        }
+    }
+
+    @Override
+    public boolean isLoop()
+    {
+        return true;
+    }
+}
@@ -0,0 +1,111 @@
+/**
+ * This material was prepared as an account of work sponsored by an agency of the United States Government.<br>
+ * Neither the United States Government nor the United States Department of Energy, nor any of their employees,<br>
+ * nor any of their contractors, subcontractors or their employees, makes any warranty, express or implied, or<br>
+ * assumes any legal liability or responsibility for the accuracy, completeness, or usefulness or any information,<br>
+ * apparatus, product, or process disclosed, or represents that its use would not infringe privately owned rights.
+ */
+package org.mt4jx.components.visibleComponents.font;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.FutureTask;
+
+import org.mt4j.util.font.IFont;
+
+/**
+ * <p>
+ * The pending result of <code>EnhancedFontManager.createFontAsync</code>. It
+ * is completed on the rendering thread once the font's glyphs have been
+ * uploaded, so components polling {@link #isDone()} from a pre-draw action or
+ * update loop can swap in the font without blocking.
+ * </p>
+ */
+public class FontFuture extends FutureTask<IFont>
+{
+
+    // Never called: the future is only ever completed through set() and setException().
+    private static final Callable<IFont> NO_TASK = new Callable<IFont>()
+    {
+        @Override
+        public IFont call()
+        {
+            throw new IllegalStateException();
+        }
+    };
+
+    // Run when the future completes. Null once it has.
+    private List<Runnable> completionActions = new ArrayList<Runnable>();
+
+    FontFuture()
+    {
+        super(NO_TASK);
+    }
+
+    /**
+     * Runs an action when the future completes, on the thread completing it,
+     * or right away if it has completed.
+     *
+     * @param action
+     */
+    void whenDone(final Runnable action)
+    {
+        synchronized (this)
+        {
+            if (completionActions != null)
+            {
+                completionActions.add(action);
+                return;
+            }
+        }
+        action.run();
+    }
+
+    @Override
+    protected void done()
+    {
+        final List<Runnable> actions;
+        synchronized (this)
+        {
+            actions = completionActions;
+            completionActions = null;
+        }
+        for (final Runnable action : actions)
+        {
+            action.run();
+        }
+    }
+
+    @Override
+    protected void set(final IFont font)
+    {
+        super.set(font);
+    }
+
+    @Override
+    protected void setException(final Throwable t)
+    {
+        super.setException(t);
+    }
+
+    /**
+     * Returns the font if it has been created, without blocking.
+     *
+     * @return the font, or null if it is not ready or could not be created.
+     */
+    public IFont getNow()
+    {
+        if (!isDone() || isCancelled())
+        {
+            return null;
+        }
+        try
+        {
+            return get();
+        } catch (final Exception e)
+        {
+            return null;
+        }
+    }
+}
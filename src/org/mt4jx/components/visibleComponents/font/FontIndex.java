@@ -0,0 +1,364 @@
+/**
+ * This material was prepared as an account of work sponsored by an agency of the United States Government.<br>
+ * Neither the United States Government nor the United States Department of Energy, nor any of their employees,<br>
+ * nor any of their contractors, subcontractors or their employees, makes any warranty, express or implied, or<br>
+ * assumes any legal liability or responsibility for the accuracy, completeness, or usefulness or any information,<br>
+ * apparatus, product, or process disclosed, or represents that its use would not infringe privately owned rights.
+ */
+package org.mt4jx.components.visibleComponents.font;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import org.mt4j.util.logging.ILogger;
+import org.mt4j.util.logging.MTLoggerFactory;
+
+/**
+ * <p>
+ * Persistent index of the font names extracted from font files. Each entry
+ * maps the absolute path of a font file to the names extracted from it, along
+ * with the size and modification time the file had at the time. An entry is
+ * only considered valid while the file's size and modification time are
+ * unchanged, so only new or modified files ever need to be parsed again.
+ * </p>
+ * <p>
+ * Files from which no name could be extracted are remembered as well, so they
+ * are not re-parsed on every startup either.
+ * </p>
+ * <p>
+ * For TrueType and OpenType files, an entry also holds the characters the
+ * file has glyphs for, as read from its <tt>cmap</tt> table.
+ * </p>
+ */
+class FontIndex
+{
+
+    private static final ILogger LOG = MTLoggerFactory.getLogger(FontIndex.class.getName());
+
+    static {
+        LOG.setLevel(ILogger.ERROR);
+    }
+
+    // Identifies the file as a font index: 'MTFI'
+    private static final int MAGIC = 0x4D544649;
+
+    // Bump whenever the layout of an entry changes. Files of other versions are discarded.
+    private static final int VERSION = 3;
+
+    /**
+     * A single indexed font file.
+     */
+    static class Entry
+    {
+
+        final long size;
+
+        final long lastModified;
+
+        // Class name of the factory which extracted the names.
+        final String factory;
+
+        // Null if no names could be extracted.
+        final String[] fontNames;
+
+        // Covered code points as ranges, see FontCoverage. Null if unknown.
+        final int[] coverage;
+
+        Entry(final long size, final long lastModified, final String factory, final String[] fontNames,
+                final int[] coverage)
+        {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.factory = factory;
+            this.fontNames = fontNames;
+            this.coverage = coverage;
+        }
+    }
+
+    private final File indexFile;
+
+    // Maps absolute file paths to entries.
+    private final Map<String, Entry> entries;
+
+    // Set when entries have been added or removed since the last load or save.
+    private boolean dirty;
+
+    /**
+     * Constructor.
+     *
+     * @param indexFile
+     *                  the file in which the index is stored.
+     */
+    FontIndex(final File indexFile)
+    {
+        if (indexFile == null)
+        {
+            throw new NullPointerException();
+        }
+        this.indexFile = indexFile;
+        this.entries = new HashMap<String, Entry>();
+    }
+
+    /**
+     * Returns the file in which the index is stored.
+     *
+     * @return
+     */
+    File getIndexFile()
+    {
+        return indexFile;
+    }
+
+    /**
+     * Loads the index from its file, replacing the current entries. If the
+     * file does not exist or cannot be read, the index is simply left empty.
+     */
+    void load()
+    {
+        entries.clear();
+        dirty = false;
+
+        if (!indexFile.isFile())
+        {
+            return;
+        }
+
+        DataInputStream in = null;
+        try
+        {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(indexFile)));
+            if ((in.readInt() != MAGIC) || (in.readInt() != VERSION))
+            {
+                // Stale format, so everything will be extracted again.
+                dirty = true;
+                return;
+            }
+            final int count = in.readInt();
+            for (int i = 0; i < count; i++)
+            {
+                final String path = in.readUTF();
+                final long size = in.readLong();
+                final long lastModified = in.readLong();
+                final String factory = in.readUTF();
+                final int nameCount = in.readInt();
+                String[] fontNames = null;
+                if (nameCount >= 0)
+                {
+                    fontNames = new String[nameCount];
+                    for (int j = 0; j < nameCount; j++)
+                    {
+                        fontNames[j] = in.readUTF();
+                    }
+                }
+                final int rangeCount = in.readInt();
+                int[] coverage = null;
+                if (rangeCount >= 0)
+                {
+                    coverage = new int[rangeCount];
+                    for (int j = 0; j < rangeCount; j++)
+                    {
+                        coverage[j] = in.readInt();
+                    }
+                }
+                entries.put(path, new Entry(size, lastModified, factory, fontNames, coverage));
+            }
+        } catch (final IOException e)
+        {
+            LOG.warn("Could not read font index " + indexFile + ": " + e);
+            entries.clear();
+            dirty = true;
+        } finally
+        {
+            if (in != null)
+            {
+                try
+                {
+                    in.close();
+                } catch (final IOException e)
+                {
+                    // Ignore.
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the index to its file, if it has changed since it was loaded.
+     */
+    void save()
+    {
+        if (!dirty)
+        {
+            return;
+        }
+
+        final File dir = indexFile.getAbsoluteFile().getParentFile();
+        if ((dir != null) && !dir.isDirectory() && !dir.mkdirs())
+        {
+            LOG.warn("Could not create directory for font index " + indexFile);
+            return;
+        }
+
+        // Write to a temporary file first, so a crash never leaves a truncated index behind.
+        final File tmpFile = new File(indexFile.getPath() + ".tmp");
+        DataOutputStream out = null;
+        try
+        {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(entries.size());
+            for (final Map.Entry<String, Entry> e : entries.entrySet())
+            {
+                final Entry entry = e.getValue();
+                out.writeUTF(e.getKey());
+                out.writeLong(entry.size);
+                out.writeLong(entry.lastModified);
+                out.writeUTF(entry.factory);
+                if (entry.fontNames != null)
+                {
+                    out.writeInt(entry.fontNames.length);
+                    for (final String fontName : entry.fontNames)
+                    {
+                        out.writeUTF(fontName);
+                    }
+                } else
+                {
+                    out.writeInt(-1);
+                }
+                if (entry.coverage != null)
+                {
+                    out.writeInt(entry.coverage.length);
+                    for (final int codePoint : entry.coverage)
+                    {
+                        out.writeInt(codePoint);
+                    }
+                } else
+                {
+                    out.writeInt(-1);
+                }
+            }
+            out.close();
+            out = null;
+
+            if (indexFile.exists() && !indexFile.delete())
+            {
+                LOG.warn("Could not replace font index " + indexFile);
+                tmpFile.delete();
+                return;
+            }
+            if (!tmpFile.renameTo(indexFile))
+            {
+                LOG.warn("Could not replace font index " + indexFile);
+                tmpFile.delete();
+                return;
+            }
+            dirty = false;
+        } catch (final IOException e)
+        {
+            LOG.warn("Could not write font index " + indexFile + ": " + e);
+        } finally
+        {
+            if (out != null)
+            {
+                try
+                {
+                    out.close();
+                } catch (final IOException e)
+                {
+                    // Ignore.
+                }
+                tmpFile.delete();
+            }
+        }
+    }
+
+    /**
+     * Returns the entry for the specified file if it is still valid, meaning
+     * the file has the same size and modification time it had when indexed,
+     * and its name was extracted by the same kind of factory.
+     *
+     * @param file
+     *                the font file.
+     * @param factory
+     *                class name of the factory that would extract the name.
+     *
+     * @return the entry, or null if the file must be parsed again.
+     */
+    Entry lookup(final File file, final String factory)
+    {
+        final Entry entry = entries.get(file.getAbsolutePath());
+        if ((entry != null)
+                && (entry.size == file.length())
+                && (entry.lastModified == file.lastModified())
+                && entry.factory.equals(factory))
+        {
+            return entry;
+        }
+        return null;
+    }
+
+    /**
+     * Records the names extracted from the specified file.
+     *
+     * @param file
+     *                  the font file.
+     * @param factory
+     *                  class name of the factory which extracted the names.
+     * @param fontNames
+     *                  the extracted names, or null if there were none.
+     * @param coverage
+     *                  the covered code points as ranges, or null if unknown.
+     */
+    void put(final File file, final String factory, final String[] fontNames, final int[] coverage)
+    {
+        entries.put(file.getAbsolutePath(),
+                new Entry(file.length(), file.lastModified(), factory, fontNames, coverage));
+        dirty = true;
+    }
+
+    /**
+     * Removes the entry for the specified file, if any.
+     *
+     * @param path
+     *             absolute path of the file.
+     */
+    void remove(final String path)
+    {
+        if (entries.remove(path) != null)
+        {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Removes the entries for all files not in the specified set of paths, so
+     * that the index does not accumulate fonts that have been deleted or are
+     * no longer on the font path.
+     *
+     * @param paths
+     *              absolute paths of the files to keep.
+     */
+    void retainAll(final Set<String> paths)
+    {
+        final Iterator<String> it = entries.keySet().iterator();
+        while (it.hasNext())
+        {
+            if (!paths.contains(it.next()))
+            {
+                it.remove();
+                dirty = true;
+            }
+        }
+    }
+}
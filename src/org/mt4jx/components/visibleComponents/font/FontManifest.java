@@ -0,0 +1,351 @@
+/**
+ * This material was prepared as an account of work sponsored by an agency of the United States Government.<br>
+ * Neither the United States Government nor the United States Department of Energy, nor any of their employees,<br>
+ * nor any of their contractors, subcontractors or their employees, makes any warranty, express or implied, or<br>
+ * assumes any legal liability or responsibility for the accuracy, completeness, or usefulness or any information,<br>
+ * apparatus, product, or process disclosed, or represents that its use would not infringe privately owned rights.
+ */
+package org.mt4jx.components.visibleComponents.font;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.mt4j.util.MTColor;
+import org.mt4j.util.logging.ILogger;
+import org.mt4j.util.logging.MTLoggerFactory;
+
+/**
+ * <p>
+ * An ordered list of fonts to create, for warming up the
+ * {@link EnhancedFontManager} when an application starts. Manifests are
+ * plain text files with one font per line, in the form
+ * </p>
+ * <pre>
+ *   &lt;size&gt; &lt;#rrggbbaa&gt; &lt;antiAliased&gt; &lt;font name&gt;
+ * </pre>
+ * <p>
+ * for instance <code>18 #ffffffff true arial</code>. The name comes last so
+ * it may contain spaces. Fonts created with a factory other than the one
+ * registered for their file type name its class before the font name,
+ * prefixed with <tt>@</tt>, as in
+ * <code>12 #ffffffff false @org.example.MyFontFactory arial.ttf</code>.
+ * Empty lines and lines starting with <tt>#</tt> are ignored. Manifests can be written by hand, or recorded with
+ * {@link EnhancedFontManager#recordFontRequests(File)}.
+ * </p>
+ */
+public final class FontManifest
+{
+
+    private static final ILogger LOG = MTLoggerFactory.getLogger(FontManifest.class.getName());
+
+    static {
+        LOG.setLevel(ILogger.WARN);
+    }
+
+    /**
+     * A font in a manifest.
+     */
+    public static final class Entry
+    {
+
+        private final String fontName;
+
+        private final int fontSize;
+
+        // Color components, 0 to 255.
+        private final int r, g, b, a;
+
+        private final boolean antiAliased;
+
+        // Null for the factory registered for the font's file type.
+        private final String factoryClassName;
+
+        Entry(final String fontName, final int fontSize, final int r, final int g, final int b, final int a,
+                final boolean antiAliased, final String factoryClassName)
+        {
+            this.fontName = fontName;
+            this.fontSize = fontSize;
+            this.r = r;
+            this.g = g;
+            this.b = b;
+            this.a = a;
+            this.antiAliased = antiAliased;
+            this.factoryClassName = factoryClassName;
+        }
+
+        public String getFontName()
+        {
+            return fontName;
+        }
+
+        public int getFontSize()
+        {
+            return fontSize;
+        }
+
+        /**
+         * Returns a new instance of the entry's color.
+         *
+         * @return
+         */
+        public MTColor getColor()
+        {
+            return new MTColor(r, g, b, a);
+        }
+
+        public boolean isAntiAliased()
+        {
+            return antiAliased;
+        }
+
+        /**
+         * Returns the class of the factory to create the font with.
+         *
+         * @return the class name, or null for the factory registered for the
+         *         font's file type.
+         */
+        public String getFactoryClassName()
+        {
+            return factoryClassName;
+        }
+
+        @Override
+        public boolean equals(final Object o)
+        {
+            if (!(o instanceof Entry))
+            {
+                return false;
+            }
+            final Entry e = (Entry) o;
+            return fontName.equals(e.fontName) && (fontSize == e.fontSize) && (r == e.r) && (g == e.g)
+                    && (b == e.b) && (a == e.a) && (antiAliased == e.antiAliased)
+                    && ((factoryClassName != null) ? factoryClassName.equals(e.factoryClassName)
+                            : (e.factoryClassName == null));
+        }
+
+        @Override
+        public int hashCode()
+        {
+            return (31 * ((31 * fontName.hashCode()) + fontSize)) + ((r << 24) | (g << 16) | (b << 8) | a)
+                    + (antiAliased ? 1 : 0) + ((factoryClassName != null) ? factoryClassName.hashCode() : 0);
+        }
+
+        /**
+         * Returns the entry as a manifest line.
+         */
+        @Override
+        public String toString()
+        {
+            return fontSize + " " + String.format("#%02x%02x%02x%02x", r, g, b, a) + " " + antiAliased + " "
+                    + ((factoryClassName != null) ? "@" + factoryClassName + " " : "") + fontName;
+        }
+
+        // Parses a manifest line. Returns null if it is malformed.
+        static Entry parse(final String line)
+        {
+            final String[] fields = line.trim().split("\\s+", 4);
+            if ((fields.length < 4) || (fields[1].length() != 9) || (fields[1].charAt(0) != '#'))
+            {
+                return null;
+            }
+            try
+            {
+                final int fontSize = Integer.parseInt(fields[0]);
+                final long rgba = Long.parseLong(fields[1].substring(1), 16);
+                if ((fontSize <= 0) || !("true".equals(fields[2]) || "false".equals(fields[2])))
+                {
+                    return null;
+                }
+                String fontName = fields[3];
+                String factoryClassName = null;
+                if (fontName.startsWith("@"))
+                {
+                    final String[] factoryAndName = fontName.substring(1).split("\\s+", 2);
+                    if ((factoryAndName.length < 2) || (factoryAndName[0].length() == 0))
+                    {
+                        return null;
+                    }
+                    factoryClassName = factoryAndName[0];
+                    fontName = factoryAndName[1];
+                }
+                return new Entry(fontName, fontSize, (int) (rgba >> 24) & 0xff, (int) (rgba >> 16) & 0xff,
+                        (int) (rgba >> 8) & 0xff, (int) rgba & 0xff, Boolean.parseBoolean(fields[2]), factoryClassName);
+            } catch (final NumberFormatException e)
+            {
+                return null;
+            }
+        }
+    }
+
+    // In the order first added.
+    private final Set<Entry> entries;
+
+    /**
+     * Creates an empty manifest.
+     */
+    public FontManifest()
+    {
+        entries = new LinkedHashSet<Entry>();
+    }
+
+    /**
+     * Adds a font, unless the manifest already lists it.
+     *
+     * @param fontName
+     *                    the name or file name the font is created by.
+     * @param fontSize
+     * @param color
+     *                    the fill color, or null for the default.
+     * @param antiAliased
+     *
+     * @return true if the font was added.
+     */
+    public boolean add(final String fontName, final int fontSize, final MTColor color, final boolean antiAliased)
+    {
+        return add(fontName, fontSize, color, antiAliased, null);
+    }
+
+    /**
+     * Adds a font created with a specific factory, unless the manifest
+     * already lists it.
+     *
+     * @param fontName
+     *                         the name or file name the font is created by.
+     * @param fontSize
+     * @param color
+     *                         the fill color, or null for the default.
+     * @param antiAliased
+     * @param factoryClassName
+     *                         the class of the factory, or null for the one
+     *                         registered for the font's file type.
+     *
+     * @return true if the font was added.
+     */
+    public boolean add(final String fontName, final int fontSize, MTColor color, final boolean antiAliased,
+            final String factoryClassName)
+    {
+        if (color == null)
+        {
+            color = new MTColor(0, 0, 0, 255);
+        }
+        final Entry entry = new Entry(fontName, fontSize, component(color.getR()), component(color.getG()),
+                component(color.getB()), component(color.getAlpha()), antiAliased, factoryClassName);
+        synchronized (this)
+        {
+            return entries.add(entry);
+        }
+    }
+
+    private static int component(final float value)
+    {
+        return Math.max(0, Math.min(255, Math.round(value)));
+    }
+
+    /**
+     * Returns the fonts, in the order they were added.
+     *
+     * @return
+     */
+    public synchronized List<Entry> getEntries()
+    {
+        return new ArrayList<Entry>(entries);
+    }
+
+    public synchronized int size()
+    {
+        return entries.size();
+    }
+
+    /**
+     * Reads a manifest file. Malformed lines are logged and skipped.
+     *
+     * @param file
+     *
+     * @return
+     *
+     * @throws IOException
+     */
+    public static FontManifest read(final File file) throws IOException
+    {
+        final FontManifest manifest = new FontManifest();
+        final BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+        try
+        {
+            String line;
+            int lineNumber = 0;
+            while ((line = in.readLine()) != null)
+            {
+                lineNumber++;
+                line = line.trim();
+                if ((line.length() == 0) || line.startsWith("#"))
+                {
+                    continue;
+                }
+                final Entry entry = Entry.parse(line);
+                if (entry != null)
+                {
+                    manifest.entries.add(entry);
+                } else
+                {
+                    LOG.warn(file + ":" + lineNumber + ": malformed font manifest line: " + line);
+                }
+            }
+        } finally
+        {
+            in.close();
+        }
+        return manifest;
+    }
+
+    /**
+     * Writes the manifest to a file, replacing it.
+     *
+     * @param file
+     *
+     * @throws IOException
+     */
+    public void write(final File file) throws IOException
+    {
+        final List<Entry> list = getEntries();
+        final File dir = file.getAbsoluteFile().getParentFile();
+        if ((dir != null) && !dir.isDirectory() && !dir.mkdirs())
+        {
+            throw new IOException("cannot create directory " + dir);
+        }
+
+        // Write to a temporary file first, so a crash never leaves a truncated manifest behind.
+        final File tmpFile = new File(file.getPath() + ".tmp");
+        final PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(tmpFile), "UTF-8"));
+        try
+        {
+            out.println("# Fonts to create at startup: <size> <#rrggbbaa> <antiAliased> [@<factory class>] <font name>");
+            for (final Entry entry : list)
+            {
+                out.println(entry);
+            }
+        } finally
+        {
+            out.close();
+        }
+        if (out.checkError())
+        {
+            tmpFile.delete();
+            throw new IOException("cannot write " + tmpFile);
+        }
+        if ((file.exists() && !file.delete()) || !tmpFile.renameTo(file))
+        {
+            tmpFile.delete();
+            throw new IOException("cannot replace " + file);
+        }
+    }
+}
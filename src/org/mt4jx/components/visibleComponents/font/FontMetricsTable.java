@@ -0,0 +1,449 @@
+/**
+ * This material was prepared as an account of work sponsored by an agency of the United States Government.<br>
+ * Neither the United States Government nor the United States Department of Energy, nor any of their employees,<br>
+ * nor any of their contractors, subcontractors or their employees, makes any warranty, express or implied, or<br>
+ * assumes any legal liability or responsibility for the accuracy, completeness, or usefulness or any information,<br>
+ * apparatus, product, or process disclosed, or represents that its use would not infringe privately owned rights.
+ */
+package org.mt4jx.components.visibleComponents.font;
+
+import java.lang.ref.WeakReference;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.mt4j.util.font.IFont;
+import org.mt4j.util.font.IFontCharacter;
+import org.mt4jx.components.visibleComponents.font.atlas.AtlasFont;
+import org.mt4jx.components.visibleComponents.font.mesh.GlyphGeometry;
+import org.mt4jx.components.visibleComponents.font.mesh.MeshFont;
+
+/**
+ * <p>
+ * The metrics of a font's glyphs in primitive arrays indexed by code point,
+ * for measuring text without looking up an {@link IFontCharacter} by a
+ * one-character string for every character. The arrays are split into pages
+ * of 256 code points, allocated for the pages text actually uses, and each
+ * code point is looked up in the font the first time it is measured. After
+ * that, {@link #measure(CharSequence)} allocates nothing.
+ * </p>
+ * <p>
+ * Advances are those the text components lay out with. Bearings are known
+ * for atlas fonts and 0 for others; kerning is known for fonts drawn from
+ * precompiled geometry and kept in an open-addressing hash table.
+ * </p>
+ * <p>
+ * Tables may be read from any thread. A page is never changed once it is
+ * published: looking up a code point publishes a filled-in copy of its page,
+ * so the lock is only taken the first time a code point is measured.
+ * </p>
+ */
+public final class FontMetricsTable
+{
+
+    private static final int PAGE_BITS = 8;
+
+    private static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+    private static final int PAGE_MASK = PAGE_SIZE - 1;
+
+    // Advance of a code point not looked up yet.
+    private static final float UNKNOWN = Float.NaN;
+
+    // Advance of a code point the font has no glyph for.
+    private static final float MISSING = Float.NEGATIVE_INFINITY;
+
+    // Shared tables, by font. Views of a cached font share the table of the cached font.
+    private static final Map<IFont, FontMetricsTable> TABLES = new WeakHashMap<IFont, FontMetricsTable>();
+
+    // Weak, since the table is the value of the font in a weak map.
+    private final WeakReference<IFont> font;
+
+    // Null until a code point of the page is measured.
+    private final AtomicReferenceArray<Page> pages;
+
+    // True for atlas fonts only.
+    private final boolean bearings;
+
+    // Null if the font has no kerning.
+    private final KerningMap kerning;
+
+    /**
+     * Returns the table of a font, creating it the first time.
+     *
+     * @param font
+     *
+     * @return
+     */
+    public static FontMetricsTable forFont(IFont font)
+    {
+        if (font instanceof TintedFont)
+        {
+            font = ((TintedFont) font).getFont();
+        }
+        synchronized (TABLES)
+        {
+            FontMetricsTable table = TABLES.get(font);
+            if (table == null)
+            {
+                table = new FontMetricsTable(font);
+                TABLES.put(font, table);
+            }
+            return table;
+        }
+    }
+
+    private FontMetricsTable(final IFont font)
+    {
+        this.font = new WeakReference<IFont>(font);
+        final int pageCount = (Character.MAX_CODE_POINT >> PAGE_BITS) + 1;
+        this.pages = new AtomicReferenceArray<Page>(pageCount);
+        this.bearings = font instanceof AtlasFont;
+
+        KerningMap map = null;
+        if (font instanceof MeshFont)
+        {
+            final GlyphGeometry geometry = ((MeshFont) font).getGeometry();
+            final int count = geometry.getKerningPairCount();
+            if (count > 0)
+            {
+                map = new KerningMap(count);
+                for (int i = 0; i < count; i++)
+                {
+                    map.put(geometry.getKerningLeft(i), geometry.getKerningRight(i), geometry.getKerningValue(i));
+                }
+            }
+        }
+        this.kerning = map;
+    }
+
+    /**
+     * Returns the font whose metrics these are.
+     *
+     * @return the font, or null if it is no longer referenced.
+     */
+    public IFont getFont()
+    {
+        return font.get();
+    }
+
+    /**
+     * Returns the horizontal distance from a character to the next.
+     *
+     * @param codePoint
+     *
+     * @return the advance in pixels; 0 if the font has no glyph for it.
+     */
+    public float getAdvance(final int codePoint)
+    {
+        final float advance = page(codePoint).advances[codePoint & PAGE_MASK];
+        return (advance != MISSING) ? advance : 0f;
+    }
+
+    /**
+     * Returns true if the font has a glyph for a character.
+     *
+     * @param codePoint
+     *
+     * @return
+     */
+    public boolean hasGlyph(final int codePoint)
+    {
+        return page(codePoint).advances[codePoint & PAGE_MASK] != MISSING;
+    }
+
+    /**
+     * Returns the distance from the pen position to the left edge of a
+     * character's pixels.
+     *
+     * @param codePoint
+     *
+     * @return the bearing in pixels; 0 if unknown.
+     */
+    public float getLeftBearing(final int codePoint)
+    {
+        if (!bearings)
+        {
+            return 0f;
+        }
+        final Page page = page(codePoint);
+        final int i = codePoint & PAGE_MASK;
+        return (page.advances[i] != MISSING) ? page.leftBearings[i] : 0f;
+    }
+
+    /**
+     * Returns the distance from the right edge of a character's pixels to
+     * the next pen position.
+     *
+     * @param codePoint
+     *
+     * @return the bearing in pixels; 0 if unknown.
+     */
+    public float getRightBearing(final int codePoint)
+    {
+        if (!bearings)
+        {
+            return 0f;
+        }
+        final Page page = page(codePoint);
+        final int i = codePoint & PAGE_MASK;
+        return (page.advances[i] != MISSING) ? page.rightBearings[i] : 0f;
+    }
+
+    /**
+     * Returns true if the font kerns any pair of characters.
+     *
+     * @return
+     */
+    public boolean hasKerning()
+    {
+        return kerning != null;
+    }
+
+    /**
+     * Returns the kerning between two characters, to be added to the advance
+     * of the left one.
+     *
+     * @param left
+     * @param right
+     *
+     * @return the kerning in pixels; 0 if the pair is not kerned.
+     */
+    public float getKerning(final int left, final int right)
+    {
+        return (kerning != null) ? kerning.get(left, right) : 0f;
+    }
+
+    /**
+     * Returns the width of a text as the text components lay it out: the sum
+     * of the advances of the widest of its lines.
+     *
+     * @param text
+     *
+     * @return the width in pixels.
+     */
+    public float measure(final CharSequence text)
+    {
+        return measure(text, 0, text.length(), false);
+    }
+
+    /**
+     * Returns the width of a range of a text. See
+     * {@link #measure(CharSequence)}.
+     *
+     * @param text
+     * @param start
+     *              index of the first character.
+     * @param end
+     *              index after the last character.
+     *
+     * @return the width in pixels.
+     */
+    public float measure(final CharSequence text, final int start, final int end)
+    {
+        return measure(text, start, end, false);
+    }
+
+    /**
+     * Returns the width of a text with the font's kerning applied, for
+     * layouts that kern.
+     *
+     * @param text
+     *
+     * @return the width in pixels.
+     */
+    public float measureKerned(final CharSequence text)
+    {
+        return measure(text, 0, text.length(), kerning != null);
+    }
+
+    private float measure(final CharSequence text, final int start, final int end, final boolean kerned)
+    {
+        float maxWidth = 0f;
+        float width = 0f;
+        int previous = -1;
+        int i = start;
+        while (i < end)
+        {
+            final char c = text.charAt(i++);
+            int codePoint = c;
+            if (Character.isHighSurrogate(c) && (i < end) && Character.isLowSurrogate(text.charAt(i)))
+            {
+                codePoint = Character.toCodePoint(c, text.charAt(i++));
+            }
+            if (codePoint == '\n')
+            {
+                maxWidth = Math.max(maxWidth, width);
+                width = 0f;
+                previous = -1;
+                continue;
+            }
+            width += getAdvance(codePoint);
+            if (kerned && (previous >= 0))
+            {
+                width += kerning.get(previous, codePoint);
+            }
+            previous = codePoint;
+        }
+        return Math.max(maxWidth, width);
+    }
+
+    // Returns the page of a code point, with the code point looked up.
+    private Page page(final int codePoint)
+    {
+        final Page page = pages.get(codePoint >> PAGE_BITS);
+        if (page != null)
+        {
+            final float advance = page.advances[codePoint & PAGE_MASK];
+            if (advance == advance)
+            {
+                return page;
+            }
+        }
+        return lookUp(codePoint);
+    }
+
+    // Looks up a code point in the font, the first time it is measured, and
+    // publishes a copy of its page with the code point filled in.
+    private synchronized Page lookUp(final int codePoint)
+    {
+        final int p = codePoint >> PAGE_BITS;
+        final int i = codePoint & PAGE_MASK;
+        final Page page = pages.get(p);
+        if ((page != null) && (page.advances[i] == page.advances[i]))
+        {
+            return page;
+        }
+
+        final IFont f = font.get();
+        if (f == null)
+        {
+            // Not published: the font is gone and the table with it.
+            return new Page(page, bearings, i, MISSING, 0f, 0f);
+        }
+        final String unicode = new String(Character.toChars(codePoint));
+        final IFontCharacter character = f.getFontCharacterByUnicode(unicode);
+        final Page filled;
+        if (character == null)
+        {
+            filled = new Page(page, bearings, i, MISSING, 0f, 0f);
+        }
+        else if (bearings)
+        {
+            filled = new Page(page, bearings, i, character.getHorizontalDist(),
+                    ((AtlasFont) f).getLeftBearing(unicode), ((AtlasFont) f).getRightBearing(unicode));
+        }
+        else
+        {
+            filled = new Page(page, bearings, i, character.getHorizontalDist(), 0f, 0f);
+        }
+        pages.set(p, filled);
+        return filled;
+    }
+
+    /**
+     * The metrics of 256 code points. Never changed once published.
+     */
+    private static final class Page
+    {
+
+        final float[] advances;
+
+        // Null unless the table has bearings.
+        final float[] leftBearings, rightBearings;
+
+        // Copies a page, or starts one if it is null, with one code point filled in.
+        Page(final Page page, final boolean bearings, final int i, final float advance, final float left,
+                final float right)
+        {
+            if (page != null)
+            {
+                advances = page.advances.clone();
+                leftBearings = bearings ? page.leftBearings.clone() : null;
+                rightBearings = bearings ? page.rightBearings.clone() : null;
+            }
+            else
+            {
+                advances = new float[PAGE_SIZE];
+                Arrays.fill(advances, UNKNOWN);
+                leftBearings = bearings ? new float[PAGE_SIZE] : null;
+                rightBearings = bearings ? new float[PAGE_SIZE] : null;
+            }
+            advances[i] = advance;
+            if (bearings)
+            {
+                leftBearings[i] = left;
+                rightBearings[i] = right;
+            }
+        }
+    }
+
+    /**
+     * Hash table from pairs of code points to kerning values, with linear
+     * probing in primitive arrays.
+     */
+    private static final class KerningMap
+    {
+
+        // Marks an empty slot. Not a valid pair: code points are at most 21 bits.
+        private static final long EMPTY = -1L;
+
+        private final long[] keys;
+
+        private final float[] values;
+
+        private final int mask;
+
+        KerningMap(final int expected)
+        {
+            // At most half full.
+            final int capacity = Integer.highestOneBit(Math.max(2, expected) * 2) << 1;
+            keys = new long[capacity];
+            values = new float[capacity];
+            mask = capacity - 1;
+            Arrays.fill(keys, EMPTY);
+        }
+
+        void put(final int left, final int right, final float value)
+        {
+            final long key = key(left, right);
+            int slot = slot(key);
+            while ((keys[slot] != EMPTY) && (keys[slot] != key))
+            {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = key;
+            values[slot] = value;
+        }
+
+        float get(final int left, final int right)
+        {
+            final long key = key(left, right);
+            int slot = slot(key);
+            long k;
+            while ((k = keys[slot]) != EMPTY)
+            {
+                if (k == key)
+                {
+                    return values[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            return 0f;
+        }
+
+        private static long key(final int left, final int right)
+        {
+            return ((long) left << 32) | (right & 0xffffffffL);
+        }
+
+        private int slot(final long key)
+        {
+            // Mix the bits, so that pairs sharing a left character spread out.
+            long h = key * 0x9E3779B97F4A7C15L;
+            h ^= h >>> 32;
+            return (int) h & mask;
+        }
+    }
+}
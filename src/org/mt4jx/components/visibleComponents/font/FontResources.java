@@ -0,0 +1,174 @@
+/**
+ * This material was prepared as an account of work sponsored by an agency of the United States Government.<br>
+ * Neither the United States Government nor the United States Department of Energy, nor any of their employees,<br>
+ * nor any of their contractors, subcontractors or their employees, makes any warranty, express or implied, or<br>
+ * assumes any legal liability or responsibility for the accuracy, completeness, or usefulness or any information,<br>
+ * apparatus, product, or process disclosed, or represents that its use would not infringe privately owned rights.
+ */
+package org.mt4jx.components.visibleComponents.font;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.mt4j.util.logging.ILogger;
+import org.mt4j.util.logging.MTLoggerFactory;
+
+/**
+ * <p>
+ * Extracts fonts stored as class path resources to files, since the font
+ * factories load fonts from files. A resource is extracted to a file named
+ * after a hash of its content, in a directory kept between runs, so that
+ * the file written by the first run is found and used as is by every run
+ * after it, and a changed resource never reuses a stale file.
+ * </p>
+ */
+final class FontResources
+{
+
+    private static final ILogger LOG = MTLoggerFactory.getLogger(FontResources.class.getName());
+
+    static {
+        LOG.setLevel(ILogger.ERROR);
+    }
+
+    // Hex digits of the content hash in file names.
+    private static final int HASH_DIGITS = 16;
+
+    private FontResources()
+    {
+    }
+
+    /**
+     * Returns a file holding the content of a font resource, extracting it
+     * unless a previous run already has.
+     *
+     * @param resourcePath
+     *                     path of the resource, for the context class loader.
+     * @param directory
+     *                     the directory to extract to, or null to extract to
+     *                     a temporary file deleted on exit.
+     *
+     * @return the file, or null if there is no such resource.
+     *
+     * @throws IOException
+     */
+    static File extract(final String resourcePath, final File directory) throws IOException
+    {
+        final InputStream in = Thread.currentThread().getContextClassLoader().getResourceAsStream(resourcePath);
+        if (in == null)
+        {
+            return null;
+        }
+        final ByteBuffer data;
+        try
+        {
+            data = read(Channels.newChannel(in));
+        } finally
+        {
+            in.close();
+        }
+
+        String name = resourcePath.substring(resourcePath.lastIndexOf('/') + 1);
+        final int n = name.lastIndexOf('.');
+        final String suffix = (n >= 0) ? name.substring(n) : "";
+        name = (n >= 0) ? name.substring(0, n) : name;
+
+        if (directory != null)
+        {
+            final File file = new File(directory, name + "-" + hash(data) + suffix);
+            if (file.isFile() && (file.length() == data.remaining()))
+            {
+                return file;
+            }
+            if (directory.isDirectory() || directory.mkdirs())
+            {
+                // Write to a temporary file first, so no run ever finds a partial font. Another
+                // process extracting the same resource at the same time writes the same bytes.
+                final File tmpFile = File.createTempFile(name, ".tmp", directory);
+                try
+                {
+                    write(tmpFile, data.duplicate());
+                    if (tmpFile.renameTo(file) || (file.isFile() && (file.length() == data.remaining())))
+                    {
+                        return file;
+                    }
+                } finally
+                {
+                    tmpFile.delete();
+                }
+            }
+            LOG.warn("Could not extract font resource " + resourcePath + " to " + directory);
+        }
+
+        final File tempFile = File.createTempFile("tmpfont", suffix);
+        tempFile.deleteOnExit();
+        write(tempFile, data);
+        return tempFile;
+    }
+
+    // Reads a channel to its end.
+    //
+    private static ByteBuffer read(final ReadableByteChannel channel) throws IOException
+    {
+        ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        while (channel.read(buffer) >= 0)
+        {
+            if (!buffer.hasRemaining())
+            {
+                final ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() * 2);
+                buffer.flip();
+                larger.put(buffer);
+                buffer = larger;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+
+    private static void write(final File file, final ByteBuffer data) throws IOException
+    {
+        final FileOutputStream out = new FileOutputStream(file);
+        try
+        {
+            final FileChannel channel = out.getChannel();
+            while (data.hasRemaining())
+            {
+                channel.write(data);
+            }
+        } finally
+        {
+            out.close();
+        }
+    }
+
+    // Returns the first hex digits of the SHA-1 hash of the data.
+    //
+    private static String hash(final ByteBuffer data)
+    {
+        final MessageDigest digest;
+        try
+        {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (final NoSuchAlgorithmException e)
+        {
+            // Every Java platform provides SHA-1.
+            throw new IllegalStateException(e);
+        }
+        digest.update(data.duplicate());
+        final byte[] bytes = digest.digest();
+        final StringBuilder sb = new StringBuilder(HASH_DIGITS);
+        for (int i = 0; i < HASH_DIGITS / 2; i++)
+        {
+            sb.append(Character.forDigit((bytes[i] >> 4) & 0xf, 16)).append(Character.forDigit(bytes[i] & 0xf, 16));
+        }
+        return sb.toString();
+    }
+}
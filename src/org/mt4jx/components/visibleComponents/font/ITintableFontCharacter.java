@@ -0,0 +1,45 @@
+/**
+ * This material was prepared as an account of work sponsored by an agency of the United States Government.<br>
+ * Neither the United States Government nor the United States Department of Energy, nor any of their employees,<br>
+ * nor any of their contractors, subcontractors or their employees, makes any warranty, express or implied, or<br>
+ * assumes any legal liability or responsibility for the accuracy, completeness, or usefulness or any information,<br>
+ * apparatus, product, or process disclosed, or represents that its use would not infringe privately owned rights.
+ */
+package org.mt4jx.components.visibleComponents.font;
+
+import org.mt4j.util.font.IFont;
+import org.mt4j.util.font.IFontCharacter;
+import org.mt4j.util.opengl.GL10;
+
+import processing.core.PGraphics;
+
+/**
+ * <p>
+ * A color-neutral glyph, shared by every view of a cached font, which can be
+ * drawn in the fill color of a view rather than that of the font it belongs
+ * to.
+ * </p>
+ */
+public interface ITintableFontCharacter extends IFontCharacter
+{
+
+    /**
+     * Draws the glyph with OpenGL. Outside a batch of its font, the batch the
+     * glyph sets up itself uses the fill color of the specified font.
+     *
+     * @param gl
+     * @param font
+     *                 the font, or view of it, whose fill color to draw in.
+     */
+    void drawComponent(GL10 gl, IFont font);
+
+    /**
+     * Draws the glyph through processing in the fill color of the specified
+     * font.
+     *
+     * @param g
+     * @param font
+     *                 the font, or view of it, whose fill color to draw in.
+     */
+    void drawComponent(PGraphics g, IFont font);
+}
@@ -0,0 +1,281 @@
+/**
+ * This material was prepared as an account of work sponsored by an agency of the United States Government.<br>
+ * Neither the United States Government nor the United States Department of Energy, nor any of their employees,<br>
+ * nor any of their contractors, subcontractors or their employees, makes any warranty, express or implied, or<br>
+ * assumes any legal liability or responsibility for the accuracy, completeness, or usefulness or any information,<br>
+ * apparatus, product, or process disclosed, or represents that its use would not infringe privately owned rights.
+ */
+package org.mt4jx.components.visibleComponents.font;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.mt4j.util.logging.ILogger;
+import org.mt4j.util.logging.MTLoggerFactory;
+
+/**
+ * <p>
+ * Finds the directories in which the operating system keeps fonts, for the
+ * default font path. Font discovery does not descend into subdirectories, and
+ * Linux distributions keep their fonts in a tree of them, one per package.
+ * Rather than walk that tree, the directories are taken from the cache files
+ * <tt>fc-cache</tt> maintains, one per directory of fonts. The tree is only
+ * walked where there are no such caches.
+ * </p>
+ */
+final class SystemFontDirectories
+{
+
+    private static final ILogger LOG = MTLoggerFactory.getLogger(SystemFontDirectories.class.getName());
+
+    static {
+        LOG.setLevel(ILogger.ERROR);
+    }
+
+    // Identifies a fontconfig cache file, mapped or allocated.
+    private static final int FC_CACHE_MAGIC_MMAP = 0xFC02FC04;
+
+    private static final int FC_CACHE_MAGIC_ALLOC = 0xFC02FC05;
+
+    // Bytes of the cache header read: enough for its fields on 64-bit systems.
+    private static final int HEADER_SIZE = 48;
+
+    // How deep the font directories are walked where there are no caches.
+    private static final int MAX_DEPTH = 4;
+
+    private SystemFontDirectories()
+    {
+    }
+
+    /**
+     * Returns the font directories of a Linux system, or of another Unix
+     * system using fontconfig.
+     *
+     * @return the directories, in order.
+     */
+    static List<String> linux()
+    {
+        final String home = System.getProperty("user.home");
+        String cacheHome = System.getenv("XDG_CACHE_HOME");
+        if ((cacheHome == null) || (cacheHome.length() == 0))
+        {
+            cacheHome = home + "/.cache";
+        }
+        String dataHome = System.getenv("XDG_DATA_HOME");
+        if ((dataHome == null) || (dataHome.length() == 0))
+        {
+            dataHome = home + "/.local/share";
+        }
+
+        final List<String> dirs = readFontconfigCaches(new String[] { "/var/cache/fontconfig",
+                cacheHome + "/fontconfig", home + "/.fontconfig" });
+        if (dirs.isEmpty())
+        {
+            final String[] roots = { "/usr/share/fonts", "/usr/local/share/fonts", dataHome + "/fonts",
+                    home + "/.fonts" };
+            for (final String root : roots)
+            {
+                addTree(dirs, new File(root), MAX_DEPTH);
+            }
+        }
+        return dirs;
+    }
+
+    /**
+     * Returns the font directories of a Mac OS X system.
+     *
+     * @return the directories, in order.
+     */
+    static List<String> macOS()
+    {
+        final String[] candidates = { "/System/Library/Fonts", "/System/Library/Fonts/Supplemental",
+                "/Library/Fonts", System.getProperty("user.home") + "/Library/Fonts" };
+        final List<String> dirs = new ArrayList<String>();
+        for (final String dir : candidates)
+        {
+            if (new File(dir).isDirectory())
+            {
+                dirs.add(dir);
+            }
+        }
+        return dirs;
+    }
+
+    // Adds a directory and its subdirectories down to the specified depth.
+    //
+    private static void addTree(final List<String> dirs, final File dir, final int depth)
+    {
+        final File[] children = dir.listFiles();
+        if (children == null)
+        {
+            return;
+        }
+        dirs.add(dir.getPath());
+        if (depth > 0)
+        {
+            for (final File child : children)
+            {
+                if (child.isDirectory())
+                {
+                    addTree(dirs, child, depth - 1);
+                }
+            }
+        }
+    }
+
+    // Returns the existing directories with fonts in them named by the cache files in the
+    // specified cache directories, sorted.
+    //
+    private static List<String> readFontconfigCaches(final String[] cacheDirs)
+    {
+        final Set<String> dirs = new TreeSet<String>();
+        for (final String cacheDir : cacheDirs)
+        {
+            final File[] cacheFiles = new File(cacheDir).listFiles();
+            if (cacheFiles == null)
+            {
+                continue;
+            }
+            for (final File cacheFile : cacheFiles)
+            {
+                if (!cacheFile.getName().contains(".cache-"))
+                {
+                    continue;
+                }
+                try
+                {
+                    final String dir = readFontconfigCache(cacheFile);
+                    if ((dir != null) && new File(dir).isDirectory())
+                    {
+                        dirs.add(dir);
+                    }
+                } catch (final IOException e)
+                {
+                    LOG.warn("Could not read fontconfig cache " + cacheFile + ": " + e);
+                }
+            }
+        }
+        return new ArrayList<String>(dirs);
+    }
+
+    /**
+     * Returns the directory a fontconfig cache file describes, if it has
+     * fonts in it. A cache file starts with a header holding the offsets of
+     * the directory name and of the set of fonts, pointer-sized, in the byte
+     * order of the system that wrote it:
+     *
+     * <pre>
+     *   int magic, version;
+     *   intptr_t size, dir, dirs;
+     *   int dirs_count;
+     *   intptr_t set;
+     * </pre>
+     *
+     * The set of fonts starts with the number of fonts.
+     *
+     * @param cacheFile
+     *
+     * @return the directory, or null if the file is not a cache or the
+     *         directory has no fonts.
+     *
+     * @throws IOException
+     */
+    static String readFontconfigCache(final File cacheFile) throws IOException
+    {
+        final RandomAccessFile raf = new RandomAccessFile(cacheFile, "r");
+        try
+        {
+            final FileChannel channel = raf.getChannel();
+            final long length = channel.size();
+            final ByteBuffer header = read(channel, 0, HEADER_SIZE);
+            if (header == null)
+            {
+                return null;
+            }
+
+            header.order(ByteOrder.BIG_ENDIAN);
+            int magic = header.getInt(0);
+            if ((magic != FC_CACHE_MAGIC_MMAP) && (magic != FC_CACHE_MAGIC_ALLOC))
+            {
+                header.order(ByteOrder.LITTLE_ENDIAN);
+                magic = header.getInt(0);
+                if ((magic != FC_CACHE_MAGIC_MMAP) && (magic != FC_CACHE_MAGIC_ALLOC))
+                {
+                    return null;
+                }
+            }
+
+            // The size field tells whether pointers are 8 or 4 bytes wide.
+            final long dir, set;
+            if (header.getLong(8) == length)
+            {
+                dir = header.getLong(16);
+                set = header.getLong(40);
+            } else if (header.getInt(8) == length)
+            {
+                dir = header.getInt(12);
+                set = header.getInt(24);
+            } else
+            {
+                return null;
+            }
+            if ((dir <= 0) || (dir >= length) || (set <= 0) || (set + 4 > length))
+            {
+                return null;
+            }
+
+            final ByteBuffer fontCount = read(channel, set, 4);
+            if ((fontCount == null) || (fontCount.order(header.order()).getInt(0) <= 0))
+            {
+                return null;
+            }
+
+            // The directory name is a null-terminated string in the file system's encoding.
+            final ByteBuffer name = read(channel, dir, (int) Math.min(length - dir, 4096));
+            if (name == null)
+            {
+                return null;
+            }
+            int end = 0;
+            while ((end < name.limit()) && (name.get(end) != 0))
+            {
+                end++;
+            }
+            if ((end == 0) || (end == name.limit()))
+            {
+                return null;
+            }
+            final byte[] bytes = new byte[end];
+            name.get(bytes);
+            return new String(bytes);
+        } finally
+        {
+            raf.close();
+        }
+    }
+
+    // Reads the specified bytes of a file. Returns null if the file is shorter.
+    //
+    private static ByteBuffer read(final FileChannel channel, final long position, final int size)
+            throws IOException
+    {
+        final ByteBuffer buffer = ByteBuffer.allocate(size);
+        while (buffer.hasRemaining())
+        {
+            if (channel.read(buffer, position + buffer.position()) < 0)
+            {
+                return null;
+            }
+        }
+        buffer.flip();
+        return buffer;
+    }
+}
@@ -0,0 +1,226 @@
+/**
+ * This material was prepared as an account of work sponsored by an agency of the United States Government.<br>
+ * Neither the United States Government nor the United States Department of Energy, nor any of their employees,<br>
+ * nor any of their contractors, subcontractors or their employees, makes any warranty, express or implied, or<br>
+ * assumes any legal liability or responsibility for the accuracy, completeness, or usefulness or any information,<br>
+ * apparatus, product, or process disclosed, or represents that its use would not infringe privately owned rights.
+ */
+package org.mt4jx.components.visibleComponents.font;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import org.mt4j.util.MTColor;
+import org.mt4j.util.font.IFont;
+import org.mt4j.util.font.IFontCharacter;
+import org.mt4j.util.opengl.GL10;
+
+import processing.core.PGraphics;
+
+/**
+ * <p>
+ * A fill color applied to a cached font whose glyphs are color-neutral. The
+ * view owns nothing but the color: glyphs are shared with the cached font and
+ * every other view of it, and are tinted when a text component draws them
+ * between <code>beginBatchRenderGL</code> and <code>endBatchRenderGL</code>.
+ * Glyphs drawn on their own or through processing are handed out wrapped,
+ * so that they too are drawn in the view's color. Changing the color of a
+ * view therefore never affects other components.
+ * </p>
+ */
+class TintedFont implements IFont
+{
+
+    private final IFont font;
+
+    private MTColor fillColor;
+
+    // Wrappers of the shared glyphs drawing in this view's color, created on first use.
+    private final Map<IFontCharacter, IFontCharacter> characters = new IdentityHashMap<IFontCharacter, IFontCharacter>();
+
+    /**
+     * Constructor.
+     *
+     * @param font
+     *                  the shared, cached font.
+     * @param fillColor
+     */
+    TintedFont(final IFont font, final MTColor fillColor)
+    {
+        this.font = font;
+        this.fillColor = (fillColor != null) ? fillColor : font.getFillColor();
+    }
+
+    /**
+     * Returns the shared font this is a view of.
+     *
+     * @return
+     */
+    IFont getFont()
+    {
+        return font;
+    }
+
+    public IFontCharacter[] getCharacters(final String text)
+    {
+        final IFontCharacter[] shared = font.getCharacters(text);
+        if (shared == null)
+        {
+            return null;
+        }
+        final IFontCharacter[] result = new IFontCharacter[shared.length];
+        synchronized (characters)
+        {
+            for (int i = 0; i < shared.length; i++)
+            {
+                result[i] = wrap(shared[i]);
+            }
+        }
+        return result;
+    }
+
+    public IFontCharacter getFontCharacterByUnicode(final String unicode)
+    {
+        final IFontCharacter shared = font.getFontCharacterByUnicode(unicode);
+        synchronized (characters)
+        {
+            return wrap(shared);
+        }
+    }
+
+    // Called with the wrappers locked.
+    private IFontCharacter wrap(final IFontCharacter shared)
+    {
+        if (!(shared instanceof ITintableFontCharacter))
+        {
+            return shared;
+        }
+        IFontCharacter character = characters.get(shared);
+        if (character == null)
+        {
+            character = new TintedCharacter((ITintableFontCharacter) shared);
+            characters.put(shared, character);
+        }
+        return character;
+    }
+
+    public String getFontFamily()
+    {
+        return font.getFontFamily();
+    }
+
+    public int getOriginalFontSize()
+    {
+        return font.getOriginalFontSize();
+    }
+
+    public int getFontMaxAscent()
+    {
+        return font.getFontMaxAscent();
+    }
+
+    public int getFontMaxDescent()
+    {
+        return font.getFontMaxDescent();
+    }
+
+    public int getFontAbsoluteHeight()
+    {
+        return font.getFontAbsoluteHeight();
+    }
+
+    public int getUnitsPerEM()
+    {
+        return font.getUnitsPerEM();
+    }
+
+    public String getFontFileName()
+    {
+        return font.getFontFileName();
+    }
+
+    public MTColor getFillColor()
+    {
+        return fillColor;
+    }
+
+    public void setFillColor(final MTColor color)
+    {
+        this.fillColor = color;
+    }
+
+    public boolean isAntiAliased()
+    {
+        return font.isAntiAliased();
+    }
+
+    /**
+     * Sets up the shared font's batch with this view's color.
+     */
+    public void beginBatchRenderGL(final GL10 gl, final IFont f)
+    {
+        EnhancedFontManager.getInstance().noteRenderingThread();
+        font.beginBatchRenderGL(gl, (f != null) ? f : this);
+    }
+
+    public void endBatchRenderGL(final GL10 gl, final IFont f)
+    {
+        font.endBatchRenderGL(gl, (f != null) ? f : this);
+    }
+
+    public boolean isEqual(final IFont f)
+    {
+        return font.isEqual((f instanceof TintedFont) ? ((TintedFont) f).font : f);
+    }
+
+    /**
+     * Does nothing: the glyphs belong to the cached font, which is destroyed
+     * once it is evicted from the cache and no view of it is left.
+     */
+    public void destroy()
+    {
+    }
+
+    /**
+     * A shared glyph drawn in the color of the view it was obtained from.
+     */
+    private class TintedCharacter implements IFontCharacter
+    {
+
+        private final ITintableFontCharacter character;
+
+        TintedCharacter(final ITintableFontCharacter character)
+        {
+            this.character = character;
+        }
+
+        public String getUnicode()
+        {
+            return character.getUnicode();
+        }
+
+        public int getHorizontalDist()
+        {
+            return character.getHorizontalDist();
+        }
+
+        public void drawComponent(final GL10 gl)
+        {
+            EnhancedFontManager.getInstance().noteRenderingThread();
+            character.drawComponent(gl, TintedFont.this);
+        }
+
+        public void drawComponent(final PGraphics g)
+        {
+            EnhancedFontManager.getInstance().noteRenderingThread();
+            character.drawComponent(g, TintedFont.this);
+        }
+
+        /**
+         * Does nothing: the glyph belongs to the cached font.
+         */
+        public void destroy()
+        {
+        }
+    }
+}
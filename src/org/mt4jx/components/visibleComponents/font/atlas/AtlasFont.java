@@ -0,0 +1,489 @@
+/**
+ * This material was prepared as an account of work sponsored by an agency of the United States Government.<br>
+ * Neither the United States Government nor the United States Department of Energy, nor any of their employees,<br>
+ * nor any of their contractors, subcontractors or their employees, makes any warranty, express or implied, or<br>
+ * assumes any legal liability or responsibility for the accuracy, completeness, or usefulness or any information,<br>
+ * apparatus, product, or process disclosed, or represents that its use would not infringe privately owned rights.
+ */
+package org.mt4jx.components.visibleComponents.font.atlas;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.RenderingHints;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.mt4j.util.MTColor;
+import org.mt4j.util.font.IFont;
+import org.mt4j.util.font.IFontCharacter;
+import org.mt4j.util.opengl.GL10;
+import org.mt4jx.components.visibleComponents.font.EnhancedFontManager;
+
+/**
+ * <p>
+ * Bitmap font whose glyphs live in a {@link GlyphAtlas} instead of a texture
+ * each. The glyphs are rasterized by AWT into color-neutral coverage masks,
+ * and tinted with the fill color when drawn.
+ * </p>
+ * <p>
+ * Fonts are built with {@link #create(Font, String, String, MTColor, boolean, GlyphAtlas)},
+ * which only touches the CPU copy of the atlas and may be called on any thread.
+ * The glyphs are uploaded the first time they are drawn.
+ * </p>
+ * <p>
+ * Glyphs are rasterized on demand: the first time the font is asked for a
+ * character it does not have, it rasterizes the whole Unicode block of that
+ * character (see {@link UnicodeBlocks}). A label of a few characters thus
+ * costs a block or two of glyphs, and fonts covering tens of thousands of
+ * characters only ever rasterize those displayed.
+ * </p>
+ */
+public class AtlasFont implements IFont
+{
+
+    /**
+     * The characters rasterized by default: printable ASCII and Latin-1.
+     */
+    public static final String DEFAULT_CHARACTERS;
+
+    static
+    {
+        final StringBuilder sb = new StringBuilder();
+        for (char c = ' '; c < 127; c++)
+        {
+            sb.append(c);
+        }
+        for (char c = '\u00a0'; c <= '\u00ff'; c++)
+        {
+            sb.append(c);
+        }
+        sb.append('\u20ac');
+        DEFAULT_CHARACTERS = sb.toString();
+    }
+
+    // Number of spaces a tab advances.
+    private static final int TAB_SPACES = 4;
+
+    private final String fontFileName;
+
+    private final String fontFamily;
+
+    private final int fontSize;
+
+    private final int maxAscent, maxDescent;
+
+    private final boolean antiAliased;
+
+    private MTColor fillColor;
+
+    private final GlyphAtlas atlas;
+
+    private final Map<String, AtlasFontCharacter> characters;
+
+    private final List<GlyphAtlas.Region> regions;
+
+    private long glyphBytes;
+
+    // The font glyphs are rasterized from, derived to the size, or null if they are not rasterized by this class.
+    private final Font awtFont;
+
+    private final FontRenderContext frc;
+
+    // First code points of the ranges already rasterized.
+    private final Set<Integer> loadedRanges;
+
+    // Set between beginBatchRenderGL() and endBatchRenderGL().
+    private boolean batching;
+
+    private boolean destroyed;
+
+    AtlasFont(final String fontFileName, final String fontFamily, final int fontSize, final int maxAscent,
+            final int maxDescent, final MTColor fillColor, final boolean antiAliased, final GlyphAtlas atlas,
+            final Map<String, AtlasFontCharacter> characters, final List<GlyphAtlas.Region> regions, final long glyphBytes)
+    {
+        this(fontFileName, fontFamily, fontSize, maxAscent, maxDescent, fillColor, antiAliased, atlas, characters,
+                regions, glyphBytes, null, null);
+    }
+
+    private AtlasFont(final String fontFileName, final String fontFamily, final int fontSize, final int maxAscent,
+            final int maxDescent, final MTColor fillColor, final boolean antiAliased, final GlyphAtlas atlas,
+            final Map<String, AtlasFontCharacter> characters, final List<GlyphAtlas.Region> regions,
+            final long glyphBytes, final Font awtFont, final FontRenderContext frc)
+    {
+        this.fontFileName = fontFileName;
+        this.fontFamily = fontFamily;
+        this.fontSize = fontSize;
+        this.maxAscent = maxAscent;
+        this.maxDescent = maxDescent;
+        this.fillColor = fillColor;
+        this.antiAliased = antiAliased;
+        this.atlas = atlas;
+        this.characters = characters;
+        this.regions = regions;
+        this.glyphBytes = glyphBytes;
+        this.awtFont = awtFont;
+        this.frc = frc;
+        this.loadedRanges = new HashSet<Integer>();
+        for (final AtlasFontCharacter character : characters.values())
+        {
+            character.setFont(this);
+        }
+    }
+
+    /**
+     * Creates a font rasterizing the glyphs of an AWT font into the atlas.
+     * The specified characters are rasterized right away, the others when
+     * first asked for. Characters the font cannot display are skipped. May be
+     * called on any thread.
+     *
+     * @param awtFont
+     *                     the font, already derived to the wanted size.
+     * @param fontFileName
+     *                     the file or system name the font was created from.
+     * @param chars
+     *                     the characters to rasterize right away, or null for
+     *                     none.
+     * @param fillColor
+     * @param antiAliased
+     * @param atlas
+     *
+     * @return the font.
+     */
+    public static AtlasFont create(final Font awtFont, final String fontFileName, final String chars,
+            final MTColor fillColor, final boolean antiAliased, final GlyphAtlas atlas)
+    {
+        final BufferedImage scratch = new BufferedImage(1, 1, BufferedImage.TYPE_BYTE_GRAY);
+        final Graphics2D sg = scratch.createGraphics();
+        setHints(sg, antiAliased);
+        final FontRenderContext frc = sg.getFontRenderContext();
+        final FontMetrics metrics = sg.getFontMetrics(awtFont);
+        sg.dispose();
+
+        final int maxAscent = metrics.getMaxAscent();
+        final int maxDescent = metrics.getMaxDescent();
+
+        final Map<String, AtlasFontCharacter> characters = new HashMap<String, AtlasFontCharacter>();
+        final float space = awtFont.createGlyphVector(frc, " ").getGlyphMetrics(0).getAdvanceX();
+        final int spaceAdvance = (space > 0) ? Math.round(space) : Math.max(1, awtFont.getSize() / 3);
+        characters.put("\n", new AtlasFontCharacter("\n", 0, 0, 0, null, atlas));
+        characters.put("\t", new AtlasFontCharacter("\t", TAB_SPACES * spaceAdvance, 0, 0, null, atlas));
+
+        final AtlasFont font = new AtlasFont(fontFileName, awtFont.getFamily(), awtFont.getSize(), maxAscent,
+                maxDescent, fillColor != null ? fillColor : new MTColor(0, 0, 0, 255), antiAliased, atlas, characters,
+                new ArrayList<GlyphAtlas.Region>(), 0, awtFont, frc);
+        if (chars != null)
+        {
+            synchronized (font)
+            {
+                for (int i = 0; i < chars.length(); i += Character.charCount(chars.codePointAt(i)))
+                {
+                    font.rasterize(chars.codePointAt(i));
+                }
+            }
+        }
+        return font;
+    }
+
+    // Rasterizes the range of a code point, unless already done. Returns false if nothing was rasterized.
+    // Must be called with the lock held.
+    //
+    private boolean rasterizeRange(final int codePoint)
+    {
+        if ((awtFont == null) || destroyed)
+        {
+            return false;
+        }
+        final int start = UnicodeBlocks.rangeStart(codePoint);
+        if (!loadedRanges.add(Integer.valueOf(start)))
+        {
+            return false;
+        }
+        final int end = UnicodeBlocks.rangeEnd(codePoint);
+        for (int c = start; c < end; c++)
+        {
+            rasterize(c);
+        }
+        return true;
+    }
+
+    // Rasterizes a glyph into the atlas, if the font can display it. Must be called with the lock held.
+    //
+    private void rasterize(final int codePoint)
+    {
+        final String unicode = new String(Character.toChars(codePoint));
+        if (characters.containsKey(unicode) || !awtFont.canDisplay(codePoint) || Character.isISOControl(codePoint))
+        {
+            return;
+        }
+
+        final GlyphVector gv = awtFont.createGlyphVector(frc, unicode);
+        final int advance = Math.round(gv.getGlyphMetrics(0).getAdvanceX());
+        final Rectangle bounds = gv.getPixelBounds(frc, 0f, 0f);
+
+        GlyphAtlas.Region region = null;
+        if ((bounds.width > 0) && (bounds.height > 0))
+        {
+            final BufferedImage image = new BufferedImage(bounds.width, bounds.height, BufferedImage.TYPE_BYTE_GRAY);
+            final Graphics2D g = image.createGraphics();
+            setHints(g, antiAliased);
+            g.setColor(Color.WHITE);
+            g.drawGlyphVector(gv, -bounds.x, -bounds.y);
+            g.dispose();
+            final byte[] coverage = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+            region = atlas.allocate(bounds.width, bounds.height, coverage);
+            if (region != null)
+            {
+                regions.add(region);
+                glyphBytes += (long) bounds.width * bounds.height;
+            }
+        }
+
+        // The glyph is placed relative to the top of the line, whose baseline is at maxAscent.
+        final AtlasFontCharacter character = new AtlasFontCharacter(unicode, advance, bounds.x, maxAscent + bounds.y,
+                region, atlas);
+        character.setFont(this);
+        characters.put(unicode, character);
+    }
+
+    private static void setHints(final Graphics2D g, final boolean antiAliased)
+    {
+        g.setRenderingHint(RenderingHints.KEY_TEXT_ANTIALIASING, antiAliased
+                ? RenderingHints.VALUE_TEXT_ANTIALIAS_ON : RenderingHints.VALUE_TEXT_ANTIALIAS_OFF);
+        g.setRenderingHint(RenderingHints.KEY_FRACTIONALMETRICS, RenderingHints.VALUE_FRACTIONALMETRICS_ON);
+    }
+
+    /**
+     * Returns the atlas holding the glyphs of this font.
+     *
+     * @return
+     */
+    public GlyphAtlas getAtlas()
+    {
+        return atlas;
+    }
+
+    /**
+     * Returns the number of texels this font's glyphs take in the atlas. It
+     * grows as glyphs are rasterized on demand.
+     *
+     * @return
+     */
+    public synchronized long getGlyphBytes()
+    {
+        return glyphBytes;
+    }
+
+    public IFontCharacter[] getCharacters(final String text)
+    {
+        final List<IFontCharacter> list = new ArrayList<IFontCharacter>(text.length());
+        for (int i = 0; i < text.length(); i++)
+        {
+            final IFontCharacter character = getFontCharacterByUnicode(text.substring(i, i + 1));
+            if (character != null)
+            {
+                list.add(character);
+            }
+        }
+        return list.toArray(new IFontCharacter[list.size()]);
+    }
+
+    /**
+     * Returns the glyph of a character, rasterizing the glyphs of its block
+     * if this is the first character of the block asked for.
+     */
+    public synchronized IFontCharacter getFontCharacterByUnicode(final String unicode)
+    {
+        AtlasFontCharacter character = characters.get(unicode);
+        if ((character == null) && (unicode.length() > 0) && rasterizeRange(unicode.codePointAt(0)))
+        {
+            character = characters.get(unicode);
+        }
+        return character;
+    }
+
+    /**
+     * Returns the distance from the pen position to the left edge of a
+     * character's pixels.
+     *
+     * @param unicode
+     *
+     * @return the bearing in pixels; 0 if the font lacks the character.
+     */
+    public float getLeftBearing(final String unicode)
+    {
+        final IFontCharacter character = getFontCharacterByUnicode(unicode);
+        return (character instanceof AtlasFontCharacter) ? ((AtlasFontCharacter) character).getLeftBearing() : 0f;
+    }
+
+    /**
+     * Returns the distance from the right edge of a character's pixels to
+     * the next pen position.
+     *
+     * @param unicode
+     *
+     * @return the bearing in pixels; 0 if the font lacks the character.
+     */
+    public float getRightBearing(final String unicode)
+    {
+        final IFontCharacter character = getFontCharacterByUnicode(unicode);
+        return (character instanceof AtlasFontCharacter) ? ((AtlasFontCharacter) character).getRightBearing() : 0f;
+    }
+
+    public String getFontFamily()
+    {
+        return fontFamily;
+    }
+
+    public int getOriginalFontSize()
+    {
+        return fontSize;
+    }
+
+    public int getFontMaxAscent()
+    {
+        return maxAscent;
+    }
+
+    public int getFontMaxDescent()
+    {
+        return maxDescent;
+    }
+
+    public int getFontAbsoluteHeight()
+    {
+        return maxAscent + maxDescent;
+    }
+
+    public int getUnitsPerEM()
+    {
+        return fontSize;
+    }
+
+    public String getFontFileName()
+    {
+        return fontFileName;
+    }
+
+    public MTColor getFillColor()
+    {
+        return fillColor;
+    }
+
+    public void setFillColor(final MTColor color)
+    {
+        this.fillColor = color;
+    }
+
+    public boolean isAntiAliased()
+    {
+        return antiAliased;
+    }
+
+    /**
+     * Sets up the state shared by all glyphs, so that each glyph only has to
+     * bind its atlas page if it differs from the previous glyph's.
+     */
+    public void beginBatchRenderGL(final GL10 gl, final IFont font)
+    {
+        final MTColor color = font.getFillColor();
+        gl.glEnable(GL10.GL_TEXTURE_2D);
+        gl.glEnableClientState(GL10.GL_VERTEX_ARRAY);
+        gl.glEnableClientState(GL10.GL_TEXTURE_COORD_ARRAY);
+        gl.glColor4f(color.getR() / 255f, color.getG() / 255f, color.getB() / 255f, color.getAlpha() / 255f);
+        atlas.resetBinding();
+        batching = true;
+    }
+
+    public void endBatchRenderGL(final GL10 gl, final IFont font)
+    {
+        batching = false;
+        gl.glDisableClientState(GL10.GL_TEXTURE_COORD_ARRAY);
+        gl.glDisableClientState(GL10.GL_VERTEX_ARRAY);
+        gl.glDisable(GL10.GL_TEXTURE_2D);
+        gl.glBindTexture(GL10.GL_TEXTURE_2D, 0);
+        atlas.resetBinding();
+    }
+
+    boolean isBatching()
+    {
+        return batching;
+    }
+
+    /**
+     * Returns the quad of a glyph, for components writing the quads of many
+     * glyphs into one vertex buffer. The texture coordinates hold until the
+     * atlas is repacked, as counted by {@link GlyphAtlas#getRepackCount()}.
+     *
+     * @param unicode
+     * @param quad
+     *                receives the corners of the quad relative to the pen
+     *                position at the top of the line, x0, y0, x1, y1, and
+     *                their texture coordinates, u0, v0, u1, v1.
+     *
+     * @return the atlas page the glyph is on, or -1 if it draws nothing.
+     */
+    public int getGlyphQuad(final String unicode, final float[] quad)
+    {
+        final IFontCharacter character = getFontCharacterByUnicode(unicode);
+        return (character instanceof AtlasFontCharacter) ? ((AtlasFontCharacter) character).getQuad(quad) : -1;
+    }
+
+    /**
+     * Binds the texture of an atlas page, between
+     * <code>beginBatchRenderGL</code> and <code>endBatchRenderGL</code>.
+     *
+     * @param gl
+     * @param page
+     */
+    public void bindPage(final GL10 gl, final int page)
+    {
+        atlas.bind(gl, page);
+    }
+
+    public boolean isEqual(final IFont font)
+    {
+        return (font == this)
+                || ((font instanceof AtlasFont)
+                        && fontFamily.equals(font.getFontFamily())
+                        && (fontSize == font.getOriginalFontSize())
+                        && (antiAliased == font.isAntiAliased()));
+    }
+
+    /**
+     * Releases the glyphs from the atlas, which may repack it, and removes
+     * the font from the font manager's cache.
+     */
+    public void destroy()
+    {
+        synchronized (this)
+        {
+            if (destroyed)
+            {
+                return;
+            }
+            destroyed = true;
+        }
+        releaseGlyphs();
+        EnhancedFontManager.getInstance().removeFromCache(this);
+    }
+
+    /**
+     * Releases the atlas regions of the glyphs. Called once, by
+     * {@link #destroy()}.
+     */
+    synchronized void releaseGlyphs()
+    {
+        atlas.release(regions);
+    }
+}
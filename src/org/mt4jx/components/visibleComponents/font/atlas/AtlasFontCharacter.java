@@ -0,0 +1,236 @@
+/**
+ * This material was prepared as an account of work sponsored by an agency of the United States Government.<br>
+ * Neither the United States Government nor the United States Department of Energy, nor any of their employees,<br>
+ * nor any of their contractors, subcontractors or their employees, makes any warranty, express or implied, or<br>
+ * assumes any legal liability or responsibility for the accuracy, completeness, or usefulness or any information,<br>
+ * apparatus, product, or process disclosed, or represents that its use would not infringe privately owned rights.
+ */
+package org.mt4jx.components.visibleComponents.font.atlas;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import org.mt4j.util.MTColor;
+import org.mt4j.util.font.IFont;
+import org.mt4j.util.opengl.GL10;
+import org.mt4jx.components.visibleComponents.font.ITintableFontCharacter;
+
+import processing.core.PConstants;
+import processing.core.PGraphics;
+import processing.core.PImage;
+
+/**
+ * <p>
+ * A glyph of an {@link AtlasFont}: a textured quad referring to a region of
+ * an atlas page. Whitespace characters have no region and draw nothing.
+ * </p>
+ */
+class AtlasFontCharacter implements ITintableFontCharacter
+{
+
+    private final String unicode;
+
+    private final int horizontalDist;
+
+    private final float left, top;
+
+    // Scale from the size the glyph was rasterized at to the size it is drawn at.
+    private final float scale;
+
+    // Null for characters without any visible pixels.
+    private final GlyphAtlas.Region region;
+
+    private final GlyphAtlas atlas;
+
+    private AtlasFont font;
+
+    // Quad as a triangle strip, built on first use.
+    private FloatBuffer vertices, texCoords;
+
+    // Version of the region the texture coordinates were computed for.
+    private int texCoordsVersion = -1;
+
+    AtlasFontCharacter(final String unicode, final int horizontalDist, final float left, final float top,
+            final GlyphAtlas.Region region, final GlyphAtlas atlas)
+    {
+        this(unicode, horizontalDist, left, top, 1f, region, atlas);
+    }
+
+    AtlasFontCharacter(final String unicode, final int horizontalDist, final float left, final float top,
+            final float scale, final GlyphAtlas.Region region, final GlyphAtlas atlas)
+    {
+        this.unicode = unicode;
+        this.horizontalDist = horizontalDist;
+        this.left = left;
+        this.top = top;
+        this.scale = scale;
+        this.region = region;
+        this.atlas = atlas;
+    }
+
+    // Distance from the pen position to the left of the glyph's pixels.
+    float getLeftBearing()
+    {
+        return left * scale;
+    }
+
+    // Distance from the right of the glyph's pixels to the next pen position.
+    float getRightBearing()
+    {
+        return (region != null) ? horizontalDist - ((left + region.width) * scale) : 0f;
+    }
+
+    // Writes the corners of the glyph's quad and their texture coordinates: x0, y0, x1, y1,
+    // u0, v0, u1, v1. Returns the atlas page, or -1 if the glyph draws nothing.
+    int getQuad(final float[] quad)
+    {
+        if (region == null)
+        {
+            return -1;
+        }
+        quad[0] = left * scale;
+        quad[1] = top * scale;
+        quad[2] = (left + region.width) * scale;
+        quad[3] = (top + region.height) * scale;
+        synchronized (atlas)
+        {
+            final float size = atlas.getPageSize();
+            quad[4] = region.x / size;
+            quad[5] = region.y / size;
+            quad[6] = (region.x + region.width) / size;
+            quad[7] = (region.y + region.height) / size;
+            return region.page;
+        }
+    }
+
+    void setFont(final AtlasFont font)
+    {
+        this.font = font;
+    }
+
+    public String getUnicode()
+    {
+        return unicode;
+    }
+
+    public int getHorizontalDist()
+    {
+        return horizontalDist;
+    }
+
+    /**
+     * Draws the glyph with OpenGL. Between <code>beginBatchRenderGL</code>
+     * and <code>endBatchRenderGL</code> of its font, this is a texture bind
+     * (only if the previous glyph was on another page) and a draw call;
+     * otherwise the glyph sets up and restores the GL state itself.
+     */
+    public void drawComponent(final GL10 gl)
+    {
+        drawComponent(gl, font);
+    }
+
+    public void drawComponent(final GL10 gl, final IFont colorFont)
+    {
+        if (region == null)
+        {
+            return;
+        }
+        final boolean batching = font.isBatching();
+        if (!batching)
+        {
+            font.beginBatchRenderGL(gl, colorFont);
+        }
+
+        synchronized (atlas)
+        {
+            atlas.bind(gl, region.page);
+            updateTexCoords();
+        }
+        gl.glVertexPointer(2, GL10.GL_FLOAT, 0, vertices);
+        gl.glTexCoordPointer(2, GL10.GL_FLOAT, 0, texCoords);
+        gl.glDrawArrays(GL10.GL_TRIANGLE_STRIP, 0, 4);
+
+        if (!batching)
+        {
+            font.endBatchRenderGL(gl, colorFont);
+        }
+    }
+
+    /**
+     * Draws the glyph through processing, for renderers without direct GL
+     * access.
+     */
+    public void drawComponent(final PGraphics g)
+    {
+        drawComponent(g, font);
+    }
+
+    public void drawComponent(final PGraphics g, final IFont colorFont)
+    {
+        if (region == null)
+        {
+            return;
+        }
+        final PImage image;
+        final float u0, v0, u1, v1;
+        synchronized (atlas)
+        {
+            image = atlas.getPageImage(region.page);
+            final float size = atlas.getPageSize();
+            u0 = region.x / size;
+            v0 = region.y / size;
+            u1 = (region.x + region.width) / size;
+            v1 = (region.y + region.height) / size;
+        }
+        final float x0 = left * scale, y0 = top * scale;
+        final float x1 = (left + region.width) * scale, y1 = (top + region.height) * scale;
+        final MTColor color = colorFont.getFillColor();
+        g.pushStyle();
+        g.noStroke();
+        g.fill(color.getR(), color.getG(), color.getB(), color.getAlpha());
+        g.tint(color.getR(), color.getG(), color.getB(), color.getAlpha());
+        g.textureMode(PConstants.NORMALIZED);
+        g.beginShape(PConstants.QUADS);
+        g.texture(image);
+        g.vertex(x0, y0, u0, v0);
+        g.vertex(x1, y0, u1, v0);
+        g.vertex(x1, y1, u1, v1);
+        g.vertex(x0, y1, u0, v1);
+        g.endShape();
+        g.popStyle();
+    }
+
+    // Called with the atlas locked, after the region may have moved in a repack.
+    private void updateTexCoords()
+    {
+        if (vertices == null)
+        {
+            final float x0 = left * scale, y0 = top * scale;
+            final float x1 = (left + region.width) * scale, y1 = (top + region.height) * scale;
+            vertices = newFloatBuffer(8);
+            vertices.put(new float[] { x0, y0, x0, y1, x1, y0, x1, y1 }).rewind();
+            texCoords = newFloatBuffer(8);
+        }
+        if (texCoordsVersion != region.version)
+        {
+            final float size = atlas.getPageSize();
+            final float u0 = region.x / size, v0 = region.y / size;
+            final float u1 = (region.x + region.width) / size, v1 = (region.y + region.height) / size;
+            texCoords.put(new float[] { u0, v0, u0, v1, u1, v0, u1, v1 }).rewind();
+            texCoordsVersion = region.version;
+        }
+    }
+
+    private static FloatBuffer newFloatBuffer(final int floats)
+    {
+        return ByteBuffer.allocateDirect(floats * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+
+    /**
+     * Glyphs are released all together, when their font is destroyed.
+     */
+    public void destroy()
+    {
+    }
+}
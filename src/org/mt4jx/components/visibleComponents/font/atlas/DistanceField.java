@@ -0,0 +1,143 @@
+/**
+ * This material was prepared as an account of work sponsored by an agency of the United States Government.<br>
+ * Neither the United States Government nor the United States Department of Energy, nor any of their employees,<br>
+ * nor any of their contractors, subcontractors or their employees, makes any warranty, express or implied, or<br>
+ * assumes any legal liability or responsibility for the accuracy, completeness, or usefulness or any information,<br>
+ * apparatus, product, or process disclosed, or represents that its use would not infringe privately owned rights.
+ */
+package org.mt4jx.components.visibleComponents.font.atlas;
+
+/**
+ * <p>
+ * Computes signed distance fields from binary glyph masks, using the exact
+ * linear-time Euclidean distance transform of Felzenszwalb and Huttenlocher:
+ * a one-dimensional transform over the columns, then over the rows.
+ * </p>
+ */
+final class DistanceField
+{
+
+    private static final float INF = 1e20f;
+
+    private DistanceField()
+    {
+    }
+
+    /**
+     * Computes the signed distance field of a mask rendered at
+     * <code>supersample</code> times the size of the field, and encodes it
+     * as bytes: 128 on the outline, increasing inside the glyph and
+     * decreasing outside, saturating at <code>spread</code> pixels of the
+     * field.
+     *
+     * @param inside
+     *                   the mask, row by row; its dimensions must be
+     *                   multiples of <code>supersample</code>.
+     * @param width
+     * @param height
+     * @param supersample
+     * @param spread
+     *
+     * @return the field, of <code>width / supersample</code> by
+     *         <code>height / supersample</code> bytes.
+     */
+    static byte[] compute(final boolean[] inside, final int width, final int height, final int supersample, final float spread)
+    {
+        final float[] toInside = squaredDistances(inside, width, height, true);
+        final float[] toOutside = squaredDistances(inside, width, height, false);
+
+        final int w = width / supersample;
+        final int h = height / supersample;
+        final byte[] field = new byte[w * h];
+        final float scale = 127f / (spread * supersample);
+        final float samples = supersample * supersample;
+        for (int y = 0; y < h; y++)
+        {
+            for (int x = 0; x < w; x++)
+            {
+                // Average the signed distances of the block of mask pixels.
+                float sum = 0f;
+                for (int sy = 0; sy < supersample; sy++)
+                {
+                    int i = (((y * supersample) + sy) * width) + (x * supersample);
+                    for (int sx = 0; sx < supersample; sx++, i++)
+                    {
+                        sum += inside[i] ? (float) Math.sqrt(toOutside[i]) - 0.5f
+                                : 0.5f - (float) Math.sqrt(toInside[i]);
+                    }
+                }
+                final int value = Math.round(128f + ((sum / samples) * scale));
+                field[(y * w) + x] = (byte) Math.max(0, Math.min(255, value));
+            }
+        }
+        return field;
+    }
+
+    // Squared distance of every pixel to the nearest pixel whose mask value is 'feature'.
+    private static float[] squaredDistances(final boolean[] inside, final int width, final int height, final boolean feature)
+    {
+        final float[] grid = new float[width * height];
+        for (int i = 0; i < grid.length; i++)
+        {
+            grid[i] = (inside[i] == feature) ? 0f : INF;
+        }
+
+        final int n = Math.max(width, height);
+        final float[] f = new float[n];
+        final float[] d = new float[n];
+        final int[] v = new int[n];
+        final float[] z = new float[n + 1];
+
+        for (int x = 0; x < width; x++)
+        {
+            for (int y = 0; y < height; y++)
+            {
+                f[y] = grid[(y * width) + x];
+            }
+            transform(f, height, d, v, z);
+            for (int y = 0; y < height; y++)
+            {
+                grid[(y * width) + x] = d[y];
+            }
+        }
+        for (int y = 0; y < height; y++)
+        {
+            System.arraycopy(grid, y * width, f, 0, width);
+            transform(f, width, d, v, z);
+            System.arraycopy(d, 0, grid, y * width, width);
+        }
+        return grid;
+    }
+
+    // One-dimensional squared distance transform: the lower envelope of parabolas rooted at f.
+    private static void transform(final float[] f, final int n, final float[] d, final int[] v, final float[] z)
+    {
+        int k = 0;
+        v[0] = 0;
+        z[0] = -INF;
+        z[1] = INF;
+        for (int q = 1; q < n; q++)
+        {
+            float s = ((f[q] + (q * q)) - (f[v[k]] + (v[k] * v[k]))) / ((2 * q) - (2 * v[k]));
+            while (s <= z[k])
+            {
+                k--;
+                s = ((f[q] + (q * q)) - (f[v[k]] + (v[k] * v[k]))) / ((2 * q) - (2 * v[k]));
+            }
+            k++;
+            v[k] = q;
+            z[k] = s;
+            z[k + 1] = INF;
+        }
+        k = 0;
+        for (int q = 0; q < n; q++)
+        {
+            while (z[k + 1] < q)
+            {
+                k++;
+            }
+            final int dq = q - v[k];
+            d[q] = (dq * dq) + f[v[k]];
+        }
+    }
+}
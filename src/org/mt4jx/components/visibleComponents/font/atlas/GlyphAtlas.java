@@ -0,0 +1,515 @@
+/**
+ * This material was prepared as an account of work sponsored by an agency of the United States Government.<br>
+ * Neither the United States Government nor the United States Department of Energy, nor any of their employees,<br>
+ * nor any of their contractors, subcontractors or their employees, makes any warranty, express or implied, or<br>
+ * assumes any legal liability or responsibility for the accuracy, completeness, or usefulness or any information,<br>
+ * apparatus, product, or process disclosed, or represents that its use would not infringe privately owned rights.
+ */
+package org.mt4jx.components.visibleComponents.font.atlas;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.mt4j.util.logging.ILogger;
+import org.mt4j.util.logging.MTLoggerFactory;
+import org.mt4j.util.opengl.GL10;
+
+import processing.core.PConstants;
+import processing.core.PImage;
+
+/**
+ * <p>
+ * A set of large alpha textures, called pages, into which the glyphs of
+ * {@link AtlasFont}s are packed. Glyphs of every font and size share the same
+ * pages, so a whole paragraph, or a whole scene of labels, is usually drawn
+ * from a single texture.
+ * </p>
+ * <p>
+ * Glyphs are packed on the CPU, from any thread, and a copy of every page is
+ * kept in memory. Pages are only uploaded to OpenGL when they are bound for
+ * drawing, and then only the rows that changed. The space of released glyphs
+ * cannot be reused in place, so when the wasted fraction of the atlas exceeds
+ * the repack threshold, the live glyphs are repacked into as few pages as
+ * possible. This happens when fonts are evicted from the font cache and
+ * destroyed.
+ * </p>
+ */
+public final class GlyphAtlas
+{
+
+    private static final ILogger LOG = MTLoggerFactory.getLogger(GlyphAtlas.class.getName());
+
+    static {
+        LOG.setLevel(ILogger.ERROR);
+    }
+
+    /**
+     * Default width and height of the pages in texels.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 1024;
+
+    /**
+     * Default fraction of the allocated area which may be wasted by
+     * released glyphs before the atlas is repacked.
+     */
+    public static final float DEFAULT_REPACK_THRESHOLD = 0.25f;
+
+    // Empty texels around each glyph, so linear filtering never bleeds in a neighbour.
+    private static final int PADDING = 1;
+
+    private static GlyphAtlas sharedAtlas;
+
+    /**
+     * The area of a page taken by a glyph. The position of a region changes
+     * when the atlas is repacked, which is signalled by a new version.
+     */
+    static final class Region
+    {
+
+        int page, x, y;
+
+        final int width, height;
+
+        int version;
+
+        Region(final int width, final int height)
+        {
+            this.width = width;
+            this.height = height;
+        }
+    }
+
+    private static final class Page
+    {
+
+        final byte[] alpha;
+
+        final SkylinePacker packer;
+
+        // GL texture name, or 0 if not yet created.
+        int textureId;
+
+        // Rows which have to be uploaded; dirtyMinY > dirtyMaxY if none.
+        int dirtyMinY, dirtyMaxY;
+
+        // Copy for the non-GL renderers, rebuilt when the page changes.
+        PImage image;
+
+        Page(final int size)
+        {
+            alpha = new byte[size * size];
+            packer = new SkylinePacker(size, size);
+            dirtyMinY = Integer.MAX_VALUE;
+            dirtyMaxY = -1;
+        }
+
+        void markDirty(final int minY, final int maxY)
+        {
+            dirtyMinY = Math.min(dirtyMinY, minY);
+            dirtyMaxY = Math.max(dirtyMaxY, maxY);
+            image = null;
+        }
+    }
+
+    private final int pageSize;
+
+    private final List<Page> pages;
+
+    private final Set<Region> regions;
+
+    // Textures of pages dropped by a repack, deleted on the next upload.
+    private final List<Integer> texturesToDelete;
+
+    private float repackThreshold;
+
+    private long liveArea;
+
+    private int repackCount;
+
+    // Texture bound by the last call to bind(), or -1 if unknown.
+    private int boundTexture = -1;
+
+    /**
+     * Returns the atlas shared by all atlas fonts.
+     *
+     * @return
+     */
+    public static synchronized GlyphAtlas getSharedAtlas()
+    {
+        if (sharedAtlas == null)
+        {
+            sharedAtlas = new GlyphAtlas(DEFAULT_PAGE_SIZE);
+        }
+        return sharedAtlas;
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param pageSize
+     *                 width and height of the pages in texels. Should be a
+     *                 power of 2.
+     */
+    public GlyphAtlas(final int pageSize)
+    {
+        if (pageSize <= 0)
+        {
+            throw new IllegalArgumentException("page size must be > 0: " + pageSize);
+        }
+        this.pageSize = pageSize;
+        this.pages = new ArrayList<Page>();
+        this.regions = new LinkedHashSet<Region>();
+        this.texturesToDelete = new ArrayList<Integer>();
+        this.repackThreshold = DEFAULT_REPACK_THRESHOLD;
+    }
+
+    /**
+     * Returns the width and height of the pages.
+     *
+     * @return
+     */
+    public int getPageSize()
+    {
+        return pageSize;
+    }
+
+    /**
+     * Returns the number of pages.
+     *
+     * @return
+     */
+    public synchronized int getPageCount()
+    {
+        return pages.size();
+    }
+
+    /**
+     * Returns the number of glyphs in the atlas.
+     *
+     * @return
+     */
+    public synchronized int getGlyphCount()
+    {
+        return regions.size();
+    }
+
+    /**
+     * Returns the fraction of the area of all pages taken by live glyphs,
+     * padding included.
+     *
+     * @return a value between 0 and 1, or 0 if there are no pages.
+     */
+    public synchronized float getOccupancy()
+    {
+        final long totalArea = (long) pages.size() * pageSize * pageSize;
+        return totalArea > 0 ? (float) liveArea / totalArea : 0f;
+    }
+
+    /**
+     * Returns the number of times the atlas has been repacked.
+     *
+     * @return
+     */
+    public synchronized int getRepackCount()
+    {
+        return repackCount;
+    }
+
+    /**
+     * Sets the fraction of the allocated area which may be wasted by
+     * released glyphs before the atlas is repacked.
+     *
+     * @param threshold
+     *                  between 0 and 1.
+     */
+    public synchronized void setRepackThreshold(final float threshold)
+    {
+        this.repackThreshold = Math.max(0f, Math.min(1f, threshold));
+    }
+
+    public synchronized float getRepackThreshold()
+    {
+        return repackThreshold;
+    }
+
+    /**
+     * Packs a glyph into the atlas, adding a page if none has room.
+     *
+     * @param width
+     * @param height
+     * @param alpha
+     *               coverage of the glyph, row by row.
+     *
+     * @return the region, or null if the glyph is larger than a page.
+     */
+    synchronized Region allocate(final int width, final int height, final byte[] alpha)
+    {
+        final Region region = new Region(width, height);
+        if (!place(region, pages))
+        {
+            LOG.warn("Glyph of " + width + "x" + height + " does not fit in an atlas page of " + pageSize);
+            return null;
+        }
+        final Page page = pages.get(region.page);
+        for (int row = 0; row < height; row++)
+        {
+            System.arraycopy(alpha, row * width, page.alpha, ((region.y + row) * pageSize) + region.x, width);
+        }
+        page.markDirty(region.y, region.y + height - 1);
+        regions.add(region);
+        liveArea += paddedArea(region);
+        return region;
+    }
+
+    /**
+     * Releases the regions of a destroyed font, repacking the atlas if too
+     * much of it is now wasted.
+     *
+     * @param released
+     */
+    synchronized void release(final Collection<Region> released)
+    {
+        for (final Region region : released)
+        {
+            if (regions.remove(region))
+            {
+                liveArea -= paddedArea(region);
+            }
+        }
+
+        long allocatedArea = 0;
+        for (final Page page : pages)
+        {
+            allocatedArea += page.packer.getUsedArea();
+        }
+        if ((allocatedArea > 0) && ((allocatedArea - liveArea) > (repackThreshold * allocatedArea)))
+        {
+            repack();
+        }
+    }
+
+    /**
+     * Packs the live glyphs into as few pages as possible, tallest first. The
+     * textures of the remaining pages are reused and fully uploaded again
+     * the next time they are bound.
+     */
+    public synchronized void repack()
+    {
+        final List<Region> live = new ArrayList<Region>(regions);
+        Collections.sort(live, new Comparator<Region>()
+        {
+
+            @Override
+            public int compare(final Region r1, final Region r2)
+            {
+                if (r1.height != r2.height)
+                {
+                    return r2.height - r1.height;
+                }
+                return r2.width - r1.width;
+            }
+        });
+
+        final List<Page> newPages = new ArrayList<Page>();
+        for (final Region region : live)
+        {
+            final Page oldPage = pages.get(region.page);
+            final int oldX = region.x, oldY = region.y;
+            // Always fits, since it fitted in a page before.
+            place(region, newPages);
+            final Page newPage = newPages.get(region.page);
+            for (int row = 0; row < region.height; row++)
+            {
+                System.arraycopy(oldPage.alpha, ((oldY + row) * pageSize) + oldX,
+                        newPage.alpha, ((region.y + row) * pageSize) + region.x, region.width);
+            }
+            region.version++;
+        }
+
+        for (int i = 0; i < pages.size(); i++)
+        {
+            final int textureId = pages.get(i).textureId;
+            if (textureId != 0)
+            {
+                if (i < newPages.size())
+                {
+                    newPages.get(i).textureId = textureId;
+                } else
+                {
+                    texturesToDelete.add(Integer.valueOf(textureId));
+                }
+            }
+        }
+        for (final Page page : newPages)
+        {
+            page.markDirty(0, pageSize - 1);
+        }
+
+        final int oldPageCount = pages.size();
+        pages.clear();
+        pages.addAll(newPages);
+        repackCount++;
+        LOG.debug("Repacked glyph atlas: " + oldPageCount + " -> " + pages.size() + " pages, occupancy " + getOccupancy());
+    }
+
+    /**
+     * Uploads the changed rows of a page and binds its texture, unless it is
+     * already bound. Must be called on the rendering thread.
+     *
+     * @param gl
+     * @param pageIndex
+     */
+    synchronized void bind(final GL10 gl, final int pageIndex)
+    {
+        deleteDroppedTextures(gl);
+
+        final Page page = pages.get(pageIndex);
+        if (page.textureId == 0)
+        {
+            final int[] ids = new int[1];
+            gl.glGenTextures(1, ids, 0);
+            page.textureId = ids[0];
+            gl.glBindTexture(GL10.GL_TEXTURE_2D, page.textureId);
+            gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_MIN_FILTER, GL10.GL_LINEAR);
+            gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_MAG_FILTER, GL10.GL_LINEAR);
+            gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_WRAP_S, GL10.GL_CLAMP_TO_EDGE);
+            gl.glTexParameterf(GL10.GL_TEXTURE_2D, GL10.GL_TEXTURE_WRAP_T, GL10.GL_CLAMP_TO_EDGE);
+            gl.glPixelStorei(GL10.GL_UNPACK_ALIGNMENT, 1);
+            gl.glTexImage2D(GL10.GL_TEXTURE_2D, 0, GL10.GL_ALPHA, pageSize, pageSize, 0,
+                    GL10.GL_ALPHA, GL10.GL_UNSIGNED_BYTE, ByteBuffer.wrap(page.alpha));
+            page.dirtyMinY = Integer.MAX_VALUE;
+            page.dirtyMaxY = -1;
+            boundTexture = page.textureId;
+            return;
+        }
+
+        if (boundTexture != page.textureId)
+        {
+            gl.glBindTexture(GL10.GL_TEXTURE_2D, page.textureId);
+            boundTexture = page.textureId;
+        }
+        if (page.dirtyMinY <= page.dirtyMaxY)
+        {
+            final int rows = page.dirtyMaxY - page.dirtyMinY + 1;
+            gl.glPixelStorei(GL10.GL_UNPACK_ALIGNMENT, 1);
+            gl.glTexSubImage2D(GL10.GL_TEXTURE_2D, 0, 0, page.dirtyMinY, pageSize, rows,
+                    GL10.GL_ALPHA, GL10.GL_UNSIGNED_BYTE,
+                    ByteBuffer.wrap(page.alpha, page.dirtyMinY * pageSize, rows * pageSize).slice());
+            page.dirtyMinY = Integer.MAX_VALUE;
+            page.dirtyMaxY = -1;
+        }
+    }
+
+    /**
+     * Forgets which texture is bound, since other components may have bound
+     * their own since the last call to {@link #bind(GL10, int)}. Called at
+     * the start of every batch of glyphs.
+     */
+    synchronized void resetBinding()
+    {
+        boundTexture = -1;
+    }
+
+    /**
+     * Uploads all changed pages. Must be called on the rendering thread.
+     *
+     * @param gl
+     */
+    public synchronized void upload(final GL10 gl)
+    {
+        for (int i = 0; i < pages.size(); i++)
+        {
+            final Page page = pages.get(i);
+            if ((page.textureId == 0) || (page.dirtyMinY <= page.dirtyMaxY))
+            {
+                bind(gl, i);
+            }
+        }
+        boundTexture = -1;
+    }
+
+    /**
+     * Returns a page as a white image with the glyph coverage as alpha, for
+     * renderers which draw through processing rather than OpenGL.
+     *
+     * @param pageIndex
+     *
+     * @return
+     */
+    synchronized PImage getPageImage(final int pageIndex)
+    {
+        final Page page = pages.get(pageIndex);
+        if (page.image == null)
+        {
+            final PImage image = new PImage(pageSize, pageSize, PConstants.ARGB);
+            image.loadPixels();
+            for (int i = 0; i < page.alpha.length; i++)
+            {
+                image.pixels[i] = ((page.alpha[i] & 0xff) << 24) | 0x00ffffff;
+            }
+            image.updatePixels();
+            page.image = image;
+        }
+        return page.image;
+    }
+
+    // Places the region in the first page with room, adding a page if needed.
+    private boolean place(final Region region, final List<Page> pageList)
+    {
+        final int w = region.width + (2 * PADDING);
+        final int h = region.height + (2 * PADDING);
+        if ((w > pageSize) || (h > pageSize))
+        {
+            return false;
+        }
+        for (int i = 0; i <= pageList.size(); i++)
+        {
+            if (i == pageList.size())
+            {
+                pageList.add(new Page(pageSize));
+            }
+            final int[] xy = pageList.get(i).packer.insert(w, h);
+            if (xy != null)
+            {
+                region.page = i;
+                region.x = xy[0] + PADDING;
+                region.y = xy[1] + PADDING;
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void deleteDroppedTextures(final GL10 gl)
+    {
+        if (!texturesToDelete.isEmpty())
+        {
+            final int[] ids = new int[texturesToDelete.size()];
+            for (int i = 0; i < ids.length; i++)
+            {
+                ids[i] = texturesToDelete.get(i).intValue();
+            }
+            gl.glDeleteTextures(ids.length, ids, 0);
+            texturesToDelete.clear();
+            boundTexture = -1;
+        }
+    }
+
+    private static long paddedArea(final Region region)
+    {
+        return (long) (region.width + (2 * PADDING)) * (region.height + (2 * PADDING));
+    }
+
+    @Override
+    public synchronized String toString()
+    {
+        return "GlyphAtlas[" + pages.size() + " pages of " + pageSize + ", " + regions.size()
+                + " glyphs, occupancy " + Math.round(getOccupancy() * 100f) + "%]";
+    }
+}
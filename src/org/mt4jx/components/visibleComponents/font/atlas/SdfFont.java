@@ -0,0 +1,161 @@
+/**
+ * This material was prepared as an account of work sponsored by an agency of the United States Government.<br>
+ * Neither the United States Government nor the United States Department of Energy, nor any of their employees,<br>
+ * nor any of their contractors, subcontractors or their employees, makes any warranty, express or implied, or<br>
+ * assumes any legal liability or responsibility for the accuracy, completeness, or usefulness or any information,<br>
+ * apparatus, product, or process disclosed, or represents that its use would not infringe privately owned rights.
+ */
+package org.mt4jx.components.visibleComponents.font.atlas;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.mt4j.util.MTColor;
+import org.mt4j.util.font.IFont;
+import org.mt4j.util.font.IFontCharacter;
+import org.mt4j.util.opengl.GL10;
+
+/**
+ * <p>
+ * A font of a given size drawn from the distance fields of an
+ * {@link SdfTypeface}. It holds no glyph data of its own, only the scale from
+ * the typeface's base size, and creates its characters when first asked for
+ * them.
+ * </p>
+ * <p>
+ * Fixed-function OpenGL cannot threshold the field smoothly, so the glyphs
+ * are drawn with an alpha test at the outline and without blending: edges
+ * are sharp at any size, but the fill color is drawn opaque. Renderers
+ * without direct GL access draw the field blended, which looks soft.
+ * </p>
+ */
+public class SdfFont extends AtlasFont
+{
+
+    private final SdfTypeface typeface;
+
+    private final float scale;
+
+    // Top of the line relative to the baseline, in pixels of the base size.
+    private final float ascentBase;
+
+    private final Map<String, AtlasFontCharacter> characters;
+
+    SdfFont(final SdfTypeface typeface, final int fontSize, final MTColor fillColor, final boolean antiAliased)
+    {
+        this(typeface, fontSize, (float) fontSize / typeface.getBaseSize(), fillColor, antiAliased,
+                new HashMap<String, AtlasFontCharacter>());
+    }
+
+    private SdfFont(final SdfTypeface typeface, final int fontSize, final float scale, final MTColor fillColor,
+            final boolean antiAliased, final Map<String, AtlasFontCharacter> characters)
+    {
+        super(typeface.getFontFileName(), typeface.getFontFamily(), fontSize,
+                Math.round(typeface.getMaxAscent() * scale), Math.round(typeface.getMaxDescent() * scale),
+                fillColor != null ? fillColor : new MTColor(0, 0, 0, 255), antiAliased, typeface.getAtlas(),
+                characters, new ArrayList<GlyphAtlas.Region>(), 0);
+        this.typeface = typeface;
+        this.scale = scale;
+        this.ascentBase = getFontMaxAscent() / scale;
+        this.characters = characters;
+    }
+
+    /**
+     * Returns the typeface whose glyphs this font scales.
+     *
+     * @return
+     */
+    public SdfTypeface getTypeface()
+    {
+        return typeface;
+    }
+
+    /**
+     * Returns the scale from the typeface's base size to this font's size.
+     *
+     * @return
+     */
+    public float getScale()
+    {
+        return scale;
+    }
+
+    @Override
+    public synchronized IFontCharacter getFontCharacterByUnicode(final String unicode)
+    {
+        AtlasFontCharacter character = characters.get(unicode);
+        if (character == null)
+        {
+            character = createCharacter(unicode);
+            if (character != null)
+            {
+                character.setFont(this);
+                characters.put(unicode, character);
+            }
+        }
+        return character;
+    }
+
+    private AtlasFontCharacter createCharacter(final String unicode)
+    {
+        final GlyphAtlas atlas = getAtlas();
+        if ("\n".equals(unicode))
+        {
+            return new AtlasFontCharacter(unicode, 0, 0, 0, null, atlas);
+        }
+        if ("\t".equals(unicode))
+        {
+            final SdfTypeface.Glyph space = typeface.getGlyph(" ");
+            final float advance = (space != null) ? space.advance : typeface.getBaseSize() / 3f;
+            return new AtlasFontCharacter(unicode, Math.round(4 * advance * scale), 0, 0, null, atlas);
+        }
+        final SdfTypeface.Glyph glyph = typeface.getGlyph(unicode);
+        if (glyph == null)
+        {
+            return null;
+        }
+        return new AtlasFontCharacter(unicode, Math.round(glyph.advance * scale), glyph.left, ascentBase + glyph.top,
+                scale, glyph.region, atlas);
+    }
+
+    /**
+     * Sets up the alpha test at the outline, scaled by the fill color's
+     * alpha since the texture is modulated by it.
+     */
+    @Override
+    public void beginBatchRenderGL(final GL10 gl, final IFont font)
+    {
+        super.beginBatchRenderGL(gl, font);
+        gl.glDisable(GL10.GL_BLEND);
+        gl.glEnable(GL10.GL_ALPHA_TEST);
+        gl.glAlphaFunc(GL10.GL_GEQUAL, 0.5f * (font.getFillColor().getAlpha() / 255f));
+    }
+
+    @Override
+    public void endBatchRenderGL(final GL10 gl, final IFont font)
+    {
+        gl.glDisable(GL10.GL_ALPHA_TEST);
+        gl.glEnable(GL10.GL_BLEND);
+        super.endBatchRenderGL(gl, font);
+    }
+
+    @Override
+    public boolean isEqual(final IFont font)
+    {
+        return (font == this)
+                || ((font instanceof SdfFont)
+                        && (((SdfFont) font).typeface == typeface)
+                        && (getOriginalFontSize() == font.getOriginalFontSize()));
+    }
+
+    /**
+     * Releases this font's reference to the typeface. The typeface's glyphs
+     * are shared, so they stay in the atlas.
+     */
+    @Override
+    void releaseGlyphs()
+    {
+        typeface.release();
+    }
+}
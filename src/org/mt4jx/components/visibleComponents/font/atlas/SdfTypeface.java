@@ -0,0 +1,366 @@
+/**
+ * This material was prepared as an account of work sponsored by an agency of the United States Government.<br>
+ * Neither the United States Government nor the United States Department of Energy, nor any of their employees,<br>
+ * nor any of their contractors, subcontractors or their employees, makes any warranty, express or implied, or<br>
+ * assumes any legal liability or responsibility for the accuracy, completeness, or usefulness or any information,<br>
+ * apparatus, product, or process disclosed, or represents that its use would not infringe privately owned rights.
+ */
+package org.mt4jx.components.visibleComponents.font.atlas;
+
+import java.awt.Color;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferByte;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.mt4j.util.MTColor;
+
+/**
+ * <p>
+ * The signed-distance-field glyphs of a typeface, rasterized once at a base
+ * size and shared by the {@link SdfFont}s of every size. Each glyph stores,
+ * per texel, the distance to the glyph's outline rather than its coverage,
+ * so that bilinear filtering followed by an alpha test at the outline
+ * reproduces sharp edges at any magnification.
+ * </p>
+ * <p>
+ * Like the glyphs of {@link AtlasFont}s, the fields are computed a Unicode
+ * block at a time, the first time a character of the block is asked for.
+ * </p>
+ * <p>
+ * Typefaces count the fonts created from them. Their glyphs stay in the
+ * atlas until {@link #releaseIfUnused()} is called while no font is alive;
+ * a released typeface must be created again before it can be used.
+ * </p>
+ */
+public final class SdfTypeface
+{
+
+    /**
+     * Default size, in pixels, at which the distance fields are stored.
+     */
+    public static final int DEFAULT_BASE_SIZE = 32;
+
+    /**
+     * Distance, in pixels of the base size, over which the field goes from
+     * fully inside to fully outside the outline.
+     */
+    public static final float SPREAD = 4f;
+
+    // Masks are rendered at this multiple of the base size, for distances more precise than a pixel.
+    private static final int SUPERSAMPLE = 4;
+
+    /**
+     * A glyph at the base size.
+     */
+    static final class Glyph
+    {
+
+        final String unicode;
+
+        final float advance;
+
+        final int left, top;
+
+        // Null for characters without any visible pixels.
+        final GlyphAtlas.Region region;
+
+        Glyph(final String unicode, final float advance, final int left, final int top, final GlyphAtlas.Region region)
+        {
+            this.unicode = unicode;
+            this.advance = advance;
+            this.left = left;
+            this.top = top;
+            this.region = region;
+        }
+    }
+
+    private final String fontFileName;
+
+    private final String fontFamily;
+
+    private final int baseSize;
+
+    private final float maxAscent, maxDescent;
+
+    private final GlyphAtlas atlas;
+
+    private final Map<String, Glyph> glyphs;
+
+    private final List<GlyphAtlas.Region> regions;
+
+    private long glyphBytes;
+
+    // The font masks are rendered from, at SUPERSAMPLE times the base size.
+    private final Font maskFont;
+
+    private final FontRenderContext frc;
+
+    // First code points of the ranges already computed.
+    private final Set<Integer> loadedRanges;
+
+    private int refCount;
+
+    private boolean released;
+
+    private SdfTypeface(final String fontFileName, final Font maskFont, final FontRenderContext frc, final int baseSize,
+            final float maxAscent, final float maxDescent, final GlyphAtlas atlas)
+    {
+        this.fontFileName = fontFileName;
+        this.fontFamily = maskFont.getFamily();
+        this.maskFont = maskFont;
+        this.frc = frc;
+        this.baseSize = baseSize;
+        this.maxAscent = maxAscent;
+        this.maxDescent = maxDescent;
+        this.atlas = atlas;
+        this.glyphs = new HashMap<String, Glyph>();
+        this.regions = new ArrayList<GlyphAtlas.Region>();
+        this.loadedRanges = new HashSet<Integer>();
+    }
+
+    /**
+     * Creates the typeface of an AWT font. The distance fields of the
+     * specified characters are computed and packed into the atlas right
+     * away, the others when first asked for. May be called on any thread.
+     *
+     * @param awtFont
+     *                     the font, of any size.
+     * @param fontFileName
+     *                     the file or system name the font was created from.
+     * @param chars
+     *                     the characters to compute right away, or null for
+     *                     none.
+     * @param baseSize
+     *                     the size at which the fields are stored.
+     * @param atlas
+     *
+     * @return the typeface.
+     */
+    public static SdfTypeface create(final Font awtFont, final String fontFileName, final String chars,
+            final int baseSize, final GlyphAtlas atlas)
+    {
+        final Font maskFont = awtFont.deriveFont((float) baseSize * SUPERSAMPLE);
+        final BufferedImage scratch = new BufferedImage(1, 1, BufferedImage.TYPE_BYTE_BINARY);
+        final Graphics2D sg = scratch.createGraphics();
+        final FontRenderContext frc = sg.getFontRenderContext();
+        final FontMetrics metrics = sg.getFontMetrics(maskFont);
+        sg.dispose();
+
+        final SdfTypeface typeface = new SdfTypeface(fontFileName, maskFont, frc, baseSize,
+                (float) metrics.getMaxAscent() / SUPERSAMPLE, (float) metrics.getMaxDescent() / SUPERSAMPLE, atlas);
+        if (chars != null)
+        {
+            synchronized (typeface)
+            {
+                for (int i = 0; i < chars.length(); i += Character.charCount(chars.codePointAt(i)))
+                {
+                    typeface.computeGlyph(chars.codePointAt(i));
+                }
+            }
+        }
+        return typeface;
+    }
+
+    // Computes the fields of the range of a code point, unless already done. Returns false if nothing
+    // was computed. Must be called with the lock held.
+    //
+    private boolean computeRange(final int codePoint)
+    {
+        if (released)
+        {
+            return false;
+        }
+        final int start = UnicodeBlocks.rangeStart(codePoint);
+        if (!loadedRanges.add(Integer.valueOf(start)))
+        {
+            return false;
+        }
+        final int end = UnicodeBlocks.rangeEnd(codePoint);
+        for (int c = start; c < end; c++)
+        {
+            computeGlyph(c);
+        }
+        return true;
+    }
+
+    // Computes the field of a glyph, if the font can display it. Must be called with the lock held.
+    //
+    private void computeGlyph(final int codePoint)
+    {
+        final String unicode = new String(Character.toChars(codePoint));
+        if (glyphs.containsKey(unicode) || !maskFont.canDisplay(codePoint) || Character.isISOControl(codePoint))
+        {
+            return;
+        }
+
+        final GlyphVector gv = maskFont.createGlyphVector(frc, unicode);
+        final float advance = gv.getGlyphMetrics(0).getAdvanceX() / SUPERSAMPLE;
+        final Rectangle bounds = gv.getPixelBounds(frc, 0f, 0f);
+
+        if ((bounds.width <= 0) || (bounds.height <= 0))
+        {
+            glyphs.put(unicode, new Glyph(unicode, advance, 0, 0, null));
+            return;
+        }
+
+        // Pad for the spread and align to whole pixels of the base size.
+        final int pad = (int) Math.ceil(SPREAD * SUPERSAMPLE);
+        final int x0 = floorTo(bounds.x - pad, SUPERSAMPLE);
+        final int y0 = floorTo(bounds.y - pad, SUPERSAMPLE);
+        final int x1 = -floorTo(-(bounds.x + bounds.width + pad), SUPERSAMPLE);
+        final int y1 = -floorTo(-(bounds.y + bounds.height + pad), SUPERSAMPLE);
+        final int w = x1 - x0, h = y1 - y0;
+
+        final BufferedImage image = new BufferedImage(w, h, BufferedImage.TYPE_BYTE_GRAY);
+        final Graphics2D g = image.createGraphics();
+        g.setColor(Color.WHITE);
+        g.drawGlyphVector(gv, -x0, -y0);
+        g.dispose();
+        final byte[] pixels = ((DataBufferByte) image.getRaster().getDataBuffer()).getData();
+        final boolean[] inside = new boolean[pixels.length];
+        for (int p = 0; p < pixels.length; p++)
+        {
+            inside[p] = (pixels[p] & 0xff) >= 128;
+        }
+
+        final byte[] field = DistanceField.compute(inside, w, h, SUPERSAMPLE, SPREAD);
+        final GlyphAtlas.Region region = atlas.allocate(w / SUPERSAMPLE, h / SUPERSAMPLE, field);
+        if (region != null)
+        {
+            regions.add(region);
+            glyphBytes += field.length;
+        }
+        glyphs.put(unicode, new Glyph(unicode, advance, x0 / SUPERSAMPLE, y0 / SUPERSAMPLE, region));
+    }
+
+    private static int floorTo(final int value, final int multiple)
+    {
+        return (int) Math.floor((double) value / multiple) * multiple;
+    }
+
+    /**
+     * Creates a font of this typeface. This costs no rasterization: the font
+     * only scales the shared glyphs.
+     *
+     * @param fontSize
+     * @param fillColor
+     * @param antiAliased
+     *
+     * @return the font, or null if the typeface has been released.
+     */
+    public synchronized SdfFont createFont(final int fontSize, final MTColor fillColor, final boolean antiAliased)
+    {
+        if (released)
+        {
+            return null;
+        }
+        refCount++;
+        return new SdfFont(this, fontSize, fillColor, antiAliased);
+    }
+
+    /**
+     * Returns true once the glyphs have been released, after the last font
+     * of the typeface was destroyed.
+     *
+     * @return
+     */
+    public synchronized boolean isReleased()
+    {
+        return released;
+    }
+
+    /**
+     * Releases the glyphs from the atlas if no live font uses the typeface.
+     *
+     * @return true if the typeface is now released.
+     */
+    public synchronized boolean releaseIfUnused()
+    {
+        if ((refCount == 0) && !released)
+        {
+            released = true;
+            atlas.release(regions);
+        }
+        return released;
+    }
+
+    /**
+     * Returns the number of live fonts of this typeface.
+     *
+     * @return
+     */
+    public synchronized int getFontCount()
+    {
+        return refCount;
+    }
+
+    // Called by each font when it is destroyed. The glyphs stay in the atlas
+    // until releaseIfUnused(), so destroying the last size and asking for
+    // another does not compute the fields again.
+    synchronized void release()
+    {
+        refCount--;
+    }
+
+    /**
+     * Returns the number of bytes the distance fields take in the atlas.
+     *
+     * @return
+     */
+    public synchronized long getGlyphBytes()
+    {
+        return glyphBytes;
+    }
+
+    public int getBaseSize()
+    {
+        return baseSize;
+    }
+
+    public String getFontFamily()
+    {
+        return fontFamily;
+    }
+
+    String getFontFileName()
+    {
+        return fontFileName;
+    }
+
+    float getMaxAscent()
+    {
+        return maxAscent;
+    }
+
+    float getMaxDescent()
+    {
+        return maxDescent;
+    }
+
+    GlyphAtlas getAtlas()
+    {
+        return atlas;
+    }
+
+    // Returns the glyph of a character, computing the fields of its block if needed.
+    synchronized Glyph getGlyph(final String unicode)
+    {
+        Glyph glyph = glyphs.get(unicode);
+        if ((glyph == null) && (unicode.length() > 0) && computeRange(unicode.codePointAt(0)))
+        {
+            glyph = glyphs.get(unicode);
+        }
+        return glyph;
+    }
+}
@@ -0,0 +1,186 @@
+/**
+ * This material was prepared as an account of work sponsored by an agency of the United States Government.<br>
+ * Neither the United States Government nor the United States Department of Energy, nor any of their employees,<br>
+ * nor any of their contractors, subcontractors or their employees, makes any warranty, express or implied, or<br>
+ * assumes any legal liability or responsibility for the accuracy, completeness, or usefulness or any information,<br>
+ * apparatus, product, or process disclosed, or represents that its use would not infringe privately owned rights.
+ */
+package org.mt4jx.components.visibleComponents.font.atlas;
+
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Packs rectangles into a fixed-size area using the bottom-left skyline
+ * heuristic. The packer only tracks the upper outline of the rectangles
+ * placed so far, as a list of horizontal segments, and places each new
+ * rectangle where its top edge ends up lowest. Glyphs of similar heights pack
+ * very tightly this way, and a placement costs time linear in the number of
+ * segments.
+ * </p>
+ * <p>
+ * Space is never reclaimed: once rectangles are no longer needed, the area
+ * must be repacked from scratch.
+ * </p>
+ */
+final class SkylinePacker
+{
+
+    private final int width, height;
+
+    // The skyline, as segments ordered by x, which cover [0, width) without gaps.
+    private int[] segX, segY, segWidth;
+
+    private int segCount;
+
+    private long usedArea;
+
+    /**
+     * Constructor.
+     *
+     * @param width
+     * @param height
+     */
+    SkylinePacker(final int width, final int height)
+    {
+        this.width = width;
+        this.height = height;
+        segX = new int[16];
+        segY = new int[16];
+        segWidth = new int[16];
+        segWidth[0] = width;
+        segCount = 1;
+    }
+
+    /**
+     * Finds room for a rectangle and marks it used.
+     *
+     * @param w
+     * @param h
+     *
+     * @return <code>{x, y}</code> of the rectangle's top-left corner, or null
+     *         if it does not fit.
+     */
+    int[] insert(final int w, final int h)
+    {
+        if ((w <= 0) || (h <= 0) || (w > width) || (h > height))
+        {
+            return null;
+        }
+
+        int bestIndex = -1, bestTop = Integer.MAX_VALUE, bestWidth = Integer.MAX_VALUE, bestY = 0;
+        for (int i = 0; i < segCount; i++)
+        {
+            final int y = fit(i, w, h);
+            if (y >= 0)
+            {
+                final int top = y + h;
+                if ((top < bestTop) || ((top == bestTop) && (segWidth[i] < bestWidth)))
+                {
+                    bestIndex = i;
+                    bestTop = top;
+                    bestWidth = segWidth[i];
+                    bestY = y;
+                }
+            }
+        }
+        if (bestIndex < 0)
+        {
+            return null;
+        }
+
+        final int x = segX[bestIndex];
+        addSegment(bestIndex, x, bestY + h, w);
+        usedArea += (long) w * h;
+        return new int[] { x, bestY };
+    }
+
+    /**
+     * Returns the total area of the rectangles inserted so far.
+     *
+     * @return
+     */
+    long getUsedArea()
+    {
+        return usedArea;
+    }
+
+    // Returns the y at which a rectangle starting at segment i would rest, or -1 if it doesn't fit.
+    private int fit(int i, final int w, final int h)
+    {
+        final int x = segX[i];
+        if (x + w > width)
+        {
+            return -1;
+        }
+        int y = 0;
+        int remaining = w;
+        while (remaining > 0)
+        {
+            y = Math.max(y, segY[i]);
+            if (y + h > height)
+            {
+                return -1;
+            }
+            remaining -= segWidth[i];
+            i++;
+        }
+        return y;
+    }
+
+    // Inserts the segment at index, then trims or removes the segments it now shadows.
+    private void addSegment(final int index, final int x, final int y, final int w)
+    {
+        if (segCount == segX.length)
+        {
+            final int n = segCount * 2;
+            segX = Arrays.copyOf(segX, n);
+            segY = Arrays.copyOf(segY, n);
+            segWidth = Arrays.copyOf(segWidth, n);
+        }
+        System.arraycopy(segX, index, segX, index + 1, segCount - index);
+        System.arraycopy(segY, index, segY, index + 1, segCount - index);
+        System.arraycopy(segWidth, index, segWidth, index + 1, segCount - index);
+        segX[index] = x;
+        segY[index] = y;
+        segWidth[index] = w;
+        segCount++;
+
+        final int right = x + w;
+        int i = index + 1;
+        while ((i < segCount) && (segX[i] < right))
+        {
+            final int segRight = segX[i] + segWidth[i];
+            if (segRight <= right)
+            {
+                removeSegment(i);
+            } else
+            {
+                segWidth[i] = segRight - right;
+                segX[i] = right;
+                break;
+            }
+        }
+
+        // Merge neighbours at the same height, which keeps the skyline short.
+        for (i = 0; i < segCount - 1;)
+        {
+            if (segY[i] == segY[i + 1])
+            {
+                segWidth[i] += segWidth[i + 1];
+                removeSegment(i + 1);
+            } else
+            {
+                i++;
+            }
+        }
+    }
+
+    private void removeSegment(final int i)
+    {
+        segCount--;
+        System.arraycopy(segX, i + 1, segX, i, segCount - i);
+        System.arraycopy(segY, i + 1, segY, i, segCount - i);
+        System.arraycopy(segWidth, i + 1, segWidth, i, segCount - i);
+    }
+}
@@ -0,0 +1,69 @@
+/**
+ * This material was prepared as an account of work sponsored by an agency of the United States Government.<br>
+ * Neither the United States Government nor the United States Department of Energy, nor any of their employees,<br>
+ * nor any of their contractors, subcontractors or their employees, makes any warranty, express or implied, or<br>
+ * assumes any legal liability or responsibility for the accuracy, completeness, or usefulness or any information,<br>
+ * apparatus, product, or process disclosed, or represents that its use would not infringe privately owned rights.
+ */
+package org.mt4jx.components.visibleComponents.font.atlas;
+
+/**
+ * <p>
+ * The ranges of code points whose glyphs are rasterized together, the first
+ * time a font is asked for one of them. A range is a Unicode block, such as
+ * Basic Latin or Greek and Coptic, but never extends past an aligned chunk
+ * of {@link #MAX_RANGE} code points, so that a single ideograph does not
+ * rasterize the twenty thousand others of its block.
+ * </p>
+ */
+final class UnicodeBlocks
+{
+
+    /**
+     * Largest number of code points in a range. A power of 2.
+     */
+    static final int MAX_RANGE = 256;
+
+    private UnicodeBlocks()
+    {
+    }
+
+    /**
+     * Returns the first code point of the range containing a code point. It
+     * identifies the range.
+     *
+     * @param codePoint
+     *
+     * @return
+     */
+    static int rangeStart(final int codePoint)
+    {
+        final int chunkStart = codePoint & ~(MAX_RANGE - 1);
+        final Character.UnicodeBlock block = Character.UnicodeBlock.of(codePoint);
+        int start = codePoint;
+        while ((start > chunkStart) && (Character.UnicodeBlock.of(start - 1) == block))
+        {
+            start--;
+        }
+        return start;
+    }
+
+    /**
+     * Returns the code point following the range containing a code point.
+     *
+     * @param codePoint
+     *
+     * @return
+     */
+    static int rangeEnd(final int codePoint)
+    {
+        final int chunkEnd = Math.min((codePoint & ~(MAX_RANGE - 1)) + MAX_RANGE, Character.MAX_CODE_POINT + 1);
+        final Character.UnicodeBlock block = Character.UnicodeBlock.of(codePoint);
+        int end = codePoint + 1;
+        while ((end < chunkEnd) && (Character.UnicodeBlock.of(end) == block))
+        {
+            end++;
+        }
+        return end;
+    }
+}
@@ -0,0 +1,14 @@
+/**
+ * This material was prepared as an account of work sponsored by an agency of the United States Government.<br>
+ * Neither the United States Government nor the United States Department of Energy, nor any of their employees,<br>
+ * nor any of their contractors, subcontractors or their employees, makes any warranty, express or implied, or<br>
+ * assumes any legal liability or responsibility for the accuracy, completeness, or usefulness or any information,<br>
+ * apparatus, product, or process disclosed, or represents that its use would not infringe privately owned rights.
+ */
+
+/**
+ * This package contains fonts whose glyphs are packed into large textures
+ * shared by all fonts and sizes, so that text can be drawn with few texture
+ * binds.
+ */
+package org.mt4jx.components.visibleComponents.font.atlas;
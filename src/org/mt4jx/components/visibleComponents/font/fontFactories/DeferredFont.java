@@ -0,0 +1,32 @@
+/**
+ * This material was prepared as an account of work sponsored by an agency of the United States Government.<br>
+ * Neither the United States Government nor the United States Department of Energy, nor any of their employees,<br> 
+ * nor any of their contractors, subcontractors or their employees, makes any warranty, express or implied, or<br>
+ * assumes any legal liability or responsibility for the accuracy, completeness, or usefulness or any information,<br> 
+ * apparatus, product, or process disclosed, or represents that its use would not infringe privately owned rights.
+ */
+package org.mt4jx.components.visibleComponents.font.fontFactories;
+
+import org.mt4j.util.MTColor;
+
+/**
+ * <p>
+ * What {@link IAsyncFontFactory#prepareFont} returns when it has nothing
+ * to prepare off the rendering thread: the arguments for creating the font
+ * the usual way in <code>createPreparedFont</code>.
+ * </p>
+ */
+class DeferredFont {
+
+	final String fontFileName;
+	final int fontSize;
+	final MTColor color;
+	final boolean antiAliased;
+
+	DeferredFont(String fontFileName, int fontSize, MTColor color, boolean antiAliased) {
+		this.fontFileName = fontFileName;
+		this.fontSize = fontSize;
+		this.color = color;
+		this.antiAliased = antiAliased;
+	}
+}
@@ -0,0 +1,105 @@
+/**
+ * This material was prepared as an account of work sponsored by an agency of the United States Government.<br>
+ * Neither the United States Government nor the United States Department of Energy, nor any of their employees,<br>
+ * nor any of their contractors, subcontractors or their employees, makes any warranty, express or implied, or<br>
+ * assumes any legal liability or responsibility for the accuracy, completeness, or usefulness or any information,<br>
+ * apparatus, product, or process disclosed, or represents that its use would not infringe privately owned rights.
+ */
+package org.mt4jx.components.visibleComponents.font.fontFactories;
+
+import java.awt.Font;
+
+import org.mt4j.util.MTColor;
+import org.mt4j.util.PlatformUtil;
+import org.mt4j.util.font.IFont;
+import org.mt4j.util.opengl.GL10;
+import org.mt4jx.components.visibleComponents.font.atlas.AtlasFont;
+import org.mt4jx.components.visibleComponents.font.atlas.GlyphAtlas;
+
+import processing.core.PApplet;
+
+/**
+ * <p>
+ * A bitmap font factory which packs the glyphs of all its fonts into the
+ * pages of a shared {@link GlyphAtlas}, rather than uploading a texture per
+ * glyph like the {@link EnhancedBitmapFontFactory}. It handles the same files:
+ * true-type and open-type files and collections, and system fonts by name.
+ * Processing's .vlw fonts cannot be read by AWT, so they are still created
+ * by the bitmap font factory.
+ * </p>
+ * <p>
+ * Fonts rasterize their glyphs a Unicode block at a time, when a character
+ * of the block is first displayed, so creating a font costs little more than
+ * loading the file, which fonts created through
+ * <code>EnhancedFontManager.createFontAsync</code> do on a background thread.
+ * </p>
+ */
+public class EnhancedAtlasFontFactory extends EnhancedBitmapFontFactory
+  implements IAsyncFontFactory {
+
+	private final GlyphAtlas atlas;
+
+	/**
+	 * Creates a factory using the shared atlas.
+	 */
+	public EnhancedAtlasFontFactory() {
+	  this(GlyphAtlas.getSharedAtlas());
+	}
+
+	/**
+	 * Creates a factory packing glyphs into the specified atlas.
+	 *
+	 * @param atlas
+	 */
+	public EnhancedAtlasFontFactory(GlyphAtlas atlas) {
+	  this.atlas = atlas;
+	}
+
+	/**
+	 * Returns the atlas into which the glyphs are packed.
+	 *
+	 * @return
+	 */
+	public GlyphAtlas getAtlas() {
+	  return atlas;
+	}
+
+	@Override
+	public IFont createFont(PApplet pa, String fontFileName, int fontSize, MTColor color, boolean antiAliased) {
+	  try {
+	    return createPreparedFont(pa, prepareFont(pa, fontFileName, fontSize, color, antiAliased));
+	  } catch (Exception e) {
+	    return super.createFont(pa, fontFileName, fontSize, color, antiAliased);
+	  }
+	}
+
+	/**
+	 * Loads the font with AWT.  Its glyphs are rasterized into the atlas as
+	 * they are first asked for.  For .vlw files, which AWT cannot load, nothing
+	 * is prepared and the font is created by the bitmap font factory on the
+	 * rendering thread.
+	 */
+	public Object prepareFont(PApplet pa, String fontFileName, int fontSize, MTColor color, boolean antiAliased) throws Exception {
+	  Font awtFont = loadAwtFont(fontFileName, fontSize);
+	  if (awtFont == null) {
+	    return new DeferredFont(fontFileName, fontSize, color, antiAliased);
+	  }
+	  return AtlasFont.create(awtFont, fontFileName, null, color, antiAliased, atlas);
+	}
+
+	/**
+	 * Uploads the atlas pages the new font has changed, so the first frame
+	 * showing it does not have to.
+	 */
+	public IFont createPreparedFont(PApplet pa, Object preparedFont) {
+	  if (preparedFont instanceof DeferredFont) {
+	    DeferredFont deferred = (DeferredFont) preparedFont;
+	    return super.createFont(pa, deferred.fontFileName, deferred.fontSize, deferred.color, deferred.antiAliased);
+	  }
+	  GL10 gl = PlatformUtil.getGL();
+	  if (gl != null) {
+	    atlas.upload(gl);
+	  }
+	  return (IFont) preparedFont;
+	}
+}
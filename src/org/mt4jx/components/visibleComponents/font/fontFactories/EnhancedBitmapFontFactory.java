@@ -7,12 +7,17 @@
  */
 package org.mt4jx.components.visibleComponents.font.fontFactories;
 
+import java.awt.Font;
 import java.io.File;
 
 //import org.mt4j.components.visibleComponents.font.fontFactories.BitmapFontFactory;
 
+import org.mt4j.util.MTColor;
+import org.mt4j.util.font.IFont;
 import org.mt4j.util.font.fontFactories.BitmapFontFactory;
 
+import processing.core.PApplet;
+
 /**
  * <p>
  * A factory for creating BitmapFont objects.
@@ -21,28 +26,102 @@ import org.mt4j.util.font.fontFactories.BitmapFontFactory;
  * @author R.Scarberry
  */
 public class EnhancedBitmapFontFactory extends BitmapFontFactory 
-  implements IEnhancedFontFactory {
+  implements IMultiFontFactory, IConcurrentFontFactory {
 	
     /**
-     * Not yet implemented.  This method simply returns null.
+     * Extracts the name of the first font in true-type font, collection,
+     * open-type and .vlw files. Returns null for other files.
      */
 	public String extractFontName(String fontFileName) {
-	  int n = fontFileName.lastIndexOf('.');
-	  if (n >= 0) {
-	    String extension = fontFileName.substring(n).toLowerCase();
-	    // If it's a true-type file, borrow code from the other class.
-	    if (extension.equals(".ttf")) {
-	      try {
-            String[] names = EnhancedTTFontFactory.getFontNames(new File(fontFileName), 0);
-            if (names.length > 1) {
-              return names[1];
-            }
-	      } catch (Exception e) {
-	        // Ignore.  Probably not a properly structured file.
-          }
+	  String[] names = extractFontNames(fontFileName);
+	  return names != null && names.length > 0 ? names[0] : null;
+	}
+	
+	/**
+	 * Extracts the names of all the fonts in true-type font, collection and
+	 * open-type files, and the name of the font in .vlw files.  Only the
+	 * tables or header holding the names are read.  Returns null for other
+	 * files.
+	 */
+	public String[] extractFontNames(String fontFileName) {
+	  String extension = getExtension(fontFileName);
+	  try {
+	    // If it's a true-type or open-type file, borrow code from the other class.
+	    if (extension.equals(".ttf") || extension.equals(".ttc") || extension.equals(".otf")) {
+	      return EnhancedTTFontFactory.fullNames(TrueTypeFontReader.readFontNames(new File(fontFileName)));
+	    }
+	    if (extension.equals(".vlw")) {
+	      String name = VlwFontReader.readFontName(new File(fontFileName));
+	      return name != null ? new String[] { name } : null;
 	    }
+	  } catch (Exception e) {
+	    // Ignore.  Probably not a properly structured file.
 	  }
-	  //TODO: Find out how to extract font names from .vlw and .otf files.
 	  return null;	
 	}
+	
+	/**
+	 * Processing cannot load a font collection from a file, so fonts in .ttc
+	 * files are created by the name of their first font, the same way
+	 * system fonts are.
+	 */
+	@Override
+	public IFont createFont(PApplet pa, String fontFileName, int fontSize, MTColor color, boolean antiAliased) {
+	  if (getExtension(fontFileName).equals(".ttc")) {
+	    String name = extractFontName(fontFileName);
+	    if (name != null) {
+	      fontFileName = name;
+	    }
+	  }
+	  return super.createFont(pa, fontFileName, fontSize, color, antiAliased);
+	}
+	
+	/**
+	 * Loads a font the way this factory would, but as an AWT font, for
+	 * subclasses which rasterize glyphs themselves and for measuring text
+	 * without creating the font.  True-type and open-type
+	 * files are loaded from the file, collections and system fonts by name.
+	 * 
+	 * @param fontFileName
+	 * @param fontSize
+	 * 
+	 * @return the font, or null for .vlw files, which AWT cannot load.
+	 * 
+	 * @throws Exception if the file cannot be loaded.
+	 */
+	public Font loadAwtFont(String fontFileName, int fontSize) throws Exception {
+	  File file = new File(fontFileName);
+	  String extension = getExtension(fontFileName);
+	  if (extension.equals(".vlw")) {
+	    return null;
+	  }
+	  if (file.isFile() && (extension.equals(".ttf") || extension.equals(".otf"))) {
+	    return Font.createFont(Font.TRUETYPE_FONT, file).deriveFont((float) fontSize);
+	  }
+	  String name;
+	  if (file.isFile()) {
+	    // A collection, loaded by the name of its first font like createFont() does.
+	    name = extractFontName(fontFileName);
+	    if (name == null) {
+	      return null;
+	    }
+	  } else {
+	    // A system font, passed by the font manager with a leading separator.
+	    // Style suffixes such as "Dialog.bold" are understood by AWT itself.
+	    name = file.getName();
+	  }
+	  return new Font(name, Font.PLAIN, fontSize);
+	}
+	
+	private static String getExtension(String fontFileName) {
+	  int n = fontFileName.lastIndexOf('.');
+	  return n >= 0 ? fontFileName.substring(n).toLowerCase() : "";
+	}
+	
+	/**
+	 * Names are extracted using only local state, so this is thread safe.
+	 */
+	public boolean isThreadSafe() {
+	  return true;
+	}
 }
\ No newline at end of file
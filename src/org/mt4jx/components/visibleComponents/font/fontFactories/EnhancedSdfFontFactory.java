@@ -0,0 +1,180 @@
+/**
+ * This material was prepared as an account of work sponsored by an agency of the United States Government.<br>
+ * Neither the United States Government nor the United States Department of Energy, nor any of their employees,<br>
+ * nor any of their contractors, subcontractors or their employees, makes any warranty, express or implied, or<br>
+ * assumes any legal liability or responsibility for the accuracy, completeness, or usefulness or any information,<br>
+ * apparatus, product, or process disclosed, or represents that its use would not infringe privately owned rights.
+ */
+package org.mt4jx.components.visibleComponents.font.fontFactories;
+
+import java.awt.Font;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+
+import org.mt4j.util.MTColor;
+import org.mt4j.util.PlatformUtil;
+import org.mt4j.util.font.IFont;
+import org.mt4j.util.opengl.GL10;
+import org.mt4jx.components.visibleComponents.font.atlas.GlyphAtlas;
+import org.mt4jx.components.visibleComponents.font.atlas.SdfFont;
+import org.mt4jx.components.visibleComponents.font.atlas.SdfTypeface;
+
+import processing.core.PApplet;
+
+/**
+ * <p>
+ * A factory for fonts drawn from signed distance fields.  The glyphs of a
+ * typeface are computed once, at a base size, and every font of that typeface
+ * merely scales them, so asking for a new size costs no rasterization and no
+ * texture memory.  Register it for the types it should handle, e.g.
+ * </p>
+ * <pre>
+ *   EnhancedSdfFontFactory sdf = new EnhancedSdfFontFactory();
+ *   manager.registerFontFactory(".ttf", sdf);
+ *   manager.registerFontFactory(".otf", sdf);
+ * </pre>
+ * <p>
+ * The distance fields are kept in an atlas of their own. Since sizes share
+ * their typeface, the fonts report no glyph memory to the font cache, and
+ * destroying fonts leaves the typeface in place for the next size. Call
+ * {@link #releaseUnusedTypefaces()} to reclaim typefaces without live fonts.
+ * </p>
+ */
+public class EnhancedSdfFontFactory extends EnhancedBitmapFontFactory
+  implements IAsyncFontFactory {
+
+	private final GlyphAtlas atlas;
+
+	private final int baseSize;
+
+	// Maps font file names to their typefaces.
+	private final Map<String, SdfTypeface> typefaces;
+
+	/**
+	 * Creates a factory storing the distance fields at the default base size.
+	 */
+	public EnhancedSdfFontFactory() {
+	  this(SdfTypeface.DEFAULT_BASE_SIZE);
+	}
+
+	/**
+	 * Creates a factory storing the distance fields at the specified size.
+	 * Larger base sizes preserve finer details, such as sharp corners, at the
+	 * cost of texture memory.
+	 *
+	 * @param baseSize
+	 */
+	public EnhancedSdfFontFactory(int baseSize) {
+	  this.atlas = new GlyphAtlas(GlyphAtlas.DEFAULT_PAGE_SIZE);
+	  this.baseSize = baseSize;
+	  this.typefaces = new HashMap<String, SdfTypeface>();
+	}
+
+	/**
+	 * Returns the atlas holding the distance fields.
+	 *
+	 * @return
+	 */
+	public GlyphAtlas getAtlas() {
+	  return atlas;
+	}
+
+	@Override
+	public IFont createFont(PApplet pa, String fontFileName, int fontSize, MTColor color, boolean antiAliased) {
+	  try {
+	    return createPreparedFont(pa, prepareFont(pa, fontFileName, fontSize, color, antiAliased));
+	  } catch (Exception e) {
+	    return super.createFont(pa, fontFileName, fontSize, color, antiAliased);
+	  }
+	}
+
+	/**
+	 * Loads the typeface, unless a font of another size already did.  Its
+	 * distance fields are computed a Unicode block at a time, as characters
+	 * are first asked for.
+	 */
+	public Object prepareFont(PApplet pa, String fontFileName, int fontSize, MTColor color, boolean antiAliased) throws Exception {
+	  SdfTypeface typeface = getTypeface(fontFileName);
+	  if (typeface == null) {
+	    throw new Exception("Cannot load " + fontFileName + " as a distance field font");
+	  }
+	  return new PreparedFont(fontFileName, typeface, fontSize, color, antiAliased);
+	}
+
+	public IFont createPreparedFont(PApplet pa, Object preparedFont) {
+	  PreparedFont prepared = (PreparedFont) preparedFont;
+	  GL10 gl = PlatformUtil.getGL();
+	  if (gl != null) {
+	    atlas.upload(gl);
+	  }
+	  SdfFont font = prepared.typeface.createFont(prepared.fontSize, prepared.color, prepared.antiAliased);
+	  if (font == null) {
+	    // The typeface was released in the meantime.
+	    return createFont(pa, prepared.fontFileName, prepared.fontSize, prepared.color, prepared.antiAliased);
+	  }
+	  return font;
+	}
+
+	/**
+	 * Releases the distance fields of the typefaces none of whose fonts are
+	 * alive, letting the atlas repack.
+	 *
+	 * @return the number of typefaces released.
+	 */
+	public int releaseUnusedTypefaces() {
+	  int count = 0;
+	  synchronized (typefaces) {
+	    Iterator<SdfTypeface> it = typefaces.values().iterator();
+	    while (it.hasNext()) {
+	      if (it.next().releaseIfUnused()) {
+	        it.remove();
+	        count++;
+	      }
+	    }
+	  }
+	  return count;
+	}
+
+	// Returns the live typeface of the file, creating it if needed, or null if AWT cannot load it.
+	private SdfTypeface getTypeface(String fontFileName) throws Exception {
+	  synchronized (typefaces) {
+	    SdfTypeface typeface = typefaces.get(fontFileName);
+	    if (typeface != null && !typeface.isReleased()) {
+	      return typeface;
+	    }
+	  }
+	  Font awtFont = loadAwtFont(fontFileName, baseSize);
+	  if (awtFont == null) {
+	    return null;
+	  }
+	  SdfTypeface created = SdfTypeface.create(awtFont, fontFileName, null, baseSize, atlas);
+	  synchronized (typefaces) {
+	    SdfTypeface typeface = typefaces.get(fontFileName);
+	    if (typeface != null && !typeface.isReleased()) {
+	      // Another thread won the race.
+	      created.releaseIfUnused();
+	      return typeface;
+	    }
+	    typefaces.put(fontFileName, created);
+	    return created;
+	  }
+	}
+
+	private static class PreparedFont {
+
+	  final String fontFileName;
+	  final SdfTypeface typeface;
+	  final int fontSize;
+	  final MTColor color;
+	  final boolean antiAliased;
+
+	  PreparedFont(String fontFileName, SdfTypeface typeface, int fontSize, MTColor color, boolean antiAliased) {
+	    this.fontFileName = fontFileName;
+	    this.typeface = typeface;
+	    this.fontSize = fontSize;
+	    this.color = color;
+	    this.antiAliased = antiAliased;
+	  }
+	}
+}
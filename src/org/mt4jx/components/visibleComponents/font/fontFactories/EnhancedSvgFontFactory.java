@@ -7,10 +7,23 @@
  */
 package org.mt4jx.components.visibleComponents.font.fontFactories;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLResolver;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+
+import org.mt4j.util.MTColor;
+import org.mt4j.util.font.IFont;
 import org.mt4j.util.font.fontFactories.SvgFontFactory;
-import org.mt4j.util.xml.XmlHandler;
-import org.xml.sax.Attributes;
-import org.xml.sax.helpers.DefaultHandler;
+import org.mt4jx.components.visibleComponents.font.mesh.GlyphGeometryCache;
+import org.mt4jx.components.visibleComponents.font.mesh.MeshFont;
+
+import processing.core.PApplet;
 
 /**
  * <p>Extension of SvgFontFactory which can extract the font name
@@ -20,50 +33,133 @@ import org.xml.sax.helpers.DefaultHandler;
  * @author R.Scarberry
  */
 public class EnhancedSvgFontFactory extends SvgFontFactory 
-  implements IEnhancedFontFactory {
+  implements IMultiFontFactory, IConcurrentFontFactory, IAsyncFontFactory {
 	
+	// Stream reader factories are not guaranteed to be thread safe. External DTDs
+	// resolve to nothing, so the svg DTD is never fetched to extract a name.
+	private static final ThreadLocal<XMLInputFactory> INPUT_FACTORY = new ThreadLocal<XMLInputFactory>() {
+		@Override
+		protected XMLInputFactory initialValue() {
+			XMLInputFactory factory = XMLInputFactory.newInstance();
+			factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+			factory.setXMLResolver(new XMLResolver() {
+				public Object resolveEntity(String publicID, String systemID, String baseURI, String namespace) {
+					return new ByteArrayInputStream(new byte[0]);
+				}
+			});
+			return factory;
+		}
+	};
+
+	// Precompiled glyphs, or null to have SvgFontFactory parse the file every time.
+	private volatile GlyphGeometryCache glyphGeometryCache;
+
 	public EnhancedSvgFontFactory() {  }
 
+	/**
+	 * Sets the cache of tessellated glyphs. While set, fonts are created from
+	 * the cached geometry as {@link MeshFont}s, and the file is only parsed
+	 * the first time a size is asked for.
+	 * 
+	 * @param cache the cache, or null to create fonts with SvgFontFactory.
+	 */
+	public void setGlyphGeometryCache(GlyphGeometryCache cache) {
+		this.glyphGeometryCache = cache;
+	}
+
+	public GlyphGeometryCache getGlyphGeometryCache() {
+		return glyphGeometryCache;
+	}
+
+	@Override
+	public IFont createFont(PApplet pa, String svgFontFileName, int fontSize, MTColor color, boolean antiAliased) {
+		return createPreparedFont(pa, prepareFont(pa, svgFontFileName, fontSize, color, antiAliased));
+	}
+
+	/**
+	 * While a cache of glyph geometry is set, maps the glyphs from the cache,
+	 * or tessellates them the first time a size is asked for, and creates the
+	 * {@link MeshFont}, which needs no OpenGL.  Otherwise nothing is prepared,
+	 * and the font is created by SvgFontFactory on the rendering thread.
+	 */
+	public Object prepareFont(PApplet pa, String svgFontFileName, int fontSize, MTColor color, boolean antiAliased) {
+		GlyphGeometryCache cache = glyphGeometryCache;
+		if (cache != null) {
+			try {
+				return new MeshFont(svgFontFileName, cache.getOrBuild(new File(svgFontFileName), fontSize), color, antiAliased);
+			} catch (Exception e) {
+				// Let SvgFontFactory try, and report why it fails.
+			}
+		}
+		return new DeferredFont(svgFontFileName, fontSize, color, antiAliased);
+	}
+
+	/**
+	 * Mesh fonts draw from client memory, so there is nothing to upload.
+	 */
+	public IFont createPreparedFont(PApplet pa, Object preparedFont) {
+		if (preparedFont instanceof DeferredFont) {
+			DeferredFont deferred = (DeferredFont) preparedFont;
+			return super.createFont(pa, deferred.fontFileName, deferred.fontSize, deferred.color, deferred.antiAliased);
+		}
+		return (IFont) preparedFont;
+	}
+
 	/**
 	 * Quickly extracts the name of the font from a properly-formatted
-	 * svg font file.
+	 * svg font file.  The file is read as a stream of elements, up to the
+	 * <code>font</code> or <code>font-face</code> element holding the id, or
+	 * at most up to the first glyph, so the glyphs themselves are never read.
 	 */
 	public String extractFontName(String svgFontFileName) {
-		
-	    // Holder for the extracted name.  The nested handler needs
-	    // a final in which to store the results.  
-		final String[] nameHolder = new String[1];
-		
 		try {
-			
-			XmlHandler.getInstance().saxParse(svgFontFileName, new DefaultHandler() {
-		
-			    // Set to false when the name has been found.
-				boolean stillLooking = true;
-				
-				@Override
-				public void startElement(String uri, String localName, String qName, Attributes attributes){
-					if (stillLooking) {
-						if(qName.equalsIgnoreCase("font") || qName.equalsIgnoreCase("font-face")) {
-							for ( int i = 0; i < attributes.getLength(); i++ ){ 
-								String currentAttributeName = attributes.getQName(i);
-								if (currentAttributeName.equalsIgnoreCase("id")){
-									nameHolder[0] = attributes.getValue(i);
-									stillLooking = false;
+			InputStream in = new FileInputStream(svgFontFileName);
+			try {
+				XMLStreamReader reader = INPUT_FACTORY.get().createXMLStreamReader(in);
+				try {
+					while (reader.hasNext()) {
+						if (reader.next() != XMLStreamConstants.START_ELEMENT) {
+							continue;
+						}
+						String element = reader.getLocalName();
+						if (element.equalsIgnoreCase("font") || element.equalsIgnoreCase("font-face")) {
+							for (int i = 0; i < reader.getAttributeCount(); i++) {
+								if (reader.getAttributeLocalName(i).equalsIgnoreCase("id")) {
+									return reader.getAttributeValue(i);
 								}
 							}
+						} else if (element.equalsIgnoreCase("glyph") || element.equalsIgnoreCase("missing-glyph")) {
+							// The font and its face come before the glyphs.
+							return null;
 						}
 					}
+				} finally {
+					reader.close();
 				}
-				
-			});
-			
+			} finally {
+				in.close();
+			}
 		} catch (Exception e) {
 			// Don't worry about it -- this simply means it probably wasn't a font
 		    // file.  Null will be returned.
 		}
-		
-		return nameHolder[0];
+		return null;
+	}
+	
+	/**
+	 * An svg font file holds a single font.
+	 */
+	public String[] extractFontNames(String svgFontFileName) {
+		String name = extractFontName(svgFontFileName);
+		return name != null ? new String[] { name } : null;
+	}
+	
+	/**
+	 * Names are extracted with a stream reader factory per thread, so this
+	 * is thread safe.
+	 */
+	public boolean isThreadSafe() {
+		return true;
 	}
 
 }
@@ -10,16 +10,20 @@ package org.mt4jx.components.visibleComponents.font.fontFactories;
 import java.awt.FontFormatException;
 import java.io.File;
 import java.io.IOException;
-import java.io.RandomAccessFile;
-import java.io.UnsupportedEncodingException;
 import java.nio.ByteBuffer;
-import java.nio.IntBuffer;
-import java.nio.ShortBuffer;
 import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
 
+import org.mt4j.util.MTColor;
+import org.mt4j.util.font.IFont;
 import org.mt4j.util.font.fontFactories.TTFontFactory;
 import org.mt4j.util.logging.ILogger;
 import org.mt4j.util.logging.MTLoggerFactory;
+import org.mt4jx.components.visibleComponents.font.mesh.GlyphGeometryCache;
+import org.mt4jx.components.visibleComponents.font.mesh.MeshFont;
+
+import processing.core.PApplet;
 
 /**
  * <p>
@@ -28,7 +32,8 @@ import org.mt4j.util.logging.MTLoggerFactory;
  * 
  * @author R.Scarberry
  */
-public class EnhancedTTFontFactory extends TTFontFactory implements IEnhancedFontFactory {
+public class EnhancedTTFontFactory extends TTFontFactory
+    implements IMultiFontFactory, IConcurrentFontFactory, IAsyncFontFactory {
 
   /** The Constant logger. */
   private static final ILogger LOG = MTLoggerFactory.getLogger(EnhancedTTFontFactory.class.getName());
@@ -46,6 +51,8 @@ public class EnhancedTTFontFactory extends TTFontFactory implements IEnhancedFon
 
   public static final int TRUE_TAG = 0x74727565; // 'true' - Version 2 TT font
 
+  public static final int OTTO_TAG = 0x4F54544F; // 'OTTO' - open-type font with CFF outlines
+
   public static final int MS_PLATFORM_ID = 3;
 
   /* MS locale id for US English is the "default" */
@@ -55,13 +62,62 @@ public class EnhancedTTFontFactory extends TTFontFactory implements IEnhancedFon
 
   public static final int FULL_NAME_ID = 4;
 
-  private static final int TTCHEADERSIZE = 12;
+  // Precompiled glyphs, or null to have TTFontFactory parse the file every time.
+  private volatile GlyphGeometryCache glyphGeometryCache;
 
-  private static final int DIRECTORYHEADERSIZE = 12;
+  public EnhancedTTFontFactory() {
+  }
 
-  private static final int DIRECTORYENTRYSIZE = 16;
+  /**
+   * Sets the cache of tessellated glyphs. While set, fonts are created from
+   * the cached geometry as {@link MeshFont}s, and the file is only parsed the
+   * first time a size is asked for.
+   * 
+   * @param cache
+   *          the cache, or null to create fonts with TTFontFactory.
+   */
+  public void setGlyphGeometryCache(GlyphGeometryCache cache) {
+    this.glyphGeometryCache = cache;
+  }
 
-  public EnhancedTTFontFactory() {
+  public GlyphGeometryCache getGlyphGeometryCache() {
+    return glyphGeometryCache;
+  }
+
+  @Override
+  public IFont createFont(PApplet pa, String fontFileName, int fontSize, MTColor color, boolean antiAliased) {
+    return createPreparedFont(pa, prepareFont(pa, fontFileName, fontSize, color, antiAliased));
+  }
+
+  /**
+   * While a cache of glyph geometry is set, maps the glyphs from the cache,
+   * or tessellates them the first time a size is asked for, and creates the
+   * {@link MeshFont}, which needs no OpenGL. Otherwise nothing is prepared,
+   * and the font is created by TTFontFactory on the rendering thread.
+   */
+  @Override
+  public Object prepareFont(PApplet pa, String fontFileName, int fontSize, MTColor color, boolean antiAliased) {
+    final GlyphGeometryCache cache = glyphGeometryCache;
+    if ((cache != null) && GlyphGeometryCache.isSupported(fontFileName)) {
+      try {
+        return new MeshFont(fontFileName, cache.getOrBuild(new File(fontFileName), fontSize), color, antiAliased);
+      } catch (final Exception e) {
+        LOG.warn("Could not create " + fontFileName + " from cached glyphs: " + e);
+      }
+    }
+    return new DeferredFont(fontFileName, fontSize, color, antiAliased);
+  }
+
+  /**
+   * Mesh fonts draw from client memory, so there is nothing to upload.
+   */
+  @Override
+  public IFont createPreparedFont(PApplet pa, Object preparedFont) {
+    if (preparedFont instanceof DeferredFont) {
+      final DeferredFont deferred = (DeferredFont) preparedFont;
+      return super.createFont(pa, deferred.fontFileName, deferred.fontSize, deferred.color, deferred.antiAliased);
+    }
+    return (IFont) preparedFont;
   }
 
   /**
@@ -88,196 +144,75 @@ public class EnhancedTTFontFactory extends TTFontFactory implements IEnhancedFon
     return null;
   }
 
-  public static String[] getFontNames(File ttfFile, int fIndex)
-      throws IOException, FontFormatException {
-
-    RandomAccessFile raf = null;
-    FileChannel channel = null;
-    int fileSize = 0;
-    int headerOffset = 0;
+  /**
+   * Names are extracted using only local state, so this is thread safe.
+   */
+  @Override
+  public boolean isThreadSafe() {
+    return true;
+  }
 
+  /**
+   * Extracts the full names of all the faces in a true-type font or
+   * true-type collection file.
+   * 
+   * @param fontFileName
+   *          full path the the file.
+   * 
+   * @return the names, or null if the file holds no true-type font.
+   */
+  @Override
+  public String[] extractFontNames(String fontFileName) {
     try {
-      raf = new RandomAccessFile(ttfFile, "r");
-      channel = raf.getChannel();
-      fileSize = (int) channel.size();
-
-      ByteBuffer buffer = readBlock(channel, 0, TTCHEADERSIZE);
-
-      switch (buffer.getInt()) {
-        case TTCF_TAG:
-          buffer.getInt(); // skip TTC version ID
-          final int directoryCount = buffer.getInt();
-          if (fIndex >= directoryCount) {
-            throw new FontFormatException("bad font index: " + fIndex);
-          }
-          buffer = readBlock(channel, TTCHEADERSIZE + (4 * fIndex), 4);
-          headerOffset = buffer.getInt();
-          break;
-        case V1TT_TAG:
-        case TRUE_TAG:
-          break;
-        default:
-          throw new FontFormatException("not a valid true type font file: " + ttfFile);
-      }
-
-      /*
-       * Now have the offset of this TT font (possibly within a TTC) After
-       * the TT version/scaler type field, is the short representing the
-       * number of tables in the table directory. The table directory
-       * begins at 12 bytes after the header. Each table entry is 16 bytes
-       * long (4 32-bit ints)
-       */
-      buffer = readBlock(channel, headerOffset + 4, 2);
-      final int numTables = buffer.getShort();
-      final int directoryOffset = headerOffset + DIRECTORYHEADERSIZE;
-      final ByteBuffer bbuffer = readBlock(channel, directoryOffset, numTables * DIRECTORYENTRYSIZE);
-      final IntBuffer ibuffer = bbuffer.asIntBuffer();
-      DirectoryEntry table = null;
-      final DirectoryEntry[] tableDirectory = new DirectoryEntry[numTables];
-      for (int i = 0; i < numTables; i++) {
-        tableDirectory[i] = table = new DirectoryEntry();
-        table.tag = ibuffer.get();
-        /* checksum */ibuffer.get();
-        table.offset = ibuffer.get();
-        table.length = ibuffer.get();
-        if ((table.offset + table.length) > fileSize) {
-          throw new FontFormatException("bad table, tag=" + table.tag);
-        }
-      }
-
-      final byte[] name = new byte[256];
-      buffer = getTableBuffer(channel, tableDirectory, NAME_TAG);
-
-      String familyName = null;
-      String fullName = null;
-
-      if (buffer != null) {
-        final ShortBuffer sbuffer = buffer.asShortBuffer();
-        sbuffer.get(); // format - not needed.
-        final short numRecords = sbuffer.get();
-        /*
-         * The name table uses unsigned shorts. Many of these are known
-         * small values that fit in a short. The values that are sizes
-         * or offsets into the table could be greater than 32767, so
-         * read and store those as ints
-         */
-        final int stringPtr = sbuffer.get() & 0xffff;
-        for (int i = 0; i < numRecords; i++) {
-          final short platformID = sbuffer.get();
-          if (platformID != MS_PLATFORM_ID) {
-            sbuffer.position(sbuffer.position() + 5);
-            continue; // skip over this record.
-          }
-          final short encodingID = sbuffer.get();
-          final short langID = sbuffer.get();
-          final short nameID = sbuffer.get();
-          final int nameLen = (sbuffer.get()) & 0xffff;
-          final int namePtr = ((sbuffer.get()) & 0xffff) + stringPtr;
-          switch (nameID) {
-            case FAMILY_NAME_ID:
-              if ((familyName == null) || (langID == ENGLISH_LOCALE_ID)) {
-                buffer.position(namePtr);
-                buffer.get(name, 0, nameLen);
-                familyName = makeString(name, nameLen, encodingID);
-              }
-              break;
-            case FULL_NAME_ID:
-              if ((fullName == null) || (langID == ENGLISH_LOCALE_ID)) {
-                buffer.position(namePtr);
-                buffer.get(name, 0, nameLen);
-                fullName = makeString(name, nameLen, encodingID);
-              }
-              break;
-          }
-        }
-      }
-
-      return new String[] { familyName, fullName };
-
-    } finally {
-
-      if (raf != null) {
-        try {
-          raf.close();
-        } catch (final IOException ioe) {
-          // Ignore.
-        }
-      }
+      return fullNames(TrueTypeFontReader.readFontNames(new File(fontFileName)));
+    } catch (final Exception e) {
+      // Could be either a FontFormatException or an IOException
+      LOG.debug("Could not extract font names from " + fontFileName + ": " + e);
     }
+    return null;
   }
 
-  private static ByteBuffer getTableBuffer(FileChannel channel,
-      DirectoryEntry[] entries, int tag) throws IOException {
-
-    DirectoryEntry entry = null;
-
-    for (final DirectoryEntry e : entries) {
-      if (e.tag == tag) {
-        entry = e;
-        break;
+  /**
+   * Returns the non-null full names from the names returned by
+   * {@link TrueTypeFontReader#readFontNames(File)}.
+   * 
+   * @param faceNames
+   * 
+   * @return
+   */
+  static String[] fullNames(String[][] faceNames) {
+    final List<String> names = new ArrayList<String>(faceNames.length);
+    for (final String[] face : faceNames) {
+      final String fullName = face[TrueTypeFontReader.FULL];
+      if ((fullName != null) && !names.contains(fullName)) {
+        names.add(fullName);
       }
     }
-
-    if ((entry == null) || (entry.length == 0)) {
-      return null;
-    }
-
-    return readBlock(channel, entry.offset, entry.length);
-
+    return names.toArray(new String[names.size()]);
   }
 
-  private static String makeString(byte[] bytes, int len, short encoding) {
-    /*
-     * Check for fonts using encodings 2->6 is just for some old DBCS fonts,
-     * apparently mostly on Solaris. Some of these fonts encode ascii names
-     * as double-byte characters. ie with a leading zero byte for what
-     * properly should be a single byte-char.
-     */
-    if ((encoding >= 2) && (encoding <= 6)) {
-      final byte[] oldbytes = bytes;
-      final int oldlen = len;
-      bytes = new byte[oldlen];
-      len = 0;
-      for (int i = 0; i < oldlen; i++) {
-        if (oldbytes[i] != 0) {
-          bytes[len++] = oldbytes[i];
-        }
-      }
-    }
-    String charset;
-    switch (encoding) {
-      case 1:
-        charset = "UTF-16";
-        break; // most common case first.
-      case 0:
-        charset = "UTF-16";
-        break; // symbol uses this
-      case 2:
-        charset = "SJIS";
-        break;
-      case 3:
-        charset = "GBK";
-        break;
-      case 4:
-        charset = "MS950";
-        break;
-      case 5:
-        charset = "EUC_KR";
-        break;
-      case 6:
-        charset = "Johab";
-        break;
-      default:
-        charset = "UTF-16";
-        break;
-    }
-    try {
-      return new String(bytes, 0, len, charset);
-    } catch (final UnsupportedEncodingException e) {
-      return new String(bytes, 0, len);
-    } catch (final Throwable t) {
-      return null;
+  /**
+   * Returns the family and full names of one font in a true-type font or
+   * true-type collection file.
+   * 
+   * @param ttfFile
+   * @param fIndex
+   *          index of the font within a collection. Must be 0 for a plain
+   *          true-type file.
+   * 
+   * @return <code>{familyName, fullName}</code>
+   * 
+   * @throws IOException
+   * @throws FontFormatException
+   */
+  public static String[] getFontNames(File ttfFile, int fIndex)
+      throws IOException, FontFormatException {
+    final ByteBuffer buffer = TrueTypeFontReader.map(ttfFile);
+    final int[] faceOffsets = TrueTypeFontReader.getFaceOffsets(buffer);
+    if ((fIndex < 0) || (fIndex >= faceOffsets.length)) {
+      throw new FontFormatException("bad font index: " + fIndex);
     }
+    return TrueTypeFontReader.readFaceNames(buffer, faceOffsets[fIndex]);
   }
 
   public static ByteBuffer readBlock(FileChannel channel, int offset,
@@ -291,12 +226,4 @@ public class EnhancedTTFontFactory extends TTFontFactory implements IEnhancedFon
     }
     return bb;
   }
-
-  static class DirectoryEntry {
-    public int tag;
-
-    public int offset;
-
-    public int length;
-  }
 }
@@ -0,0 +1,53 @@
+/**
+ * This material was prepared as an account of work sponsored by an agency of the United States Government.<br>
+ * Neither the United States Government nor the United States Department of Energy, nor any of their employees,<br> 
+ * nor any of their contractors, subcontractors or their employees, makes any warranty, express or implied, or<br>
+ * assumes any legal liability or responsibility for the accuracy, completeness, or usefulness or any information,<br> 
+ * apparatus, product, or process disclosed, or represents that its use would not infringe privately owned rights.
+ */
+package org.mt4jx.components.visibleComponents.font.fontFactories;
+
+import org.mt4j.util.MTColor;
+import org.mt4j.util.font.IFont;
+
+import processing.core.PApplet;
+
+/**
+ * <p>
+ * Extension of IEnhancedFontFactory for factories which can split the creation
+ * of a font in two phases: parsing the file and rasterizing or tessellating 
+ * the glyphs, which may be done on any thread, and uploading the glyphs to 
+ * OpenGL, which must be done on the rendering thread.  Fonts created by such
+ * factories through <code>EnhancedFontManager.createFontAsync</code> only 
+ * occupy the rendering thread for the upload.
+ * </p>
+ */
+public interface IAsyncFontFactory extends IEnhancedFontFactory {
+	
+	/**
+	 * Does all the work of creating a font which doesn't need OpenGL.  Called on a
+	 * background thread, so it must neither make GL calls nor create components.
+	 * 
+	 * @param pa
+	 * @param fontFileName
+	 * @param fontSize
+	 * @param color
+	 * @param antiAliased
+	 * 
+	 * @return the prepared font data, to be passed to {@link #createPreparedFont(PApplet, Object)}.
+	 * 
+	 * @throws Exception if the font cannot be prepared.
+	 */
+	public Object prepareFont(PApplet pa, String fontFileName, int fontSize, MTColor color, boolean antiAliased) throws Exception;
+	
+	/**
+	 * Creates the font from data returned by {@link #prepareFont(PApplet, String, int, MTColor, boolean)},
+	 * uploading its glyphs to OpenGL.  Called on the rendering thread.
+	 * 
+	 * @param pa
+	 * @param preparedFont
+	 * 
+	 * @return the font, or null if it could not be created.
+	 */
+	public IFont createPreparedFont(PApplet pa, Object preparedFont);
+}
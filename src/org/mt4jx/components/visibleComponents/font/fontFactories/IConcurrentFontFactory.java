@@ -0,0 +1,29 @@
+/**
+ * This material was prepared as an account of work sponsored by an agency of the United States Government.<br>
+ * Neither the United States Government nor the United States Department of Energy, nor any of their employees,<br> 
+ * nor any of their contractors, subcontractors or their employees, makes any warranty, express or implied, or<br>
+ * assumes any legal liability or responsibility for the accuracy, completeness, or usefulness or any information,<br> 
+ * apparatus, product, or process disclosed, or represents that its use would not infringe privately owned rights.
+ */
+package org.mt4jx.components.visibleComponents.font.fontFactories;
+
+/**
+ * <p>
+ * Extension of IEnhancedFontFactory for factories whose name extraction may
+ * run on several threads at once.  When discovering fonts in parallel, the
+ * font manager extracts the names of the files of such factories concurrently,
+ * and those of the files of other factories from one thread at a time.
+ * </p>
+ */
+public interface IConcurrentFontFactory extends IEnhancedFontFactory {
+	
+	/**
+	 * Returns true if {@link #extractFontName(String)}, and 
+	 * {@link IMultiFontFactory#extractFontNames(String)} if implemented, may be
+	 * called concurrently from several threads.  If false, the font manager 
+	 * only ever calls them from one thread at a time.
+	 * 
+	 * @return whether name extraction is thread safe.
+	 */
+	public boolean isThreadSafe();
+}
@@ -23,6 +23,9 @@ public interface IEnhancedFontFactory extends IFontFactory {
 	
 	/**
 	 * Returns the name of the font stored in the specified file.
+	 * Implementations are assumed not to be thread safe unless the factory
+	 * implements {@link IConcurrentFontFactory} and its
+	 * {@link IConcurrentFontFactory#isThreadSafe()} returns true.
 	 * 
 	 * @param fontFileName
 	 * 
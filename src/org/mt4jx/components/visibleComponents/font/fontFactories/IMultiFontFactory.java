@@ -0,0 +1,31 @@
+/**
+ * This material was prepared as an account of work sponsored by an agency of the United States Government.<br>
+ * Neither the United States Government nor the United States Department of Energy, nor any of their employees,<br> 
+ * nor any of their contractors, subcontractors or their employees, makes any warranty, express or implied, or<br>
+ * assumes any legal liability or responsibility for the accuracy, completeness, or usefulness or any information,<br> 
+ * apparatus, product, or process disclosed, or represents that its use would not infringe privately owned rights.
+ */
+package org.mt4jx.components.visibleComponents.font.fontFactories;
+
+/**
+ * <p>
+ * Extension of IEnhancedFontFactory for factories which can extract the names
+ * of all the fonts in a file, for collections such as .ttc files which hold
+ * several.  The font manager lists every font of such files; of files of
+ * other factories, it lists the font named by 
+ * {@link IEnhancedFontFactory#extractFontName(String)}.
+ * </p>
+ */
+public interface IMultiFontFactory extends IEnhancedFontFactory {
+	
+	/**
+	 * Returns the names of all the fonts stored in the specified file.  Most
+	 * files hold a single font, but collections such as .ttc files hold several.
+	 * 
+	 * @param fontFileName
+	 * 
+	 * @return the names of the fonts, or null if no font is stored in the file
+	 *   or the names cannot be extracted.
+	 */
+	public String[] extractFontNames(String fontFileName);
+}
@@ -0,0 +1,607 @@
+/**
+ * This material was prepared as an account of work sponsored by an agency of the United States Government.<br>
+ * Neither the United States Government nor the United States Department of Energy, nor any of their employees,<br>
+ * nor any of their contractors, subcontractors or their employees, makes any warranty, express or implied, or<br>
+ * assumes any legal liability or responsibility for the accuracy, completeness, or usefulness or any information,<br>
+ * apparatus, product, or process disclosed, or represents that its use would not infringe privately owned rights.
+ */
+package org.mt4jx.components.visibleComponents.font.fontFactories;
+
+import java.awt.FontFormatException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Reads the names of the fonts in a true-type (.ttf) or true-type collection
+ * (.ttc) file, and the characters they cover. The file is memory-mapped
+ * once, and the table directory, <tt>name</tt> and <tt>cmap</tt> tables of
+ * every face are read in place, without copying them into intermediate
+ * buffers. Open-type files are read the same way; for one whose <tt>name</tt>
+ * table has no Windows names, the name is taken from its <tt>CFF</tt> table.
+ * </p>
+ */
+public final class TrueTypeFontReader {
+
+  /** Index of the family name in the arrays returned by this class. */
+  public static final int FAMILY = 0;
+
+  /** Index of the full name in the arrays returned by this class. */
+  public static final int FULL = 1;
+
+  private static final int TTC_HEADER_SIZE = 12;
+
+  private static final int DIRECTORY_HEADER_SIZE = 12;
+
+  private static final int DIRECTORY_ENTRY_SIZE = 16;
+
+  private static final int HEAD_TAG = 0x68656164; // 'head'
+
+  private static final int KERN_TAG = 0x6B65726E; // 'kern'
+
+  private static final int CMAP_TAG = 0x636D6170; // 'cmap'
+
+  private static final int CFF_TAG = 0x43464620; // 'CFF '
+
+  private TrueTypeFontReader() {
+  }
+
+  /**
+   * Memory-maps the specified file for reading. The mapping stays valid
+   * after this method has closed the file.
+   *
+   * @param file
+   *
+   * @return a big-endian buffer over the whole file.
+   *
+   * @throws IOException
+   */
+  public static ByteBuffer map(File file) throws IOException {
+    RandomAccessFile raf = null;
+    try {
+      raf = new RandomAccessFile(file, "r");
+      final FileChannel channel = raf.getChannel();
+      return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+    } finally {
+      if (raf != null) {
+        try {
+          raf.close();
+        } catch (final IOException ioe) {
+          // Ignore.
+        }
+      }
+    }
+  }
+
+  /**
+   * Returns the offsets of the font headers in the file. A plain true-type
+   * file has a single face at offset 0; a collection has one per face.
+   *
+   * @param buffer
+   *          the mapped file.
+   *
+   * @return
+   *
+   * @throws FontFormatException
+   *           if the buffer does not hold a true-type font or collection.
+   */
+  public static int[] getFaceOffsets(ByteBuffer buffer) throws FontFormatException {
+    try {
+      switch (buffer.getInt(0)) {
+        case EnhancedTTFontFactory.TTCF_TAG:
+          // Skip the TTC version ID.
+          final int directoryCount = buffer.getInt(8);
+          if ((directoryCount < 0) || (TTC_HEADER_SIZE + (4L * directoryCount) > buffer.limit())) {
+            throw new FontFormatException("bad font count: " + directoryCount);
+          }
+          final int[] offsets = new int[directoryCount];
+          for (int i = 0; i < directoryCount; i++) {
+            offsets[i] = buffer.getInt(TTC_HEADER_SIZE + (4 * i));
+          }
+          return offsets;
+        case EnhancedTTFontFactory.V1TT_TAG:
+        case EnhancedTTFontFactory.TRUE_TAG:
+        case EnhancedTTFontFactory.OTTO_TAG:
+          return new int[] { 0 };
+        default:
+          throw new FontFormatException("not a valid true type font file");
+      }
+    } catch (final IndexOutOfBoundsException e) {
+      throw new FontFormatException("truncated true type font file");
+    }
+  }
+
+  /**
+   * Returns the offset and length of a table of the face whose header is at
+   * the specified offset.
+   *
+   * @param buffer
+   *          the mapped file.
+   * @param headerOffset
+   *          offset of the face's header.
+   * @param tag
+   *          tag of the table.
+   *
+   * @return <code>{offset, length}</code>, or null if the face has no such table.
+   *
+   * @throws FontFormatException
+   *           if the table directory is corrupt.
+   */
+  public static int[] findTable(ByteBuffer buffer, int headerOffset, int tag) throws FontFormatException {
+    try {
+      /*
+       * After the TT version/scaler type field, is the short representing the
+       * number of tables in the table directory. The table directory
+       * begins at 12 bytes after the header. Each table entry is 16 bytes
+       * long (4 32-bit ints)
+       */
+      final int numTables = buffer.getShort(headerOffset + 4) & 0xffff;
+      int entry = headerOffset + DIRECTORY_HEADER_SIZE;
+      for (int i = 0; i < numTables; i++, entry += DIRECTORY_ENTRY_SIZE) {
+        if (buffer.getInt(entry) == tag) {
+          final int offset = buffer.getInt(entry + 8);
+          final int length = buffer.getInt(entry + 12);
+          if ((offset < 0) || (length < 0) || ((long) offset + length > buffer.limit())) {
+            throw new FontFormatException("bad table, tag=" + tag);
+          }
+          return length > 0 ? new int[] { offset, length } : null;
+        }
+      }
+      return null;
+    } catch (final IndexOutOfBoundsException e) {
+      throw new FontFormatException("truncated table directory");
+    }
+  }
+
+  /**
+   * Returns the family and full names of every face in the file.
+   *
+   * @param file
+   *          a .ttf or .ttc file.
+   *
+   * @return one array per face, indexed by {@link #FAMILY} and {@link #FULL}.
+   *         Either name may be null if the face does not define it.
+   *
+   * @throws IOException
+   * @throws FontFormatException
+   */
+  public static String[][] readFontNames(File file) throws IOException, FontFormatException {
+    final ByteBuffer buffer = map(file);
+    final int[] faceOffsets = getFaceOffsets(buffer);
+    final String[][] names = new String[faceOffsets.length][];
+    for (int i = 0; i < faceOffsets.length; i++) {
+      names[i] = readFaceNames(buffer, faceOffsets[i]);
+    }
+    return names;
+  }
+
+  /**
+   * Returns the family and full names of the face whose header is at the
+   * specified offset.
+   *
+   * @param buffer
+   *          the mapped file.
+   * @param headerOffset
+   *          offset of the face's header.
+   *
+   * @return <code>{familyName, fullName}</code>
+   *
+   * @throws FontFormatException
+   */
+  public static String[] readFaceNames(ByteBuffer buffer, int headerOffset) throws FontFormatException {
+    String familyName = null;
+    String fullName = null;
+
+    final int[] table = findTable(buffer, headerOffset, EnhancedTTFontFactory.NAME_TAG);
+    if (table != null) {
+      try {
+        final int tableOffset = table[0];
+        final int tableEnd = table[0] + table[1];
+        // The format at tableOffset is not needed.
+        final int numRecords = buffer.getShort(tableOffset + 2) & 0xffff;
+        /*
+         * The name table uses unsigned shorts. The values that are sizes
+         * or offsets into the table could be greater than 32767, so
+         * read and store those as ints
+         */
+        final int stringPtr = tableOffset + (buffer.getShort(tableOffset + 4) & 0xffff);
+        int record = tableOffset + 6;
+        for (int i = 0; i < numRecords; i++, record += 12) {
+          if (buffer.getShort(record) != EnhancedTTFontFactory.MS_PLATFORM_ID) {
+            continue; // skip over this record.
+          }
+          final short encodingID = buffer.getShort(record + 2);
+          final short langID = buffer.getShort(record + 4);
+          final short nameID = buffer.getShort(record + 6);
+          final int nameLen = buffer.getShort(record + 8) & 0xffff;
+          final int namePtr = stringPtr + (buffer.getShort(record + 10) & 0xffff);
+          if (namePtr + nameLen > tableEnd) {
+            continue;
+          }
+          switch (nameID) {
+            case EnhancedTTFontFactory.FAMILY_NAME_ID:
+              if ((familyName == null) || (langID == EnhancedTTFontFactory.ENGLISH_LOCALE_ID)) {
+                familyName = makeString(buffer, namePtr, nameLen, encodingID);
+              }
+              break;
+            case EnhancedTTFontFactory.FULL_NAME_ID:
+              if ((fullName == null) || (langID == EnhancedTTFontFactory.ENGLISH_LOCALE_ID)) {
+                fullName = makeString(buffer, namePtr, nameLen, encodingID);
+              }
+              break;
+          }
+        }
+      } catch (final IndexOutOfBoundsException e) {
+        throw new FontFormatException("truncated name table");
+      }
+    }
+
+    if (fullName == null) {
+      fullName = readCffFontName(buffer, headerOffset);
+    }
+
+    return new String[] { familyName, fullName };
+  }
+
+  /**
+   * Returns the PostScript name of the face whose header is at the specified
+   * offset, as the first entry of the Name INDEX of its <tt>CFF</tt> table.
+   * Only the CFF header and the start of the index are read.
+   *
+   * @param buffer
+   *          the mapped file.
+   * @param headerOffset
+   *          offset of the face's header.
+   *
+   * @return the name, or null if the face has no <tt>CFF</tt> table.
+   *
+   * @throws FontFormatException
+   */
+  public static String readCffFontName(ByteBuffer buffer, int headerOffset) throws FontFormatException {
+    final int[] table = findTable(buffer, headerOffset, CFF_TAG);
+    if (table == null) {
+      return null;
+    }
+    try {
+      final int tableEnd = table[0] + table[1];
+      // The header is major, minor, header size and offset size, one byte each.
+      final int index = table[0] + (buffer.get(table[0] + 2) & 0xff);
+      final int count = buffer.getShort(index) & 0xffff;
+      if (count == 0) {
+        return null;
+      }
+      final int offSize = buffer.get(index + 2) & 0xff;
+      if ((offSize < 1) || (offSize > 4)) {
+        throw new FontFormatException("bad CFF offset size: " + offSize);
+      }
+      // Offsets into the data, which follows the offset array, start at 1.
+      final int data = index + 3 + ((count + 1) * offSize) - 1;
+      final int start = data + readOffset(buffer, index + 3, offSize);
+      final int end = data + readOffset(buffer, index + 3 + offSize, offSize);
+      if ((start < index) || (end < start) || (end > tableEnd)) {
+        throw new FontFormatException("bad CFF name index");
+      }
+      // Names are printable ASCII.
+      final char[] chars = new char[end - start];
+      for (int i = 0; i < chars.length; i++) {
+        chars[i] = (char) (buffer.get(start + i) & 0xff);
+      }
+      return chars.length > 0 ? new String(chars) : null;
+    } catch (final IndexOutOfBoundsException e) {
+      throw new FontFormatException("truncated CFF table");
+    }
+  }
+
+  private static int readOffset(ByteBuffer buffer, int offset, int offSize) {
+    int value = 0;
+    for (int i = 0; i < offSize; i++) {
+      value = (value << 8) | (buffer.get(offset + i) & 0xff);
+    }
+    return value;
+  }
+
+  /**
+   * Returns the size of the em square of the face whose header is at the
+   * specified offset, in font units.
+   *
+   * @param buffer
+   *          the mapped file.
+   * @param headerOffset
+   *          offset of the face's header.
+   *
+   * @return the units per em, or 0 if the face has no <tt>head</tt> table.
+   *
+   * @throws FontFormatException
+   */
+  public static int readUnitsPerEm(ByteBuffer buffer, int headerOffset) throws FontFormatException {
+    final int[] table = findTable(buffer, headerOffset, HEAD_TAG);
+    if ((table == null) || (table[1] < 20)) {
+      return 0;
+    }
+    return buffer.getShort(table[0] + 18) & 0xffff;
+  }
+
+  /**
+   * Returns the horizontal kerning pairs of the face whose header is at the
+   * specified offset, from the format 0 subtables of its <tt>kern</tt>
+   * table. Kerning defined only in the <tt>GPOS</tt> table of newer
+   * open-type fonts is not read.
+   *
+   * @param buffer
+   *          the mapped file.
+   * @param headerOffset
+   *          offset of the face's header.
+   *
+   * @return left glyph index, right glyph index and kerning in font units,
+   *         for each pair in turn; empty if the face has no kerning.
+   *
+   * @throws FontFormatException
+   */
+  public static int[] readKerningPairs(ByteBuffer buffer, int headerOffset) throws FontFormatException {
+    final int[] table = findTable(buffer, headerOffset, KERN_TAG);
+    if (table == null) {
+      return new int[0];
+    }
+    try {
+      final int tableEnd = table[0] + table[1];
+      // Only the Microsoft layout, version 0, is read.
+      if (buffer.getShort(table[0]) != 0) {
+        return new int[0];
+      }
+      final int numTables = buffer.getShort(table[0] + 2) & 0xffff;
+      int[] pairs = new int[0];
+      int subtable = table[0] + 4;
+      for (int i = 0; (i < numTables) && (subtable + 6 <= tableEnd); i++) {
+        final int length = buffer.getShort(subtable + 2) & 0xffff;
+        final int coverage = buffer.getShort(subtable + 4) & 0xffff;
+        // Format 0, horizontal, kerning values rather than minima, not cross-stream.
+        if (((coverage >> 8) == 0) && ((coverage & 0x7) == 0x1)) {
+          final int numPairs = buffer.getShort(subtable + 6) & 0xffff;
+          final int first = pairs.length;
+          pairs = Arrays.copyOf(pairs, first + (3 * numPairs));
+          int pair = subtable + 14;
+          for (int p = 0; p < numPairs; p++, pair += 6) {
+            pairs[first + (3 * p)] = buffer.getShort(pair) & 0xffff;
+            pairs[first + (3 * p) + 1] = buffer.getShort(pair + 2) & 0xffff;
+            pairs[first + (3 * p) + 2] = buffer.getShort(pair + 4);
+          }
+        }
+        if (length == 0) {
+          break;
+        }
+        subtable += length;
+      }
+      return pairs;
+    } catch (final IndexOutOfBoundsException e) {
+      throw new FontFormatException("truncated kern table");
+    }
+  }
+
+  /**
+   * Returns the characters covered by any face in the file.
+   *
+   * @param file
+   *          a .ttf, .ttc or .otf file.
+   *
+   * @return the covered code points as sorted, disjoint ranges, each a
+   *         first and last code point in turn.
+   *
+   * @throws IOException
+   * @throws FontFormatException
+   */
+  public static int[] readCoverage(File file) throws IOException, FontFormatException {
+    final ByteBuffer buffer = map(file);
+    final int[] faceOffsets = getFaceOffsets(buffer);
+    int[] ranges = new int[0];
+    for (final int faceOffset : faceOffsets) {
+      final int[] faceRanges = readCoverage(buffer, faceOffset);
+      final int n = ranges.length;
+      ranges = Arrays.copyOf(ranges, n + faceRanges.length);
+      System.arraycopy(faceRanges, 0, ranges, n, faceRanges.length);
+    }
+    return faceOffsets.length > 1 ? mergeRanges(ranges, ranges.length) : ranges;
+  }
+
+  /**
+   * Returns the characters covered by the face whose header is at the
+   * specified offset: those its <tt>cmap</tt> table maps to a glyph other
+   * than the missing glyph. The Unicode subtable of format 12 is read if
+   * there is one, else that of format 4.
+   *
+   * @param buffer
+   *          the mapped file.
+   * @param headerOffset
+   *          offset of the face's header.
+   *
+   * @return the covered code points as sorted, disjoint ranges, each a
+   *         first and last code point in turn; empty if the face has no
+   *         Unicode subtable.
+   *
+   * @throws FontFormatException
+   */
+  public static int[] readCoverage(ByteBuffer buffer, int headerOffset) throws FontFormatException {
+    final int[] table = findTable(buffer, headerOffset, CMAP_TAG);
+    if (table == null) {
+      return new int[0];
+    }
+    try {
+      final int tableEnd = table[0] + table[1];
+      final int numTables = buffer.getShort(table[0] + 2) & 0xffff;
+      int format4 = -1, format12 = -1;
+      int record = table[0] + 4;
+      for (int i = 0; (i < numTables) && (record + 8 <= tableEnd); i++, record += 8) {
+        final int platformID = buffer.getShort(record) & 0xffff;
+        final int encodingID = buffer.getShort(record + 2) & 0xffff;
+        final int subtable = table[0] + buffer.getInt(record + 4);
+        if ((subtable < table[0]) || (subtable + 4 > tableEnd)) {
+          continue;
+        }
+        // Unicode platform, or Microsoft's Unicode BMP, full repertoire and symbol encodings.
+        final boolean unicode = (platformID == 0)
+            || ((platformID == EnhancedTTFontFactory.MS_PLATFORM_ID) && ((encodingID == 0) || (encodingID == 1) || (encodingID == 10)));
+        if (!unicode) {
+          continue;
+        }
+        final int format = buffer.getShort(subtable) & 0xffff;
+        if ((format == 12) && (format12 < 0)) {
+          format12 = subtable;
+        } else if ((format == 4) && (format4 < 0)) {
+          format4 = subtable;
+        }
+      }
+      if (format12 >= 0) {
+        return readFormat12Coverage(buffer, format12, tableEnd);
+      }
+      if (format4 >= 0) {
+        return readFormat4Coverage(buffer, format4, tableEnd);
+      }
+      return new int[0];
+    } catch (final IndexOutOfBoundsException e) {
+      throw new FontFormatException("truncated cmap table");
+    }
+  }
+
+  // Segmented coverage: groups of consecutive code points mapped to consecutive glyphs.
+  private static int[] readFormat12Coverage(ByteBuffer buffer, int subtable, int tableEnd) {
+    final int numGroups = buffer.getInt(subtable + 12);
+    final int count = Math.max(0, Math.min(numGroups, (tableEnd - subtable - 16) / 12));
+    final int[] ranges = new int[2 * count];
+    int n = 0;
+    int group = subtable + 16;
+    for (int i = 0; i < count; i++, group += 12) {
+      int first = buffer.getInt(group);
+      final int last = Math.min(buffer.getInt(group + 4), Character.MAX_CODE_POINT);
+      if (buffer.getInt(group + 8) == 0) {
+        // The first code point maps to the missing glyph.
+        first++;
+      }
+      if ((first >= 0) && (first <= last)) {
+        ranges[n++] = first;
+        ranges[n++] = last;
+      }
+    }
+    return mergeRanges(ranges, n);
+  }
+
+  // Segment mapping to delta values, for the basic multilingual plane.
+  private static int[] readFormat4Coverage(ByteBuffer buffer, int subtable, int tableEnd) {
+    final int segCount = (buffer.getShort(subtable + 6) & 0xffff) / 2;
+    final int endCodes = subtable + 14;
+    final int startCodes = endCodes + (2 * segCount) + 2;
+    final int idDeltas = startCodes + (2 * segCount);
+    final int idRangeOffsets = idDeltas + (2 * segCount);
+    int[] ranges = new int[64];
+    int n = 0;
+    for (int s = 0; s < segCount; s++) {
+      final int end = buffer.getShort(endCodes + (2 * s)) & 0xffff;
+      final int start = buffer.getShort(startCodes + (2 * s)) & 0xffff;
+      final int delta = buffer.getShort(idDeltas + (2 * s));
+      final int rangeOffsetPos = idRangeOffsets + (2 * s);
+      final int rangeOffset = buffer.getShort(rangeOffsetPos) & 0xffff;
+      if ((start > end) || (start == 0xffff)) {
+        continue;
+      }
+      int runStart = -1;
+      for (int c = start; c <= end + 1; c++) {
+        boolean mapped = false;
+        if (c <= end) {
+          if (rangeOffset == 0) {
+            mapped = ((c + delta) & 0xffff) != 0;
+          } else {
+            final int glyphPos = rangeOffsetPos + rangeOffset + (2 * (c - start));
+            mapped = (glyphPos + 2 <= tableEnd) && ((buffer.getShort(glyphPos) & 0xffff) != 0)
+                && (((buffer.getShort(glyphPos) + delta) & 0xffff) != 0);
+          }
+        }
+        if (mapped && (runStart < 0)) {
+          runStart = c;
+        } else if (!mapped && (runStart >= 0)) {
+          if (n + 2 > ranges.length) {
+            ranges = Arrays.copyOf(ranges, 2 * ranges.length);
+          }
+          ranges[n++] = runStart;
+          ranges[n++] = c - 1;
+          runStart = -1;
+        }
+      }
+    }
+    return mergeRanges(ranges, n);
+  }
+
+  // Sorts ranges by their first code point and merges those that overlap or touch.
+  private static int[] mergeRanges(int[] ranges, int n) {
+    final long[] packed = new long[n / 2];
+    for (int i = 0; i < packed.length; i++) {
+      packed[i] = ((long) ranges[2 * i] << 32) | (ranges[(2 * i) + 1] & 0xffffffffL);
+    }
+    Arrays.sort(packed);
+    final int[] merged = new int[n];
+    int m = 0;
+    for (final long range : packed) {
+      final int first = (int) (range >>> 32);
+      final int last = (int) range;
+      if ((m > 0) && (first <= merged[m - 1] + 1)) {
+        merged[m - 1] = Math.max(merged[m - 1], last);
+      } else {
+        merged[m++] = first;
+        merged[m++] = last;
+      }
+    }
+    return Arrays.copyOf(merged, m);
+  }
+
+  // Decodes a name. The UTF-16 encodings are read straight out of the mapped
+  // buffer; only the legacy double-byte encodings go through a byte array.
+  private static String makeString(ByteBuffer buffer, int offset, int len, short encoding) {
+    String charset;
+    switch (encoding) {
+      case 2:
+        charset = "SJIS";
+        break;
+      case 3:
+        charset = "GBK";
+        break;
+      case 4:
+        charset = "MS950";
+        break;
+      case 5:
+        charset = "EUC_KR";
+        break;
+      case 6:
+        charset = "Johab";
+        break;
+      default:
+        // 1 is the most common case, 0 is used by symbol fonts.
+        final char[] chars = new char[len / 2];
+        for (int i = 0; i < chars.length; i++) {
+          chars[i] = buffer.getChar(offset + (2 * i));
+        }
+        return new String(chars);
+    }
+
+    /*
+     * Encodings 2->6 are just for some old DBCS fonts, apparently mostly
+     * on Solaris. Some of these fonts encode ascii names as double-byte
+     * characters. ie with a leading zero byte for what properly should be
+     * a single byte-char.
+     */
+    final byte[] bytes = new byte[len];
+    int n = 0;
+    for (int i = 0; i < len; i++) {
+      final byte b = buffer.get(offset + i);
+      if (b != 0) {
+        bytes[n++] = b;
+      }
+    }
+    try {
+      return new String(bytes, 0, n, charset);
+    } catch (final UnsupportedEncodingException e) {
+      return new String(bytes, 0, n);
+    }
+  }
+}
@@ -0,0 +1,111 @@
+/**
+ * This material was prepared as an account of work sponsored by an agency of the United States Government.<br>
+ * Neither the United States Government nor the United States Department of Energy, nor any of their employees,<br>
+ * nor any of their contractors, subcontractors or their employees, makes any warranty, express or implied, or<br>
+ * assumes any legal liability or responsibility for the accuracy, completeness, or usefulness or any information,<br>
+ * apparatus, product, or process disclosed, or represents that its use would not infringe privately owned rights.
+ */
+package org.mt4jx.components.visibleComponents.font.fontFactories;
+
+import java.awt.FontFormatException;
+import java.io.DataInput;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * <p>
+ * Reads the name of the font in a Processing font (.vlw) file without
+ * loading its glyphs. A .vlw file holds a header, a record per glyph, the
+ * glyph bitmaps and, since version 10, the font's name and PostScript name:
+ * </p>
+ * <pre>
+ *   int glyphCount, version, size, reserved, ascent, descent;
+ *   { int value, height, width, setWidth, topExtent, leftExtent, reserved; } [glyphCount]
+ *   byte bitmaps[sum of width * height];
+ *   UTF name, psName;
+ * </pre>
+ * <p>
+ * Only the header and glyph records are read. The bitmaps, which make up
+ * most of the file, are skipped over.
+ * </p>
+ */
+public final class VlwFontReader {
+
+  private static final int HEADER_SIZE = 24;
+
+  private static final int GLYPH_RECORD_SIZE = 28;
+
+  // The first version storing the names.
+  private static final int NAMED_VERSION = 10;
+
+  private static final int MAX_VERSION = 11;
+
+  private VlwFontReader() {
+  }
+
+  /**
+   * Returns the name of the font in a .vlw file.
+   *
+   * @param file
+   *
+   * @return the name, or the PostScript name if it has none, or null if
+   *         neither is stored.
+   *
+   * @throws IOException
+   * @throws FontFormatException
+   *           if the file is not a .vlw font.
+   */
+  public static String readFontName(File file) throws IOException, FontFormatException {
+    final RandomAccessFile raf = new RandomAccessFile(file, "r");
+    try {
+      final long length = raf.length();
+      final int glyphCount = raf.readInt();
+      final int version = raf.readInt();
+      if ((glyphCount < 0) || (version < 0) || (version > MAX_VERSION)
+          || (HEADER_SIZE + ((long) glyphCount * GLYPH_RECORD_SIZE) > length)) {
+        throw new FontFormatException("not a vlw font file");
+      }
+      if (version < NAMED_VERSION) {
+        return null;
+      }
+
+      // The glyph records, read in one go.
+      final byte[] records = new byte[glyphCount * GLYPH_RECORD_SIZE];
+      raf.seek(HEADER_SIZE);
+      raf.readFully(records);
+      long bitmapBytes = 0;
+      for (int i = 0; i < glyphCount; i++) {
+        final int record = i * GLYPH_RECORD_SIZE;
+        final int height = getInt(records, record + 4);
+        final int width = getInt(records, record + 8);
+        if ((height < 0) || (width < 0)) {
+          throw new FontFormatException("bad glyph size");
+        }
+        bitmapBytes += (long) width * height;
+      }
+
+      final long namesOffset = HEADER_SIZE + records.length + bitmapBytes;
+      if (namesOffset + 4 > length) {
+        throw new FontFormatException("truncated vlw font file");
+      }
+      raf.seek(namesOffset);
+      String name = readName(raf);
+      if (name.length() == 0) {
+        name = readName(raf);
+      }
+      return (name.length() > 0) ? name : null;
+    } finally {
+      raf.close();
+    }
+  }
+
+  private static String readName(DataInput in) throws IOException {
+    return in.readUTF().trim();
+  }
+
+  private static int getInt(byte[] b, int offset) {
+    return ((b[offset] & 0xff) << 24) | ((b[offset + 1] & 0xff) << 16) | ((b[offset + 2] & 0xff) << 8)
+        | (b[offset + 3] & 0xff);
+  }
+}
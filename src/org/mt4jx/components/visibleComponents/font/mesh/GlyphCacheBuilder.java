@@ -0,0 +1,100 @@
+/**
+ * This material was prepared as an account of work sponsored by an agency of the United States Government.<br>
+ * Neither the United States Government nor the United States Department of Energy, nor any of their employees,<br>
+ * nor any of their contractors, subcontractors or their employees, makes any warranty, express or implied, or<br>
+ * assumes any legal liability or responsibility for the accuracy, completeness, or usefulness or any information,<br>
+ * apparatus, product, or process disclosed, or represents that its use would not infringe privately owned rights.
+ */
+package org.mt4jx.components.visibleComponents.font.mesh;
+
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * <p>
+ * Command line tool building a {@link GlyphGeometryCache} ahead of time, so
+ * that even the first run of an installation does not parse or tessellate
+ * any vector font:
+ * </p>
+ * <pre>
+ *   java -cp ... org.mt4jx.components.visibleComponents.font.mesh.GlyphCacheBuilder
+ *       &lt;font directory&gt; &lt;cache directory&gt; &lt;size&gt; [&lt;size&gt; ...]
+ * </pre>
+ * <p>
+ * Every true-type, open-type and svg font file in the font directory is
+ * built at each size. Geometry already in the cache is kept. The
+ * <tt>prebuild-glyph-cache</tt> target of the build file runs it.
+ * </p>
+ */
+public final class GlyphCacheBuilder
+{
+
+    private GlyphCacheBuilder()
+    {
+    }
+
+    public static void main(final String[] args)
+    {
+        if (args.length < 3)
+        {
+            System.err.println("usage: GlyphCacheBuilder <font directory> <cache directory> <size> [<size> ...]");
+            System.exit(2);
+        }
+        final File fontDirectory = new File(args[0]);
+        final File[] files = fontDirectory.listFiles();
+        if (files == null)
+        {
+            System.err.println("Not a directory: " + fontDirectory);
+            System.exit(2);
+        }
+        final int[] sizes = new int[args.length - 2];
+        for (int i = 0; i < sizes.length; i++)
+        {
+            try
+            {
+                sizes[i] = Integer.parseInt(args[i + 2]);
+            } catch (final NumberFormatException e)
+            {
+                sizes[i] = 0;
+            }
+            if (sizes[i] <= 0)
+            {
+                System.err.println("Bad font size: " + args[i + 2]);
+                System.exit(2);
+            }
+        }
+        Arrays.sort(files);
+
+        final GlyphGeometryCache cache = new GlyphGeometryCache(new File(args[1]));
+        int built = 0, kept = 0, failed = 0;
+        for (final File file : files)
+        {
+            if (!file.isFile() || !GlyphGeometryCache.isSupported(file.getName()))
+            {
+                continue;
+            }
+            for (final int size : sizes)
+            {
+                try
+                {
+                    if (cache.contains(file, size))
+                    {
+                        kept++;
+                        continue;
+                    }
+                    final long start = System.nanoTime();
+                    final GlyphGeometry geometry = cache.getOrBuild(file, size);
+                    System.out.println(file.getName() + " @ " + size + ": " + geometry.getByteSize() + " bytes, "
+                            + ((System.nanoTime() - start) / 1000000) + " ms");
+                    built++;
+                } catch (final Exception e)
+                {
+                    System.err.println(file.getName() + " @ " + size + ": " + e);
+                    failed++;
+                }
+            }
+        }
+        System.out.println(built + " built, " + kept + " already cached, " + failed + " failed");
+        System.exit(failed > 0 ? 1 : 0);
+    }
+}
@@ -0,0 +1,563 @@
+/**
+ * This material was prepared as an account of work sponsored by an agency of the United States Government.<br>
+ * Neither the United States Government nor the United States Department of Energy, nor any of their employees,<br>
+ * nor any of their contractors, subcontractors or their employees, makes any warranty, express or implied, or<br>
+ * assumes any legal liability or responsibility for the accuracy, completeness, or usefulness or any information,<br>
+ * apparatus, product, or process disclosed, or represents that its use would not infringe privately owned rights.
+ */
+package org.mt4jx.components.visibleComponents.font.mesh;
+
+import java.awt.Shape;
+import java.awt.geom.PathIterator;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * <p>
+ * The tessellated glyphs of a font at one size: for each character, its
+ * advance, the triangles filling it and the line segments outlining it, plus
+ * the kerning between pairs of characters. Coordinates are in pixels, with
+ * the top of the line at y = 0 and the baseline at the maximum ascent.
+ * </p>
+ * <p>
+ * The geometry is stored in a compact binary form which is also its
+ * in-memory form: {@link #map(File)} memory-maps a file written by
+ * {@link #write(File)} and the vertices are drawn straight out of the
+ * mapping, so loading a font from the {@link GlyphGeometryCache} involves
+ * neither parsing nor tessellation. The layout, in native byte order, is:
+ * </p>
+ * <pre>
+ *   int    MAGIC, VERSION, font size
+ *   float  max ascent, max descent
+ *   int    units per em, family length, family characters (as shorts, padded to 4 bytes)
+ *   int    glyph count, kerning pair count, vertex float count
+ *   glyph  codepoint, advance, first triangle vertex, triangle vertex count,
+ *          first line vertex, line vertex count   (sorted by codepoint)
+ *   pair   left codepoint, right codepoint, kerning   (sorted)
+ *   float  vertices, as x and y
+ * </pre>
+ * <p>
+ * A file written on a machine of the other byte order has a mismatched
+ * magic number and is rejected like any other stale file.
+ * </p>
+ */
+public final class GlyphGeometry
+{
+
+    // 'MTGG'
+    private static final int MAGIC = 0x4D544747;
+
+    /**
+     * Version of the layout. Bump whenever it, or the tessellation, changes;
+     * files of other versions are rebuilt.
+     */
+    public static final int VERSION = 1;
+
+    private static final int GLYPH_RECORD_INTS = 6;
+
+    private static final int KERNING_RECORD_INTS = 3;
+
+    private final String fontFamily;
+
+    private final int fontSize;
+
+    private final float maxAscent, maxDescent;
+
+    private final int unitsPerEm;
+
+    private final int[] codepoints;
+
+    private final float[] advances;
+
+    private final int[] triangleStart, triangleCount, lineStart, lineCount;
+
+    private final long[] kerningPairs;
+
+    private final float[] kerningValues;
+
+    private final FloatBuffer vertices;
+
+    private final ByteBuffer buffer;
+
+    private GlyphGeometry(final ByteBuffer buffer) throws IOException
+    {
+        try
+        {
+            buffer.order(ByteOrder.nativeOrder());
+            buffer.position(0);
+            if (buffer.getInt() != MAGIC)
+            {
+                throw new IOException("not a glyph geometry file, or of another byte order");
+            }
+            final int version = buffer.getInt();
+            if (version != VERSION)
+            {
+                throw new IOException("glyph geometry version " + version + ", expected " + VERSION);
+            }
+            fontSize = buffer.getInt();
+            maxAscent = buffer.getFloat();
+            maxDescent = buffer.getFloat();
+            unitsPerEm = buffer.getInt();
+            final char[] family = new char[buffer.getInt()];
+            for (int i = 0; i < family.length; i++)
+            {
+                family[i] = buffer.getChar();
+            }
+            fontFamily = new String(family);
+            buffer.position((buffer.position() + 3) & ~3);
+
+            final int glyphCount = buffer.getInt();
+            final int kerningCount = buffer.getInt();
+            final int vertexFloats = buffer.getInt();
+            codepoints = new int[glyphCount];
+            advances = new float[glyphCount];
+            triangleStart = new int[glyphCount];
+            triangleCount = new int[glyphCount];
+            lineStart = new int[glyphCount];
+            lineCount = new int[glyphCount];
+            for (int i = 0; i < glyphCount; i++)
+            {
+                codepoints[i] = buffer.getInt();
+                advances[i] = buffer.getFloat();
+                triangleStart[i] = buffer.getInt();
+                triangleCount[i] = buffer.getInt();
+                lineStart[i] = buffer.getInt();
+                lineCount[i] = buffer.getInt();
+                if ((triangleStart[i] < 0) || (lineStart[i] < 0)
+                        || ((2L * (triangleStart[i] + (long) triangleCount[i])) > vertexFloats)
+                        || ((2L * (lineStart[i] + (long) lineCount[i])) > vertexFloats))
+                {
+                    throw new IOException("bad glyph record");
+                }
+            }
+            kerningPairs = new long[kerningCount];
+            kerningValues = new float[kerningCount];
+            for (int i = 0; i < kerningCount; i++)
+            {
+                kerningPairs[i] = pairKey(buffer.getInt(), buffer.getInt());
+                kerningValues[i] = buffer.getFloat();
+            }
+            if (buffer.remaining() != 4L * vertexFloats)
+            {
+                throw new IOException("truncated glyph geometry");
+            }
+            vertices = buffer.slice().order(ByteOrder.nativeOrder()).asFloatBuffer();
+            this.buffer = buffer;
+        } catch (final BufferUnderflowException e)
+        {
+            throw new IOException("truncated glyph geometry");
+        } catch (final NegativeArraySizeException e)
+        {
+            throw new IOException("corrupt glyph geometry");
+        }
+    }
+
+    /**
+     * Memory-maps a file written by {@link #write(File)}.
+     *
+     * @param file
+     *
+     * @return the geometry, reading its vertices from the mapping.
+     *
+     * @throws IOException
+     *                     if the file cannot be read, or is not a geometry
+     *                     file of the current version and byte order.
+     */
+    public static GlyphGeometry map(final File file) throws IOException
+    {
+        final RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try
+        {
+            final FileChannel channel = raf.getChannel();
+            return new GlyphGeometry(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        } finally
+        {
+            raf.close();
+        }
+    }
+
+    /**
+     * Writes the geometry to a file, which is replaced atomically where the
+     * file system allows, so that a process mapping it concurrently never
+     * sees it half written.
+     *
+     * @param file
+     *
+     * @throws IOException
+     */
+    public void write(final File file) throws IOException
+    {
+        final File tmp = new File(file.getPath() + ".tmp");
+        final FileOutputStream out = new FileOutputStream(tmp);
+        try
+        {
+            final ByteBuffer b = buffer.duplicate();
+            b.clear();
+            out.getChannel().write(b);
+        } finally
+        {
+            out.close();
+        }
+        if (!tmp.renameTo(file))
+        {
+            file.delete();
+            if (!tmp.renameTo(file))
+            {
+                tmp.delete();
+                throw new IOException("cannot rename " + tmp + " to " + file);
+            }
+        }
+    }
+
+    private static long pairKey(final int left, final int right)
+    {
+        return ((long) left << 32) | (right & 0xffffffffL);
+    }
+
+    private int indexOf(final int codepoint)
+    {
+        return Arrays.binarySearch(codepoints, codepoint);
+    }
+
+    /**
+     * Returns the kerning between two characters, to be added to the advance
+     * of the left one.
+     *
+     * @param left
+     * @param right
+     *
+     * @return the kerning, in pixels; 0 if the pair is not kerned.
+     */
+    public float getKerning(final int left, final int right)
+    {
+        final int i = Arrays.binarySearch(kerningPairs, pairKey(left, right));
+        return (i >= 0) ? kerningValues[i] : 0f;
+    }
+
+    /**
+     * Returns the number of kerned pairs of characters.
+     *
+     * @return
+     */
+    public int getKerningPairCount()
+    {
+        return kerningPairs.length;
+    }
+
+    /**
+     * Returns the left character of a kerned pair.
+     *
+     * @param index
+     *              between 0 and {@link #getKerningPairCount()}, exclusive.
+     *
+     * @return
+     */
+    public int getKerningLeft(final int index)
+    {
+        return (int) (kerningPairs[index] >>> 32);
+    }
+
+    /**
+     * Returns the right character of a kerned pair.
+     *
+     * @param index
+     *
+     * @return
+     */
+    public int getKerningRight(final int index)
+    {
+        return (int) kerningPairs[index];
+    }
+
+    /**
+     * Returns the kerning of a pair, in pixels.
+     *
+     * @param index
+     *
+     * @return
+     */
+    public float getKerningValue(final int index)
+    {
+        return kerningValues[index];
+    }
+
+    /**
+     * Returns the codepoints of the characters, in ascending order.
+     *
+     * @return
+     */
+    public int[] getCodepoints()
+    {
+        return codepoints.clone();
+    }
+
+    /**
+     * Returns true if the geometry holds the specified character.
+     *
+     * @param codepoint
+     *
+     * @return
+     */
+    public boolean hasGlyph(final int codepoint)
+    {
+        return indexOf(codepoint) >= 0;
+    }
+
+    /**
+     * Returns the advance of a character.
+     *
+     * @param codepoint
+     *
+     * @return the advance in pixels, or 0 if there is no such character.
+     */
+    public float getAdvance(final int codepoint)
+    {
+        final int i = indexOf(codepoint);
+        return (i >= 0) ? advances[i] : 0f;
+    }
+
+    /**
+     * Returns the triangles filling a character, as a view of the vertices.
+     *
+     * @param codepoint
+     *
+     * @return x and y coordinates of the vertices, or null if the character
+     *         draws nothing.
+     */
+    public FloatBuffer getTriangles(final int codepoint)
+    {
+        final int i = indexOf(codepoint);
+        return (i >= 0) ? slice(triangleStart[i], triangleCount[i]) : null;
+    }
+
+    /**
+     * Returns the line segments outlining a character, as a view of the
+     * vertices.
+     *
+     * @param codepoint
+     *
+     * @return x and y coordinates of the segments' ends, or null if the
+     *         character draws nothing.
+     */
+    public FloatBuffer getLines(final int codepoint)
+    {
+        final int i = indexOf(codepoint);
+        return (i >= 0) ? slice(lineStart[i], lineCount[i]) : null;
+    }
+
+    private FloatBuffer slice(final int start, final int count)
+    {
+        if (count == 0)
+        {
+            return null;
+        }
+        final FloatBuffer b = vertices.duplicate();
+        b.position(2 * start);
+        b.limit(2 * (start + count));
+        return b.slice();
+    }
+
+    public String getFontFamily()
+    {
+        return fontFamily;
+    }
+
+    public int getFontSize()
+    {
+        return fontSize;
+    }
+
+    public float getMaxAscent()
+    {
+        return maxAscent;
+    }
+
+    public float getMaxDescent()
+    {
+        return maxDescent;
+    }
+
+    public int getUnitsPerEm()
+    {
+        return unitsPerEm;
+    }
+
+    /**
+     * Returns the size of the geometry in bytes, as stored and as mapped.
+     *
+     * @return
+     */
+    public long getByteSize()
+    {
+        return buffer.capacity();
+    }
+
+    /**
+     * Collects and tessellates the glyphs of a font, and lays them out in the
+     * binary form.
+     */
+    public static final class Builder
+    {
+
+        private final String fontFamily;
+
+        private final int fontSize;
+
+        private final float maxAscent, maxDescent;
+
+        private final int unitsPerEm;
+
+        // Glyphs by codepoint: advance, triangles, lines.
+        private final Map<Integer, Object[]> glyphs = new TreeMap<Integer, Object[]>();
+
+        private final Map<Long, Float> kerning = new TreeMap<Long, Float>();
+
+        /**
+         * Creates a builder.
+         *
+         * @param fontFamily
+         * @param fontSize
+         * @param maxAscent
+         *                   in pixels; the baseline of the glyphs.
+         * @param maxDescent
+         *                   in pixels.
+         * @param unitsPerEm
+         *                   of the font's design grid.
+         */
+        public Builder(final String fontFamily, final int fontSize, final float maxAscent, final float maxDescent,
+                final int unitsPerEm)
+        {
+            this.fontFamily = fontFamily != null ? fontFamily : "";
+            this.fontSize = fontSize;
+            this.maxAscent = maxAscent;
+            this.maxDescent = maxDescent;
+            this.unitsPerEm = unitsPerEm;
+        }
+
+        /**
+         * Adds a glyph, tessellating its outline. The outline is in pixels
+         * with the baseline at y = 0, y growing downwards, as AWT returns
+         * glyph outlines.
+         *
+         * @param codepoint
+         * @param advance
+         * @param outline
+         *                  the outline, or null for a glyph drawing nothing.
+         */
+        public void addGlyph(final int codepoint, final float advance, final Shape outline)
+        {
+            float[] triangles = new float[0], lines = new float[0];
+            if (outline != null)
+            {
+                final List<float[]> contours = OutlineTessellator.flatten(outline, 0f, maxAscent);
+                final boolean nonZero = outline.getPathIterator(null).getWindingRule() == PathIterator.WIND_NON_ZERO;
+                triangles = OutlineTessellator.triangulate(contours, nonZero);
+                lines = OutlineTessellator.lines(contours);
+            }
+            glyphs.put(codepoint, new Object[] { advance, triangles, lines });
+        }
+
+        /**
+         * Returns true if a glyph has been added for the character.
+         *
+         * @param codepoint
+         *
+         * @return
+         */
+        public boolean hasGlyph(final int codepoint)
+        {
+            return glyphs.containsKey(codepoint);
+        }
+
+        /**
+         * Sets the kerning of a pair of characters.
+         *
+         * @param left
+         * @param right
+         * @param value
+         *              in pixels, added to the advance of the left character.
+         */
+        public void addKerning(final int left, final int right, final float value)
+        {
+            if (value != 0f)
+            {
+                kerning.put(pairKey(left, right), value);
+            }
+        }
+
+        /**
+         * Lays out the geometry.
+         *
+         * @return
+         */
+        public GlyphGeometry build()
+        {
+            int vertexFloats = 0;
+            for (final Object[] g : glyphs.values())
+            {
+                vertexFloats += ((float[]) g[1]).length + ((float[]) g[2]).length;
+            }
+            final int headerBytes = 4 * 7 + (((2 * fontFamily.length()) + 3) & ~3) + (4 * 3);
+            final int bytes = headerBytes + (4 * GLYPH_RECORD_INTS * glyphs.size())
+                    + (4 * KERNING_RECORD_INTS * kerning.size()) + (4 * vertexFloats);
+
+            final ByteBuffer b = ByteBuffer.allocateDirect(bytes).order(ByteOrder.nativeOrder());
+            b.putInt(MAGIC).putInt(VERSION).putInt(fontSize).putFloat(maxAscent).putFloat(maxDescent).putInt(unitsPerEm);
+            b.putInt(fontFamily.length());
+            for (int i = 0; i < fontFamily.length(); i++)
+            {
+                b.putChar(fontFamily.charAt(i));
+            }
+            while ((b.position() & 3) != 0)
+            {
+                b.put((byte) 0);
+            }
+            b.putInt(glyphs.size()).putInt(kerning.size()).putInt(vertexFloats);
+
+            final List<float[]> data = new ArrayList<float[]>(2 * glyphs.size());
+            int vertex = 0;
+            for (final Map.Entry<Integer, Object[]> entry : glyphs.entrySet())
+            {
+                final float[] triangles = (float[]) entry.getValue()[1];
+                final float[] lines = (float[]) entry.getValue()[2];
+                b.putInt(entry.getKey()).putFloat((Float) entry.getValue()[0]);
+                b.putInt(vertex).putInt(triangles.length / 2);
+                vertex += triangles.length / 2;
+                b.putInt(vertex).putInt(lines.length / 2);
+                vertex += lines.length / 2;
+                data.add(triangles);
+                data.add(lines);
+            }
+            for (final Map.Entry<Long, Float> entry : kerning.entrySet())
+            {
+                b.putInt((int) (entry.getKey() >> 32)).putInt(entry.getKey().intValue()).putFloat(entry.getValue());
+            }
+            for (final float[] d : data)
+            {
+                for (final float f : d)
+                {
+                    b.putFloat(f);
+                }
+            }
+            try
+            {
+                return new GlyphGeometry(b);
+            } catch (final IOException e)
+            {
+                throw new IllegalStateException(e);
+            }
+        }
+    }
+}
@@ -0,0 +1,221 @@
+/**
+ * This material was prepared as an account of work sponsored by an agency of the United States Government.<br>
+ * Neither the United States Government nor the United States Department of Energy, nor any of their employees,<br>
+ * nor any of their contractors, subcontractors or their employees, makes any warranty, express or implied, or<br>
+ * assumes any legal liability or responsibility for the accuracy, completeness, or usefulness or any information,<br>
+ * apparatus, product, or process disclosed, or represents that its use would not infringe privately owned rights.
+ */
+package org.mt4jx.components.visibleComponents.font.mesh;
+
+import java.awt.FontFormatException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.mt4j.util.logging.ILogger;
+import org.mt4j.util.logging.MTLoggerFactory;
+import org.mt4jx.components.visibleComponents.font.atlas.AtlasFont;
+
+/**
+ * <p>
+ * A directory of precompiled {@link GlyphGeometry} files, one per font file
+ * and size. The first time a font is asked for, its outlines are parsed and
+ * tessellated and the result is written to the directory; later, including
+ * in later runs, the file is memory-mapped instead.
+ * </p>
+ * <p>
+ * Files are named after the content of the font file rather than its path,
+ * so a font that is replaced by another version gets new geometry, and a
+ * cache built on one machine can be deployed to others. Use
+ * {@link GlyphCacheBuilder} to build it ahead of time.
+ * </p>
+ */
+public final class GlyphGeometryCache
+{
+
+    private static final ILogger LOG = MTLoggerFactory.getLogger(GlyphGeometryCache.class.getName());
+
+    static {
+        LOG.setLevel(ILogger.WARN);
+    }
+
+    /**
+     * Extension of the geometry files.
+     */
+    public static final String FILE_SUFFIX = ".mtgg";
+
+    /**
+     * The characters whose glyphs are tessellated.
+     */
+    public static final String CHARACTERS = AtlasFont.DEFAULT_CHARACTERS;
+
+    private final File directory;
+
+    // Content keys of font files, by path, with the length and modification time they were computed for.
+    private final Map<String, Object[]> fileKeys;
+
+    /**
+     * Creates a cache in the specified directory, which is created when the
+     * first geometry is written.
+     *
+     * @param directory
+     */
+    public GlyphGeometryCache(final File directory)
+    {
+        this.directory = directory;
+        this.fileKeys = new HashMap<String, Object[]>();
+    }
+
+    public File getDirectory()
+    {
+        return directory;
+    }
+
+    /**
+     * Returns true if the geometry of the specified font file and type can
+     * be cached.
+     *
+     * @param fontFileName
+     *
+     * @return
+     */
+    public static boolean isSupported(final String fontFileName)
+    {
+        final String name = fontFileName.toLowerCase();
+        return name.endsWith(".ttf") || name.endsWith(".otf") || name.endsWith(".ttc") || name.endsWith(".svg");
+    }
+
+    /**
+     * Returns the geometry of a font at a size, mapping it from the cache if
+     * present, and otherwise building it and adding it to the cache. If the
+     * directory cannot be written to, the geometry is still returned.
+     *
+     * @param fontFile
+     * @param fontSize
+     *
+     * @return
+     *
+     * @throws IOException
+     *                             if the font file cannot be read.
+     * @throws FontFormatException
+     *                             if it holds no usable font.
+     */
+    public GlyphGeometry getOrBuild(final File fontFile, final int fontSize) throws IOException, FontFormatException
+    {
+        final File file = getFile(fontFile, fontSize);
+        if (file.isFile())
+        {
+            try
+            {
+                return GlyphGeometry.map(file);
+            } catch (final IOException e)
+            {
+                LOG.info("Rebuilding " + file + ": " + e.getMessage());
+            }
+        }
+
+        final GlyphGeometry geometry = build(fontFile, fontSize);
+        try
+        {
+            directory.mkdirs();
+            geometry.write(file);
+        } catch (final IOException e)
+        {
+            LOG.warn("Cannot write glyph geometry " + file + ": " + e);
+        }
+        return geometry;
+    }
+
+    /**
+     * Returns true if the cache holds the geometry of a font at a size.
+     *
+     * @param fontFile
+     * @param fontSize
+     *
+     * @return
+     *
+     * @throws IOException
+     */
+    public boolean contains(final File fontFile, final int fontSize) throws IOException
+    {
+        return getFile(fontFile, fontSize).isFile();
+    }
+
+    /**
+     * Parses and tessellates a font at a size, without the cache.
+     *
+     * @param fontFile
+     * @param fontSize
+     *
+     * @return
+     *
+     * @throws IOException
+     * @throws FontFormatException
+     */
+    public static GlyphGeometry build(final File fontFile, final int fontSize) throws IOException, FontFormatException
+    {
+        if (fontFile.getName().toLowerCase().endsWith(".svg"))
+        {
+            return SvgFontGeometry.build(fontFile, fontSize, CHARACTERS);
+        }
+        return TrueTypeGeometry.build(fontFile, fontSize, CHARACTERS);
+    }
+
+    // Returns the cache file for a font file and size.
+    //
+    private File getFile(final File fontFile, final int fontSize) throws IOException
+    {
+        return new File(directory, getFileKey(fontFile) + "-" + fontSize + FILE_SUFFIX);
+    }
+
+    // Returns the font file's name followed by a checksum of its content. Checksums are
+    // remembered while the file's length and modification time are unchanged.
+    //
+    private String getFileKey(final File fontFile) throws IOException
+    {
+        final String path = fontFile.getAbsolutePath();
+        final long length = fontFile.length();
+        final long lastModified = fontFile.lastModified();
+        synchronized (fileKeys)
+        {
+            final Object[] known = fileKeys.get(path);
+            if ((known != null) && (((Long) known[1]) == length) && (((Long) known[2]) == lastModified))
+            {
+                return (String) known[0];
+            }
+        }
+
+        final CRC32 crc = new CRC32();
+        final byte[] bytes = new byte[64 * 1024];
+        final InputStream in = new FileInputStream(fontFile);
+        try
+        {
+            int n;
+            while ((n = in.read(bytes)) > 0)
+            {
+                crc.update(bytes, 0, n);
+            }
+        } finally
+        {
+            in.close();
+        }
+
+        String name = fontFile.getName();
+        final int dot = name.lastIndexOf('.');
+        if (dot > 0)
+        {
+            name = name.substring(0, dot);
+        }
+        final String key = name.replaceAll("[^A-Za-z0-9_.-]", "_") + "-" + Long.toHexString(crc.getValue()) + "-"
+                + Long.toHexString(length);
+        synchronized (fileKeys)
+        {
+            fileKeys.put(path, new Object[] { key, length, lastModified });
+        }
+        return key;
+    }
+}
@@ -0,0 +1,228 @@
+/**
+ * This material was prepared as an account of work sponsored by an agency of the United States Government.<br>
+ * Neither the United States Government nor the United States Department of Energy, nor any of their employees,<br>
+ * nor any of their contractors, subcontractors or their employees, makes any warranty, express or implied, or<br>
+ * assumes any legal liability or responsibility for the accuracy, completeness, or usefulness or any information,<br>
+ * apparatus, product, or process disclosed, or represents that its use would not infringe privately owned rights.
+ */
+package org.mt4jx.components.visibleComponents.font.mesh;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.mt4j.util.MTColor;
+import org.mt4j.util.font.IFont;
+import org.mt4j.util.font.IFontCharacter;
+import org.mt4j.util.opengl.GL10;
+import org.mt4jx.components.visibleComponents.font.EnhancedFontManager;
+
+/**
+ * <p>
+ * Vector font drawn from precomputed {@link GlyphGeometry}: each glyph is a
+ * list of triangles, plus its outline when anti-aliased, drawn straight from
+ * the geometry's vertex buffer. The glyphs are color-neutral and are drawn
+ * with the fill color of the font passed to <code>beginBatchRenderGL</code>.
+ * </p>
+ */
+public class MeshFont implements IFont
+{
+
+    // Number of spaces a tab advances.
+    private static final int TAB_SPACES = 4;
+
+    private final String fontFileName;
+
+    private final GlyphGeometry geometry;
+
+    private final boolean antiAliased;
+
+    private MTColor fillColor;
+
+    private final Map<String, MeshFontCharacter> characters;
+
+    // Set between beginBatchRenderGL() and endBatchRenderGL().
+    private boolean batching;
+
+    private boolean destroyed;
+
+    /**
+     * Creates a font from its geometry.
+     *
+     * @param fontFileName
+     *                     the file the geometry was built from.
+     * @param geometry
+     * @param fillColor
+     * @param antiAliased
+     *                     if true, the outlines of the glyphs are drawn as
+     *                     well, to be smoothed by the line anti-aliasing.
+     */
+    public MeshFont(final String fontFileName, final GlyphGeometry geometry, final MTColor fillColor,
+            final boolean antiAliased)
+    {
+        this.fontFileName = fontFileName;
+        this.geometry = geometry;
+        this.fillColor = (fillColor != null) ? fillColor : new MTColor(0, 0, 0, 255);
+        this.antiAliased = antiAliased;
+
+        final int[] codepoints = geometry.getCodepoints();
+        characters = new HashMap<String, MeshFontCharacter>(2 * codepoints.length);
+        for (final int codepoint : codepoints)
+        {
+            final String unicode = new String(Character.toChars(codepoint));
+            characters.put(unicode, new MeshFontCharacter(this, unicode, Math.round(geometry.getAdvance(codepoint)),
+                    geometry.getTriangles(codepoint), geometry.getLines(codepoint)));
+        }
+        final MeshFontCharacter space = characters.get(" ");
+        final int spaceAdvance = (space != null) ? space.getHorizontalDist() : Math.max(1, geometry.getFontSize() / 3);
+        characters.put("\n", new MeshFontCharacter(this, "\n", 0, null, null));
+        characters.put("\t", new MeshFontCharacter(this, "\t", TAB_SPACES * spaceAdvance, null, null));
+    }
+
+    /**
+     * Returns the geometry the glyphs are drawn from.
+     *
+     * @return
+     */
+    public GlyphGeometry getGeometry()
+    {
+        return geometry;
+    }
+
+    /**
+     * Returns the kerning between two characters, to be added to the
+     * horizontal distance of the left one.
+     *
+     * @param left
+     * @param right
+     *
+     * @return the kerning in pixels; 0 if the pair is not kerned.
+     */
+    public float getKerning(final String left, final String right)
+    {
+        if ((left.length() == 0) || (right.length() == 0))
+        {
+            return 0f;
+        }
+        return geometry.getKerning(left.codePointAt(0), right.codePointAt(0));
+    }
+
+    public IFontCharacter[] getCharacters(final String text)
+    {
+        final List<IFontCharacter> list = new ArrayList<IFontCharacter>(text.length());
+        for (int i = 0; i < text.length(); i++)
+        {
+            final IFontCharacter character = getFontCharacterByUnicode(text.substring(i, i + 1));
+            if (character != null)
+            {
+                list.add(character);
+            }
+        }
+        return list.toArray(new IFontCharacter[list.size()]);
+    }
+
+    public IFontCharacter getFontCharacterByUnicode(final String unicode)
+    {
+        return characters.get(unicode);
+    }
+
+    public String getFontFamily()
+    {
+        return geometry.getFontFamily();
+    }
+
+    public int getOriginalFontSize()
+    {
+        return geometry.getFontSize();
+    }
+
+    public int getFontMaxAscent()
+    {
+        return Math.round(geometry.getMaxAscent());
+    }
+
+    public int getFontMaxDescent()
+    {
+        return Math.round(geometry.getMaxDescent());
+    }
+
+    public int getFontAbsoluteHeight()
+    {
+        return getFontMaxAscent() + getFontMaxDescent();
+    }
+
+    public int getUnitsPerEM()
+    {
+        return geometry.getUnitsPerEm();
+    }
+
+    public String getFontFileName()
+    {
+        return fontFileName;
+    }
+
+    public MTColor getFillColor()
+    {
+        return fillColor;
+    }
+
+    public void setFillColor(final MTColor color)
+    {
+        this.fillColor = color;
+    }
+
+    public boolean isAntiAliased()
+    {
+        return antiAliased;
+    }
+
+    /**
+     * Sets up the vertex array and color shared by all glyphs, so that each
+     * glyph is a single draw call, or two with its outline.
+     */
+    public void beginBatchRenderGL(final GL10 gl, final IFont font)
+    {
+        final MTColor color = font.getFillColor();
+        gl.glEnableClientState(GL10.GL_VERTEX_ARRAY);
+        gl.glColor4f(color.getR() / 255f, color.getG() / 255f, color.getB() / 255f, color.getAlpha() / 255f);
+        batching = true;
+    }
+
+    public void endBatchRenderGL(final GL10 gl, final IFont font)
+    {
+        batching = false;
+        gl.glDisableClientState(GL10.GL_VERTEX_ARRAY);
+    }
+
+    boolean isBatching()
+    {
+        return batching;
+    }
+
+    public boolean isEqual(final IFont font)
+    {
+        return (font == this)
+                || ((font instanceof MeshFont)
+                        && fontFileName.equals(font.getFontFileName())
+                        && (getOriginalFontSize() == font.getOriginalFontSize())
+                        && (antiAliased == font.isAntiAliased()));
+    }
+
+    /**
+     * Removes the font from the font manager's cache. The geometry is
+     * released when no longer referenced.
+     */
+    public void destroy()
+    {
+        synchronized (this)
+        {
+            if (destroyed)
+            {
+                return;
+            }
+            destroyed = true;
+        }
+        EnhancedFontManager.getInstance().removeFromCache(this);
+    }
+}
@@ -0,0 +1,141 @@
+/**
+ * This material was prepared as an account of work sponsored by an agency of the United States Government.<br>
+ * Neither the United States Government nor the United States Department of Energy, nor any of their employees,<br>
+ * nor any of their contractors, subcontractors or their employees, makes any warranty, express or implied, or<br>
+ * assumes any legal liability or responsibility for the accuracy, completeness, or usefulness or any information,<br>
+ * apparatus, product, or process disclosed, or represents that its use would not infringe privately owned rights.
+ */
+package org.mt4jx.components.visibleComponents.font.mesh;
+
+import java.nio.FloatBuffer;
+
+import org.mt4j.util.MTColor;
+import org.mt4j.util.font.IFont;
+import org.mt4j.util.opengl.GL10;
+import org.mt4jx.components.visibleComponents.font.ITintableFontCharacter;
+
+import processing.core.PConstants;
+import processing.core.PGraphics;
+
+/**
+ * <p>
+ * A glyph of a {@link MeshFont}: views of the triangles filling it and of the
+ * segments outlining it in the font's geometry. Whitespace characters have
+ * neither and draw nothing.
+ * </p>
+ */
+class MeshFontCharacter implements ITintableFontCharacter
+{
+
+    private final MeshFont font;
+
+    private final String unicode;
+
+    private final int horizontalDist;
+
+    // Null for characters without any visible pixels.
+    private final FloatBuffer triangles, lines;
+
+    MeshFontCharacter(final MeshFont font, final String unicode, final int horizontalDist,
+            final FloatBuffer triangles, final FloatBuffer lines)
+    {
+        this.font = font;
+        this.unicode = unicode;
+        this.horizontalDist = horizontalDist;
+        this.triangles = triangles;
+        this.lines = lines;
+    }
+
+    public String getUnicode()
+    {
+        return unicode;
+    }
+
+    public int getHorizontalDist()
+    {
+        return horizontalDist;
+    }
+
+    /**
+     * Draws the glyph with OpenGL. Between <code>beginBatchRenderGL</code>
+     * and <code>endBatchRenderGL</code> of its font, this is one draw call,
+     * and a second for the outline of anti-aliased fonts; otherwise the glyph
+     * sets up and restores the GL state itself.
+     */
+    public void drawComponent(final GL10 gl)
+    {
+        drawComponent(gl, font);
+    }
+
+    public void drawComponent(final GL10 gl, final IFont colorFont)
+    {
+        if (triangles == null)
+        {
+            return;
+        }
+        final boolean batching = font.isBatching();
+        if (!batching)
+        {
+            font.beginBatchRenderGL(gl, colorFont);
+        }
+
+        gl.glVertexPointer(2, GL10.GL_FLOAT, 0, triangles);
+        gl.glDrawArrays(GL10.GL_TRIANGLES, 0, triangles.limit() / 2);
+        if (font.isAntiAliased() && (lines != null))
+        {
+            gl.glVertexPointer(2, GL10.GL_FLOAT, 0, lines);
+            gl.glDrawArrays(GL10.GL_LINES, 0, lines.limit() / 2);
+        }
+
+        if (!batching)
+        {
+            font.endBatchRenderGL(gl, colorFont);
+        }
+    }
+
+    /**
+     * Draws the glyph through processing, for renderers without direct GL
+     * access.
+     */
+    public void drawComponent(final PGraphics g)
+    {
+        drawComponent(g, font);
+    }
+
+    public void drawComponent(final PGraphics g, final IFont colorFont)
+    {
+        if (triangles == null)
+        {
+            return;
+        }
+        final MTColor color = colorFont.getFillColor();
+        g.pushStyle();
+        g.noStroke();
+        g.fill(color.getR(), color.getG(), color.getB(), color.getAlpha());
+        g.beginShape(PConstants.TRIANGLES);
+        for (int i = 0; i < triangles.limit(); i += 2)
+        {
+            g.vertex(triangles.get(i), triangles.get(i + 1));
+        }
+        g.endShape();
+        if (font.isAntiAliased() && (lines != null))
+        {
+            g.noFill();
+            g.stroke(color.getR(), color.getG(), color.getB(), color.getAlpha());
+            g.beginShape(PConstants.LINES);
+            for (int i = 0; i < lines.limit(); i += 2)
+            {
+                g.vertex(lines.get(i), lines.get(i + 1));
+            }
+            g.endShape();
+        }
+        g.popStyle();
+    }
+
+    /**
+     * Glyphs are released all together, with their font's geometry.
+     */
+    public void destroy()
+    {
+    }
+}
@@ -0,0 +1,366 @@
+/**
+ * This material was prepared as an account of work sponsored by an agency of the United States Government.<br>
+ * Neither the United States Government nor the United States Department of Energy, nor any of their employees,<br>
+ * nor any of their contractors, subcontractors or their employees, makes any warranty, express or implied, or<br>
+ * assumes any legal liability or responsibility for the accuracy, completeness, or usefulness or any information,<br>
+ * apparatus, product, or process disclosed, or represents that its use would not infringe privately owned rights.
+ */
+package org.mt4jx.components.visibleComponents.font.mesh;
+
+import java.awt.Shape;
+import java.awt.geom.PathIterator;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * <p>
+ * Flattens glyph outlines into polygons and fills them with triangles. The
+ * fill is computed by cutting the outline into horizontal bands at every
+ * vertex and every crossing of two edges; within a band, edges neither start,
+ * end nor cross, so the spans between them are trapezoids, which are filled
+ * with two triangles each. A span bounded by the same two edges in
+ * consecutive bands is extended rather than split. Holes, overlapping
+ * contours and both winding rules come out right without any special cases.
+ * </p>
+ */
+final class OutlineTessellator
+{
+
+    // Maximum distance, in pixels, between a curve and the lines approximating it.
+    static final double FLATNESS = 0.1;
+
+    private static final float EPSILON = 1e-4f;
+
+    private OutlineTessellator()
+    {
+    }
+
+    /**
+     * Flattens a shape into closed polygons.
+     *
+     * @param shape
+     * @param dx
+     *              added to every x coordinate.
+     * @param dy
+     *              added to every y coordinate.
+     *
+     * @return one array of interleaved x and y coordinates per contour.
+     */
+    static List<float[]> flatten(final Shape shape, final float dx, final float dy)
+    {
+        final List<float[]> contours = new ArrayList<float[]>();
+        final PathIterator it = shape.getPathIterator(null, FLATNESS);
+        final float[] coords = new float[6];
+        FloatList contour = new FloatList();
+        while (!it.isDone())
+        {
+            switch (it.currentSegment(coords))
+            {
+                case PathIterator.SEG_MOVETO:
+                    addContour(contours, contour);
+                    contour = new FloatList();
+                    contour.add(coords[0] + dx, coords[1] + dy);
+                    break;
+                case PathIterator.SEG_LINETO:
+                    contour.add(coords[0] + dx, coords[1] + dy);
+                    break;
+                case PathIterator.SEG_CLOSE:
+                    addContour(contours, contour);
+                    contour = new FloatList();
+                    break;
+                default:
+                    // A flattening iterator returns no curves.
+                    break;
+            }
+            it.next();
+        }
+        addContour(contours, contour);
+        return contours;
+    }
+
+    private static void addContour(final List<float[]> contours, final FloatList contour)
+    {
+        float[] points = contour.toArray();
+        int n = points.length;
+        // The closing point repeats the first.
+        if ((n >= 4) && (points[0] == points[n - 2]) && (points[1] == points[n - 1]))
+        {
+            n -= 2;
+            points = Arrays.copyOf(points, n);
+        }
+        if (n >= 6)
+        {
+            contours.add(points);
+        }
+    }
+
+    /**
+     * Returns the edges of the contours as line segments, for drawing the
+     * outline with <code>GL_LINES</code>.
+     *
+     * @param contours
+     *
+     * @return pairs of points.
+     */
+    static float[] lines(final List<float[]> contours)
+    {
+        final FloatList lines = new FloatList();
+        for (final float[] c : contours)
+        {
+            final int n = c.length;
+            for (int i = 0; i < n; i += 2)
+            {
+                final int j = (i + 2) % n;
+                lines.add(c[i], c[i + 1]);
+                lines.add(c[j], c[j + 1]);
+            }
+        }
+        return lines.toArray();
+    }
+
+    /**
+     * Fills the contours with triangles.
+     *
+     * @param contours
+     * @param nonZero
+     *                 true for the non-zero winding rule, false for even-odd.
+     *
+     * @return the vertices of the triangles.
+     */
+    static float[] triangulate(final List<float[]> contours, final boolean nonZero)
+    {
+        // Edges, directed downwards, with the direction they had in the contour.
+        int edgeCount = 0;
+        for (final float[] c : contours)
+        {
+            edgeCount += c.length / 2;
+        }
+        final float[] x0 = new float[edgeCount], y0 = new float[edgeCount];
+        final float[] x1 = new float[edgeCount], y1 = new float[edgeCount];
+        final int[] dir = new int[edgeCount];
+        final FloatList ys = new FloatList();
+        int e = 0;
+        for (final float[] c : contours)
+        {
+            final int n = c.length;
+            for (int i = 0; i < n; i += 2)
+            {
+                final int j = (i + 2) % n;
+                final float ax = c[i], ay = c[i + 1], bx = c[j], by = c[j + 1];
+                ys.add(ay);
+                if (Math.abs(ay - by) < EPSILON)
+                {
+                    // Horizontal edges do not bound any band.
+                    continue;
+                }
+                if (ay < by)
+                {
+                    x0[e] = ax;
+                    y0[e] = ay;
+                    x1[e] = bx;
+                    y1[e] = by;
+                    dir[e] = 1;
+                } else
+                {
+                    x0[e] = bx;
+                    y0[e] = by;
+                    x1[e] = ax;
+                    y1[e] = ay;
+                    dir[e] = -1;
+                }
+                e++;
+            }
+        }
+        edgeCount = e;
+
+        // Crossings of edges also bound bands.
+        for (int a = 0; a < edgeCount; a++)
+        {
+            for (int b = a + 1; b < edgeCount; b++)
+            {
+                final float top = Math.max(y0[a], y0[b]), bottom = Math.min(y1[a], y1[b]);
+                if (bottom - top <= EPSILON)
+                {
+                    continue;
+                }
+                final float da = xAt(x0[a], y0[a], x1[a], y1[a], top) - xAt(x0[b], y0[b], x1[b], y1[b], top);
+                final float db = xAt(x0[a], y0[a], x1[a], y1[a], bottom) - xAt(x0[b], y0[b], x1[b], y1[b], bottom);
+                if (((da < 0) && (db > 0)) || ((da > 0) && (db < 0)))
+                {
+                    ys.add(top + ((bottom - top) * (da / (da - db))));
+                }
+            }
+        }
+
+        final float[] bands = ys.toArray();
+        Arrays.sort(bands);
+
+        final FloatList triangles = new FloatList();
+        final int[] active = new int[edgeCount];
+        final float[] activeMid = new float[edgeCount];
+        // The spans still open: their left and right edges, and the top of their trapezoid.
+        int[] openLeft = new int[edgeCount], openRight = new int[edgeCount];
+        float[] openTop = new float[edgeCount];
+        int openCount = 0;
+        int[] spanLeft = new int[edgeCount], spanRight = new int[edgeCount];
+        float[] spanTop = new float[edgeCount];
+        float ya = bands.length > 0 ? bands[0] : 0;
+        for (int k = 1; k < bands.length; k++)
+        {
+            final float yb = bands[k];
+            if (yb - ya <= EPSILON)
+            {
+                continue;
+            }
+            final float ym = (ya + yb) * 0.5f;
+
+            // The edges spanning the band, ordered left to right.
+            int count = 0;
+            for (int i = 0; i < edgeCount; i++)
+            {
+                if ((y0[i] < ym) && (y1[i] > ym))
+                {
+                    final float xm = xAt(x0[i], y0[i], x1[i], y1[i], ym);
+                    int p = count++;
+                    while ((p > 0) && (activeMid[p - 1] > xm))
+                    {
+                        active[p] = active[p - 1];
+                        activeMid[p] = activeMid[p - 1];
+                        p--;
+                    }
+                    active[p] = i;
+                    activeMid[p] = xm;
+                }
+            }
+
+            int spanCount = 0;
+            int winding = 0;
+            int left = -1;
+            for (int p = 0; p < count; p++)
+            {
+                final int i = active[p];
+                final boolean wasInside = nonZero ? (winding != 0) : ((winding & 1) != 0);
+                winding += dir[i];
+                final boolean inside = nonZero ? (winding != 0) : ((winding & 1) != 0);
+                if (!wasInside && inside)
+                {
+                    left = i;
+                } else if (wasInside && !inside)
+                {
+                    spanLeft[spanCount] = left;
+                    spanRight[spanCount] = i;
+                    spanTop[spanCount] = ya;
+                    // Continue the span of the band above, if bounded by the same edges.
+                    for (int o = 0; o < openCount; o++)
+                    {
+                        if ((openLeft[o] == left) && (openRight[o] == i))
+                        {
+                            spanTop[spanCount] = openTop[o];
+                            openLeft[o] = -1;
+                            break;
+                        }
+                    }
+                    spanCount++;
+                }
+            }
+            closeSpans(triangles, openLeft, openRight, openTop, openCount, ya, x0, y0, x1, y1);
+
+            int[] swap = openLeft;
+            openLeft = spanLeft;
+            spanLeft = swap;
+            swap = openRight;
+            openRight = spanRight;
+            spanRight = swap;
+            final float[] swapTop = openTop;
+            openTop = spanTop;
+            spanTop = swapTop;
+            openCount = spanCount;
+            ya = yb;
+        }
+        closeSpans(triangles, openLeft, openRight, openTop, openCount, ya, x0, y0, x1, y1);
+        return triangles.toArray();
+    }
+
+    // Fills the open spans not continued by the band below, from their tops down to y.
+    // Continued spans have been marked with a left edge of -1.
+    //
+    private static void closeSpans(final FloatList triangles, final int[] openLeft, final int[] openRight,
+            final float[] openTop, final int openCount, final float y, final float[] x0, final float[] y0,
+            final float[] x1, final float[] y1)
+    {
+        for (int o = 0; o < openCount; o++)
+        {
+            final int l = openLeft[o], r = openRight[o];
+            if (l < 0)
+            {
+                continue;
+            }
+            final float top = openTop[o];
+            addTrapezoid(triangles, xAt(x0[l], y0[l], x1[l], y1[l], top), xAt(x0[r], y0[r], x1[r], y1[r], top), top,
+                    xAt(x0[l], y0[l], x1[l], y1[l], y), xAt(x0[r], y0[r], x1[r], y1[r], y), y);
+        }
+    }
+
+    private static float xAt(final float x0, final float y0, final float x1, final float y1, final float y)
+    {
+        return x0 + ((x1 - x0) * ((y - y0) / (y1 - y0)));
+    }
+
+    private static void addTrapezoid(final FloatList triangles, final float la, final float ra, final float ya,
+            final float lb, final float rb, final float yb)
+    {
+        if (ra - la > EPSILON)
+        {
+            triangles.add(la, ya);
+            triangles.add(ra, ya);
+            triangles.add(rb, yb);
+        }
+        if (rb - lb > EPSILON)
+        {
+            triangles.add(la, ya);
+            triangles.add(rb, yb);
+            triangles.add(lb, yb);
+        }
+    }
+
+    /**
+     * A growable array of floats.
+     */
+    static final class FloatList
+    {
+
+        private float[] values = new float[64];
+
+        private int size;
+
+        void add(final float x, final float y)
+        {
+            if (size + 2 > values.length)
+            {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            values[size++] = x;
+            values[size++] = y;
+        }
+
+        void add(final float value)
+        {
+            if (size + 1 > values.length)
+            {
+                values = Arrays.copyOf(values, values.length * 2);
+            }
+            values[size++] = value;
+        }
+
+        int size()
+        {
+            return size;
+        }
+
+        float[] toArray()
+        {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
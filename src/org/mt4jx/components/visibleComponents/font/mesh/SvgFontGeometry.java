@@ -0,0 +1,460 @@
+/**
+ * This material was prepared as an account of work sponsored by an agency of the United States Government.<br>
+ * Neither the United States Government nor the United States Department of Energy, nor any of their employees,<br>
+ * nor any of their contractors, subcontractors or their employees, makes any warranty, express or implied, or<br>
+ * assumes any legal liability or responsibility for the accuracy, completeness, or usefulness or any information,<br>
+ * apparatus, product, or process disclosed, or represents that its use would not infringe privately owned rights.
+ */
+package org.mt4jx.components.visibleComponents.font.mesh;
+
+import java.awt.geom.AffineTransform;
+import java.awt.geom.Path2D;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * <p>
+ * Builds the {@link GlyphGeometry} of an svg font file: the
+ * <tt>glyph</tt> elements of its first <tt>font</tt> whose <tt>unicode</tt>
+ * is a single character, and its <tt>hkern</tt> elements. Elliptical arcs
+ * in glyph paths are approximated by straight lines, which fonts hardly use.
+ * </p>
+ */
+final class SvgFontGeometry extends DefaultHandler
+{
+
+    private final int fontSize;
+
+    private final String chars;
+
+    private String fontId;
+
+    private String fontFamily;
+
+    private float defaultAdvance;
+
+    private int unitsPerEm = 1000;
+
+    private float ascent = Float.NaN, descent = Float.NaN;
+
+    private boolean inFont, fontDone;
+
+    // Glyph paths and advances in font units, by codepoint.
+    private final Map<Integer, String> paths = new HashMap<Integer, String>();
+
+    private final Map<Integer, Float> advances = new HashMap<Integer, Float>();
+
+    private final Map<String, Integer> glyphNames = new HashMap<String, Integer>();
+
+    // Kerning elements: u1, g1, u2, g2, k.
+    private final List<String[]> kernings = new ArrayList<String[]>();
+
+    private SvgFontGeometry(final int fontSize, final String chars)
+    {
+        this.fontSize = fontSize;
+        this.chars = chars;
+    }
+
+    /**
+     * Builds the geometry of the specified characters of an svg font file.
+     *
+     * @param fontFile
+     * @param fontSize
+     * @param chars
+     *
+     * @return
+     *
+     * @throws IOException
+     */
+    static GlyphGeometry build(final File fontFile, final int fontSize, final String chars) throws IOException
+    {
+        final SvgFontGeometry handler = new SvgFontGeometry(fontSize, chars);
+        try
+        {
+            final SAXParserFactory factory = SAXParserFactory.newInstance();
+            factory.setValidating(false);
+            final SAXParser parser = factory.newSAXParser();
+            parser.parse(fontFile, handler);
+        } catch (final ParserConfigurationException e)
+        {
+            throw new IOException(e.toString());
+        } catch (final SAXException e)
+        {
+            throw new IOException("cannot parse " + fontFile + ": " + e.getMessage());
+        }
+        if (handler.paths.isEmpty())
+        {
+            throw new IOException("no glyphs in " + fontFile);
+        }
+        return handler.build();
+    }
+
+    /**
+     * Does not fetch the svg DTD, which the font does not need.
+     */
+    @Override
+    public InputSource resolveEntity(final String publicId, final String systemId)
+    {
+        return new InputSource(new StringReader(""));
+    }
+
+    @Override
+    public void startElement(final String uri, final String localName, final String qName, final Attributes attributes)
+    {
+        if (fontDone)
+        {
+            return;
+        }
+        if ("font".equals(qName))
+        {
+            inFont = true;
+            fontId = attributes.getValue("id");
+            defaultAdvance = parseFloat(attributes.getValue("horiz-adv-x"), 0f);
+        } else if (!inFont)
+        {
+            return;
+        } else if ("font-face".equals(qName))
+        {
+            fontFamily = attributes.getValue("font-family");
+            unitsPerEm = Math.max(1, (int) parseFloat(attributes.getValue("units-per-em"), 1000f));
+            ascent = parseFloat(attributes.getValue("ascent"), Float.NaN);
+            descent = parseFloat(attributes.getValue("descent"), Float.NaN);
+        } else if ("glyph".equals(qName))
+        {
+            final String unicode = attributes.getValue("unicode");
+            if ((unicode == null) || (unicode.length() == 0) || (unicode.codePointCount(0, unicode.length()) != 1))
+            {
+                return;
+            }
+            final int codepoint = unicode.codePointAt(0);
+            if ((chars.indexOf(codepoint) < 0) || paths.containsKey(codepoint))
+            {
+                return;
+            }
+            final String d = attributes.getValue("d");
+            paths.put(codepoint, (d != null) ? d : "");
+            advances.put(codepoint, parseFloat(attributes.getValue("horiz-adv-x"), defaultAdvance));
+            final String name = attributes.getValue("glyph-name");
+            if (name != null)
+            {
+                glyphNames.put(name, codepoint);
+            }
+        } else if ("hkern".equals(qName))
+        {
+            kernings.add(new String[] { attributes.getValue("u1"), attributes.getValue("g1"),
+                    attributes.getValue("u2"), attributes.getValue("g2"), attributes.getValue("k") });
+        }
+    }
+
+    @Override
+    public void endElement(final String uri, final String localName, final String qName)
+    {
+        if ("font".equals(qName) && inFont)
+        {
+            inFont = false;
+            fontDone = true;
+        }
+    }
+
+    private GlyphGeometry build()
+    {
+        final float scale = (float) fontSize / unitsPerEm;
+        if (Float.isNaN(ascent))
+        {
+            ascent = 0.8f * unitsPerEm;
+        }
+        if (Float.isNaN(descent))
+        {
+            descent = -0.2f * unitsPerEm;
+        }
+        final float maxAscent = ascent * scale;
+        final String family = (fontFamily != null) ? fontFamily : (fontId != null) ? fontId : "";
+        final GlyphGeometry.Builder builder = new GlyphGeometry.Builder(family, fontSize, (float) Math.ceil(maxAscent),
+                (float) Math.ceil(Math.abs(descent) * scale), unitsPerEm);
+
+        // Font units have y growing upwards from the baseline.
+        final AffineTransform toPixels = AffineTransform.getScaleInstance(scale, -scale);
+        for (final Map.Entry<Integer, String> entry : paths.entrySet())
+        {
+            final Path2D.Float path = parsePath(entry.getValue());
+            path.transform(toPixels);
+            builder.addGlyph(entry.getKey(), advances.get(entry.getKey()) * scale,
+                    path.getCurrentPoint() != null ? path : null);
+        }
+
+        for (final String[] kerning : kernings)
+        {
+            final float k = parseFloat(kerning[4], 0f);
+            for (final int left : codepoints(kerning[0], kerning[1]))
+            {
+                for (final int right : codepoints(kerning[2], kerning[3]))
+                {
+                    // A positive k moves the glyphs closer together.
+                    builder.addKerning(left, right, -k * scale);
+                }
+            }
+        }
+        return builder.build();
+    }
+
+    // Returns the characters named by the u and g attributes of an hkern element.
+    //
+    private List<Integer> codepoints(final String unicodes, final String names)
+    {
+        final List<Integer> result = new ArrayList<Integer>();
+        if (unicodes != null)
+        {
+            for (final String u : unicodes.split(","))
+            {
+                if ((u.length() > 0) && (u.codePointCount(0, u.length()) == 1) && paths.containsKey(u.codePointAt(0)))
+                {
+                    result.add(u.codePointAt(0));
+                }
+            }
+        }
+        if (names != null)
+        {
+            for (final String g : names.split(","))
+            {
+                final Integer codepoint = glyphNames.get(g.trim());
+                if (codepoint != null)
+                {
+                    result.add(codepoint);
+                }
+            }
+        }
+        return result;
+    }
+
+    private static float parseFloat(final String s, final float defaultValue)
+    {
+        if (s != null)
+        {
+            try
+            {
+                return Float.parseFloat(s.trim());
+            } catch (final NumberFormatException e)
+            {
+                // Fall through.
+            }
+        }
+        return defaultValue;
+    }
+
+    /**
+     * Parses svg path data. Like svg renderers, it keeps what it parsed up to
+     * the first error.
+     *
+     * @param d
+     *
+     * @return the path, in the coordinates of the data.
+     */
+    static Path2D.Float parsePath(final String d)
+    {
+        final Path2D.Float path = new Path2D.Float(Path2D.WIND_NON_ZERO);
+        try
+        {
+            parsePath(d, path);
+        } catch (final NumberFormatException e)
+        {
+            // Keep the path up to the error.
+        }
+        return path;
+    }
+
+    private static void parsePath(final String d, final Path2D.Float path)
+    {
+        final PathScanner s = new PathScanner(d);
+        float x = 0, y = 0, startX = 0, startY = 0;
+        // Control point of the previous curve, for the smooth variants.
+        float cx = 0, cy = 0;
+        char previous = ' ';
+        char command = ' ';
+        while (s.skipSeparators())
+        {
+            if (s.atCommand())
+            {
+                command = s.nextCommand();
+            } else if (command == 'M')
+            {
+                command = 'L';
+            } else if (command == 'm')
+            {
+                command = 'l';
+            } else if ((command == 'Z') || (command == 'z') || (command == ' '))
+            {
+                // Numbers without a command.
+                break;
+            }
+            final boolean rel = Character.isLowerCase(command);
+            final float ox = rel ? x : 0, oy = rel ? y : 0;
+            switch (Character.toUpperCase(command))
+            {
+                case 'M':
+                    x = ox + s.nextNumber();
+                    y = oy + s.nextNumber();
+                    path.moveTo(x, y);
+                    startX = x;
+                    startY = y;
+                    break;
+                case 'L':
+                    x = ox + s.nextNumber();
+                    y = oy + s.nextNumber();
+                    path.lineTo(x, y);
+                    break;
+                case 'H':
+                    x = ox + s.nextNumber();
+                    path.lineTo(x, y);
+                    break;
+                case 'V':
+                    y = oy + s.nextNumber();
+                    path.lineTo(x, y);
+                    break;
+                case 'C':
+                {
+                    final float x1 = ox + s.nextNumber(), y1 = oy + s.nextNumber();
+                    cx = ox + s.nextNumber();
+                    cy = oy + s.nextNumber();
+                    x = ox + s.nextNumber();
+                    y = oy + s.nextNumber();
+                    path.curveTo(x1, y1, cx, cy, x, y);
+                    break;
+                }
+                case 'S':
+                {
+                    final boolean smooth = "CcSs".indexOf(previous) >= 0;
+                    final float x1 = smooth ? (2 * x) - cx : x, y1 = smooth ? (2 * y) - cy : y;
+                    cx = ox + s.nextNumber();
+                    cy = oy + s.nextNumber();
+                    x = ox + s.nextNumber();
+                    y = oy + s.nextNumber();
+                    path.curveTo(x1, y1, cx, cy, x, y);
+                    break;
+                }
+                case 'Q':
+                    cx = ox + s.nextNumber();
+                    cy = oy + s.nextNumber();
+                    x = ox + s.nextNumber();
+                    y = oy + s.nextNumber();
+                    path.quadTo(cx, cy, x, y);
+                    break;
+                case 'T':
+                {
+                    final boolean smooth = "QqTt".indexOf(previous) >= 0;
+                    cx = smooth ? (2 * x) - cx : x;
+                    cy = smooth ? (2 * y) - cy : y;
+                    x = ox + s.nextNumber();
+                    y = oy + s.nextNumber();
+                    path.quadTo(cx, cy, x, y);
+                    break;
+                }
+                case 'A':
+                    // Radii, rotation and flags.
+                    for (int i = 0; i < 5; i++)
+                    {
+                        s.nextNumber();
+                    }
+                    x = ox + s.nextNumber();
+                    y = oy + s.nextNumber();
+                    path.lineTo(x, y);
+                    break;
+                case 'Z':
+                    path.closePath();
+                    x = startX;
+                    y = startY;
+                    break;
+                default:
+                    return;
+            }
+            previous = command;
+        }
+    }
+
+    /**
+     * Splits svg path data into commands and numbers.
+     */
+    private static final class PathScanner
+    {
+
+        private final String d;
+
+        private int pos;
+
+        PathScanner(final String d)
+        {
+            this.d = d;
+        }
+
+        // Skips whitespace and commas. Returns false at the end of the data.
+        boolean skipSeparators()
+        {
+            while ((pos < d.length()) && ((d.charAt(pos) == ',') || Character.isWhitespace(d.charAt(pos))))
+            {
+                pos++;
+            }
+            return pos < d.length();
+        }
+
+        boolean atCommand()
+        {
+            return "MmLlHhVvCcSsQqTtAaZz".indexOf(d.charAt(pos)) >= 0;
+        }
+
+        char nextCommand()
+        {
+            return d.charAt(pos++);
+        }
+
+        // Reads a number, such as "-1.5e3", ".5" or the ".5" in "1.5.5".
+        float nextNumber() throws NumberFormatException
+        {
+            skipSeparators();
+            final int start = pos;
+            boolean dot = false, digits = false;
+            if ((pos < d.length()) && ((d.charAt(pos) == '-') || (d.charAt(pos) == '+')))
+            {
+                pos++;
+            }
+            while (pos < d.length())
+            {
+                final char c = d.charAt(pos);
+                if ((c >= '0') && (c <= '9'))
+                {
+                    digits = true;
+                } else if ((c == '.') && !dot)
+                {
+                    dot = true;
+                } else if (((c == 'e') || (c == 'E')) && digits)
+                {
+                    if ((pos + 1 < d.length()) && ((d.charAt(pos + 1) == '-') || (d.charAt(pos + 1) == '+')))
+                    {
+                        pos++;
+                    }
+                } else
+                {
+                    break;
+                }
+                pos++;
+            }
+            if (!digits)
+            {
+                throw new NumberFormatException("number expected at " + start);
+            }
+            return Float.parseFloat(d.substring(start, pos));
+        }
+    }
+}
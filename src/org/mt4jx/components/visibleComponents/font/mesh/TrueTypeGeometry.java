@@ -0,0 +1,120 @@
+/**
+ * This material was prepared as an account of work sponsored by an agency of the United States Government.<br>
+ * Neither the United States Government nor the United States Department of Energy, nor any of their employees,<br>
+ * nor any of their contractors, subcontractors or their employees, makes any warranty, express or implied, or<br>
+ * assumes any legal liability or responsibility for the accuracy, completeness, or usefulness or any information,<br>
+ * apparatus, product, or process disclosed, or represents that its use would not infringe privately owned rights.
+ */
+package org.mt4jx.components.visibleComponents.font.mesh;
+
+import java.awt.Font;
+import java.awt.FontFormatException;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.awt.font.FontRenderContext;
+import java.awt.font.GlyphVector;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.mt4jx.components.visibleComponents.font.fontFactories.TrueTypeFontReader;
+
+/**
+ * <p>
+ * Builds the {@link GlyphGeometry} of a true-type or open-type font file, or
+ * of the first face of a collection. The outlines come from AWT; the kerning
+ * pairs are read from the file's <tt>kern</tt> table.
+ * </p>
+ */
+final class TrueTypeGeometry
+{
+
+    private TrueTypeGeometry()
+    {
+    }
+
+    /**
+     * Builds the geometry of the specified characters of a font file.
+     *
+     * @param fontFile
+     * @param fontSize
+     * @param chars
+     *
+     * @return
+     *
+     * @throws IOException
+     * @throws FontFormatException
+     */
+    static GlyphGeometry build(final File fontFile, final int fontSize, final String chars)
+            throws IOException, FontFormatException
+    {
+        final Font font = Font.createFont(Font.TRUETYPE_FONT, fontFile).deriveFont((float) fontSize);
+
+        final BufferedImage scratch = new BufferedImage(1, 1, BufferedImage.TYPE_BYTE_GRAY);
+        final Graphics2D sg = scratch.createGraphics();
+        final FontRenderContext frc = new FontRenderContext(null, true, true);
+        final FontMetrics metrics = sg.getFontMetrics(font);
+        sg.dispose();
+
+        final ByteBuffer sfnt = TrueTypeFontReader.map(fontFile);
+        final int faceOffset = TrueTypeFontReader.getFaceOffsets(sfnt)[0];
+        final int unitsPerEm = TrueTypeFontReader.readUnitsPerEm(sfnt, faceOffset);
+
+        final GlyphGeometry.Builder builder = new GlyphGeometry.Builder(font.getFamily(), fontSize,
+                metrics.getMaxAscent(), metrics.getMaxDescent(), unitsPerEm);
+
+        // Characters by the glyph drawing them, for mapping the kerning pairs.
+        final Map<Integer, List<Integer>> glyphChars = new HashMap<Integer, List<Integer>>();
+        for (int i = 0; i < chars.length(); i++)
+        {
+            final char c = chars.charAt(i);
+            if (builder.hasGlyph(c) || !font.canDisplay(c))
+            {
+                continue;
+            }
+            final GlyphVector gv = font.createGlyphVector(frc, new char[] { c });
+            final float advance = gv.getGlyphMetrics(0).getAdvanceX();
+            final Rectangle bounds = gv.getPixelBounds(frc, 0f, 0f);
+            builder.addGlyph(c, advance, (bounds.isEmpty()) ? null : gv.getGlyphOutline(0));
+
+            final int glyph = gv.getGlyphCode(0);
+            List<Integer> list = glyphChars.get(glyph);
+            if (list == null)
+            {
+                list = new ArrayList<Integer>(1);
+                glyphChars.put(glyph, list);
+            }
+            list.add((int) c);
+        }
+
+        if (unitsPerEm > 0)
+        {
+            final float scale = (float) fontSize / unitsPerEm;
+            final int[] pairs = TrueTypeFontReader.readKerningPairs(sfnt, faceOffset);
+            for (int p = 0; p < pairs.length; p += 3)
+            {
+                final List<Integer> lefts = glyphChars.get(pairs[p]);
+                final List<Integer> rights = glyphChars.get(pairs[p + 1]);
+                if ((lefts == null) || (rights == null))
+                {
+                    continue;
+                }
+                for (final int left : lefts)
+                {
+                    for (final int right : rights)
+                    {
+                        builder.addKerning(left, right, pairs[p + 2] * scale);
+                    }
+                }
+            }
+        }
+
+        return builder.build();
+    }
+}
@@ -1,15 +1,18 @@
 package org.mt4jx.components.visibleComponents.shapes;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+import java.nio.ShortBuffer;
 
 import javax.media.opengl.GL;
 
 import org.mt4j.components.css.style.CSSStyle;
 import org.mt4j.components.visibleComponents.shapes.MTCSSStylableShape;
-import org.mt4j.components.visibleComponents.shapes.MTLine;
-import org.mt4j.components.visibleComponents.shapes.MTPolygon;
+import org.mt4j.util.MT4jSettings;
 import org.mt4j.util.MTColor;
+import org.mt4j.util.PlatformUtil;
+import org.mt4j.util.math.Plane;
 import org.mt4j.util.math.Ray;
 import org.mt4j.util.math.Vector3D;
 import org.mt4j.util.math.Vertex;
@@ -19,16 +22,27 @@ import processing.core.PApplet;
 import processing.core.PGraphics;
 
 /**
- * Represents a section of an annulus.
+ * Represents a section of an annulus. The segment draws itself as a single
+ * mesh: the fill is one indexed triangle strip across the band, and the
+ * outline one set of indexed lines, both over the same vertex array, with
+ * the colors held as per-vertex color arrays that color changes rewrite.
  * 
  * @author Randy Scarberry
  */
 public class MTAnnularSegment extends MTCSSStylableShape {
 
-    // Trapezoidal polygons used to draw the segment.
-    private MTPolygon[] polygons;
-    // Outer lines so that the outline can be drawn.
-    private MTLine[] outlines;
+    // Floats per vertex position and color.
+    private static final int POSITION_FLOATS = 3;
+    private static final int COLOR_FLOATS = 4;
+    
+    // The vertices: the outer arc from the end angle, then the inner arc from the start angle.
+    private FloatBuffer positions;
+    // Indices of the triangle strip, alternating between the outer and inner arcs.
+    private ShortBuffer fillIndices;
+    // Pairs of indices of the outline's edges.
+    private ShortBuffer outlineIndices;
+    // Fill and stroke color of every vertex.
+    private FloatBuffer fillColors, strokeColors;
     // The center of the ring.
     private Vector3D centerPoint;
     // Inner and outer radius.
@@ -72,80 +86,57 @@ public class MTAnnularSegment extends MTCSSStylableShape {
         this.startAngle = fixAngle(startAngle);
         this.endAngle = fixAngle(endAngle);      
         
-        // Get the vertices in order to generate polygons and lines.
+        // Get the vertices in order to generate the strip and lines.
         Vertex[] vertices = this.getGeometryInfo().getVertices();
+        final int n = vertices.length;
         
         // The segments argument is the number of segments per 90 degrees.
         // The actual number is probably different.
-        segments = (vertices.length - 2)/2;
+        segments = (n - 2)/2;
         
-        // Generate a trapezoid for each segment.
-        polygons = new MTPolygon[segments];
-        for (int i=0; i<segments; i++) {
-            polygons[i] = new MTPolygon(pApplet, new Vertex[] {
-               vertices[i], vertices[i + 1],
-               vertices[vertices.length - i - 2], vertices[vertices.length - i - 1]
-            });
-            polygons[i].setPickable(false);
-            polygons[i].setNoStroke(true);
-            polygons[i].setFillColor(super.getFillColor());
-            this.addChild(polygons[i]);
+        positions = createFloatBuffer(n * POSITION_FLOATS);
+        for (Vertex v : vertices) {
+            positions.put(v.x).put(v.y).put(v.z);
+        }
+        positions.rewind();
+        
+        // Each outer vertex followed by the inner one at the same angle.
+        fillIndices = createShortBuffer(n);
+        for (int i=0; i<=segments; i++) {
+            fillIndices.put((short) i).put((short) (n - i - 1));
         }
+        fillIndices.rewind();
         
         // Is it a complete ring?
         boolean fullCircle = this.startAngle == this.endAngle;
-        List<MTLine> lines = new ArrayList<MTLine> (fullCircle ? vertices.length : vertices.length - 2);
+        outlineIndices = createShortBuffer(2 * (fullCircle ? n - 2 : n));
         
         // The outer lines.
         for (int i=0; i<segments; i++) {
-            Vertex start = vertices[i];
-            Vertex end = vertices[i+1];
-            MTLine line = new MTLine(pApplet, start, end);
-            line.setStrokeColor(super.getStrokeColor());
-            line.setStrokeWeight(super.getStrokeWeight());
-            line.setPickable(false);
-            this.addChild(line);
-            lines.add(line);
+            outlineIndices.put((short) i).put((short) (i + 1));
         }
         
-        // If not a complete ring, generate the line on one end.
+        // If not a complete ring, the line on one end.
         if (!fullCircle) {
-            Vertex start = vertices[segments];
-            Vertex end = vertices[segments+1];
-            MTLine line = new MTLine(pApplet, start, end);
-            line.setStrokeColor(super.getStrokeColor());
-            line.setStrokeWeight(super.getStrokeWeight());
-            line.setPickable(false);
-            this.addChild(line);
-            lines.add(line);
+            outlineIndices.put((short) segments).put((short) (segments + 1));
         }
         
         // Now the lines on the inner ring.
         int lim = 2*segments + 1;
         for (int i=segments+1; i<lim; i++) {
-            Vertex start = vertices[i];
-            Vertex end = vertices[i+1];
-            MTLine line = new MTLine(pApplet, start, end);
-            line.setStrokeColor(super.getStrokeColor());
-            line.setStrokeWeight(super.getStrokeWeight());
-            line.setPickable(false);
-            this.addChild(line);
-            lines.add(line);
+            outlineIndices.put((short) i).put((short) (i + 1));
         }
         
         // The final end line if not a complete ring.
         if (!fullCircle) {
-            Vertex start = vertices[vertices.length - 1];
-            Vertex end = vertices[0];
-            MTLine line = new MTLine(pApplet, start, end);
-            line.setStrokeColor(super.getStrokeColor());
-            line.setStrokeWeight(super.getStrokeWeight());
-            line.setPickable(false);
-            this.addChild(line);
-            lines.add(line);
+            outlineIndices.put((short) (n - 1)).put((short) 0);
         }
-
-        outlines = lines.toArray(new MTLine[lines.size()]);
+        outlineIndices.rewind();
+        
+        fillColors = createFloatBuffer(n * COLOR_FLOATS);
+        strokeColors = createFloatBuffer(n * COLOR_FLOATS);
+        setVertexColors(fillColors, super.getFillColor());
+        setVertexColors(strokeColors, super.getStrokeColor());
     }
     
     /**
@@ -193,52 +184,37 @@ public class MTAnnularSegment extends MTCSSStylableShape {
         return this.endAngle;
     }
     
-    @Override
-    public MTColor getFillColor() {
-        return this.polygons[0].getFillColor();
-    }
-    
     @Override
     public void setFillColor(MTColor color) {
-        for (MTPolygon p: this.polygons) {
-            p.setFillColor(color);
+        super.setFillColor(color);
+        // Null while the super constructor sets the style.
+        if (fillColors != null) {
+            setVertexColors(fillColors, color);
         }
     }
     
-    @Override
-    public MTColor getStrokeColor() {
-        return this.outlines[0].getStrokeColor();
-    }
-    
     @Override
     public void setStrokeColor(MTColor color) {
-        for (MTLine line : outlines) {
-            line.setStrokeColor(color);
+        super.setStrokeColor(color);
+        if (strokeColors != null) {
+            setVertexColors(strokeColors, color);
         }
     }
     
-    @Override
-    public boolean isNoFill() {
-        return polygons[0].isNoFill();
-    }
-    
-    @Override
-    public void setNoFill(boolean b) {
-        for (MTPolygon p : polygons) {
-            p.setNoFill(b);
+    // Sets the color of every vertex.
+    private static void setVertexColors(FloatBuffer colors, MTColor color) {
+        if (color == null) {
+            return;
         }
-    }
-    
-    @Override
-    public boolean isNoStroke() {
-        return outlines[0].isNoStroke();
-    }
-    
-    @Override
-    public void setNoStroke(boolean b) {
-        for (MTLine line : outlines) {
-            line.setVisible(!b);
+        final float r = color.getR()/255f;
+        final float g = color.getG()/255f;
+        final float b = color.getB()/255f;
+        final float a = color.getAlpha()/255f;
+        colors.clear();
+        while (colors.hasRemaining()) {
+            colors.put(r).put(g).put(b).put(a);
         }
+        colors.rewind();
     }
     
     /**
@@ -301,8 +277,6 @@ public class MTAnnularSegment extends MTCSSStylableShape {
             throw new IllegalArgumentException("segments must be positive: " + segments);
         }
         
-        List<Vertex> vertices = new ArrayList<Vertex> ();
-        
         final float rmin = Math.min(innerRadius, outerRadius);
         final float rmax = Math.max(innerRadius, outerRadius);
         
@@ -310,7 +284,6 @@ public class MTAnnularSegment extends MTCSSStylableShape {
         endAngle = fixAngle(endAngle);
         
         final float startRadians = (float) Math.toRadians(startAngle);
-        final float endRadians = (float) Math.toRadians(endAngle);
         
         float arc = (float) Math.toRadians(computeArcDegrees(startAngle, endAngle));
         
@@ -319,44 +292,44 @@ public class MTAnnularSegment extends MTCSSStylableShape {
             segments = 1;
         }
         
-        final float radInc = arc/segments;
-
-        float currentRadians = endRadians;
+        // Samples of the arc from angle 0, turned to the start angle.
+        final UnitArc unitArc = UnitArc.get(segments, arc);
+        final float cosStart = (float) Math.cos(startRadians);
+        final float sinStart = (float) Math.sin(startRadians);
+        
+        final int n = 2*(segments + 1);
+        final float[] xy = new float[2*n];
     
         float minX = Float.MAX_VALUE;
         float maxX = 0f;
         float minY = Float.MAX_VALUE;
         float maxY = 0f;
         
-        for (int i=0; i<=segments; i++, currentRadians -= radInc) {
-            float x = - rmax * (float) Math.cos(currentRadians) + center.x;
-            float y = - rmax * (float) Math.sin(currentRadians) + center.y;
-            if (x < minX) minX = x;
-            if (x > maxX) maxX = x;
-            if (y < minY) minY = y;
-            if (y > maxY) maxY = y;
-            vertices.add(new Vertex(x, y, center.z));
-        }
-        
-        currentRadians = startRadians;
-        
-        for (int i=0; i<=segments; i++, currentRadians += radInc) {
-            float x = - rmin * (float) Math.cos(currentRadians) + center.x;
-            float y = - rmin * (float) Math.sin(currentRadians) + center.y;
+        // The outer arc from the end angle, then the inner arc from the start angle.
+        for (int i=0; i<n; i++) {
+            final boolean outer = i <= segments;
+            final int k = outer ? segments - i : i - segments - 1;
+            final float r = outer ? rmax : rmin;
+            final float cos = cosStart * unitArc.cos(k) - sinStart * unitArc.sin(k);
+            final float sin = sinStart * unitArc.cos(k) + cosStart * unitArc.sin(k);
+            float x = - r * cos + center.x;
+            float y = - r * sin + center.y;
             if (x < minX) minX = x;
             if (x > maxX) maxX = x;
             if (y < minY) minY = y;
             if (y > maxY) maxY = y;
-            vertices.add(new Vertex(x, y, center.z));
+            xy[2*i] = x;
+            xy[2*i + 1] = y;
         }
 
-        Vertex[] varray = vertices.toArray(new Vertex[vertices.size()]);
+        Vertex[] varray = new Vertex[n];
         
         float xRange = maxX - minX;
         float yRange = maxY - minY;
         
         // Set the texture X and Y
-        for (Vertex v : varray) {
+        for (int i=0; i<n; i++) {
+            Vertex v = new Vertex(xy[2*i], xy[2*i + 1], center.z);
             float texU = 0f, texV = 0f;
             if (xRange > 0) {
                 texU = (v.x - minX)/xRange;
@@ -366,6 +339,7 @@ public class MTAnnularSegment extends MTCSSStylableShape {
             }
             v.setTexCoordU(texU);
             v.setTexCoordV(texV);
+            varray[i] = v;
         }
         
         return varray;
@@ -379,46 +353,74 @@ public class MTAnnularSegment extends MTCSSStylableShape {
 
     @Override
     public Vector3D getGeometryIntersectionLocal(Ray ray) {
-        final int n = this.polygons.length;
-        for (int i=0; i<n; i++) {
-            Vector3D intersection = this.polygons[i].getGeometryIntersectionLocal(ray);
-            if (intersection != null) {
-                return intersection;
-            }
+        Plane plane = new Plane(new Vector3D(this.centerPoint), new Vector3D(0f, 0f, 1f));
+        Vector3D intersection = plane.getIntersectionLocal(ray);
+        if (intersection != null && this.isGeometryContainsPointLocal(intersection)) {
+            return intersection;
         }
         return null;
     }
 
     @Override
     public boolean isGeometryContainsPointLocal(Vector3D testPoint) {
-        final int n = this.polygons.length;
-        for (int i=0; i<n; i++) {
-            if (this.polygons[i].isGeometryContainsPointLocal(testPoint)) return true;
+        // In the band, measuring angles as computeVertices does.
+        final float dx = this.centerPoint.x - testPoint.x;
+        final float dy = this.centerPoint.y - testPoint.y;
+        final float r = (float) Math.sqrt(dx*dx + dy*dy);
+        if (r < this.innerRadius || r > this.outerRadius) {
+            return false;
         }
-        return false;
+        final float degrees = fixAngle((float) Math.toDegrees(Math.atan2(dy, dx)));
+        return computeArcDegrees(this.startAngle, degrees) <= this.getArcDegrees()
+                || degrees == this.startAngle;
     }
 
     @Override
     public Vector3D getCenterPointLocal() {
-        final int n = this.polygons.length;
-        int mid = n/2;
-        
-        MTPolygon middle = this.polygons[mid];
-        Vector3D center = middle.getCenterPointLocal();
-        
-        if (n%2 == 0) {
-            Vector3D center2 = this.polygons[mid-1].getCenterPointLocal();
-            center.x = (center.x + center2.x)/2f;
-            center.y = (center.y + center2.y)/2f;
-            center.z = (center.z + center2.z)/2f;
-        }
-        
-        return center;
+        // The middle of the band, halfway along the arc.
+        final double radians = Math.toRadians(this.startAngle + this.getArcDegrees()/2f);
+        final float r = (this.innerRadius + this.outerRadius)/2f;
+        return new Vector3D(
+                this.centerPoint.x - r * (float) Math.cos(radians),
+                this.centerPoint.y - r * (float) Math.sin(radians),
+                this.centerPoint.z);
     }
 
     @Override
     public void drawComponent(PGraphics g) {
-        // Noop
+        if (MT4jSettings.getInstance().isOpenGlMode()) {
+            GL10 gl = PlatformUtil.beginGL();
+            drawPureGl(gl);
+            PlatformUtil.endGL();
+            return;
+        }
+        
+        // Processing has no indexed drawing, so follow the indices.
+        final MTColor fill = this.getFillColor();
+        if (!this.isNoFill() && fill != null) {
+            g.noStroke();
+            g.fill(fill.getR(), fill.getG(), fill.getB(), fill.getAlpha());
+            g.beginShape(PApplet.TRIANGLE_STRIP);
+            drawVertices(g, fillIndices);
+            g.endShape();
+        }
+        final MTColor stroke = this.getStrokeColor();
+        if (!this.isNoStroke() && stroke != null) {
+            g.noFill();
+            g.stroke(stroke.getR(), stroke.getG(), stroke.getB(), stroke.getAlpha());
+            g.strokeWeight(this.getStrokeWeight());
+            g.beginShape(PApplet.LINES);
+            drawVertices(g, outlineIndices);
+            g.endShape();
+        }
+    }
+    
+    private void drawVertices(PGraphics g, ShortBuffer indices) {
+        final int n = indices.limit();
+        for (int i=0; i<n; i++) {
+            final int p = indices.get(i) * POSITION_FLOATS;
+            g.vertex(positions.get(p), positions.get(p + 1), positions.get(p + 2));
+        }
     }
     
     @Override
@@ -436,10 +438,34 @@ public class MTAnnularSegment extends MTCSSStylableShape {
     }
 
     @Override
-    protected void drawPureGl(GL10 gl)
-    {
-        throw new UnsupportedOperationException("Not supported yet."); //To change body of generated methods, choose Tools | Templates.
+    protected void drawPureGl(GL10 gl) {
+        final boolean fill = !this.isNoFill();
+        final boolean stroke = !this.isNoStroke();
+        if (!fill && !stroke) {
+            return;
+        }
+        gl.glEnableClientState(GL10.GL_VERTEX_ARRAY);
+        gl.glEnableClientState(GL10.GL_COLOR_ARRAY);
+        gl.glVertexPointer(POSITION_FLOATS, GL10.GL_FLOAT, 0, positions);
+        if (fill) {
+            gl.glColorPointer(COLOR_FLOATS, GL10.GL_FLOAT, 0, fillColors);
+            gl.glDrawElements(GL10.GL_TRIANGLE_STRIP, fillIndices.limit(), GL10.GL_UNSIGNED_SHORT, fillIndices);
+        }
+        if (stroke) {
+            gl.glLineWidth(this.getStrokeWeight());
+            gl.glColorPointer(COLOR_FLOATS, GL10.GL_FLOAT, 0, strokeColors);
+            gl.glDrawElements(GL10.GL_LINES, outlineIndices.limit(), GL10.GL_UNSIGNED_SHORT, outlineIndices);
+        }
+        gl.glDisableClientState(GL10.GL_COLOR_ARRAY);
+        gl.glDisableClientState(GL10.GL_VERTEX_ARRAY);
     }
     
+    private static FloatBuffer createFloatBuffer(int floats) {
+        return ByteBuffer.allocateDirect(floats * 4).order(ByteOrder.nativeOrder()).asFloatBuffer();
+    }
+    
+    private static ShortBuffer createShortBuffer(int shorts) {
+        return ByteBuffer.allocateDirect(shorts * 2).order(ByteOrder.nativeOrder()).asShortBuffer();
+    }
 
 }
@@ -48,25 +48,29 @@ public class MTEllipseSegmentComplexPoly extends MTComplexPolygon {
 		System.out.println("SEGMENT CENTERPOINT LOCAL: " + centerPoint.x + "/" + centerPoint.y);
 		System.out.println(centerPoint);
 		Vertex[] verts = new Vertex[resolution+1];
-		float t;
-		float inc = degrees / (float)resolution;
+		//Shared samples of the bow's angles, from 0 to degrees
+		UnitArc unitArc = UnitArc.get(resolution, degrees);
 
-		double cosTheta = Math.cos(theta);
-		double sinTheta = Math.sin(theta);
+		float cosTheta = (float)Math.cos(theta);
+		float sinTheta = (float)Math.sin(theta);
 
 		MTColor fillColor = this.getFillColor();
 
 		float orientationRadians = (float)Math.toRadians(orientationAngleDegrees);
+		float cosOrientation = (float)Math.cos(orientationRadians);
+		float sinOrientation = (float)Math.sin(orientationRadians);
 		for (int i=0; i<verts.length; i++){
-			t = 0 + (i * inc);
-			float x = (float) (centerPoint.x - (radiusX * Math.cos(t) * cosTheta)
-					+ (radiusY * Math.sin(t) * sinTheta) );
-			float y = (float) (centerPoint.y - (radiusX * Math.cos(t) * sinTheta)
-					- (radiusY * Math.sin(t) * cosTheta) );
-			Vector3D vetorForRotationTmp = new Vector3D(x, y);
-			vetorForRotationTmp = vetorForRotationTmp.rotateZ(orientationRadians);
+			float cosT = unitArc.cos(i);
+			float sinT = unitArc.sin(i);
+			float x = centerPoint.x - (radiusX * cosT * cosTheta)
+					+ (radiusY * sinT * sinTheta);
+			float y = centerPoint.y - (radiusX * cosT * sinTheta)
+					- (radiusY * sinT * cosTheta);
+			//Rotate around the origin, as Vector3D.rotateZ does
+			float rotatedX = x * cosOrientation - y * sinOrientation;
+			float rotatedY = x * sinOrientation + y * cosOrientation;
 			
-			verts[i] = new Vertex(vetorForRotationTmp.x, vetorForRotationTmp.y, centerPoint.z, fillColor.getR(), fillColor.getG(), fillColor.getB(), fillColor.getAlpha());
+			verts[i] = new Vertex(rotatedX, rotatedY, centerPoint.z, fillColor.getR(), fillColor.getG(), fillColor.getB(), fillColor.getAlpha());
 		}
 		//Create tex coords
 		float width = radiusX*2;
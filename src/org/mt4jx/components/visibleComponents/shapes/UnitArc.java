@@ -0,0 +1,99 @@
+/**
+ * This material was prepared as an account of work sponsored by an agency of the United States Government.<br>
+ * Neither the United States Government nor the United States Department of Energy, nor any of their employees,<br>
+ * nor any of their contractors, subcontractors or their employees, makes any warranty, express or implied, or<br>
+ * assumes any legal liability or responsibility for the accuracy, completeness, or usefulness or any information,<br>
+ * apparatus, product, or process disclosed, or represents that its use would not infringe privately owned rights.
+ */
+package org.mt4jx.components.visibleComponents.shapes;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The cosines and sines of evenly spaced angles from 0 to an arc angle, for
+ * generating the vertices of arcs by scaling and offsetting instead of
+ * calling the trigonometric functions per vertex. Arcs are immutable and
+ * shared: shapes of the same resolution and arc, such as the rings of a
+ * menu, use the same samples.
+ */
+public final class UnitArc {
+
+    private static final int MAX_CACHED_ARCS = 64;
+
+    // Shared arcs by segments and arc angle, least recently used first.
+    private static final Map<Long, UnitArc> ARCS = new LinkedHashMap<Long, UnitArc>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, UnitArc> eldest) {
+            return size() > MAX_CACHED_ARCS;
+        }
+    };
+
+    private final int segments;
+    private final float arcRadians;
+    private final float[] cos, sin;
+
+    /**
+     * Returns the arc of the specified segments and angle.
+     *
+     * @param segments      - the number of segments, one less than the samples.
+     * @param arcRadians    - the angle of the last sample.
+     * @return
+     */
+    public static UnitArc get(int segments, float arcRadians) {
+        if (segments <= 0) {
+            throw new IllegalArgumentException("segments must be positive: " + segments);
+        }
+        final Long key = Long.valueOf(((long) segments << 32) | (Float.floatToIntBits(arcRadians) & 0xffffffffL));
+        synchronized (ARCS) {
+            UnitArc arc = ARCS.get(key);
+            if (arc == null) {
+                arc = new UnitArc(segments, arcRadians);
+                ARCS.put(key, arc);
+            }
+            return arc;
+        }
+    }
+
+    private UnitArc(int segments, float arcRadians) {
+        this.segments = segments;
+        this.arcRadians = arcRadians;
+        this.cos = new float[segments + 1];
+        this.sin = new float[segments + 1];
+        final float radInc = arcRadians/segments;
+        for (int i=0; i<=segments; i++) {
+            cos[i] = (float) Math.cos(i * radInc);
+            sin[i] = (float) Math.sin(i * radInc);
+        }
+    }
+
+    public int getSegments() {
+        return this.segments;
+    }
+
+    public float getArcRadians() {
+        return this.arcRadians;
+    }
+
+    /**
+     * Returns the cosine of a sample's angle.
+     *
+     * @param i     - the sample, from 0 to the number of segments.
+     * @return
+     */
+    public float cos(int i) {
+        return this.cos[i];
+    }
+
+    /**
+     * Returns the sine of a sample's angle.
+     *
+     * @param i     - the sample, from 0 to the number of segments.
+     * @return
+     */
+    public float sin(int i) {
+        return this.sin[i];
+    }
+}
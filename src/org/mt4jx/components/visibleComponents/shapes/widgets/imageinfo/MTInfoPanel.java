@@ -1,7 +1,6 @@
 package org.mt4jx.components.visibleComponents.shapes.widgets.imageinfo;
 
 import org.mt4j.components.TransformSpace;
-import org.mt4j.util.font.FontManager;
 import org.mt4j.util.font.IFont;
 import org.mt4j.components.visibleComponents.shapes.AbstractShape;
 import org.mt4j.components.visibleComponents.shapes.MTLine;
@@ -11,6 +10,7 @@ import org.mt4j.util.MTColor;
 import org.mt4j.util.logging.ILogger;
 import org.mt4j.util.logging.MTLoggerFactory;
 import org.mt4j.util.math.Vector3D;
+import org.mt4jx.components.visibleComponents.font.EnhancedFontManager;
 import org.mt4jx.components.visibleComponents.layout.MTColumnLayout2D;
 
 import processing.core.PApplet;
@@ -70,12 +70,12 @@ public class MTInfoPanel extends MTRoundRectangle {
 
         // setting default font if missing
         if (headlineFont == null) {
-            headlineFont = FontManager.getInstance().createFont(pa, "arial",
+            headlineFont = EnhancedFontManager.getInstance().createFont(pa, "arial",
                     32, // Font size
                     textColor); // Font outline color
         }
         if (textFont == null) {
-            textFont = FontManager.getInstance().createFont(pa, "arial",
+            textFont = EnhancedFontManager.getInstance().createFont(pa, "arial",
                     16, // Font size
                     textColor); // Font outline color
         }
@@ -1,24 +1,49 @@
 package org.mt4jx.components.visibleComponents.widgets;
 
-import java.util.HashSet;
-import java.util.Set;
+import java.awt.Font;
+import java.awt.FontMetrics;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
-import org.mt4j.components.TransformSpace;
-import org.mt4j.util.font.FontManager;
+import org.mt4j.components.MTComponent;
 import org.mt4j.util.font.IFont;
-import org.mt4j.util.font.IFontCharacter;
-import org.mt4j.components.visibleComponents.widgets.MTTextArea;
+import org.mt4j.util.MT4jSettings;
 import org.mt4j.util.MTColor;
+import org.mt4j.util.PlatformUtil;
 import org.mt4j.util.math.Vector3D;
+import org.mt4j.util.opengl.GL10;
+import org.mt4jx.components.visibleComponents.font.CurvedTextMesh;
+import org.mt4jx.components.visibleComponents.font.EnhancedFontManager;
+import org.mt4jx.components.visibleComponents.font.FontMetricsTable;
 import org.mt4jx.components.visibleComponents.shapes.MTAnnularSegment;
 
 import processing.core.PApplet;
+import processing.core.PGraphics;
 
 public class MTAnnularTextArea extends MTAnnularSegment {
 
+    // The size fonts are measured at to fit them.
+    private static final int REFERENCE_FONT_SIZE = 20;
+    
+    private static final int MAX_FITTED_SIZES = 256;
+    
+    // Font sizes found by findAppropriateFont, least recently used first.
+    private static final Map<FitKey, Integer> FITTED_SIZES = new LinkedHashMap<FitKey, Integer>(16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<FitKey, Integer> eldest) {
+            return size() > MAX_FITTED_SIZES;
+        }
+    };
+
     private IFont font;
     private String text;
-    private MTTextArea[] letters;
+    // All the glyphs, in one vertex buffer drawn by a single child component.
+    private final CurvedTextMesh textMesh;
     
     public MTAnnularTextArea(PApplet pApplet, 
             float centerX, float centerY,
@@ -28,129 +53,134 @@ public class MTAnnularTextArea extends MTAnnularSegment {
         super(pApplet, centerX, centerY, innerRadius, outerRadius, startAngle,
                 endAngle, segments);
     
-        setFont(FontManager.getInstance().getDefaultFont(pApplet));
+        font = EnhancedFontManager.getInstance().getDefaultFont(pApplet);
+        textMesh = new CurvedTextMesh(font);
+        // A child, so it is drawn after the segment, on top of it.
+        addChild(new CurvedText(pApplet, textMesh));
     }
     
+    /**
+     * Returns a font of the specified name sized so the longest of the
+     * strings fits in an annular segment, a little less high than the ring
+     * is thick. The size is remembered for the font, ring and strings, so
+     * later menus of the same shape only look it up. Otherwise the strings
+     * are measured with the AWT metrics of the font at a reference size, and
+     * since glyphs scale linearly with the font size, the size that fits
+     * follows from the ratios of the measures to the space available, less
+     * any rounding AWT measures it over by. The font is loaded by AWT once,
+     * and derived at the sizes tried. Fonts AWT cannot load, such as SVG
+     * fonts, are measured by creating them at the reference size. The font
+     * created is measured once more, since its glyphs may round differently
+     * from AWT's, and created a size smaller if it is still too big.
+     *
+     * @return the font, or null if it cannot be created.
+     */
     public static IFont findAppropriateFont(PApplet pApplet, 
             float innerRadius, float outerRadius, float angle,
             String fontName, MTColor fontColor, boolean antiAliased,
             String[] strings) {
         
-        FontManager fm = FontManager.getInstance();
+        EnhancedFontManager fm = EnhancedFontManager.getInstance();
         
         final float annularThickness = Math.abs(outerRadius - innerRadius);
         final float centerLineRadius = (outerRadius + innerRadius)/2f;
         final float desiredFontHeight = 0.6f * annularThickness;
         final float padding = (annularThickness - desiredFontHeight)/2f;
         
-        final float desiredFontLength = centerLineRadius * (float) Math.toRadians(fixAngle(angle)) - 2f*padding;
-            
-        int fontSize = 20;
-        IFont font = fm.createFont(pApplet, fontName, 20, fontColor, antiAliased);
+        final float fixedAngle = fixAngle(angle);
+        final float desiredFontLength = centerLineRadius * (float) Math.toRadians(fixedAngle) - 2f*padding;
         
-        float maxWidth = 0f;
-        String longestString = null;
-        for (String s : strings) {
-            s = cleanupString(s);
-            float w = stringWidth(font, s);
-            if (w > maxWidth) {
-                maxWidth = w;
-                longestString = s;
-            }
+        String[] cleanStrings = new String[strings.length];
+        for (int i=0; i<strings.length; i++) {
+            cleanStrings[i] = cleanupString(strings[i]);
         }
         
-        Set<Integer> tried = new HashSet<Integer> ();
-        tried.add(fontSize);
-        
-        float width = maxWidth;
-        float height = font.getFontAbsoluteHeight();
-        
-        int tooLargeFontSize = Integer.MAX_VALUE;
-        
-        boolean ok = false;
+        FitKey key = new FitKey(fontName, antiAliased, innerRadius, outerRadius, fixedAngle, cleanStrings);
+        Integer fittedSize;
+        synchronized (FITTED_SIZES) {
+            fittedSize = FITTED_SIZES.get(key);
+        }
+        if (fittedSize != null) {
+            return fm.createFontByName(pApplet, fontName, fittedSize, fontColor, antiAliased);
+        }
         
-        while(!ok) {
-            float widthRatio = width/desiredFontLength;
-            float heightRatio = height/desiredFontHeight;
-            boolean tooBig = false;
-            if (widthRatio > 1f || heightRatio > 1f) {
-                tooBig = true;
-                if (fontSize < tooLargeFontSize) {
-                    tooLargeFontSize = fontSize;
+        float maxWidth = 0f;
+        String longestString = "";
+        float referenceHeight;
+        Font awtFont = fm.getAwtFont(fontName, REFERENCE_FONT_SIZE);
+        // Scratch graphics the AWT metrics of all the sizes tried are taken from.
+        Graphics2D g = (awtFont != null) ? new BufferedImage(1, 1, BufferedImage.TYPE_BYTE_GRAY).createGraphics() : null;
+        int fontSize;
+        try {
+            if (awtFont != null) {
+                FontMetrics metrics = g.getFontMetrics(awtFont);
+                for (String s : cleanStrings) {
+                    float w = metrics.stringWidth(s);
+                    if (w > maxWidth) {
+                        maxWidth = w;
+                        longestString = s;
+                    }
                 }
-                fontSize *= 1f/Math.max(widthRatio, heightRatio);
+                referenceHeight = metrics.getAscent() + metrics.getDescent();
             } else {
-                float maxRatio = Math.max(widthRatio, heightRatio);
-                float minRatio = Math.min(widthRatio, heightRatio);
-                // If the max ratio is almost right, making the font 
-                // bigger will probably making it to large again.
-                // And if they're both > 0.9f, that's pretty good.
-                if (maxRatio > 0.95f || minRatio > 0.9f) {
-                    ok = true;
-                } else {
-                    int newFontSize = Math.round(((float)fontSize)/minRatio);
-                    if (newFontSize < tooLargeFontSize) {
-                        fontSize = newFontSize;
-                    } else {
-                        newFontSize = (tooLargeFontSize + fontSize)/2;
-                        if (newFontSize > fontSize) {
-                            fontSize = newFontSize;
-                        } else {
-                            ok = true;
-                        }
-                    }
+                IFont referenceFont = fm.createFontByName(pApplet, fontName, REFERENCE_FONT_SIZE, fontColor, antiAliased);
+                if (referenceFont == null) {
+                    return null;
                 }
-            }
-            if (!ok) {
-                while(tried.contains(fontSize)) {
-                    if (tooBig) {
-                        fontSize--;
-                    } else {
-                        fontSize++;
+                for (String s : cleanStrings) {
+                    float w = stringWidth(referenceFont, s);
+                    if (w > maxWidth) {
+                        maxWidth = w;
+                        longestString = s;
                     }
                 }
-                
-                if (fontSize > 0) {
-                    
-                    IFont newFont = null;
-                    int tries = 0;
-                    while(newFont == null && tries < 3) {
-                        tries++;
-                        newFont = fm.createFont(pApplet, fontName, fontSize, fontColor, antiAliased);
-                        if (newFont == null) {
-                            tried.add(fontSize);
-                            while(tried.contains(fontSize)) {
-                                if (tooBig) {
-                                    fontSize--;
-                                } else {
-                                    fontSize++;
-                                }
-                            }
-                        }
-                        if (fontSize == 0) {
-                            break;
-                        }
-                    }
-                    
-                    if (newFont == null) {
-                        return font;
-                    } else {
-                        font = newFont;
-                    }
-                    
-                    width = stringWidth(font, longestString);
-                    height = font.getFontAbsoluteHeight();
-                    tried.add(fontSize);
-                
-                } else {
+                referenceHeight = referenceFont.getFontAbsoluteHeight();
+            }
+            
+            float scale = desiredFontHeight / referenceHeight;
+            if (maxWidth > 0f) {
+                scale = Math.min(scale, desiredFontLength / maxWidth);
+            }
+            fontSize = Math.max(1, (int) Math.floor(REFERENCE_FONT_SIZE * scale));
+            // Metrics rounded to whole pixels may not scale quite linearly; 
+            // if the size is a little too big, shrink it by what it's over,
+            // measuring the sizes with AWT rather than creating fonts.
+            while (awtFont != null && fontSize > 1) {
+                FontMetrics sized = g.getFontMetrics(awtFont.deriveFont((float) fontSize));
+                float over = Math.max((sized.getAscent() + sized.getDescent()) / desiredFontHeight,
+                        sized.stringWidth(longestString) / desiredFontLength);
+                if (over <= 1f) {
                     break;
                 }
+                fontSize = shrink(fontSize, over);
+            }
+        } finally {
+            if (g != null) {
+                g.dispose();
+            }
+        }
+        IFont font = fm.createFontByName(pApplet, fontName, fontSize, fontColor, antiAliased);
+        if (font != null && fontSize > 1) {
+            float over = Math.max(font.getFontAbsoluteHeight() / desiredFontHeight,
+                    stringWidth(font, longestString) / desiredFontLength);
+            if (over > 1f) {
+                fontSize = shrink(fontSize, over);
+                font = fm.createFontByName(pApplet, fontName, fontSize, fontColor, antiAliased);
+            }
+        }
+        if (font != null) {
+            synchronized (FITTED_SIZES) {
+                FITTED_SIZES.put(key, fontSize);
             }
         }
-        
         return font;
     }
     
+    // The next size to try for a font the specified ratio too big: at least one smaller.
+    private static int shrink(int fontSize, float over) {
+        return Math.max(1, Math.min(fontSize - 1, (int) Math.floor(fontSize / over)));
+    }
+    
     public IFont getFont() {
         return font;
     }
@@ -158,6 +188,7 @@ public class MTAnnularTextArea extends MTAnnularSegment {
     public void setFont(IFont font) {
         if (font == null) throw new NullPointerException();
         this.font = font;
+        textMesh.setFont(font);
     }
     
     public String getText() {
@@ -165,9 +196,10 @@ public class MTAnnularTextArea extends MTAnnularSegment {
     }
     
     public void setText(String s) {
-        text = null;
-        appendText(s);
-        generateLetters();
+        text = cleanupString(s);
+        updateArc();
+        // Only the glyphs after the part shared with the previous text change.
+        textMesh.setText(text);
     }
 
     private static String cleanupString(String s) {
@@ -189,102 +221,86 @@ public class MTAnnularTextArea extends MTAnnularSegment {
         } else {
             text = s;
         }
-        generateLetters();
+        updateArc();
+        textMesh.appendText(s);
     }
     
-    private void generateLetters() {
-        if (this.letters != null) {
-            for (MTTextArea ta : this.letters) {
-                removeChild(ta);
-            }
-        }
-        final int len = text != null ? text.length() : 0;
-        this.letters = new MTTextArea[len];
-        float[][] locsAndRots = computeLocationsAndRotations();
-        
-        PApplet pa = this.getRenderer();
-        
-        for (int i=0; i<len; i++) {
-            MTTextArea ta = new MTTextArea(pa, font);
-            ta.setFont(font);
-            ta.setNoFill(true);
-            ta.setNoStroke(true);
-            ta.setPickable(false);
-            ta.setText(this.text.substring(i, i+1));
-            float[] f = locsAndRots[i];
-            Vector3D pos = new Vector3D(f[0], f[1], 0f);
-            ta.setPositionGlobal(pos);
-            ta.rotateZ(pos, (float) Math.toDegrees(f[2]) - 90f, TransformSpace.GLOBAL);
-            this.addChild(ta);
-            this.letters[i] = ta;
-        }
+    private void updateArc() {
+        final Vector3D center = this.getCenter();
+        final float centerLineRadius = (this.getInnerRadius() + this.getOuterRadius())/2f;
+        textMesh.setArc(center.x, center.y, centerLineRadius,
+                (float) Math.toRadians(this.getStartAngle()),
+                (float) Math.toRadians(this.getArcDegrees()));
     }
 
-    private float[][] computeLocationsAndRotations() {
-  
-        final int charCount = this.text != null ? this.text.length() : 0;
-        final float[][] results = new float[charCount][3];
-  
-        final float[] charWidths = new float[charCount];
-        float totalWidth = 0f;
+    public static float stringWidth(IFont font, String s) {
+        // Widest line, measured without looking up a character object per letter.
+        return FontMetricsTable.forFont(font).measure(s);
+    }
+
+    // A font and ring geometry, and the strings fitted to them.
+    private static final class FitKey {
         
-        for (int i=0; i<charCount; i++) {
-            IFontCharacter c = font.getFontCharacterByUnicode(this.text.substring(i, i+1));
-            float w = c.getHorizontalDist();
-            charWidths[i] = w;
-            totalWidth += w;
-        }
+        private final String fontName;
+        private final boolean antiAliased;
+        private final float innerRadius, outerRadius, angle;
+        private final String[] strings;
         
-        final Vector3D center = this.getCenter();
-  
-        final float startRadians = (float) Math.toRadians(this.getStartAngle());  
-        final float arcRadians = (float) Math.toRadians(this.getArcDegrees());  
+        FitKey(String fontName, boolean antiAliased, float innerRadius, float outerRadius,
+                float angle, String[] strings) {
+            this.fontName = fontName;
+            this.antiAliased = antiAliased;
+            this.innerRadius = innerRadius;
+            this.outerRadius = outerRadius;
+            this.angle = angle;
+            this.strings = strings;
+        }
         
-        final float centerLineRadius = (this.getInnerRadius() + this.getOuterRadius())/2f;
-
-        float textRadians = totalWidth > 0f ? totalWidth/centerLineRadius : 0f; 
+        @Override
+        public int hashCode() {
+            int h = (fontName != null) ? fontName.hashCode() : 0;
+            h = 31*h + (antiAliased ? 1 : 0);
+            h = 31*h + Float.floatToIntBits(innerRadius);
+            h = 31*h + Float.floatToIntBits(outerRadius);
+            h = 31*h + Float.floatToIntBits(angle);
+            return 31*h + Arrays.hashCode(strings);
+        }
         
-        float angle = startRadians + arcRadians/2f - textRadians/2f;
-        //float angle = startRadians + (arcRadians - textRadians)/2f - (float) (Math.PI/2.0);
-  
-        for (int i=0; i<charCount; i++) {
-      
-            float w = charWidths[i];
-            float halfCharInc = w/(centerLineRadius*2f);
-            
-            angle += halfCharInc;
-            float x = - centerLineRadius * (float) Math.cos(angle) + center.x;
-            float y = - centerLineRadius * (float) Math.sin(angle) + center.y;
-      
-            results[i][0] = x;
-            results[i][1] = y;
-            results[i][2] = angle;
-            
-            angle += halfCharInc;
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof FitKey)) {
+                return false;
+            }
+            FitKey k = (FitKey) o;
+            return (fontName != null ? fontName.equals(k.fontName) : k.fontName == null)
+                    && antiAliased == k.antiAliased
+                    && Float.floatToIntBits(innerRadius) == Float.floatToIntBits(k.innerRadius)
+                    && Float.floatToIntBits(outerRadius) == Float.floatToIntBits(k.outerRadius)
+                    && Float.floatToIntBits(angle) == Float.floatToIntBits(k.angle)
+                    && Arrays.equals(strings, k.strings);
         }
-  
-        return results;
     }
 
-    public static float stringWidth(IFont font, String s) {
-        float maxLineWidth = 0f;
-        float width = 0f;
-        final int len = s.length();
-        for (int i=0; i<len; i++) {
-          IFontCharacter c = font.getFontCharacterByUnicode(s.substring(i, i+1));
-          // Have to consider the possibility of multiple lines.
-          if (!c.getUnicode().equals("\n")) {
-            width += c.getHorizontalDist();
-          } else {
-            if (width > maxLineWidth) {
-              maxLineWidth = width;
-            }
-            width = 0f;
-          }
+    // Draws the text mesh. Not pickable, so touches go to the segment.
+    private static class CurvedText extends MTComponent {
+        
+        private final CurvedTextMesh mesh;
+        
+        CurvedText(PApplet pApplet, CurvedTextMesh mesh) {
+            super(pApplet);
+            this.mesh = mesh;
+            setPickable(false);
         }
-        if (width > maxLineWidth) {
-          maxLineWidth = width;
+        
+        @Override
+        public void drawComponent(PGraphics g) {
+            if (MT4jSettings.getInstance().isOpenGlMode()) {
+                GL10 gl = PlatformUtil.beginGL();
+                mesh.drawComponent(gl);
+                PlatformUtil.endGL();
+            } else {
+                mesh.drawComponent(g);
+            }
         }
-        return maxLineWidth;
-      }
+    }
 }
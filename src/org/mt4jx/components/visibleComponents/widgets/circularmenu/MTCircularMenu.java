@@ -21,7 +21,6 @@ import java.awt.event.ActionListener;
 import java.util.ArrayList;
 
 import org.mt4j.components.MTComponent;
-import org.mt4j.util.font.FontManager;
 import org.mt4j.util.font.IFont;
 import org.mt4j.components.visibleComponents.shapes.AbstractShape;
 import org.mt4j.components.visibleComponents.shapes.MTEllipse;
@@ -29,6 +28,7 @@ import org.mt4j.components.visibleComponents.shapes.MTRectangle;
 import org.mt4j.components.visibleComponents.widgets.MTTextArea;
 import org.mt4j.util.MTColor;
 import org.mt4j.util.math.Vector3D;
+import org.mt4jx.components.visibleComponents.font.EnhancedFontManager;
 
 import processing.core.PApplet;
 import processing.core.PGraphics;
@@ -70,8 +70,8 @@ public class MTCircularMenu extends MTEllipse {
 		this.setNoStroke(true);
 		
 		MTColor white = new MTColor(255,255,255);
-		this.font = FontManager.getInstance().createFont(this.pApplet, "arial", 18);
-		this.font.setFillColor(white);
+		// Ask for the color rather than setting it on the font, which is shared through the cache.
+		this.font = EnhancedFontManager.getInstance().createFont(this.pApplet, "arial", 18, white);
 	}
 	/**
 	 * @param The Text to be displayed in the new menu item